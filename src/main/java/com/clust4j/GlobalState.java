@@ -240,4 +240,30 @@ public abstract class GlobalState {
 		 * The max length a parallel-processed chunk may be */
 		public static int MAX_PARALLEL_CHUNK_SIZE = MAX_SERIAL_VECTOR_LEN / NUM_CORES; //2_500_000;
 	}
+
+
+
+	/**
+	 * A class to hold configurations for the inner loops of the
+	 * vector kernels in {@link com.clust4j.utils.VecKernels}
+	 * @author Taylor G Smith
+	 */
+	public abstract static class VectorizationConf {
+		/**
+		 * Whether the distance and inner product kernels should use their
+		 * unrolled, multi-accumulator loops rather than the plain scalar loops.
+		 * The unrolled loops sum in a different order, so results may differ from
+		 * the scalar loops in the last few bits (and sparse results from dense ones).
+		 * Defaults to false, so results are reproducible, unless the system property 
+		 * <tt>clust4j.unrolledKernels</tt> is set to true.
+		 */
+		public static boolean UNROLLED_KERNELS = Boolean.getBoolean("clust4j.unrolledKernels");
+		
+		/**
+		 * Vectors shorter than this always use the scalar loops. For so few elements
+		 * the unrolled loops gain little, and this keeps the results of low-dimensional
+		 * data identical under either setting of {@link #UNROLLED_KERNELS}.
+		 */
+		public static int MIN_UNROLLED_LENGTH = 16;
+	}
 }
@@ -16,20 +16,27 @@
 package com.clust4j.algo;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Random;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.commons.math3.exception.DimensionMismatchException;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.util.FastMath;
 
+import com.clust4j.GlobalState;
 import com.clust4j.NamedEntity;
 import com.clust4j.kernel.Kernel;
 import com.clust4j.log.LogTimer;
 import com.clust4j.metrics.pairwise.Distance;
 import com.clust4j.metrics.pairwise.GeometricallySeparable;
+import com.clust4j.metrics.pairwise.Pairwise;
 import com.clust4j.metrics.scoring.SupervisedMetric;
+import com.clust4j.utils.CSRMatrix;
 import com.clust4j.utils.MatUtils;
+import com.clust4j.utils.VecKernels;
 import com.clust4j.utils.VecUtils;
 
 import static com.clust4j.metrics.scoring.UnsupervisedMetric.SILHOUETTE;
@@ -41,6 +48,10 @@ public abstract class AbstractCentroidClusterer extends AbstractPartitionalClust
 	final public static double DEF_CONVERGENCE_TOLERANCE = 0.005; // Not same as Convergeable.DEF_TOL
 	final public static int DEF_K = BaseNeighborsModel.DEF_K;
 	final public static InitializationStrategy DEF_INIT = InitializationStrategy.AUTO;
+	/** The number of sampling rounds of {@link InitializationStrategy#KM_PARALLEL} */
+	final public static int KMP_ROUNDS = 5;
+	/** The expected number of candidates sampled per round of {@link InitializationStrategy#KM_PARALLEL}, as a multiple of k */
+	final public static double KMP_OVERSAMPLING = 2.0;
 	final public static HashSet<Class<? extends GeometricallySeparable>> UNSUPPORTED_METRICS;
 	
 	static {
@@ -75,8 +86,12 @@ public abstract class AbstractCentroidClusterer extends AbstractPartitionalClust
 	protected InitializationStrategy init;
 	final protected int maxIter;
 	final protected double tolerance;
+	/** The records selected by the initialization strategy, or null if warm started */
 	final protected int[] init_centroid_indices;
+	final private boolean warmStarted;
 	final protected int m;
+	/** The weight of each record, or null if each counts once */
+	final protected double[] weights;
 	
 	volatile protected boolean converged = false;
 	volatile protected double tss = 0.0;
@@ -90,7 +105,17 @@ public abstract class AbstractCentroidClusterer extends AbstractPartitionalClust
 	volatile protected ArrayList<double[]> centroids = new ArrayList<double[]>();
 
 	
-	static interface Initializer { int[] getInitialCentroidSeeds(AbstractCentroidClusterer model, double[][] X, int k, final Random seed); }
+	static interface Initializer { 
+		int[] getInitialCentroidSeeds(AbstractCentroidClusterer model, double[][] X, int k, final Random seed);
+		int[] getInitialCentroidSeeds(AbstractCentroidClusterer model, CSRMatrix X, int k, final Random seed);
+	}
+	
+	/** Computes the partial Euclidean distances from a candidate row to other rows */
+	static interface CandidateDistances {
+		double[] distancesFrom(int idx);
+		double distanceBetween(int idx, int row);
+	}
+	
 	public static enum InitializationStrategy implements java.io.Serializable, Initializer, NamedEntity {
 		AUTO {
 			@Override public int[] getInitialCentroidSeeds(AbstractCentroidClusterer model, double[][] X, int k, final Random seed) {
@@ -99,6 +124,12 @@ public abstract class AbstractCentroidClusterer extends AbstractPartitionalClust
 				return KM_AUGMENTED.getInitialCentroidSeeds(model, X, k, seed);
 			}
 			
+			@Override public int[] getInitialCentroidSeeds(AbstractCentroidClusterer model, CSRMatrix X, int k, final Random seed) {
+				if(model.dist_metric instanceof Kernel)
+					return RANDOM.getInitialCentroidSeeds(model, X, k, seed);
+				return KM_AUGMENTED.getInitialCentroidSeeds(model, X, k, seed);
+			}
+			
 			@Override public String getName() {
 				return "auto initialization";
 			}
@@ -113,17 +144,12 @@ public abstract class AbstractCentroidClusterer extends AbstractPartitionalClust
 		RANDOM {
 			@Override public int[] getInitialCentroidSeeds(AbstractCentroidClusterer model, double[][] X, int k, final Random seed) {
 				model.init = this;
-				final int m = X.length;
-				
-				// Corner case: k = m
-				if(m == k)
-					return VecUtils.arange(k);
-				
-				final int[] recordIndices = VecUtils.permutation(VecUtils.arange(m), seed);
-				final int[] cent_indices = new int[k];
-				for(int i = 0; i < k; i++)
-					cent_indices[i] = recordIndices[i];
-				return cent_indices;
+				return randomSeeds(X.length, k, seed, model.weights);
+			}
+			
+			@Override public int[] getInitialCentroidSeeds(AbstractCentroidClusterer model, CSRMatrix X, int k, final Random seed) {
+				model.init = this;
+				return randomSeeds(X.getRowDimension(), k, seed, model.weights);
 			}
 			
 			@Override public String getName() {
@@ -139,119 +165,397 @@ public abstract class AbstractCentroidClusterer extends AbstractPartitionalClust
 		 * @see <a href="http://ilpubs.stanford.edu:8090/778/1/2006-13.pdf">k-means++ paper</a>
 		 */
 		KM_AUGMENTED {
-			@Override public int[] getInitialCentroidSeeds(AbstractCentroidClusterer model, double[][] X, int k, final Random seed) {
+			@Override public int[] getInitialCentroidSeeds(AbstractCentroidClusterer model, final double[][] X, int k, final Random seed) {
 				model.init = this;
+				return kMeansPlusPlusSeeds(X.length, k, seed, candidateDistances(X), model.weights);
+			}
+			
+			@Override public int[] getInitialCentroidSeeds(AbstractCentroidClusterer model, final CSRMatrix X, int k, final Random seed) {
+				model.init = this;
+				return kMeansPlusPlusSeeds(X.getRowDimension(), k, seed, candidateDistances(X), model.weights);
+			}
+			
+			@Override public String getName() {
+				return "k-means++";
+			}
+		},
+		
+		/**
+		 * The scalable <i>k</i>-means++ (&quot;<i>k</i>-means||&quot;) initialization proposed in 2012 
+		 * by Bahmani et al. Where {@link #KM_AUGMENTED} makes one pass over the data per seed, 
+		 * this makes {@value AbstractCentroidClusterer#KMP_ROUNDS} passes, each of which samples
+		 * about {@value AbstractCentroidClusterer#KMP_OVERSAMPLING}&middot;k candidates at once, 
+		 * every record independently with probability proportional to its squared distance from
+		 * the nearest candidate so far. The candidates are then weighted by the number of records
+		 * nearest to them, and reduced to <tt>k</tt> seeds by weighted <i>k</i>-means++. If the
+		 * model permits parallelism, each pass is split over blocks of records on the ForkJoin pool.
+		 * @see <a href="http://theory.stanford.edu/~sergei/papers/vldb12-kmpar.pdf">Scalable K-Means++</a>
+		 */
+		KM_PARALLEL {
+			@Override public int[] getInitialCentroidSeeds(AbstractCentroidClusterer model, final double[][] X, int k, final Random seed) {
+				model.init = this;
+				return kMeansParallelSeeds(X.length, k, seed, candidateDistances(X), model.parallel, model.weights);
+			}
+			
+			@Override public int[] getInitialCentroidSeeds(AbstractCentroidClusterer model, final CSRMatrix X, int k, final Random seed) {
+				model.init = this;
+				return kMeansParallelSeeds(X.getRowDimension(), k, seed, candidateDistances(X), model.parallel, model.weights);
+			}
+			
+			@Override public String getName() {
+				return "k-means||";
+			}
+		}
+	}
+	
+	static CandidateDistances candidateDistances(final double[][] X) {
+		return new CandidateDistances() {
+			@Override public double[] distancesFrom(int idx) {
+				return eucDists(new double[][]{X[idx]}, X)[0];
+			}
+			
+			@Override public double distanceBetween(int idx, int row) {
+				return Distance.EUCLIDEAN.getPartialDistance(X[idx], X[row]);
+			}
+		};
+	}
+	
+	static CandidateDistances candidateDistances(final CSRMatrix X) {
+		return new CandidateDistances() {
+			@Override public double[] distancesFrom(int idx) {
+				return eucDists(idx, X);
+			}
+			
+			@Override public double distanceBetween(int idx, int row) {
+				return Pairwise.sparsePartialDistance(Distance.EUCLIDEAN, X, idx, X, row);
+			}
+		};
+	}
+	
+	/** Select <tt>k</tt> of <tt>m</tt> records uniformly at random */
+	static int[] randomSeeds(final int m, final int k, final Random seed) {
+		return randomSeeds(m, k, seed, null);
+	}
+	
+	/**
+	 * Select <tt>k</tt> of <tt>m</tt> records at random without replacement, each with
+	 * probability proportional to its weight (by the keys of Efraimidis and Spirakis), 
+	 * or uniformly if the weights are null. Records of zero weight are chosen last.
+	 */
+	static int[] randomSeeds(final int m, final int k, final Random seed, final double[] weights) {
+		// Corner case: k = m
+		if(m == k)
+			return VecUtils.arange(k);
+		
+		if(null != weights) {
+			final double[] keys = new double[m];
+			for(int i = 0; i < m; i++) // ascending keys, so the head of the sort is chosen
+				keys[i] = weights[i] > 0 ? -FastMath.log(seed.nextDouble()) / weights[i] : Double.POSITIVE_INFINITY;
+			return VecUtils.slice(VecUtils.argSort(keys), 0, k);
+		}
+		
+		final int[] recordIndices = VecUtils.permutation(VecUtils.arange(m), seed);
+		final int[] cent_indices = new int[k];
+		for(int i = 0; i < k; i++)
+			cent_indices[i] = recordIndices[i];
+		return cent_indices;
+	}
+	
+	/**
+	 * The k-means++ seeding procedure over <tt>m</tt> records, independent of
+	 * the representation of the data, which is only ever accessed through
+	 * the candidate distance function.
+	 */
+	static int[] kMeansPlusPlusSeeds(final int m, final int k, final Random seed, final CandidateDistances dists) {
+		return kMeansPlusPlusSeeds(m, k, seed, dists, null);
+	}
+	
+	/**
+	 * The k-means++ seeding procedure over <tt>m</tt> weighted records, in which
+	 * each record counts as <tt>weights[i]</tt> records, or as one if the weights are null.
+	 */
+	static int[] kMeansPlusPlusSeeds(final int m, final int k, final Random seed, 
+			final CandidateDistances dists, final double[] weights) {
+		final int[] range = VecUtils.arange(k);
+		final int[] centerIdcs = new int[k];
+		
+		
+		// Corner case: k = m
+		if(m == k)
+			return range;
+		
+		// Arthur and Vassilvitskii reported that this helped
+		final int numTrials = FastMath.max(2 * (int)FastMath.log(k), 1);
+		
+		
+		// Start with a random center
+		int center_id = null == weights ? seed.nextInt(m) : 
+			searchSortedCumSum(VecUtils.cumsum(weights), 
+				new double[]{ VecUtils.sum(weights) * seed.nextDouble() })[0];
+		centerIdcs[0] = center_id;
+		
+		// Initialize list of closest distances, weighted if need be
+		double[] closest = weigh(dists.distancesFrom(center_id), weights);
+		double currentPotential = VecUtils.sum(closest);
+		
+		
+		// Pick the rest of the cluster starting points
+		double[] randomVals, cumSum, bestDistSq;
+		int[] candidateIdcs;
+		double[][] distsToCandidates;
+		int bestCandidate;
+		double bestPotential;
+		
+		
+		for(int i = 1; i < k; i++) { // if k == 1, will skip this
+			
+			/* 
+			 * Generate some random vals. This is a precursor to choosing
+			 * centroid candidates by sampling with probability proportional to
+			 * partial distance to nearest existing centroid
+			 */
+			randomVals = new double[numTrials];
+			for(int j = 0; j < randomVals.length; j++)
+				randomVals[j] = currentPotential * seed.nextDouble();
+			
+			
+			/* Search sorted and get new dists for candidates */
+			cumSum = VecUtils.cumsum(closest); // always will be sorted
+			candidateIdcs = searchSortedCumSum(cumSum, randomVals);
+			
+			// dists to candidates
+			distsToCandidates = new double[candidateIdcs.length][];
+			for(int j = 0; j < distsToCandidates.length; j++)
+				distsToCandidates[j] = weigh(dists.distancesFrom(candidateIdcs[j]), weights);
+			
+			
+			// Identify best candidate...
+			bestCandidate	= -1;
+			bestPotential	= Double.POSITIVE_INFINITY;
+			bestDistSq		= null;
+			
+			for(int trial = 0; trial < numTrials; trial++) {
+				double[] trialCandidate = distsToCandidates[trial];
+				double[] newDistSq = new double[trialCandidate.length];
 				
-				final int m = X.length, n = X[0].length;
-				final int[] range = VecUtils.arange(k);
-				final double[][] centers = new double[k][n];
-				final int[] centerIdcs = new int[k];
-				
-				
-				// Corner case: k = m
-				if(m == k)
-					return range;
-				
-				// First need to get row norms, which is equal to X * X => row sums
-				// True Euclidean norm would sqrt each term, but no need...
-				final double[] norms = new double[m];
-				for(int i = 0; i < m; i++)
-					for(int j = 0; j < X[i].length; j++)
-						norms[i] += X[i][j] * X[i][j];
-				
-				// Arthur and Vassilvitskii reported that this helped
-				final int numTrials = FastMath.max(2 * (int)FastMath.log(k), 1);
-				
-				
-				// Start with a random center
-				int center_id = seed.nextInt(m);
-				centers[0] = X[center_id];
-				centerIdcs[0] = center_id;
-				
-				// Initialize list of closest distances
-				double[][] closest = eucDists(new double[][]{centers[0]}, X);
-				double currentPotential = MatUtils.sum(closest);
-				
-				
-				// Pick the rest of the cluster starting points
-				double[] randomVals, cumSum;
-				int[] candidateIdcs;
-				double[][] candidateRows, distsToCandidates, bestDistSq;
-				int bestCandidate;
-				double bestPotential;
-				
-				
-				for(int i = 1; i < k; i++) { // if k == 1, will skip this
-					
-					/* 
-					 * Generate some random vals. This is a precursor to choosing
-					 * centroid candidates by sampling with probability proportional to
-					 * partial distance to nearest existing centroid
-					 */
-					randomVals = new double[numTrials];
-					for(int j = 0; j < randomVals.length; j++)
-						randomVals[j] = currentPotential * seed.nextDouble();
-					
-					
-					/* Search sorted and get new dists for candidates */
-					cumSum = MatUtils.cumSum(closest); // always will be sorted
-					candidateIdcs = searchSortedCumSum(cumSum, randomVals);
-					
-					// Identify the candidates
-					candidateRows = new double[candidateIdcs.length][];
-					for(int j = 0; j < candidateRows.length; j++)
-						candidateRows[j] = X[candidateIdcs[j]];
-					
-					// dists to candidates
-					distsToCandidates = eucDists(candidateRows, X);
-					
-					
-					// Identify best candidate...
-					bestCandidate	= -1;
-					bestPotential	= Double.POSITIVE_INFINITY;
-					bestDistSq		= null;
-					
-					for(int trial = 0; trial < numTrials; trial++) {
-						double[] trialCandidate = distsToCandidates[trial];
-						double[][] newDistSq = new double[closest.length][trialCandidate.length];
-						
-						// Build min dist array
-						double newPotential = 0.0; // running sum
-						for(int j = 0; j < newDistSq.length; j++) {
-							for(int p = 0; p < trialCandidate.length; p++) {
-								newDistSq[j][p] = FastMath.min(closest[j][p], trialCandidate[p]);
-								newPotential += newDistSq[j][p];
-							}
-						}
-						
-						// Store if best so far
-						if(-1 == bestCandidate || newPotential < bestPotential) {
-							bestCandidate = candidateIdcs[trial];
-							bestPotential = newPotential;
-							bestDistSq = newDistSq;
-						}
-					}
-					
-					
-					// Add the record...
-					centers[i] 		= X[bestCandidate];
-					centerIdcs[i] 	= bestCandidate;
-					
-					// update vars outside loop
-					currentPotential = bestPotential;
-					closest = bestDistSq;
+				// Build min dist array
+				double newPotential = 0.0; // running sum
+				for(int p = 0; p < trialCandidate.length; p++) {
+					newDistSq[p] = FastMath.min(closest[p], trialCandidate[p]);
+					newPotential += newDistSq[p];
 				}
 				
-				
-				return centerIdcs;
+				// Store if best so far
+				if(-1 == bestCandidate || newPotential < bestPotential) {
+					bestCandidate = candidateIdcs[trial];
+					bestPotential = newPotential;
+					bestDistSq = newDistSq;
+				}
 			}
 			
-			@Override public String getName() {
-				return "k-means++";
+			
+			// Add the record...
+			centerIdcs[i] 	= bestCandidate;
+			
+			// update vars outside loop
+			currentPotential = bestPotential;
+			closest = bestDistSq;
+		}
+		
+		
+		return centerIdcs;
+	}
+	
+	/** Scale the distances by the weights in place, if there are any */
+	private static double[] weigh(final double[] dists, final double[] weights) {
+		if(null != weights)
+			for(int i = 0; i < dists.length; i++)
+				dists[i] *= weights[i];
+		return dists;
+	}
+	
+	/**
+	 * The k-means|| seeding procedure over <tt>m</tt> records. The random draws are
+	 * made serially, so the seeds are the same whether or not the distance updates
+	 * are run in parallel.
+	 */
+	static int[] kMeansParallelSeeds(final int m, final int k, final Random seed, 
+			final CandidateDistances dists, final boolean parallel) {
+		return kMeansParallelSeeds(m, k, seed, dists, parallel, null);
+	}
+	
+	/**
+	 * The k-means|| seeding procedure over <tt>m</tt> weighted records, in which each 
+	 * record is sampled in proportion to its weighted distance, and lends its weight to
+	 * its nearest candidate. Null weights count each record once.
+	 */
+	static int[] kMeansParallelSeeds(final int m, final int k, final Random seed, 
+			final CandidateDistances dists, final boolean parallel, final double[] weights) {
+		
+		// Corner case: k = m
+		if(m == k)
+			return VecUtils.arange(k);
+		
+		final double[] closest = VecUtils.rep(Double.POSITIVE_INFINITY, m);
+		final int[] owner = new int[m];
+		final double l = KMP_OVERSAMPLING * k;
+		
+		// Start with a random candidate
+		int[] candidates = new int[]{ null == weights ? seed.nextInt(m) : 
+			searchSortedCumSum(VecUtils.cumsum(weights), 
+				new double[]{ VecUtils.sum(weights) * seed.nextDouble() })[0] };
+		int numCandidates = 1, from = 0;
+		
+		double potential;
+		for(int round = 0; ; round++) {
+			// fold the newest candidates into each record's nearest candidate
+			nearestCandidates(dists, candidates, from, numCandidates, closest, owner, parallel);
+			
+			potential = 0;
+			for(int i = 0; i < m; i++)
+				potential += null == weights ? closest[i] : weights[i] * closest[i];
+			if(KMP_ROUNDS == round || 0 == potential) // 0 if every record coincides with a candidate
+				break;
+			
+			// sample each record independently; candidates have a distance of 0, so are never resampled
+			from = numCandidates;
+			for(int i = 0; i < m; i++) {
+				if(seed.nextDouble() < l * (null == weights ? closest[i] : weights[i] * closest[i]) / potential) {
+					if(numCandidates == candidates.length)
+						candidates = Arrays.copyOf(candidates, 2 * numCandidates);
+					candidates[numCandidates++] = i;
+				}
+			}
+		}
+		
+		final int[] cands = VecUtils.slice(candidates, 0, numCandidates);
+		if(numCandidates <= k)
+			return fillSeeds(cands, m, k, seed);
+		
+		// weigh each candidate by the (weighted) number of records nearest to it, then reduce to k
+		final double[] candWeights = new double[numCandidates];
+		for(int i = 0; i < m; i++)
+			candWeights[owner[i]] += null == weights ? 1.0 : weights[i];
+		
+		final int[] chosen = kMeansPlusPlusSeeds(numCandidates, k, seed, new CandidateDistances() {
+			@Override public double[] distancesFrom(int idx) {
+				final double[] d = new double[cands.length];
+				for(int j = 0; j < d.length; j++)
+					d[j] = dists.distanceBetween(cands[idx], cands[j]);
+				return d;
+			}
+			
+			@Override public double distanceBetween(int idx, int row) {
+				return dists.distanceBetween(cands[idx], cands[row]);
+			}
+		}, candWeights);
+		
+		// once the candidates are exhausted, k-means++ repeats them
+		final LinkedHashSet<Integer> centerIdcs = new LinkedHashSet<>();
+		for(int i = 0; i < k; i++)
+			centerIdcs.add(cands[chosen[i]]);
+		
+		int next = 0;
+		final int[] distinct = new int[centerIdcs.size()];
+		for(int idx: centerIdcs)
+			distinct[next++] = idx;
+		
+		return distinct.length == k ? distinct : fillSeeds(distinct, m, k, seed);
+	}
+	
+	/** Complete too few distinct seeds with other records chosen uniformly at random */
+	private static int[] fillSeeds(final int[] seeds, final int m, final int k, final Random seed) {
+		final HashSet<Integer> used = new HashSet<>();
+		for(int s: seeds)
+			used.add(s);
+		
+		final int[] out = Arrays.copyOf(seeds, k);
+		int next = seeds.length;
+		for(int i: VecUtils.permutation(VecUtils.arange(m), seed)) {
+			if(next == k)
+				break;
+			if(used.add(i))
+				out[next++] = i;
+		}
+		
+		return out;
+	}
+	
+	/**
+	 * For each record, lower its distance to the nearest candidate by the candidates 
+	 * at positions <tt>from</tt> through <tt>to</tt> (exclusive), recording the position
+	 * of its nearest candidate in <tt>owner</tt>. Ties go to the earlier candidate.
+	 */
+	static void nearestCandidates(final CandidateDistances dists, final int[] candidates,
+			final int from, final int to, final double[] closest, final int[] owner, final boolean parallel) {
+		if(!parallel) {
+			nearestCandidates(dists, candidates, from, to, closest, owner, 0, closest.length);
+			return;
+		}
+		
+		GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(new NearestCandidateTask(dists, candidates, 
+			from, to, closest, owner, 0, closest.length, 
+			FastMath.max(ParallelChunkingTask.ChunkingStrategy.DEF_CHUNK_SIZE, 
+				closest.length / GlobalState.ParallelismConf.NUM_CORES)));
+	}
+	
+	/**
+	 * {@link #nearestCandidates(CandidateDistances, int[], int, int, double[], int[], boolean)}
+	 * for the records at positions <tt>lo</tt> through <tt>hi</tt> (exclusive), on the calling thread
+	 */
+	static void nearestCandidates(final CandidateDistances dists, final int[] candidates, final int from, 
+			final int to, final double[] closest, final int[] owner, final int lo, final int hi) {
+		double d;
+		for(int i = lo; i < hi; i++) {
+			for(int c = from; c < to; c++) {
+				d = dists.distanceBetween(candidates[c], i);
+				if(d < closest[i]) {
+					closest[i] = d;
+					owner[i] = c;
+				}
 			}
 		}
 	}
 	
+	/**
+	 * Splits the records of {@link #nearestCandidates(CandidateDistances, int[], int, int, double[], int[], boolean)}
+	 * into contiguous blocks. The blocks are disjoint, so the tasks need no synchronization.
+	 * @author Taylor G Smith
+	 */
+	static final class NearestCandidateTask extends RecursiveAction {
+		private static final long serialVersionUID = 3328706618930513262L;
+		final CandidateDistances dists;
+		final int[] candidates, owner;
+		final double[] closest;
+		final int from, to, lo, hi, chunkSize;
+		
+		NearestCandidateTask(final CandidateDistances dists, final int[] candidates, final int from, final int to,
+				final double[] closest, final int[] owner, final int lo, final int hi, final int chunkSize) {
+			this.dists = dists;
+			this.candidates = candidates;
+			this.from = from;
+			this.to = to;
+			this.closest = closest;
+			this.owner = owner;
+			this.lo = lo;
+			this.hi = hi;
+			this.chunkSize = chunkSize;
+		}
+		
+		@Override
+		protected void compute() {
+			if(hi - lo > chunkSize) {
+				final int mid = (lo + hi) >>> 1;
+				invokeAll(
+					new NearestCandidateTask(dists, candidates, from, to, closest, owner, lo, mid, chunkSize),
+					new NearestCandidateTask(dists, candidates, from, to, closest, owner, mid, hi, chunkSize));
+				return;
+			}
+			
+			nearestCandidates(dists, candidates, from, to, closest, owner, lo, hi);
+		}
+	}
+	
 	/** Internal method for cumsum searchsorted. Protected for testing only */
 	static int[] searchSortedCumSum(double[] cumSum, double[] randomVals) {
 		final int[] populate = new int[randomVals.length];
@@ -292,6 +596,17 @@ public abstract class AbstractCentroidClusterer extends AbstractPartitionalClust
 	
 	
 	
+	/** The sparse analog of {@link #eucDists(double[][], double[][])} for a single row of <tt>X</tt> */
+	static double[] eucDists(final int center, final CSRMatrix X) {
+		final int m = X.getRowDimension();
+		final double[] dists = new double[m];
+		for(int i = 0; i < m; i++)
+			dists[i] = Pairwise.sparsePartialDistance(Distance.EUCLIDEAN, X, center, X, i);
+		return dists;
+	}
+	
+	
+	
 	public AbstractCentroidClusterer(RealMatrix data,
 			CentroidClustererParameters<? extends AbstractCentroidClusterer> planner) {
 		super(data, planner, planner.getK());
@@ -313,39 +628,109 @@ public abstract class AbstractCentroidClusterer extends AbstractPartitionalClust
 		this.maxIter = planner.getMaxIter();
 		this.tolerance = planner.getConvergenceTolerance();
 		this.m = data.getRowDimension();
+		this.weights = planner.getSampleWeights();
 		
+		if(null != weights && weights.length != m)
+			throw new DimensionMismatchException(weights.length, m);
 		if(maxIter < 0)	throw new IllegalArgumentException("maxIter must exceed 0");
 		if(tolerance<0)	throw new IllegalArgumentException("minChange must exceed 0");
 
 		
-		// set centroids
+		// set centroids, either from the warm start or the initialization strategy
 		final LogTimer centTimer = new LogTimer();
-		this.init_centroid_indices = init.getInitialCentroidSeeds(
-			this, this.data.getData(), k, getSeed());
-		for(int i: this.init_centroid_indices)
-			centroids.add(this.data.getRow(i));
-		
+		final double[][] warmStart = planner.getWarmStart();
+		this.warmStarted = null != warmStart && seedsInitialCentroids();
+		if(!seedsInitialCentroids()) {
+			this.init_centroid_indices = null; // the model grows its own
+		} else if(warmStarted) {
+			final int n = dataRef().getColumnDimension();
+			if(warmStart.length != k)
+				throw new DimensionMismatchException(warmStart.length, k);
+			if(warmStart[0].length != n)
+				throw new DimensionMismatchException(warmStart[0].length, n);
+			
+			for(double[] centroid: warmStart) {
+				if(VecUtils.containsNaN(centroid))
+					throw new IllegalArgumentException("warm start centroids cannot contain NaN");
+				centroids.add(centroid);
+			}
+			
+			this.init_centroid_indices = null;
+			info("warm started from " + k + " prior centroids");
+		} else {
+			this.init_centroid_indices = isSparse() ?
+				init.getInitialCentroidSeeds(this, this.sparse_data, k, getSeed()) :
+				init.getInitialCentroidSeeds(this, this.data.getData(), k, getSeed());
+			for(int i: this.init_centroid_indices)
+				centroids.add(dataRef().getRow(i));
+			
+			info("selected centroid centers via " + init.getName() + " in " + centTimer.toString());
+		}
 		
-		info("selected centroid centers via " + init.getName() + " in " + centTimer.toString());
 		logModelSummary();
 		
 		/*
 		 * The TSS will always be the same -- the sum of squared distances from the mean record.
 		 * We can just compute this here quick and easy.
 		 */
+		if(isSparse()) {
+			tss = sparseTSS(sparse_data, weights);
+			wss = VecUtils.rep(Double.NaN, k);
+			return;
+		}
+		
 		final double[][] X = this.data.getDataRef();
-		final double[] mean_record = MatUtils.meanRecord(X);
-		for(int i = 0; i < m; i++) {
-			for(int j = 0; j < mean_record.length; j++){
-				double diff = X[i][j] - mean_record[j];
-				tss += (diff * diff);
+		if(null == weights) {
+			final double[] mean_record = MatUtils.meanRecord(X);
+			for(int i = 0; i < m; i++) {
+				for(int j = 0; j < mean_record.length; j++){
+					double diff = X[i][j] - mean_record[j];
+					tss += (diff * diff);
+				}
 			}
+		} else {
+			final double[] mean_record = new double[X[0].length];
+			final double total = VecUtils.sum(weights);
+			for(int i = 0; i < m; i++)
+				for(int j = 0; j < mean_record.length; j++)
+					mean_record[j] += weights[i] * X[i][j] / total;
+			
+			for(int i = 0; i < m; i++)
+				tss += weights[i] * VecKernels.squaredDifference(X[i], mean_record);
 		}
 		
 		// Initialize WSS:
 		wss = VecUtils.rep(Double.NaN, k);
 	}
 	
+	/**
+	 * The TSS of a sparse matrix, computed in O(nnz + n) per row
+	 * relative to the squared norm of the mean record
+	 */
+	static double sparseTSS(final CSRMatrix X) {
+		return sparseTSS(X, null);
+	}
+	
+	/**
+	 * The TSS of a sparse matrix whose rows are weighted, 
+	 * or each counted once if the weights are null
+	 */
+	static double sparseTSS(final CSRMatrix X, final double[] weights) {
+		final int m = X.getRowDimension();
+		final double total = null == weights ? m : VecUtils.sum(weights);
+		final double[] mean_record = new double[X.getColumnDimension()];
+		for(int i = 0; i < m; i++)
+			X.addRowTo(i, null == weights ? 1.0 : weights[i], mean_record);
+		for(int j = 0; j < mean_record.length; j++)
+			mean_record[j] /= total;
+		
+		double sum = 0;
+		final double norm = Distance.EUCLIDEAN.sparseNorm(mean_record);
+		for(int i = 0; i < m; i++)
+			sum += (null == weights ? 1.0 : weights[i]) * Distance.EUCLIDEAN.getPartialDistance(X, i, mean_record, norm);
+		return sum;
+	}
+	
 	@Override
 	final public boolean isValidMetric(GeometricallySeparable geo) {
 		return !UNSUPPORTED_METRICS.contains(geo.getClass());
@@ -356,9 +741,9 @@ public abstract class AbstractCentroidClusterer extends AbstractPartitionalClust
 		return new ModelSummary(new Object[]{
 				"Num Rows","Num Cols","Metric","K","Allow Par.","Max Iter","Tolerance","Init."
 			}, new Object[]{
-				m,data.getColumnDimension(),getSeparabilityMetric(),k,
+				m,dataRef().getColumnDimension(),getSeparabilityMetric(),k,
 				parallel,
-				maxIter, tolerance, init.toString()
+				maxIter, tolerance, isWarmStarted() ? "WARM_START" : init.toString()
 			});
 	}
 
@@ -366,6 +751,34 @@ public abstract class AbstractCentroidClusterer extends AbstractPartitionalClust
 	
 
 	
+	/**
+	 * Whether the model was seeded with the centroids of {@link CentroidClustererParameters#setWarmStart(double[][])} 
+	 * rather than by its {@link InitializationStrategy}
+	 * @return whether the model was warm started
+	 */
+	public boolean isWarmStarted() {
+		return warmStarted;
+	}
+	
+	/**
+	 * The weight of each record, set by {@link KMeansParameters#setSampleWeights(double[])}
+	 * or {@link KMedoidsParameters#setSampleWeights(double[])}
+	 * @return a copy of the weights, or null if each record counts once
+	 */
+	public double[] getSampleWeights() {
+		return null == weights ? null : VecUtils.copy(weights);
+	}
+	
+	/**
+	 * Whether the constructor should seed the <tt>k</tt> initial centroids, either from
+	 * the warm start or the {@link InitializationStrategy}. Models which grow their own
+	 * centroids, such as {@link BisectingKMeans}, need not pay for the seeding.
+	 * @return true unless overridden
+	 */
+	protected boolean seedsInitialCentroids() {
+		return true;
+	}
+	
 	@Override
 	public boolean didConverge() {
 		synchronized(fitLock) {
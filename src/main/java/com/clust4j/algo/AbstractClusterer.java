@@ -38,6 +38,7 @@ import com.clust4j.metrics.pairwise.Distance;
 import com.clust4j.metrics.pairwise.DistanceMetric;
 import com.clust4j.metrics.pairwise.GeometricallySeparable;
 import com.clust4j.metrics.pairwise.SimilarityMetric;
+import com.clust4j.utils.CSRMatrix;
 import com.clust4j.utils.MatUtils;
 import com.clust4j.utils.TableFormatter.Table;
 import com.clust4j.utils.VecUtils;
@@ -68,8 +69,10 @@ public abstract class AbstractClusterer
 	
 	
 	
-	/** Underlying data */
+	/** Underlying data; null if the model holds {@link #sparse_data} */
 	final protected Array2DRowRealMatrix data;
+	/** The compressed data, if the model is {@link SparseCapable} and was built from a {@link CSRMatrix} */
+	final protected CSRMatrix sparse_data;
 	/** Similarity metric */
 	protected GeometricallySeparable dist_metric;
 	/** Seed for any shuffles */
@@ -108,6 +111,7 @@ public abstract class AbstractClusterer
 		this.modelKey 		= getName() + "_" + UUID.randomUUID();
 		this.random_state 	= null == planner ? caller.random_state : planner.getSeed();
 		this.data 			= caller.data; // Use the reference
+		this.sparse_data	= caller.sparse_data;
 		this.parallel 		= caller.parallel;
 		this.fitSummary 	= new ModelSummary(getModelFitSummaryHeaders());
 		this.singular_value = caller.singular_value;
@@ -133,9 +137,18 @@ public abstract class AbstractClusterer
 			warn("running " + getName() + " in Kernel mode can be an expensive option");
 		
 		// Handle data, now...
-		this.data = as_is ? 
-			(Array2DRowRealMatrix)data : // internally, always 2d...
-				initData(data);
+		if(data instanceof CSRMatrix && this instanceof SparseCapable) {
+			this.sparse_data = as_is ?
+				(CSRMatrix)data :
+					initSparseData((CSRMatrix)data);
+			this.data = null;
+		} else {
+			this.sparse_data = null;
+			this.data = as_is ? 
+				(Array2DRowRealMatrix)data : // internally, always 2d...
+					initData(data);
+		}
+		
 		if(singular_value)
 			warn("all elements in input matrix are equal ("+data.getEntry(0, 0)+")");
 			
@@ -226,6 +239,80 @@ public abstract class AbstractClusterer
 	}
 	
 	
+	/**
+	 * The sparse analog of {@link #initData(RealMatrix)}, which copies the
+	 * matrix and computes the same summaries in O(nnz + n)
+	 */
+	final private CSRMatrix initSparseData(final CSRMatrix data) {
+		final int m = data.getRowDimension(), n = data.getColumnDimension();
+		final CSRMatrix copy = data.copy();
+		final HashSet<Double> unique = new HashSet<>();
+		
+		final int[] idcs = copy.getIndicesRef();
+		final double[] vals = copy.getValuesRef();
+		
+		double[] sum   = new double[n];
+		double[] sumSq = new double[n];
+		double[] maxes = VecUtils.rep(Double.NEGATIVE_INFINITY, n);
+		double[] mins  = VecUtils.rep(Double.POSITIVE_INFINITY, n);
+		int[] nnz = new int[n];
+		
+		ModelSummary summaries = new ModelSummary(new Object[]{
+			"Feature #","Variance","Std. Dev","Mean","Max","Min"
+		});
+		
+		double entry;
+		int j;
+		for(int p = 0; p < vals.length; p++) {
+			entry = vals[p];
+			if(Double.isNaN(entry)) {
+				error(new NaNException("NaN in input data. "
+					+ "Select a matrix imputation method for "
+					+ "incomplete records"));
+			}
+			
+			j = idcs[p];
+			unique.add(entry);
+			sumSq[j] += entry * entry;
+			sum[j]   += entry;
+			maxes[j]  = FastMath.max(entry, maxes[j]);
+			mins[j]   = FastMath.min(entry, mins[j]);
+			nnz[j]++;
+		}
+		
+		// the implicit zeros
+		if((long)m * (long)n > vals.length)
+			unique.add(0.0);
+		
+		for(j = 0; j < n; j++) {
+			if(nnz[j] < m) {
+				maxes[j] = FastMath.max(0.0, maxes[j]);
+				mins[j]  = FastMath.min(0.0, mins[j]);
+			}
+			
+			double var = (sumSq[j] - (sum[j]*sum[j])/(double)m ) / ((double)m - 1.0);
+			if(var == 0) {
+				warn("zero variance in feature " + j);
+			}
+			
+			summaries.add(new Object[]{
+				j, var,
+				m < 2 ? Double.NaN : FastMath.sqrt(var),
+				sum[j] / (double)m,
+				maxes[j],
+				mins[j]
+			});
+		}
+		
+		summaryLogger(formatter.format(summaries));
+		
+		if(unique.size() == 1)
+			this.singular_value = true;
+		
+		return copy;
+	}
+	
+	
 	/**
 	 * A model must have the same key, data and class name
 	 * in order to equal another model. It is extremely unlikely
@@ -242,6 +329,12 @@ public abstract class AbstractClusterer
 			if(!this.getKey().equals(a.getKey()))
 				return false;
 			
+			if(this.isSparse() || a.isSparse()) {
+				return this.isSparse() && a.isSparse()
+					&& this.sparse_data.equals(a.sparse_data)
+					&& this.getClass().equals(a.getClass());
+			}
+			
 			return MatUtils.equalsExactly(this.data.getDataRef(), a.data.getDataRef())
 				&& this.getClass().equals(a.getClass())
 				//&& this.hashCode() == a.hashCode()
@@ -274,7 +367,25 @@ public abstract class AbstractClusterer
 	 * @return copy of data
 	 */
 	public RealMatrix getData() {
-		return data.copy();
+		return isSparse() ? sparse_data.copy() : data.copy();
+	}
+	
+	/**
+	 * Returns the reference to the underlying data; either the dense
+	 * {@link #data} or, if {@link #isSparse()}, the {@link #sparse_data}
+	 * @return the data reference
+	 */
+	protected final RealMatrix dataRef() {
+		return isSparse() ? sparse_data : data;
+	}
+	
+	/**
+	 * Whether the model holds its data as a {@link CSRMatrix}. Only
+	 * {@link SparseCapable} models will do so.
+	 * @return whether the data is sparse
+	 */
+	public boolean isSparse() {
+		return null != sparse_data;
 	}
 	
 	
@@ -314,7 +425,7 @@ public abstract class AbstractClusterer
 				dist_metric instanceof SimilarityMetric ? 53 : 1)
 			// ^ (hasWarnings ? 1 : 0) // removed because forces state dependency
 			^ random_state.hashCode()
-			^ data.hashCode();
+			^ dataRef().hashCode();
 	}
 	
 	
@@ -401,6 +512,16 @@ public abstract class AbstractClusterer
 		summaryLogger(tab);
 	}
 	
+	/**
+	 * Used for logging any further summary table
+	 */
+	protected final void logSummary(final String title, final ModelSummary summary) {
+		info("--");
+		info(title);
+		final Table tab = formatter.format(summary);
+		summaryLogger(tab);
+	}
+	
 	/**
 	 * Handles logging of tables
 	 */
@@ -27,6 +27,7 @@ import com.clust4j.except.ModelNotFitException;
 import com.clust4j.log.LogTimer;
 import com.clust4j.log.Log.Tag.Algo;
 import com.clust4j.metrics.pairwise.GeometricallySeparable;
+import com.clust4j.metrics.pairwise.Pairwise;
 import com.clust4j.utils.MatUtils;
 import com.clust4j.utils.VecUtils;
 import com.clust4j.utils.MatUtils.Axis;
@@ -308,9 +309,13 @@ final public class AffinityPropagation extends AbstractAutonomousClusterer imple
 		}
 		
 		
+		final double[] row = new double[m];
 		for(int i = 0; i < m - 1; i++) {
+			// Compute the upper triangular segment of the row in one batch
+			Pairwise.partialDistances(metric, X[i], X, i + 1, m, row);
+			
 			for(int j = i + 1; j < m; j++) { // Upper triangular
-				sim = -(metric.getPartialDistance(X[i], X[j])); // similarity
+				sim = -row[j - i - 1]; // similarity
 				
 				// Assign to upper and lower portion
 				sim_mat[i][j] = sim;
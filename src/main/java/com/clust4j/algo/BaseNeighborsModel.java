@@ -23,7 +23,15 @@ import com.clust4j.except.ModelNotFitException;
 import com.clust4j.metrics.pairwise.DistanceMetric;
 import com.clust4j.metrics.pairwise.GeometricallySeparable;
 
-abstract public class BaseNeighborsModel extends AbstractClusterer {
+/**
+ * The base class for the neighbors models. Each is {@link SparseCapable}:
+ * when fit on a {@link com.clust4j.utils.CSRMatrix}, no tree is built, and
+ * neighborhoods are found by a {@link SparseBruteForceSearch} over the
+ * compressed rows.
+ * 
+ * @author Taylor G Smith
+ */
+abstract public class BaseNeighborsModel extends AbstractClusterer implements SparseCapable {
 	private static final long serialVersionUID = 1054047329248586585L;
 	
 	public static final NeighborsAlgorithm DEF_ALGO = NeighborsAlgorithm.AUTO;
@@ -39,6 +47,8 @@ abstract public class BaseNeighborsModel extends AbstractClusterer {
 	protected int leafSize, m;
 	protected double[][] fit_X;
 	protected NearestNeighborHeapSearch tree;
+	/** The search used in place of the {@link #tree} if {@link #isSparse()} */
+	protected SparseBruteForceSearch sparse_search;
 	protected NeighborsAlgorithm alg;
 	
 	/** Resultant neighborhood from fit method */
@@ -95,6 +105,27 @@ abstract public class BaseNeighborsModel extends AbstractClusterer {
 			public boolean isValidMetric(GeometricallySeparable g) {
 				return BallTree.VALID_METRICS.contains(g.getClass());
 			}
+		},
+		
+		/**
+		 * Exhaustive search. Never selected by {@link #AUTO}; for Euclidean
+		 * distance on high-dimensional data, queries use a matrix product.
+		 * Unlike the trees, this also accepts the binary distances.
+		 * @see BruteForceSearch
+		 */
+		BRUTE {
+
+			@Override
+			public NearestNeighborHeapSearch buildTree(RealMatrix data,
+					int leafSize, BaseNeighborsModel logger) {
+				logger.alg = this;
+				return new BruteForceSearch(data, handleMetric(this, logger), logger);
+			}
+			
+			@Override
+			public boolean isValidMetric(GeometricallySeparable g) {
+				return BruteForceSearch.VALID_METRICS.contains(g.getClass());
+			}
 		};
 		
 		private static NeighborsAlgorithm delegateAlgorithm(RealMatrix arm) {
@@ -153,6 +184,21 @@ abstract public class BaseNeighborsModel extends AbstractClusterer {
 		if(leafSize < 1)
 			throw new IllegalArgumentException("leafsize must be positive");
 		
+		/*
+		 * The trees require dense bounding volumes, so sparse
+		 * data is always searched exhaustively...
+		 */
+		if(isSparse()) {
+			if(NeighborsAlgorithm.AUTO != planner.getAlgorithm() && NeighborsAlgorithm.BRUTE != planner.getAlgorithm())
+				warn(planner.getAlgorithm() + " does not support sparse data; falling back to " + NeighborsAlgorithm.BRUTE);
+			
+			this.alg = NeighborsAlgorithm.BRUTE;
+			this.sparse_search = new SparseBruteForceSearch(this.sparse_data, 
+				NeighborsAlgorithm.handleMetric(this.alg, this));
+			this.m = sparse_data.getRowDimension();
+			return;
+		}
+		
 		/*
 		 * Internally handles metric validation...
 		 */
@@ -0,0 +1,469 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.algo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+
+import com.clust4j.GlobalState;
+import com.clust4j.algo.KMeans.KMeansAlgorithm;
+import com.clust4j.except.ModelNotFitException;
+import com.clust4j.log.Log.Tag.Algo;
+import com.clust4j.log.LogTimer;
+import com.clust4j.metrics.pairwise.Distance;
+import com.clust4j.metrics.pairwise.GeometricallySeparable;
+import com.clust4j.utils.VecKernels;
+import com.clust4j.utils.VecUtils;
+
+/**
+ * Bisecting KMeans is a divisive, hierarchical variant of {@link KMeans}. Beginning with
+ * every record in a single cluster, it repeatedly splits the cluster with the highest WSS
+ * in two with a 2-means fit, until <tt>k</tt> clusters remain. Each split only touches the
+ * records of the cluster being split, so reaching <tt>k</tt> clusters costs roughly 
+ * O(m&middot;log k) distance evaluations per 2-means iteration rather than the O(m&middot;k)
+ * of each flat KMeans iteration, and is far less sensitive to initialization.
+ *
+ * <p>
+ * The splits form a binary tree whose leaves are the clusters. The tree is kept after
+ * fitting (see {@link #getSplitTree()}), and {@link #predict(RealMatrix)} descends it
+ * toward the nearer child at each split, in time proportional to its depth rather than
+ * to <tt>k</tt>.
+ *
+ * <p>
+ * When parallelism is permitted, the pending splits of the clusters with the highest WSS
+ * are fit concurrently on the global ForkJoin pool, ahead of being chosen. Each split is 
+ * seeded when its cluster is created, so the tree is the same either way.
+ *
+ * @see BisectingKMeansParameters
+ * @author Taylor G Smith &lt;tgsmith61591@gmail.com&gt;
+ */
+final public class BisectingKMeans extends AbstractCentroidClusterer {
+	private static final long serialVersionUID = 2410379626478153922L;
+	final public static GeometricallySeparable DEF_DIST = Distance.EUCLIDEAN;
+	final public static int DEF_MAX_ITER = KMeans.DEF_MAX_ITER;
+	final public static KMeansAlgorithm DEF_ALGO = KMeans.DEF_ALGO;
+	
+	/** The assignment algorithm of each split */
+	final private KMeansAlgorithm algo;
+	
+	/** The split tree. Node 0 is the root, and each split appends its two children */
+	private ArrayList<Node> tree = null;
+	
+	
+	
+	/**
+	 * A node of the split tree: a cluster, and while fitting, its records and
+	 * (once fit) the pending split of those records in two
+	 * @author Taylor G Smith
+	 */
+	static final class Node implements java.io.Serializable {
+		private static final long serialVersionUID = -6083270915215294453L;
+		final double[] centroid;
+		final double wss;
+		final long seed;
+		int left = -1, right = -1, label = -1;
+		
+		/** The node's records, released once the fit completes */
+		int[] members;
+		/** The pending split of the members, or null if not yet fit */
+		int[][] split = null;
+		boolean splitConverged = false;
+		/** Whether the node has at least two distinct records, and a split found two clusters */
+		boolean splittable;
+		
+		Node(final double[][] X, final int[] members, final long seed) {
+			final int n = X[0].length;
+			this.members = members;
+			this.seed = seed;
+			
+			centroid = new double[n];
+			for(int i: members)
+				for(int j = 0; j < n; j++)
+					centroid[j] += X[i][j];
+			for(int j = 0; j < n; j++)
+				centroid[j] /= (double)members.length;
+			
+			double w = 0;
+			for(int i: members)
+				w += VecKernels.squaredDifference(X[i], centroid);
+			wss = w;
+			
+			splittable = members.length > 1 && wss > 0;
+		}
+		
+		boolean isLeaf() {
+			return -1 == left;
+		}
+	}
+	
+	
+	
+	protected BisectingKMeans(final RealMatrix data) {
+		this(data, DEF_K);
+	}
+	
+	protected BisectingKMeans(final RealMatrix data, final int k) {
+		this(data, new BisectingKMeansParameters(k));
+	}
+	
+	protected BisectingKMeans(final RealMatrix data, final BisectingKMeansParameters planner) {
+		super(data, planner);
+		this.algo = planner.getAlgorithm();
+	}
+	
+	
+	
+	@Override
+	protected boolean seedsInitialCentroids() {
+		return false;
+	}
+	
+	@Override
+	public String getName() {
+		return "BisectingKMeans";
+	}
+	
+	public KMeansAlgorithm getAlgorithm() {
+		return algo;
+	}
+	
+	@Override
+	protected BisectingKMeans fit() {
+		synchronized(fitLock) {
+			
+			if(null != labels) // already fit
+				return this;
+			
+			
+			final LogTimer timer = new LogTimer();
+			final double[][] X = data.getDataRef();
+			final Random rand = getSeed();
+			
+			tree = new ArrayList<>();
+			Node root = new Node(X, VecUtils.arange(m), rand.nextLong());
+			tree.add(root);
+			
+			
+			// Corner case: K = 1 or all singular values
+			if(1 == k) {
+				labelFromSingularK(X);
+				root.label = 0;
+				root.members = null;
+				centroids.add(root.centroid);
+				fitSummary.add(new Object[]{ iter, converged, m, tss, Double.NaN, tss, timer.wallTime() });
+				sayBye(timer);
+				return this;
+			}
+			
+			
+			int leaves = 1;
+			double total = root.wss;
+			converged = true;
+			Node best, left, right;
+			
+			while(leaves < k) {
+				best = highestWSS();
+				if(null == best) {
+					warn("only " + leaves + " clusters could be separated; reducing k from " + k);
+					k = leaves;
+					break;
+				}
+				
+				if(null == best.split) {
+					bisectPending(X, best);
+					if(!best.splittable) // the 2-means fit found a single cluster
+						continue;
+				}
+				
+				// Children are seeded in order of creation, so independent of any concurrency
+				left = new Node(X, best.split[0], rand.nextLong());
+				right = new Node(X, best.split[1], rand.nextLong());
+				best.left = tree.size();
+				tree.add(left);
+				best.right = tree.size();
+				tree.add(right);
+				
+				best.members = null;
+				best.split = null;
+				total += left.wss + right.wss - best.wss;
+				converged &= best.splitConverged;
+				leaves++;
+				
+				fitSummary.add(new Object[]{ 
+					iter++, best.splitConverged, left.members.length + right.members.length, 
+					best.wss, left.wss + right.wss, total, timer.wallTime() });
+			}
+			
+			
+			// Label the leaves in order of creation, then reorder by first appearance
+			labels = new int[m];
+			wss = new double[k];
+			for(Node node: tree) {
+				if(node.isLeaf()) {
+					node.label = centroids.size();
+					centroids.add(node.centroid);
+					wss[node.label] = node.wss;
+					
+					for(int i: node.members)
+						labels[i] = node.label;
+				}
+				
+				node.members = null;
+				node.split = null;
+			}
+			
+			bss = tss - total;
+			reorderLabelsAndCentroids();
+			
+			if(!converged)
+				warn("at least one split did not converge");
+			
+			
+			// wrap things up, create summary..
+			sayBye(timer);
+			
+			
+			return this;
+		}
+	}
+	
+	/**
+	 * The splittable leaf with the highest WSS, or null if there is none.
+	 * Ties go to the earliest created.
+	 */
+	private Node highestWSS() {
+		Node best = null;
+		for(Node node: tree)
+			if(node.isLeaf() && node.splittable && (null == best || node.wss > best.wss))
+				best = node;
+		return best;
+	}
+	
+	/**
+	 * Fit the split of a leaf. If parallelism is permitted, also speculatively fit the
+	 * pending splits of the leaves with the next highest WSS, up to one per core, each of
+	 * whose 2-means fits then runs serially.
+	 */
+	private void bisectPending(final double[][] X, final Node best) {
+		if(!parallel) {
+			bisect(X, best, getSeparabilityMetric(), false);
+			return;
+		}
+		
+		final ArrayList<Node> pending = new ArrayList<>();
+		pending.add(best);
+		for(Node node: tree)
+			if(node != best && node.isLeaf() && node.splittable && null == node.split)
+				pending.add(node);
+		
+		// keep the highest WSS, stably
+		final Node[] batch = pending.toArray(new Node[pending.size()]);
+		Arrays.sort(batch, 1, batch.length, new java.util.Comparator<Node>() {
+			@Override public int compare(Node a, Node b) {
+				return Double.compare(b.wss, a.wss);
+			}
+		});
+		
+		final int size = Math.min(batch.length, GlobalState.ParallelismConf.NUM_CORES);
+		GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(
+			new SplitTask(this, X, batch, 0, size));
+	}
+	
+	/**
+	 * Split a node's records with a 2-means fit seeded by the node, marking 
+	 * the node unsplittable if the fit finds only one cluster
+	 */
+	private void bisect(final double[][] X, final Node node, 
+			final GeometricallySeparable metric, final boolean parallelFit) {
+		final int[] members = node.members;
+		final double[][] rows = new double[members.length][];
+		for(int i = 0; i < rows.length; i++)
+			rows[i] = X[members[i]];
+		
+		final KMeans twoMeans = new KMeansParameters(2)
+			.setMetric(metric)
+			.setMaxIter(maxIter)
+			.setConvergenceCriteria(tolerance)
+			.setInitializationStrategy(init)
+			.setAlgorithm(algo)
+			.setSeed(new Random(node.seed))
+			.setVerbose(false)
+			.setForceParallel(parallelFit)
+			.fitNewModel(new Array2DRowRealMatrix(rows, false));
+		
+		final int[] lab = twoMeans.getLabels();
+		int size0 = 0;
+		for(int l: lab)
+			if(0 == l)
+				size0++;
+		
+		if(twoMeans.getK() < 2 || 0 == size0 || lab.length == size0) {
+			node.splittable = false;
+			return;
+		}
+		
+		final int[][] split = new int[][]{ new int[size0], new int[lab.length - size0] };
+		final int[] next = new int[2];
+		for(int i = 0; i < lab.length; i++)
+			split[lab[i]][next[lab[i]]++] = members[i];
+		
+		node.splitConverged = twoMeans.didConverge();
+		node.split = split;
+	}
+	
+	/**
+	 * Fits a range of pending splits, splitting the range in half until each task holds one
+	 * @author Taylor G Smith
+	 */
+	static final class SplitTask extends RecursiveAction {
+		private static final long serialVersionUID = -2375283601968413573L;
+		final BisectingKMeans model;
+		final double[][] X;
+		final Node[] nodes;
+		final int lo, hi;
+		
+		SplitTask(final BisectingKMeans model, final double[][] X, final Node[] nodes, final int lo, final int hi) {
+			this.model = model;
+			this.X = X;
+			this.nodes = nodes;
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		@Override
+		protected void compute() {
+			if(hi - lo > 1) {
+				final int mid = (lo + hi) >>> 1;
+				invokeAll(
+					new SplitTask(model, X, nodes, lo, mid),
+					new SplitTask(model, X, nodes, mid, hi));
+				return;
+			}
+			
+			model.bisect(X, nodes[lo], model.getSeparabilityMetric(), false);
+		}
+	}
+	
+	/**
+	 * The split tree, with one row per node in order of creation. Each row holds the
+	 * indices of the node's two children (or -1 for a leaf) and its cluster label
+	 * (or -1 for a split). Node 0 is the root, which holds every record.
+	 * @throws ModelNotFitException if the model has not been fit
+	 * @return the <tt>{left, right, label}</tt> of each node
+	 */
+	public int[][] getSplitTree() {
+		synchronized(fitLock) {
+			if(null == labels)
+				throw new ModelNotFitException("model has not been fit");
+			
+			final int[][] out = new int[tree.size()][];
+			for(int i = 0; i < out.length; i++) {
+				final Node node = tree.get(i);
+				out[i] = new int[]{ node.left, node.right, node.label };
+			}
+			
+			return out;
+		}
+	}
+	
+	/**
+	 * Predict the cluster of each record by descending the split tree from the root
+	 * toward the nearer child centroid at each split. This evaluates two distances per
+	 * level of the tree, rather than <tt>k</tt>, but as each split only compares two
+	 * centroids, a record may not land in the cluster of its globally nearest centroid.
+	 * @throws ModelNotFitException if the model has not been fit
+	 * @throws DimensionMismatchException if the columns of the new data do not match the training data
+	 */
+	@Override
+	public int[] predict(final RealMatrix newData) {
+		final Node[] nodes;
+		synchronized(fitLock) {
+			if(null == labels)
+				throw new ModelNotFitException("model has not been fit");
+			nodes = tree.toArray(new Node[tree.size()]);
+		}
+		
+		final int n = nodes[0].centroid.length;
+		if(newData.getColumnDimension() != n)
+			throw new DimensionMismatchException(newData.getColumnDimension(), n);
+		
+		final GeometricallySeparable metric = getSeparabilityMetric();
+		final int[] predictions = new int[newData.getRowDimension()];
+		double[] row;
+		Node node;
+		for(int i = 0; i < predictions.length; i++) {
+			row = newData.getRow(i);
+			node = nodes[0];
+			while(!node.isLeaf()) {
+				node = metric.getPartialDistance(row, nodes[node.left].centroid) 
+					<= metric.getPartialDistance(row, nodes[node.right].centroid) ?
+						nodes[node.left] : nodes[node.right];
+			}
+			
+			predictions[i] = node.label;
+		}
+		
+		return predictions;
+	}
+	
+	@Override
+	public Algo getLoggerTag() {
+		return com.clust4j.log.Log.Tag.Algo.BISECTING;
+	}
+	
+	@Override
+	protected Object[] getModelFitSummaryHeaders() {
+		return new Object[]{
+			"Split #","Converged","Split Size","Split WSS","Children WSS","Total WSS","Wall"
+		};
+	}
+	
+	/**
+	 * Reorder the labels in order of appearance, and the centroids,
+	 * WSS and leaves' labels along with them
+	 */
+	@Override
+	protected void reorderLabelsAndCentroids() {
+		final int[] perm = VecUtils.repInt(-1, k); // old label to new
+		int next = 0;
+		for(int label: labels)
+			if(-1 == perm[label])
+				perm[label] = next++;
+		
+		for(int i = 0; i < labels.length; i++)
+			labels[i] = perm[labels[i]];
+		
+		final ArrayList<double[]> new_centroids = new ArrayList<>(centroids);
+		final double[] new_wss = new double[k];
+		for(int c = 0; c < k; c++) {
+			new_centroids.set(perm[c], centroids.get(c));
+			new_wss[perm[c]] = wss[c];
+		}
+		
+		for(Node node: tree)
+			if(node.isLeaf())
+				node.label = perm[node.label];
+		
+		centroids = new_centroids;
+		wss = new_wss;
+	}
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.algo;
+
+import java.util.Random;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+import com.clust4j.algo.AbstractCentroidClusterer.InitializationStrategy;
+import com.clust4j.algo.KMeans.KMeansAlgorithm;
+import com.clust4j.metrics.pairwise.GeometricallySeparable;
+
+/**
+ * The planner for {@link BisectingKMeans}. The initialization strategy, maximum
+ * iterations, convergence tolerance and assignment algorithm govern each of the
+ * 2-means fits by which clusters are split.
+ * @author Taylor G Smith
+ */
+final public class BisectingKMeansParameters extends CentroidClustererParameters<BisectingKMeans> {
+	private static final long serialVersionUID = 6183057738620915044L;
+	
+	private InitializationStrategy strat = BisectingKMeans.DEF_INIT;
+	private int maxIter = BisectingKMeans.DEF_MAX_ITER;
+	private KMeansAlgorithm algo = BisectingKMeans.DEF_ALGO;
+	
+	public BisectingKMeansParameters() { }
+	public BisectingKMeansParameters(int k) {
+		this.k = k;
+	}
+	
+	@Override
+	public BisectingKMeans fitNewModel(final RealMatrix data) {
+		return new BisectingKMeans(data, this.copy()).fit();
+	}
+	
+	@Override
+	public BisectingKMeansParameters copy() {
+		return new BisectingKMeansParameters(k)
+			.setMaxIter(maxIter)
+			.setConvergenceCriteria(minChange)
+			.setMetric(metric)
+			.setVerbose(verbose)
+			.setSeed(seed)
+			.setInitializationStrategy(strat)
+			.setAlgorithm(algo)
+			.setForceParallel(parallel);
+	}
+	
+	@Override
+	public InitializationStrategy getInitializationStrategy() {
+		return strat;
+	}
+	
+	@Override
+	public int getMaxIter() {
+		return maxIter;
+	}
+	
+	public KMeansAlgorithm getAlgorithm() {
+		return algo;
+	}
+	
+	/**
+	 * The assignment algorithm of each 2-means split
+	 * @param algo
+	 * @return this planner
+	 */
+	public BisectingKMeansParameters setAlgorithm(final KMeansAlgorithm algo) {
+		this.algo = algo;
+		return this;
+	}
+	
+	@Override
+	public BisectingKMeansParameters setForceParallel(boolean b) {
+		this.parallel = b;
+		return this;
+	}
+	
+	@Override
+	public BisectingKMeansParameters setMetric(final GeometricallySeparable dist) {
+		this.metric = dist;
+		return this;
+	}
+	
+	public BisectingKMeansParameters setMaxIter(final int max) {
+		this.maxIter = max;
+		return this;
+	}
+
+	@Override
+	public BisectingKMeansParameters setConvergenceCriteria(final double min) {
+		this.minChange = min;
+		return this;
+	}
+	
+	@Override
+	public BisectingKMeansParameters setInitializationStrategy(InitializationStrategy init) {
+		this.strat = init;
+		return this;
+	}
+	
+	/**
+	 * Bisecting KMeans grows its centroids from a single cluster, so cannot be warm started
+	 * @throws UnsupportedOperationException unless the centroids are null
+	 */
+	@Override
+	public BisectingKMeansParameters setWarmStart(final double[][] centroids) {
+		if(null != centroids)
+			throw new UnsupportedOperationException("BisectingKMeans cannot be warm started");
+		return this;
+	}
+	
+	@Override
+	public BisectingKMeansParameters setSeed(final Random seed) {
+		this.seed = seed;
+		return this;
+	}
+	
+	@Override
+	public BisectingKMeansParameters setVerbose(final boolean v) {
+		this.verbose = v;
+		return this;
+	}
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.algo;
+
+import java.util.HashSet;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.util.FastMath;
+
+import com.clust4j.log.Loggable;
+import com.clust4j.metrics.pairwise.BitPackedMatrix;
+import com.clust4j.metrics.pairwise.Distance;
+import com.clust4j.metrics.pairwise.DistanceMetric;
+import com.clust4j.metrics.pairwise.GeometricallySeparable;
+import com.clust4j.metrics.pairwise.Pairwise;
+import com.clust4j.utils.MatUtils;
+
+/**
+ * An exhaustive nearest neighbor search. The structure is a {@link BallTree}
+ * consisting of a single leaf, so every query scans every point. This is 
+ * generally the fastest option for very high-dimensional data, where the 
+ * bounds of a space-partitioning tree prune very little.
+ * 
+ * <p>
+ * For {@link Distance#EUCLIDEAN}, <i>k</i>-neighbor queries are answered in 
+ * blocks of query rows using {@link Pairwise#getCrossDistance(double[][], double[][], 
+ * com.clust4j.metrics.pairwise.GeometricallySeparable, boolean, boolean)}
+ * with the matrix product expansion, which reduces the bulk of the work to a 
+ * cache-blocked matrix multiplication. Distances computed this way may differ
+ * from the canonical computation by round-off.
+ * 
+ * <p>
+ * Since no bounds are needed to prune an exhaustive scan, this search
+ * additionally accepts the {@link Distance#binaryDistances()}, which do not
+ * satisfy the triangle inequality and are not valid for the {@link BallTree}.
+ * These are evaluated on the {@link BitPackedMatrix} of the data.
+ * 
+ * @author Taylor G Smith
+ * @see BaseNeighborsModel.NeighborsAlgorithm#BRUTE
+ */
+public class BruteForceSearch extends BallTree {
+	private static final long serialVersionUID = -1948113497406233385L;
+	
+	/** The max number of cells in the block of query distances computed at once */
+	final static int BLOCK_ELEMENTS = 1 << 20;
+	
+	public final static HashSet<Class<? extends GeometricallySeparable>> VALID_METRICS;
+	static {
+		VALID_METRICS = new HashSet<>(BallTree.VALID_METRICS);
+		for(Distance dm: Distance.binaryDistances())
+			VALID_METRICS.add(dm.getClass());
+	}
+	
+	
+	@Override protected boolean checkValidDistMet(GeometricallySeparable dist) {
+		return VALID_METRICS.contains(dist.getClass());
+	}
+	
+	
+	public BruteForceSearch(final RealMatrix X) {
+		this(X, DEF_DIST);
+	}
+	
+	public BruteForceSearch(final RealMatrix X, DistanceMetric dist) {
+		this(X, dist, null);
+	}
+	
+	public BruteForceSearch(final RealMatrix X, DistanceMetric dist, Loggable logger) {
+		super(X, FastMath.max(1, X.getRowDimension()), dist, logger);
+	}
+	
+	
+	
+	@Override
+	public Neighborhood query(double[][] X, int k, boolean dualTree, boolean sort) {
+		if(!Distance.EUCLIDEAN.equals(dist_metric))
+			return super.query(X, k, false, sort);
+		
+		MatUtils.checkDims(X);
+		
+		final int mPrime = X.length;
+		if(N_FEATURES != X[0].length)
+			throw new DimensionMismatchException(N_FEATURES, X[0].length);
+		if(this.N_SAMPLES < k) 
+			throw new IllegalArgumentException(k+" is greater than rows in data");
+		if(k < 1) throw new IllegalArgumentException(k+" must exceed 0");
+		
+		final NeighborsHeap heap = new NeighborsHeap(mPrime, k);
+		final int blockRows = FastMath.max(1, BLOCK_ELEMENTS / N_SAMPLES);
+		
+		double[][] block, dists;
+		double[] row;
+		for(int start = 0; start < mPrime; start += blockRows) {
+			final int end = FastMath.min(mPrime, start + blockRows);
+			
+			block = new double[end - start][];
+			System.arraycopy(X, start, block, 0, block.length);
+			
+			// Squared distances, so the heap holds reduced distances like the tree
+			dists = Pairwise.getCrossDistance(block, data_arr, dist_metric, true, true);
+			n_calls += block.length * N_SAMPLES;
+			
+			for(int i = 0; i < block.length; i++) {
+				row = dists[i];
+				for(int j = 0; j < N_SAMPLES; j++)
+					if(row[j] < heap.largest(start + i))
+						heap.push(start + i, row[j], j);
+			}
+		}
+		
+		final Neighborhood out = heap.getArrays(sort);
+		rDistToDistInPlace(out.getDistances());
+		return out;
+	}
+	
+	
+	
+	/*
+	 * The centroid bounds of the ball rely on the triangle inequality, 
+	 * so for the binary metrics the single node is never pruned
+	 */
+	
+	@Override
+	double minDist(NearestNeighborHeapSearch tree, int i_node, double[] pt) {
+		return BitPackedMatrix.isBinary(tree.dist_metric) ? 
+			0.0 : super.minDist(tree, i_node, pt);
+	}
+	
+	@Override
+	double minRDist(NearestNeighborHeapSearch tree, int i_node, double[] pt) {
+		return BitPackedMatrix.isBinary(tree.dist_metric) ? 
+			0.0 : super.minRDist(tree, i_node, pt);
+	}
+	
+	@Override
+	double minDistDual(NearestNeighborHeapSearch tree1, int iNode1, NearestNeighborHeapSearch tree2, int iNode2) {
+		return BitPackedMatrix.isBinary(tree1.dist_metric) ? 
+			0.0 : super.minDistDual(tree1, iNode1, tree2, iNode2);
+	}
+	
+	@Override
+	double maxDistDual(NearestNeighborHeapSearch tree1, int iNode1, NearestNeighborHeapSearch tree2, int iNode2) {
+		return BitPackedMatrix.isBinary(tree1.dist_metric) ? 
+			Double.POSITIVE_INFINITY : super.maxDistDual(tree1, iNode1, tree2, iNode2);
+	}
+	
+	@Override
+	void minMaxDist(NearestNeighborHeapSearch tree, int i_node, double[] pt, MutableDouble minDist, MutableDouble maxDist) {
+		if(!BitPackedMatrix.isBinary(tree.dist_metric)) {
+			super.minMaxDist(tree, i_node, pt, minDist, maxDist);
+			return;
+		}
+		
+		minDist.value = 0.0;
+		maxDist.value = Double.POSITIVE_INFINITY;
+	}
+}
@@ -19,6 +19,8 @@ package com.clust4j.algo;
 import org.apache.commons.math3.linear.RealMatrix;
 
 import com.clust4j.algo.AbstractCentroidClusterer.InitializationStrategy;
+import com.clust4j.utils.MatUtils;
+import com.clust4j.utils.VecUtils;
 
 public abstract class CentroidClustererParameters<T extends AbstractCentroidClusterer> extends BaseClustererParameters
 		implements UnsupervisedClassifierParameters<T>, ConvergeablePlanner {
@@ -26,12 +28,15 @@ public abstract class CentroidClustererParameters<T extends AbstractCentroidClus
 	private static final long serialVersionUID = -1984508955251863189L;
 	protected int k = AbstractCentroidClusterer.DEF_K;
 	protected double minChange = AbstractCentroidClusterer.DEF_CONVERGENCE_TOLERANCE;
+	protected double[][] warmStart = null;
+	protected double[] sampleWeights = null;
 
 	@Override abstract public T fitNewModel(RealMatrix mat);
 	@Override abstract public int getMaxIter();
 	abstract public InitializationStrategy getInitializationStrategy();
 	abstract public CentroidClustererParameters<T> setConvergenceCriteria(final double min);
 	abstract public CentroidClustererParameters<T> setInitializationStrategy(final InitializationStrategy strat);
+	abstract public CentroidClustererParameters<T> setWarmStart(final double[][] centroids);
 
 	final public int getK() {
 		return k;
@@ -41,4 +46,68 @@ public abstract class CentroidClustererParameters<T extends AbstractCentroidClus
 	final public double getConvergenceTolerance() {
 		return minChange;
 	}
+	
+	/**
+	 * The centroids from which models are warm started, or null
+	 * if they are seeded by their {@link InitializationStrategy}
+	 * @return a copy of the warm start centroids
+	 */
+	final public double[][] getWarmStart() {
+		return null == warmStart ? null : MatUtils.copy(warmStart);
+	}
+	
+	/**
+	 * Copy the centroids from which to warm start (typically those of a model
+	 * previously fit to similar data), and set <tt>k</tt> to their number. 
+	 * Null clears the warm start.
+	 * @param centroids
+	 * @throws IllegalArgumentException if there are no centroids
+	 * @throws com.clust4j.except.NonUniformMatrixException if the centroids' dimensions differ
+	 */
+	protected final void warmStartFrom(final double[][] centroids) {
+		if(null == centroids) {
+			warmStart = null;
+			return;
+		}
+		
+		if(0 == centroids.length)
+			throw new IllegalArgumentException("cannot warm start from zero centroids");
+		MatUtils.checkDimsForUniformity(centroids);
+		
+		warmStart = MatUtils.copy(centroids);
+		k = centroids.length;
+	}
+	
+	/**
+	 * The weight of each record, or null if every record counts once
+	 * @return a copy of the sample weights
+	 */
+	final public double[] getSampleWeights() {
+		return null == sampleWeights ? null : VecUtils.copy(sampleWeights);
+	}
+	
+	/**
+	 * Copy the weight of each record of the data to be fit, such as those
+	 * of a {@link com.clust4j.sample.Coreset}. Null clears the weights.
+	 * @param weights
+	 * @throws IllegalArgumentException if any weight is negative or not finite,
+	 * or if none is positive
+	 */
+	protected final void sampleWeightsFrom(final double[] weights) {
+		if(null == weights) {
+			sampleWeights = null;
+			return;
+		}
+		
+		boolean positive = false;
+		for(double w: weights) {
+			if(!(w >= 0) || Double.isInfinite(w))
+				throw new IllegalArgumentException("sample weights must be finite and non-negative: " + w);
+			positive |= w > 0;
+		}
+		
+		if(!positive)
+			throw new IllegalArgumentException("at least one sample weight must be positive");
+		sampleWeights = VecUtils.copy(weights);
+	}
 }
@@ -18,16 +18,18 @@ package com.clust4j.algo;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Stack;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import org.apache.commons.math3.exception.DimensionMismatchException;
 import org.apache.commons.math3.linear.RealMatrix;
 
+import com.clust4j.GlobalState;
 import com.clust4j.algo.RadiusNeighborsParameters;
 import com.clust4j.log.LogTimer;
 import com.clust4j.log.Log.Tag.Algo;
 import com.clust4j.metrics.pairwise.GeometricallySeparable;
 import com.clust4j.metrics.pairwise.SimilarityMetric;
-import com.clust4j.utils.MatUtils;
 
 
 /**
@@ -38,18 +40,30 @@ import com.clust4j.utils.MatUtils;
  * closely packed together (points with many nearby neighbors), marking as outliers 
  * points that lie alone in low-density regions (whose nearest neighbors are too far away).
  * 
+ * <p>
+ * DBSCAN is {@link SparseCapable}; a model fit on a {@link com.clust4j.utils.CSRMatrix}
+ * searches its neighborhoods with a sparse {@link RadiusNeighbors} model.
+ * 
+ * <p>
+ * If the model is permitted to run in parallel, the points are labeled by unifying
+ * neighboring core points in a concurrent disjoint-set forest, chunk by chunk,
+ * then labeling each border point by its earliest neighboring cluster. The labels
+ * are the same as those of the serial depth-first search.
+ * 
  * @see <a href="http://www.dbs.ifi.lmu.de/Publikationen/Papers/KDD-96.final.frame.pdf">DBSCAN, 
  * A Density-Based Algorithm for Discovering Clusters in Large Spatial Databases with Noise</a>
  * @see {@link AbstractDensityClusterer}
  * @author Taylor G Smith &lt;tgsmith61591@gmail.com&gt;, adapted from sklearn implementation by Lars Buitinck
  *
  */
-final public class DBSCAN extends AbstractDBSCAN {
+final public class DBSCAN extends AbstractDBSCAN implements SparseCapable {
 	/**
 	 * 
 	 */
 	private static final long serialVersionUID = 6749407933012974992L;
 	final private int m;
+	/** The number of points each parallel labeling task handles */
+	final static int LABEL_CHUNK_SIZE = 2048;
 	final public static HashSet<Class<? extends GeometricallySeparable>> UNSUPPORTED_METRICS;
 	
 	
@@ -121,7 +135,7 @@ final public class DBSCAN extends AbstractDBSCAN {
 		return new ModelSummary(new Object[]{
 				"Num Rows","Num Cols","Metric","Epsilon","Min Pts.","Allow Par."
 			}, new Object[]{
-				m,data.getColumnDimension(),getSeparabilityMetric(),
+				m,dataRef().getColumnDimension(),getSeparabilityMetric(),
 				eps, minPts,
 				parallel
 			});
@@ -144,8 +158,7 @@ final public class DBSCAN extends AbstractDBSCAN {
 			if(null == this.labels ^ null == d.labels)
 				return false;
 			
-			return super.equals(o) // tests for UUID
-				&& MatUtils.equalsExactly(this.data.getDataRef(), d.data.getDataRef())
+			return super.equals(o) // tests for UUID and data
 				&& this.eps == d.eps;
 		}
 		
@@ -186,7 +199,7 @@ final public class DBSCAN extends AbstractDBSCAN {
 			
 			// Fit the nearest neighbor model...
 			final LogTimer rnTimer = new LogTimer();
-			final RadiusNeighbors rnModel = new RadiusNeighbors(data,
+			final RadiusNeighbors rnModel = new RadiusNeighbors(dataRef(),
 				new RadiusNeighborsParameters(eps)
 					.setSeed(getSeed())
 					.setMetric(getSeparabilityMetric())
@@ -221,6 +234,14 @@ final public class DBSCAN extends AbstractDBSCAN {
 			info(numCorePts + " core point"+(numCorePts!=1?"s":"")+" found");
 			
 			
+			// Label the points in parallel...
+			if(parallel) {
+				numClusters = labelParallel(nearest);
+				finishFit(timer, new LogTimer());
+				return this;
+			}
+			
+			
 			// Label the points...
 			int nextLabel = 0, v;
 			final Stack<Integer> stack = new Stack<>();
@@ -239,17 +260,17 @@ final public class DBSCAN extends AbstractDBSCAN {
 		        // This is very similar to the classic algorithm for computing connected
 		        // components, the difference being that we label non-core points as
 		        // part of a cluster (component), but don't expand their neighborhoods.
-				int labelCt = 0;
+				int labelCt = 0, cur = i;
 				while(true) {
-					if(labels[i] == NOISE_CLASS) {
-						labels[i] = nextLabel;
+					if(labels[cur] == NOISE_CLASS) {
+						labels[cur] = nextLabel;
 						labelCt++;
 						
-						if(coreSamples[i]) {
-							neighb = neighborhoods.get(i);
+						if(coreSamples[cur]) {
+							neighb = neighborhoods.get(cur);
 							
-							for(i = 0; i < neighb.length; i++) {
-								v = neighb[i];
+							for(int j = 0; j < neighb.length; j++) {
+								v = neighb[j];
 								if(labels[v] == NOISE_CLASS)
 									stack.push(v);
 							}
@@ -265,39 +286,189 @@ final public class DBSCAN extends AbstractDBSCAN {
 						break;
 					}
 					
-					i = stack.pop();
+					cur = stack.pop();
 				}
 				
 				nextLabel++;
 			}
 			
 			
-			// Count missing
-			numNoisey = 0;
-			for(int lab: labels) if(lab==NOISE_CLASS) numNoisey++;
-			
-			
-			// corner case: numNoisey == m (never gets a fit summary)
-			if(numNoisey == m)
-				fitSummary.add(new Object[]{
-					Double.NaN, 0, stackTimer.formatTime(), stackTimer.wallTime()
-				});
-			
-			
-			
-			info((numClusters=nextLabel)+" cluster"+(nextLabel!=1?"s":"")+
-				" identified, "+numNoisey+" record"+(numNoisey!=1?"s":"")+
-					" classified noise");
-			
-			// Encode to put in order
-			labels = new NoiseyLabelEncoder(labels).fit().getEncodedLabels();
-			
-			sayBye(timer);
+			numClusters = nextLabel;
+			finishFit(timer, stackTimer);
 			return this;
 		}
 		
 	}// End train
 	
+	
+	private void finishFit(final LogTimer timer, final LogTimer stackTimer) {
+		// Count missing
+		numNoisey = 0;
+		for(int lab: labels) if(lab==NOISE_CLASS) numNoisey++;
+		
+		
+		// corner case: numNoisey == m (never gets a fit summary)
+		if(numNoisey == m)
+			fitSummary.add(new Object[]{
+				Double.NaN, 0, stackTimer.formatTime(), stackTimer.wallTime()
+			});
+		
+		
+		
+		info(numClusters+" cluster"+(numClusters!=1?"s":"")+
+			" identified, "+numNoisey+" record"+(numNoisey!=1?"s":"")+
+				" classified noise");
+		
+		// Encode to put in order
+		labels = new NoiseyLabelEncoder(labels).fit().getEncodedLabels();
+		
+		sayBye(timer);
+	}
+	
+	/**
+	 * Label the points by unifying each core point with its core neighbors, then
+	 * assigning each border point the earliest cluster among its core neighbors.
+	 * As each cluster's root is its first core point, the clusters are numbered 
+	 * in the order the depth-first search would find them.
+	 * @param nearest - the neighborhood of each point
+	 * @return the number of clusters
+	 */
+	private int labelParallel(final int[][] nearest) {
+		final LogTimer labelTimer = new LogTimer();
+		final ConcurrentDisjointSet sets = new ConcurrentDisjointSet(m);
+		final int[] roots = new int[m];
+		
+		GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(
+			new LabelTask(nearest, coreSamples, sets, roots, true, 0, m));
+		GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(
+			new LabelTask(nearest, coreSamples, sets, roots, false, 0, m));
+		
+		
+		// Number the clusters by their roots, in order
+		int nextLabel = 0;
+		for(int i = 0; i < m; i++)
+			if(coreSamples[i] && roots[i] == i)
+				labels[i] = nextLabel++;
+		
+		final int[] counts = new int[nextLabel];
+		for(int i = 0; i < m; i++) {
+			if(NOISE_CLASS != roots[i]) {
+				labels[i] = labels[roots[i]];
+				counts[labels[i]]++;
+			}
+		}
+		
+		for(int label = 0; label < nextLabel; label++)
+			fitSummary.add(new Object[]{
+				label, counts[label], labelTimer.formatTime(), labelTimer.wallTime()
+			});
+		
+		info("labeled points in parallel in " + labelTimer.toString());
+		return nextLabel;
+	}
+	
+	
+	/**
+	 * A disjoint-set forest over the points, which may be unified concurrently. A 
+	 * root is only ever linked beneath a lesser root, so each set's root is its least 
+	 * member whatever the order of the unions.
+	 * @author Taylor G Smith
+	 */
+	static final class ConcurrentDisjointSet {
+		final AtomicIntegerArray parent;
+		
+		ConcurrentDisjointSet(final int m) {
+			parent = new AtomicIntegerArray(m);
+			for(int i = 0; i < m; i++)
+				parent.set(i, i);
+		}
+		
+		int find(int x) {
+			int p, gp;
+			while((p = parent.get(x)) != x) {
+				// halve the path; parents only decrease, so a stale grandparent is still an ancestor
+				gp = parent.get(p);
+				if(gp != p)
+					parent.compareAndSet(x, p, gp);
+				x = gp;
+			}
+			
+			return x;
+		}
+		
+		void union(final int a, final int b) {
+			int ra, rb;
+			while((ra = find(a)) != (rb = find(b))) {
+				// retry if the greater root was linked elsewhere in the meantime
+				if(ra < rb ? parent.compareAndSet(rb, rb, ra) : parent.compareAndSet(ra, ra, rb))
+					return;
+			}
+		}
+	}
+	
+	/**
+	 * Splits a range of the points in half until each task holds at most 
+	 * {@link DBSCAN#LABEL_CHUNK_SIZE}. In the first phase, each core point in the chunk 
+	 * is unified with its core neighbors; in the second, each point's root is found:
+	 * its own set's for a core point, the least among its core neighbors' for a 
+	 * border point, or {@link AbstractClusterer#NOISE_CLASS} for noise.
+	 * @author Taylor G Smith
+	 */
+	static final class LabelTask extends RecursiveAction {
+		private static final long serialVersionUID = -1624474519316399409L;
+		final int[][] nearest;
+		final boolean[] core;
+		final ConcurrentDisjointSet sets;
+		final int[] roots;
+		final boolean unify;
+		final int lo, hi;
+		
+		LabelTask(final int[][] nearest, final boolean[] core, final ConcurrentDisjointSet sets,
+				final int[] roots, final boolean unify, final int lo, final int hi) {
+			this.nearest = nearest;
+			this.core = core;
+			this.sets = sets;
+			this.roots = roots;
+			this.unify = unify;
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		@Override
+		protected void compute() {
+			if(hi - lo > LABEL_CHUNK_SIZE) {
+				final int mid = (lo + hi) >>> 1;
+				invokeAll(
+					new LabelTask(nearest, core, sets, roots, unify, lo, mid),
+					new LabelTask(nearest, core, sets, roots, unify, mid, hi));
+				return;
+			}
+			
+			for(int i = lo; i < hi; i++) {
+				if(unify) {
+					if(core[i])
+						for(int j: nearest[i])
+							if(core[j])
+								sets.union(i, j);
+				} else if(core[i]) {
+					roots[i] = sets.find(i);
+				} else {
+					int root = NOISE_CLASS, r;
+					for(int j: nearest[i]) {
+						if(!core[j])
+							continue;
+						
+						r = sets.find(j);
+						if(NOISE_CLASS == root || r < root)
+							root = r;
+					}
+					
+					roots[i] = root;
+				}
+			}
+		}
+	}
+	
 	@Override
 	public Algo getLoggerTag() {
 		return com.clust4j.log.Log.Tag.Algo.DBSCAN;
@@ -327,15 +498,15 @@ final public class DBSCAN extends AbstractDBSCAN {
 		final int n = newData.getColumnDimension();
 		
 		// Make sure matches dimensionally
-		if(n != this.data.getColumnDimension())
-			throw new DimensionMismatchException(n, data.getColumnDimension());
+		if(n != dataRef().getColumnDimension())
+			throw new DimensionMismatchException(n, dataRef().getColumnDimension());
 		
 		// Fit a radius model
 		RadiusNeighbors radiusModel = 
 			new RadiusNeighborsParameters(eps) // no scale necessary; may already have been done
 				.setMetric(dist_metric)
 				.setSeed(getSeed())
-				.fitNewModel(data);
+				.fitNewModel(dataRef());
 		
 		final int[] newLabels = new int[newData.getRowDimension()];
 		Neighborhood theHood = radiusModel.getNeighbors(newData);
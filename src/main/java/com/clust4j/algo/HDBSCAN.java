@@ -36,14 +36,18 @@ import com.clust4j.algo.Neighborhood;
 import com.clust4j.log.LogTimer;
 import com.clust4j.log.Loggable;
 import com.clust4j.log.Log.Tag.Algo;
+import com.clust4j.metrics.pairwise.CondensedDistanceMatrix;
+import com.clust4j.metrics.pairwise.CondensedDistanceMatrix.Storage;
 import com.clust4j.metrics.pairwise.Distance;
 import com.clust4j.metrics.pairwise.DistanceMetric;
 import com.clust4j.metrics.pairwise.GeometricallySeparable;
 import com.clust4j.metrics.pairwise.Pairwise;
+import com.clust4j.metrics.pairwise.NumericPrecision;
 import com.clust4j.utils.EntryPair;
 import com.clust4j.utils.Series.Inequality;
 import com.clust4j.utils.MatUtils;
 import com.clust4j.utils.MatUtils.MatSeries;
+import com.clust4j.utils.TopKHeap;
 import com.clust4j.utils.VecUtils;
 import com.clust4j.utils.VecUtils.DoubleSeries;
 
@@ -66,6 +70,8 @@ final public class HDBSCAN extends AbstractDBSCAN {
 	public static final boolean DEF_APPROX_MIN_SPAN = true;
 	public static final int DEF_LEAF_SIZE = 40;
 	public static final int DEF_MIN_CLUST_SIZE = 5;
+	public static final Storage DEF_STORAGE = Storage.HEAP;
+	public static final NumericPrecision DEF_PRECISION = NumericPrecision.DOUBLE;
 	/** The number of features that should trigger a boruvka implementation */
 	static final int boruvka_n_features_ = 60;
 	static final Set<Class<? extends GeometricallySeparable>> fast_metrics_;
@@ -76,9 +82,11 @@ final public class HDBSCAN extends AbstractDBSCAN {
 	private final boolean approxMinSpanTree;
 	private final int min_cluster_size;
 	private final int leafSize;
+	private final Storage storage;
+	private final NumericPrecision precision;
 
 	private volatile HDBSCANLinkageTree tree = null;
-	private volatile double[][] dist_mat = null;
+	private volatile CondensedDistanceMatrix dist_mat = null;
 	private volatile int[] labels = null;
 	private volatile int numClusters = -1;
 	private volatile int numNoisey = -1;
@@ -201,6 +209,30 @@ final public class HDBSCAN extends AbstractDBSCAN {
 			}
 		},
 		
+		/**
+		 * Uses Prim's algorithm to find a minimum spanning tree,
+		 * but computes the core distances with an exhaustive
+		 * {@link Pairwise#topK(double[][], GeometricallySeparable, int)} 
+		 * search rather than a tree. Like {@link #GENERIC}, it accepts
+		 * any non-binary metric, but it never materializes the distance
+		 * matrix, so memory is linear in the number of records. 
+		 * Never selected by {@link #AUTO}.
+		 */
+		PRIMS_BRUTE {
+			@Override
+			public PrimsBrute initTree(HDBSCAN h) {
+				// we set this in case it was called by auto
+				h.algo = this;
+				ensureMetric(h, this);
+				return h.new PrimsBrute();
+			}
+			
+			@Override
+			public boolean isValidMetric(GeometricallySeparable g) {
+				return GENERIC.isValidMetric(g);
+			}
+		},
+		
 		/**
 		 * Uses Boruvka's algorithm to find a minimum spanning
 		 * tree. Internally uses a {@link KDTree} to handle the
@@ -306,6 +338,8 @@ final public class HDBSCAN extends AbstractDBSCAN {
 		this.approxMinSpanTree = planner.getApprox();
 		this.min_cluster_size = planner.getMinClusterSize();
 		this.leafSize = planner.getLeafSize();
+		this.storage = planner.getDistanceStorage();
+		this.precision = planner.getDistancePrecision();
 		
 		if(alpha <= 0.0) throw new IllegalArgumentException("alpha must be greater than 0");
 		if(leafSize < 1) throw new IllegalArgumentException("leafsize must be greater than 0");
@@ -777,6 +811,80 @@ final public class HDBSCAN extends AbstractDBSCAN {
 			return result;
 		}
 		
+		/**
+		 * Generic linkage core method which computes the mutual reachability
+		 * distance between two points on demand from a condensed distance matrix
+		 * rather than requiring the full M x M mutual reachability matrix
+		 * @param dists - the condensed distance matrix
+		 * @param coreDistances
+		 * @param alpha
+		 * @see #coreDistances(CondensedDistanceMatrix, double[], int)
+		 * @return the minimum spanning tree
+		 */
+		static double[][] minSpanTreeLinkageCore(final CondensedDistanceMatrix dists, 
+				final double[] coreDistances, final double alpha) {
+			int[] current_labels, tmp_labels; 
+			double[] current_distances, left;
+			int current_node, new_node_index, new_node, i, j, trueCt, idx, lab;
+			double dist, core;
+			
+			final int m = dists.size();
+			double[][] result = new double[m-1][3];
+			current_node = 0;
+			current_distances = VecUtils.rep(Double.POSITIVE_INFINITY, m);
+			current_labels = VecUtils.arange(m);
+			
+			for(i = 1; i < m; i++) {
+				
+				// Filter out the current node, preserving order
+				trueCt = 0;
+				for(j = 0; j < current_labels.length; j++)
+					if(current_labels[j] != current_node)
+						trueCt++;
+				
+				idx = 0;
+				tmp_labels = new int[trueCt];
+				left = new double[trueCt];
+				for(j = 0; j < current_labels.length; j++) {
+					if(current_labels[j] != current_node) {
+						tmp_labels[idx] = current_labels[j];
+						left[idx] = current_distances[j];
+						idx++;
+					}
+				}
+				
+				current_labels = tmp_labels;
+				current_distances = new double[trueCt];
+				core = coreDistances[current_node];
+				
+				for(j = 0; j < trueCt; j++) {
+					lab = current_labels[j];
+					
+					// mutual reachability: max(core_a, core_b, dist / alpha)
+					dist = dists.get(current_node, lab);
+					if(alpha != 1.0)
+						dist /= alpha;
+					if(coreDistances[lab] > dist)
+						dist = coreDistances[lab];
+					if(core > dist)
+						dist = core;
+					
+					current_distances[j] = left[j] < dist ? left[j] : dist;
+				}
+				
+				// Get next iter values
+				new_node_index = VecUtils.argMin(current_distances);
+				new_node = current_labels[new_node_index];
+				result[i-1][0] = (double)current_node;
+				result[i-1][1] = (double)new_node;
+				result[i-1][2] = current_distances[new_node_index];
+				
+				current_node = new_node;
+			}
+			
+			return result;
+		}
+		
 		static double[][] minSpanTreeLinkageCore_cdist(final double[][] raw, final double[] coreDistances, GeometricallySeparable sep, final double alpha) {
 			double[] currentDists;
 			int[] inTreeArr;
@@ -871,12 +979,39 @@ final public class HDBSCAN extends AbstractDBSCAN {
 			return array_len - abs;
 		}
 		
+		/**
+		 * Compute the core distance of each point--the distance to its
+		 * <tt>minPts</tt>-th nearest point (counting itself)--from a 
+		 * condensed distance matrix, one row at a time.
+		 * @param dists - the condensed distance matrix
+		 * @param diagonal - the distance of each point to itself
+		 * @param minPts
+		 * @return the core distances
+		 */
+		static double[] coreDistances(final CondensedDistanceMatrix dists, final double[] diagonal, int minPts) {
+			final int size = dists.size();
+			minPts = FastMath.min(size - 1, minPts);
+			
+			final double[] core_distances = new double[size];
+			final double[] row = new double[size];
+			for(int i = 0; i < size; i++) {
+				dists.getRow(i, row);
+				row[i] = diagonal[i];
+				
+				core_distances[i] = TopKHeap.kthSmallest(row, minPts);
+			}
+			
+			return core_distances;
+		}
+		
 		static double[][] mutualReachability(double[][] dist_mat, int minPts, double alpha) {
 			final int size = dist_mat.length;
 			minPts = FastMath.min(size - 1, minPts);
 			
-			final double[] core_distances = MatUtils
-				.sortColsAsc(dist_mat)[minPts];
+			// the minPts-th smallest of each column, without sorting
+			final double[] core_distances = new double[size];
+			for(int j = 0; j < size; j++)
+				core_distances[j] = TopKHeap.kthSmallest(MatUtils.getColumn(dist_mat, j), minPts);
 			
 			if(alpha != 1.0)
 				dist_mat = MatUtils.scalarDivide(dist_mat, alpha);
@@ -911,6 +1046,20 @@ final public class HDBSCAN extends AbstractDBSCAN {
 		}
 		
 		abstract double[][] link();
+		
+		/**
+		 * Prim's linkage over the raw data given the core distances
+		 * @param dt
+		 * @param coreDistances
+		 * @return the labeled single linkage tree
+		 */
+		final double[][] primLinkage(double[][] dt, double[] coreDistances) {
+			double[][] minSpanningTree = LinkageTreeUtils
+				.minSpanTreeLinkageCore_cdist(dt, 
+					coreDistances, metric, alpha);
+			
+			return label(MatUtils.sortAscByCol(minSpanningTree, 2));
+		}
 	}
 	
 	
@@ -950,11 +1099,7 @@ final public class HDBSCAN extends AbstractDBSCAN {
 			double[][] dists = query.getDistances();
 			double[] coreDistances = MatUtils.getColumn(dists, dists[0].length - 1);
 			
-			double[][] minSpanningTree = LinkageTreeUtils
-				.minSpanTreeLinkageCore_cdist(dt, 
-					coreDistances, metric, alpha);
-			
-			return label(MatUtils.sortAscByCol(minSpanningTree, 2));
+			return primLinkage(dt, coreDistances);
 		}
 		
 		/**
@@ -1022,7 +1167,7 @@ final public class HDBSCAN extends AbstractDBSCAN {
 	}
 	
 	/**
-	 * Generic single linkage tree that uses an 
+	 * Generic single linkage tree that uses a condensed
 	 * upper triangular distance matrix to compute
 	 * mutual reachability
 	 * @author Taylor G Smith
@@ -1033,32 +1178,48 @@ final public class HDBSCAN extends AbstractDBSCAN {
 			
 			// The generic implementation requires the computation of an UT dist mat
 			final LogTimer s = new LogTimer();
-			dist_mat = Pairwise.getDistance(data, getSeparabilityMetric(), false, false);
+			dist_mat = Pairwise.getCondensedDistance(data.getDataRef(), getSeparabilityMetric(), false, storage, precision);
 			info("completed distance matrix computation in " + s.toString());
 		}
 		
 		@Override
 		double[][] link() {
-			final double[][] mutual_reachability = mutualReachability();
 			double[][] min_spanning_tree = LinkageTreeUtils
-					.minSpanTreeLinkageCore(mutual_reachability, m);
+					.minSpanTreeLinkageCore(dist_mat, coreDistances(), alpha);
 			
 			// Sort edges of the min_spanning_tree by weight
 			min_spanning_tree = MatUtils.sortAscByCol(min_spanning_tree, 2);
 			return label(min_spanning_tree);
 		}
 		
+		/**
+		 * The condensed matrix does not store the diagonal, which
+		 * is not guaranteed to be zero for every metric (i.e., kernels)
+		 */
+		double[] coreDistances() {
+			final double[][] X = data.getDataRef();
+			final double[] diagonal = new double[m];
+			for(int i = 0; i < m; i++)
+				diagonal[i] = metric.getDistance(X[i], X[i]);
+			
+			return LinkageTreeUtils.coreDistances(dist_mat, diagonal, minPts);
+		}
+		
+		/**
+		 * Expands the full M x M mutual reachability matrix. Note that
+		 * {@link #link()} does not require this, and computes the mutual
+		 * reachability on demand from the condensed distance matrix.
+		 */
 		@Override
 		public double[][] mutualReachability() {
-			/*// this shouldn't be able to happen...
-			if(null == dist_mat)
-				throw new IllegalClusterStateException("dist matrix is null; "
-					+ "this only can happen when the model attempts to invoke "
-					+ "mutualReachability on a tree without proper initialization "
-					+ "or after the model has already been fit.");
-			*/
-			
-			return LinkageTreeUtils.mutualReachability(dist_mat, minPts, alpha);
+			final double[][] X = data.getDataRef();
+			final double[][] dense = new double[m][];
+			for(int i = 0; i < m; i++) {
+				dense[i] = dist_mat.getRow(i);
+				dense[i][i] = metric.getDistance(X[i], X[i]);
+			}
+			
+			return LinkageTreeUtils.mutualReachability(dense, minPts, alpha);
 		}
 	}
 	
@@ -1094,6 +1255,25 @@ final public class HDBSCAN extends AbstractDBSCAN {
 		}
 	}
 	
+	/**
+	 * An implementation of HDBSCAN using the {@link Prim} algorithm,
+	 * with core distances from an exhaustive top-k search
+	 * @author Taylor G Smith
+	 */
+	class PrimsBrute extends HDBSCANLinkageTree implements Prim {
+		@Override
+		double[][] link() {
+			final int min_points = FastMath.min(m - 1, minPts);
+			
+			LogTimer timer = new LogTimer();
+			double[][] dists = Pairwise.topK(dataData, metric, min_points).getKey();
+			double[] coreDistances = MatUtils.getColumn(dists, dists[0].length - 1);
+			model.info("computed core distances via exhaustive search in " + timer.toString());
+			
+			return primLinkage(dataData, coreDistances);
+		}
+	}
+	
 	class BoruvkaKDTree extends KDTreeAlgorithm implements Boruvka {
 		BoruvkaKDTree(int leafSize) {
 			super(leafSize);
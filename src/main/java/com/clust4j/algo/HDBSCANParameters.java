@@ -22,7 +22,9 @@ import org.apache.commons.math3.linear.RealMatrix;
 
 import com.clust4j.algo.AbstractDBSCAN.AbstractDBSCANParameters;
 import com.clust4j.algo.HDBSCAN.HDBSCAN_Algorithm;
+import com.clust4j.metrics.pairwise.CondensedDistanceMatrix.Storage;
 import com.clust4j.metrics.pairwise.GeometricallySeparable;
+import com.clust4j.metrics.pairwise.NumericPrecision;
 
 /**
  * A builder class to provide an easier constructing
@@ -37,6 +39,8 @@ final public class HDBSCANParameters extends AbstractDBSCANParameters<HDBSCAN> {
 	private boolean approxMinSpanTree = HDBSCAN.DEF_APPROX_MIN_SPAN;
 	private int min_cluster_size = HDBSCAN.DEF_MIN_CLUST_SIZE;
 	private int leafSize = HDBSCAN.DEF_LEAF_SIZE;
+	private Storage storage = HDBSCAN.DEF_STORAGE;
+	private NumericPrecision precision = HDBSCAN.DEF_PRECISION;
 	
 	
 	public HDBSCANParameters() { this(HDBSCAN.DEF_MIN_PTS); }
@@ -59,6 +63,8 @@ final public class HDBSCANParameters extends AbstractDBSCANParameters<HDBSCAN> {
 			.setLeafSize(leafSize)
 			.setMinClustSize(min_cluster_size)
 			.setMinPts(minPts)
+			.setDistanceStorage(storage)
+			.setDistancePrecision(precision)
 			.setMetric(metric)
 			.setSeed(seed)
 			.setVerbose(verbose)
@@ -101,6 +107,39 @@ final public class HDBSCANParameters extends AbstractDBSCANParameters<HDBSCAN> {
 		return this;
 	}
 	
+	public NumericPrecision getDistancePrecision() {
+		return precision;
+	}
+	
+	/**
+	 * The precision in which the condensed distance matrix is held.
+	 * {@link NumericPrecision#FLOAT} halves its memory footprint, at the cost of
+	 * rounding distances to 24 bits of mantissa.
+	 * @param precision
+	 * @return this
+	 */
+	public HDBSCANParameters setDistancePrecision(final NumericPrecision precision) {
+		this.precision = precision;
+		return this;
+	}
+	
+	public Storage getDistanceStorage() {
+		return storage;
+	}
+	
+	/**
+	 * Where to store the condensed distance matrix used
+	 * by the {@link HDBSCAN_Algorithm#GENERIC} algorithm. For very large
+	 * matrices, {@link Storage#DIRECT} or {@link Storage#MAPPED} avoid
+	 * the Java heap (and its array length limit) altogether.
+	 * @param storage
+	 * @return this
+	 */
+	public HDBSCANParameters setDistanceStorage(final Storage storage) {
+		this.storage = storage;
+		return this;
+	}
+	
 	public int getMinClusterSize() {
 		return min_cluster_size;
 	}
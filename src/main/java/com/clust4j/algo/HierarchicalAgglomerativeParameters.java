@@ -21,7 +21,9 @@ import java.util.Random;
 import org.apache.commons.math3.linear.RealMatrix;
 
 import com.clust4j.algo.HierarchicalAgglomerative.Linkage;
+import com.clust4j.metrics.pairwise.CondensedDistanceMatrix.Storage;
 import com.clust4j.metrics.pairwise.GeometricallySeparable;
+import com.clust4j.metrics.pairwise.NumericPrecision;
 
 final public class HierarchicalAgglomerativeParameters 
 		extends BaseClustererParameters 
@@ -31,6 +33,8 @@ final public class HierarchicalAgglomerativeParameters
 	private static int DEF_K = 2;
 	private Linkage linkage = HierarchicalAgglomerative.DEF_LINKAGE;
 	private int num_clusters = DEF_K;
+	private Storage storage = HierarchicalAgglomerative.DEF_STORAGE;
+	private NumericPrecision precision = HierarchicalAgglomerative.DEF_PRECISION;
 
 	public HierarchicalAgglomerativeParameters() { this(DEF_K); }
 	public HierarchicalAgglomerativeParameters(int k) { this.num_clusters = k; }
@@ -51,6 +55,8 @@ final public class HierarchicalAgglomerativeParameters
 			.setSeed(seed)
 			.setVerbose(verbose)
 			.setNumClusters(num_clusters)
+			.setDistanceStorage(storage)
+			.setDistancePrecision(precision)
 			.setForceParallel(parallel);
 	}
 
@@ -72,6 +78,38 @@ final public class HierarchicalAgglomerativeParameters
 		return this;
 	}
 
+	public NumericPrecision getDistancePrecision() {
+		return precision;
+	}
+	
+	/**
+	 * The precision in which the condensed distance matrix is held.
+	 * {@link NumericPrecision#FLOAT} halves its memory footprint, at the cost of
+	 * rounding distances to 24 bits of mantissa.
+	 * @param precision
+	 * @return this
+	 */
+	public HierarchicalAgglomerativeParameters setDistancePrecision(final NumericPrecision precision) {
+		this.precision = precision;
+		return this;
+	}
+	
+	public Storage getDistanceStorage() {
+		return storage;
+	}
+	
+	/**
+	 * Where to store the condensed distance matrix. For very large
+	 * matrices, {@link Storage#DIRECT} or {@link Storage#MAPPED} avoid
+	 * the Java heap (and its array length limit) altogether.
+	 * @param storage
+	 * @return this
+	 */
+	public HierarchicalAgglomerativeParameters setDistanceStorage(final Storage storage) {
+		this.storage = storage;
+		return this;
+	}
+
 	@Override
 	public HierarchicalAgglomerativeParameters setForceParallel(boolean b) {
 		this.parallel = b;
@@ -165,14 +165,23 @@ public class KDTree extends NearestNeighborHeapSearch {
 	double minRDist(NearestNeighborHeapSearch tree, int i_node, double[] pt) {
 		double d_lo, d_hi, d, rdist = 0.0, p = tree.dist_metric.getP();
 		final boolean inf = tree.infinity_dist;
+		final double[] lo = tree.node_bounds[0][i_node], hi = tree.node_bounds[1][i_node];
 		
+		// This is the innermost bound of every query, so avoid
+		// the call to pow for the common Euclidean and Manhattan cases
 		for(int j = 0; j < N_FEATURES; j++) {
-			d_lo = tree.node_bounds[0][i_node][j] - pt[j];
-			d_hi = pt[j] - tree.node_bounds[1][i_node][j];
-			d = (d_lo + FastMath.abs(d_lo)) + (d_hi	+ FastMath.abs(d_hi));
+			d_lo = lo[j] - pt[j];
+			d_hi = pt[j] - hi[j];
+			d = 0.5 * ((d_lo + FastMath.abs(d_lo)) + (d_hi	+ FastMath.abs(d_hi)));
 			
-			rdist = inf ? FastMath.max(rdist, 0.5 * d) :
-				rdist + FastMath.pow(0.5 * d, p);
+			if(inf)
+				rdist = FastMath.max(rdist, d);
+			else if(p == 2.0)
+				rdist += d * d;
+			else if(p == 1.0)
+				rdist += d;
+			else
+				rdist += FastMath.pow(d, p);
 		}
 		
 		return rdist;
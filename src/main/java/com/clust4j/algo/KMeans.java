@@ -16,18 +16,28 @@
 package com.clust4j.algo;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.RecursiveAction;
 
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.util.FastMath;
 
-import com.clust4j.algo.NearestCentroidParameters;
-import com.clust4j.except.NaNException;
+import com.clust4j.GlobalState;
+import com.clust4j.except.ModelNotFitException;
 import com.clust4j.log.Log.Tag.Algo;
 import com.clust4j.log.LogTimer;
 import com.clust4j.metrics.pairwise.Distance;
+import com.clust4j.metrics.pairwise.DistanceMetric;
 import com.clust4j.metrics.pairwise.GeometricallySeparable;
-import com.clust4j.utils.EntryPair;
+import com.clust4j.metrics.pairwise.MinkowskiDistance;
+import com.clust4j.metrics.pairwise.Pairwise;
+import com.clust4j.utils.CSRMatrix;
 import com.clust4j.utils.VecUtils;
 
 /**
@@ -38,12 +48,61 @@ import com.clust4j.utils.VecUtils;
  * with the nearest mean, serving as a prototype of the cluster. This results in 
  * a partitioning of the data space into <a href="https://en.wikipedia.org/wiki/Voronoi_cell">Voronoi cells</a>.
  * 
+ * <p>
+ * KMeans is {@link SparseCapable}: if fit on a {@link CSRMatrix}, the assignment step
+ * and the centroid updates touch only the non-zero entries of each record.
+ * 
+ * <p>
+ * When parallelism is permitted (see {@link KMeansParameters#setForceParallel(boolean)}),
+ * each dense Lloyd iteration assigns and accumulates contiguous blocks of rows
+ * concurrently on the global ForkJoin pool, merging the blocks' centroid sums,
+ * counts and WSS at the end of the iteration.
+ * 
+ * <p>
+ * Records may be weighted (see {@link KMeansParameters#setSampleWeights(double[])}), in
+ * which case each centroid is the weighted mean of its records, and the TSS, WSS and
+ * seeding all count each record as many times as its weight. This allows a small
+ * weighted {@link com.clust4j.sample.Coreset} to be clustered in place of the data it summarizes.
+ * 
  * @author Taylor G Smith &lt;tgsmith61591@gmail.com&gt;
  */
-final public class KMeans extends AbstractCentroidClusterer {
+final public class KMeans extends AbstractCentroidClusterer implements SparseCapable {
 	private static final long serialVersionUID = 1102324012006818767L;
 	final public static GeometricallySeparable DEF_DIST = Distance.EUCLIDEAN;
 	final public static int DEF_MAX_ITER = 100;
+	final public static KMeansAlgorithm DEF_ALGO = KMeansAlgorithm.AUTO;
+	final public static int DEF_N_INIT = 1;
+	/** The number of features above which auto prefers Elkan's bounds to Hamerly's */
+	static final int hamerly_n_features_ = 50;
+	/** The approximate number of centroids per {@link KMeansAlgorithm#YINYANG} group */
+	static final int yinyang_group_size_ = 10;
+	/** The number of centroids from which auto prefers Yinyang's bounds to Hamerly's */
+	static final int yinyang_min_k_ = 200;
+	/** The number of Lloyd iterations used to group the initial centroids */
+	static final int yinyang_group_iter_ = 5;
+	/** The leaf size of the {@link KMeansAlgorithm#TREE} centroid index */
+	static final int tree_leaf_size_ = 16;
+	/** Auto prefers the {@link KMeansAlgorithm#TREE} index for data of at most this many features... */
+	static final int tree_n_features_ = 4;
+	/** ...and at least this many centroids */
+	static final int tree_min_k_ = 256;
+	
+	/** The metrics, aside from the parameterized ones, known to satisfy the triangle inequality */
+	final static Set<GeometricallySeparable> TRUE_METRICS;
+	static {
+		TRUE_METRICS = new HashSet<GeometricallySeparable>();
+		TRUE_METRICS.add(Distance.EUCLIDEAN);
+		TRUE_METRICS.add(Distance.MANHATTAN);
+		TRUE_METRICS.add(Distance.CHEBYSHEV);
+		TRUE_METRICS.add(Distance.CANBERRA);
+		TRUE_METRICS.add(Distance.HAMMING);
+	}
+	
+	/** Not final because can fall back to Lloyd */
+	protected KMeansAlgorithm algo;
+	
+	/** One row per restart if this model won a {@link KMeansParameters#setNInit(int)} fit, else null */
+	private ModelSummary restartSummary = null;
 	
 	
 	
@@ -57,10 +116,376 @@ final public class KMeans extends AbstractCentroidClusterer {
 	
 	protected KMeans(final RealMatrix data, final KMeansParameters planner) {
 		super(data, planner);
+		
+		this.algo = planner.getAlgorithm();
+		if(KMeansAlgorithm.AUTO == algo)
+			this.algo = KMeansAlgorithm.delegateAlgorithm(this);
+		
+		if(!algo.isValidMetric(dist_metric)) {
+			warn(dist_metric.getName() + " is not a true metric, as required by " + algo 
+				+ "; falling back to " + KMeansAlgorithm.LLOYD);
+			this.algo = KMeansAlgorithm.LLOYD;
+		}
+		
+		if(isSparse() && KMeansAlgorithm.LLOYD != algo) {
+			warn(algo + " does not support sparse data; falling back to " + KMeansAlgorithm.LLOYD);
+			this.algo = KMeansAlgorithm.LLOYD;
+		}
+		
+		info("assignment algorithm: " + algo);
 	}
 	
 	
 	
+	/**
+	 * The strategy used to assign records to their nearest centroid in each
+	 * iteration. All strategies produce the same labels and centroids; they
+	 * differ only in how many record-to-centroid distances they evaluate.
+	 * @author Taylor G Smith
+	 */
+	public static enum KMeansAlgorithm implements MetricValidator {
+		/**
+		 * Selects {@link #LLOYD} for sparse data or metrics which are not true metrics,
+		 * {@link #TREE} for at least {@value KMeans#tree_min_k_} centroids in up to
+		 * {@value KMeans#tree_n_features_} features, and {@link #ELKAN} for data of more than
+		 * {@value KMeans#hamerly_n_features_} features. Otherwise, or when Elkan's lower bounds 
+		 * would exceed {@link GlobalState#MAX_ARRAY_SIZE}, selects {@link #YINYANG} for at least 
+		 * {@value KMeans#yinyang_min_k_} centroids and {@link #HAMERLY} for fewer (or when even
+		 * Yinyang's lower bounds would exceed that size).
+		 */
+		AUTO {
+			@Override
+			CentroidBounds newBounds(int m, int k) {
+				throw new UnsupportedOperationException("auto must delegate to another algorithm");
+			}
+			
+			@Override
+			public boolean isValidMetric(GeometricallySeparable geo) {
+				return true;
+			}
+		},
+		
+		/**
+		 * Evaluates the distance from every record to every centroid
+		 * in each iteration. Valid for any metric.
+		 */
+		LLOYD {
+			@Override
+			CentroidBounds newBounds(int m, int k) {
+				return null;
+			}
+			
+			@Override
+			public boolean isValidMetric(GeometricallySeparable geo) {
+				return true;
+			}
+		},
+		
+		/**
+		 * Elkan's algorithm keeps an upper bound on the distance from each record to
+		 * its centroid, a lower bound on its distance to every other centroid and
+		 * the pairwise distances between centroids. The triangle inequality then rules
+		 * out most candidate centroids without evaluating their distances, at the cost
+		 * of O(m&middot;k) memory for the lower bounds. Only valid for true metrics.
+		 * @see <a href="http://www.aaai.org/Papers/ICML/2003/ICML03-022.pdf">Elkan (2003)</a>
+		 */
+		ELKAN {
+			@Override
+			CentroidBounds newBounds(int m, int k) {
+				return new ElkanBounds(m, k);
+			}
+			
+			@Override
+			public boolean isValidMetric(GeometricallySeparable geo) {
+				return isTrueMetric(geo);
+			}
+		},
+		
+		/**
+		 * Hamerly's algorithm keeps only two bounds per record: an upper bound on the
+		 * distance to its centroid, and a single lower bound on the distance to every other
+		 * centroid. It skips fewer distances than {@link #ELKAN}, but needs O(m) rather than
+		 * O(m&middot;k) memory and less bookkeeping per record, and tends to be the faster
+		 * of the two in low dimensions. Only valid for true metrics.
+		 * @see <a href="http://epubs.siam.org/doi/abs/10.1137/1.9781611972801.12">Hamerly (2010)</a>
+		 */
+		HAMERLY {
+			@Override
+			CentroidBounds newBounds(int m, int k) {
+				return new HamerlyBounds(m, k);
+			}
+			
+			@Override
+			public boolean isValidMetric(GeometricallySeparable geo) {
+				return isTrueMetric(geo);
+			}
+		},
+		
+		/**
+		 * Indexes the centroids in a {@link KDTree} (or, for true metrics a KD-tree
+		 * cannot bound, a {@link BallTree}) at the start of each iteration, and finds each
+		 * record's nearest centroid by a depth-first search of the tree. The search prunes
+		 * whole subtrees of centroids, so each record evaluates roughly O(log k) distances
+		 * rather than k, at the cost of rebuilding the tree in O(k log k) each iteration.
+		 * Keeps no per-record state, so it suits a large k in few dimensions, where the
+		 * bounds of {@link #ELKAN} grow too large and those of {@link #HAMERLY} rarely hold.
+		 * Only valid for true metrics.
+		 */
+		TREE {
+			@Override
+			CentroidBounds newBounds(int m, int k) {
+				return new CentroidTree();
+			}
+			
+			@Override
+			public boolean isValidMetric(GeometricallySeparable geo) {
+				return KDTree.VALID_METRICS.contains(geo.getClass())
+					|| (isTrueMetric(geo) && BallTree.VALID_METRICS.contains(geo.getClass()));
+			}
+		},
+		
+		/**
+		 * Yinyang k-means clusters the initial centroids into roughly 
+		 * <tt>k/{@value KMeans#yinyang_group_size_}</tt> groups, and keeps an upper bound on 
+		 * the distance from each record to its centroid and one lower bound per group. A 
+		 * global filter on the smallest of those bounds skips the record entirely, a group 
+		 * filter skips every centroid of a group, and a local filter on each centroid's own 
+		 * drift skips individual centroids within the groups that remain. It prunes far more 
+		 * than {@link #HAMERLY} for large <tt>k</tt>, with O(m&middot;k/{@value KMeans#yinyang_group_size_}) 
+		 * rather than the O(m&middot;k) memory of {@link #ELKAN}. Only valid for true metrics.
+		 * @see <a href="http://jmlr.org/proceedings/papers/v37/ding15.pdf">Ding et al. (2015)</a>
+		 */
+		YINYANG {
+			@Override
+			CentroidBounds newBounds(int m, int k) {
+				return new YinyangBounds(m, k);
+			}
+			
+			@Override
+			public boolean isValidMetric(GeometricallySeparable geo) {
+				return isTrueMetric(geo);
+			}
+		};
+		
+		/** Create the bounds used by this algorithm, or null if it keeps none */
+		abstract CentroidBounds newBounds(int m, int k);
+		
+		private static KMeansAlgorithm delegateAlgorithm(final KMeans model) {
+			if(model.isSparse() || !isTrueMetric(model.dist_metric))
+				return LLOYD;
+			
+			final RealMatrix data = model.dataRef();
+			if(model.k >= tree_min_k_ && data.getColumnDimension() <= tree_n_features_ 
+					&& TREE.isValidMetric(model.dist_metric))
+				return TREE;
+			
+			final long bounds = (long)data.getRowDimension() * model.k;
+			if(data.getColumnDimension() > hamerly_n_features_ && bounds <= GlobalState.MAX_ARRAY_SIZE)
+				return ELKAN;
+			
+			final long groupBounds = bounds / yinyang_group_size_;
+			return (model.k >= yinyang_min_k_ || bounds > GlobalState.MAX_ARRAY_SIZE) 
+					&& groupBounds <= GlobalState.MAX_ARRAY_SIZE ?
+				YINYANG : HAMERLY;
+		}
+	}
+	
+	/**
+	 * Whether the metric is known to satisfy the triangle inequality, 
+	 * which the bounded {@link KMeansAlgorithm}s rely upon
+	 */
+	static boolean isTrueMetric(final GeometricallySeparable geo) {
+		return TRUE_METRICS.contains(geo)
+			|| geo instanceof MinkowskiDistance  // p >= 1 is enforced
+			|| geo instanceof Distance.HAVERSINE;
+	}
+	
+	
+	
+	
+	/**
+	 * Fit <tt>nInit</tt> independently seeded models, as set by
+	 * {@link KMeansParameters#setNInit(int)}, and return the one with the lowest
+	 * total WSS (the earliest, in the case of ties). Each restart is seeded with a
+	 * new {@link Random} drawn in turn from the planner's, so the result is the same
+	 * whether or not the restarts are run concurrently. If parallelism is permitted,
+	 * the restarts run concurrently on the global ForkJoin pool, and each runs its own
+	 * iterations serially.
+	 * @param data
+	 * @param planner
+	 * @throws IllegalArgumentException if <tt>nInit</tt> is less than one
+	 * @return the best of the fit models
+	 */
+	static KMeans fitRestarts(final RealMatrix data, final KMeansParameters planner) {
+		final int nInit = planner.getNInit();
+		if(nInit < 1)
+			throw new IllegalArgumentException("nInit must exceed 0");
+		if(1 == nInit || null != planner.getWarmStart()) // warm started restarts would all be identical
+			return new KMeans(data, planner).fit();
+		
+		final boolean concurrent = planner.getParallel() 
+			&& GlobalState.ParallelismConf.PARALLELISM_ALLOWED;
+		final Random seed = planner.getSeed();
+		
+		final KMeansParameters[] planners = new KMeansParameters[nInit];
+		for(int r = 0; r < nInit; r++) {
+			planners[r] = planner.copy()
+				.setNInit(1)
+				.setSeed(new Random(seed.nextLong()))
+				.setForceParallel(planner.getParallel() && !concurrent);
+		}
+		
+		final KMeans[] models = new KMeans[nInit];
+		final String[] wall = new String[nInit];
+		if(concurrent)
+			GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(new RestartTask(data, planners, models, wall, 0, nInit));
+		else
+			for(int r = 0; r < nInit; r++)
+				fitRestart(data, planners, models, wall, r);
+		
+		
+		// Select the lowest WSS
+		int best = 0;
+		final double[] wss = new double[nInit];
+		for(int r = 0; r < nInit; r++) {
+			wss[r] = VecUtils.sum(models[r].getWSS());
+			if(wss[r] < wss[best])
+				best = r;
+		}
+		
+		final KMeans model = models[best];
+		model.restartSummary = new ModelSummary(new Object[]{
+			"Restart","Init.","Iter. #","Converged","WSS","Best","Wall"
+		});
+		
+		for(int r = 0; r < nInit; r++) {
+			model.restartSummary.add(new Object[]{
+				r, models[r].init, models[r].iter, models[r].converged, 
+				wss[r], r == best, wall[r] });
+		}
+		
+		model.logSummary("Restart Summary:", model.restartSummary);
+		model.info("kept restart " + best + " of " + nInit + " with a WSS of " + wss[best]);
+		return model;
+	}
+	
+	/**
+	 * Fit the restart at index <tt>r</tt>, recording the model and its wall time
+	 */
+	static void fitRestart(final RealMatrix data, final KMeansParameters[] planners, 
+			final KMeans[] models, final String[] wall, final int r) {
+		final LogTimer timer = new LogTimer();
+		models[r] = new KMeans(data, planners[r]).fit();
+		wall[r] = timer.wallTime();
+	}
+	
+	/**
+	 * Fits a range of restarts, splitting the range in half until each task holds one
+	 * @author Taylor G Smith
+	 */
+	static final class RestartTask extends RecursiveAction {
+		private static final long serialVersionUID = 8437150206937718851L;
+		final RealMatrix data;
+		final KMeansParameters[] planners;
+		final KMeans[] models;
+		final String[] wall;
+		final int lo, hi;
+		
+		RestartTask(final RealMatrix data, final KMeansParameters[] planners, final KMeans[] models,
+				final String[] wall, final int lo, final int hi) {
+			this.data = data;
+			this.planners = planners;
+			this.models = models;
+			this.wall = wall;
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		@Override
+		protected void compute() {
+			if(hi - lo == 1) {
+				fitRestart(data, planners, models, wall, lo);
+				return;
+			}
+			
+			final int mid = (lo + hi) >>> 1;
+			invokeAll(
+				new RestartTask(data, planners, models, wall, lo, mid),
+				new RestartTask(data, planners, models, wall, mid, hi));
+		}
+	}
+	
+	/**
+	 * The per-restart summary of the {@link KMeansParameters#setNInit(int)} fit from
+	 * which this model was kept, with one row per restart following the header
+	 * @return a copy of the summary, or null if the model was fit without restarts
+	 */
+	public ModelSummary getRestartSummary() {
+		if(null == restartSummary)
+			return null;
+		
+		final ModelSummary copy = new ModelSummary();
+		copy.addAll(restartSummary);
+		return copy;
+	}
+	
+	/**
+	 * Fit a new model to this model's data with <tt>newRows</tt> appended, warm started
+	 * from this model's centroids and otherwise planned as this model was. When few rows
+	 * are appended relative to those already fit, the prior centroids are already near a
+	 * local optimum, and the new model typically converges within a few Lloyd iterations
+	 * rather than the many required from an {@link InitializationStrategy}'s seeds. If this
+	 * model was fit with sample weights, each appended row is weighted as one record. This 
+	 * model is left unchanged.
+	 * @param newRows - the rows to append
+	 * @throws ModelNotFitException if this model has not been fit
+	 * @throws DimensionMismatchException if the column dimensions differ
+	 * @return the new, fit model
+	 */
+	public KMeans update(final RealMatrix newRows) {
+		final KMeansParameters planner;
+		final RealMatrix combined;
+		
+		synchronized(fitLock) {
+			if(null == labels)
+				throw new ModelNotFitException("model must be fit before it can be updated");
+			
+			final int n = dataRef().getColumnDimension(), mNew = newRows.getRowDimension();
+			if(newRows.getColumnDimension() != n)
+				throw new DimensionMismatchException(newRows.getColumnDimension(), n);
+			
+			planner = new KMeansParameters(k)
+				.setMaxIter(maxIter)
+				.setConvergenceCriteria(tolerance)
+				.setMetric(dist_metric)
+				.setVerbose(getVerbose())
+				.setSeed(getSeed())
+				.setAlgorithm(algo)
+				.setForceParallel(parallel)
+				.setWarmStart(centroids.toArray(new double[centroids.size()][]));
+			
+			if(null != weights) {
+				final double[] allWeights = VecUtils.rep(1.0, m + mNew);
+				System.arraycopy(weights, 0, allWeights, 0, m);
+				planner.setSampleWeights(allWeights);
+			}
+			
+			if(isSparse()) {
+				combined = CSRMatrix.rbind(sparse_data, newRows instanceof CSRMatrix ? 
+					(CSRMatrix)newRows : new CSRMatrix(newRows));
+			} else {
+				// the new model copies the rows, so references suffice here
+				final double[][] X = data.getDataRef();
+				final double[][] all = new double[m + mNew][];
+				System.arraycopy(X, 0, all, 0, m);
+				for(int i = 0; i < mNew; i++)
+					all[m + i] = newRows.getRow(i);
+				combined = new Array2DRowRealMatrix(all, false);
+			}
+		}
+		
+		return planner.fitNewModel(combined);
+	}
 	
 	@Override
 	public String getName() {
@@ -76,101 +501,79 @@ final public class KMeans extends AbstractCentroidClusterer {
 			
 
 			final LogTimer timer = new LogTimer();
-			final double[][] X = data.getData();
-			final int n = data.getColumnDimension();
+			final double[][] X = isSparse() ? null : data.getData();
+			final int n = dataRef().getColumnDimension();
 			final double nan = Double.NaN;
 			
 			
 			// Corner case: K = 1 or all singular values
 			if(1 == k) {
 				labelFromSingularK(X);
-				fitSummary.add(new Object[]{ iter, converged, tss, tss, nan, timer.wallTime() });
+				fitSummary.add(new Object[]{ iter, converged, tss, tss, nan, 0, timer.wallTime() });
 				sayBye(timer);
 				return this;
 			}
 			
 			
+			if(isSparse()) {
+				fitSparse(timer, n);
+				return this;
+			}
 			
-			// Nearest centroid model to predict labels
-			NearestCentroid model = null;
-			EntryPair<int[], double[]> label_dist;
+			
+			// Per-chunk assignment buffers, reused across iterations
+			final LloydAccumulator[] accumulators = LloydAccumulator
+				.forRows(m, parallel ? LloydTask.numChunks(m) : 1, k, n, weights);
+			final LloydAccumulator total = accumulators[0];
+			final GeometricallySeparable metric = getSeparabilityMetric();
+			final CentroidBounds bounds = algo.newBounds(m, k);
+			labels = new int[m];
+			
+			// The means of each iteration are written into the alternate buffer
+			double[][] cents = new double[k][], next = new double[k][n], swap;
+			for(int i = 0; i < k; i++)
+				cents[i] = VecUtils.copy(centroids.get(i));
 			
 			
 			// Keep track of TSS (sum of barycentric distances)
 			double last_wss_sum = Double.POSITIVE_INFINITY, wss_sum = 0;
-			ArrayList<double[]> new_centroids;
 			
 			for(iter = 0; iter < maxIter; iter++) {
 				
-				// Get labels for nearest centroids
-				try {
-					model = new NearestCentroid(CentroidUtils.centroidsToMatrix(centroids, false), 
-						VecUtils.arange(k), new NearestCentroidParameters()
-							.setSeed(getSeed())
-							.setMetric(getSeparabilityMetric())
-							.setVerbose(false)).fit();
-				} catch(NaNException NaN) {
-					/*
-					 * If they metric used produces lots of infs or -infs, it 
-					 * makes it hard if not impossible to effectively segment the
-					 * input space. Thus, the centroid assignment portion below can
-					 * yield a zero count (denominator) for one or more of the centroids
-					 * which makes the entire row NaN. We should tell the user to
-					 * try a different metric, if that's the case.
-					 *
-					error(new IllegalClusterStateException(dist_metric.getName()+" produced an entirely " +
-					  "infinite distance matrix, making it difficult to segment the input space. Try a different " +
-					  "metric."));
-					 */
-					this.k = 1;
-					warn("(dis)similarity metric ("+dist_metric+") cannot partition space without propagating Infs. Returning one cluster");
-					
-					labelFromSingularK(X);
-					fitSummary.add(new Object[]{ iter, converged, tss, tss, nan, timer.wallTime() });
-					sayBye(timer);
-					return this;
-				}
-				
-				label_dist = model.predict(X);
-				
-				// unpack the EntryPair
-				labels = label_dist.getKey();
-				new_centroids = new ArrayList<>(k);
-				
-				
-				int label;
-				wss = new double[k];
-				int[] centroid_counts = new int[k];
-				double[] centroid;
-				double[][] new_centroid_arrays = new double[k][n];
-				for(int i = 0; i < m; i++) {
-					label = labels[i];
-					centroid = centroids.get(label);
-					
-					// increment count for this centroid
-					double this_cost = 0;
-					centroid_counts[label]++;
-					for(int j = 0; j < centroid.length; j++) {
-						double diff = X[i][j] - centroid[j];
-						this_cost += (diff * diff);
+				/*
+				 * If they metric used produces lots of infs or -infs, it 
+				 * makes it hard if not impossible to effectively segment the
+				 * input space. Thus, the centroid assignment portion below can
+				 * yield a zero count (denominator) for one or more of the centroids
+				 * which makes the entire row NaN. We should tell the user to
+				 * try a different metric, if that's the case.
+				 */
+				for(double[] c: cents) {
+					if(VecUtils.containsNaN(c)) {
+						this.k = 1;
+						warn("(dis)similarity metric ("+dist_metric+") cannot partition space without propagating Infs. Returning one cluster");
 						
-						// Add the the centroid sums
-						new_centroid_arrays[label][j] += X[i][j];
+						setCentroids(cents);
+						labelFromSingularK(X);
+						fitSummary.add(new Object[]{ iter, converged, tss, tss, nan, 0, timer.wallTime() });
+						sayBye(timer);
+						return this;
 					}
-					
-					// add this cost to the WSS
-					wss[label] += this_cost;
 				}
 				
+				// Assign labels and accumulate the centroid sums and WSS
+				if(null != bounds)
+					bounds.prepare(cents, metric);
+				lloydStep(X, cents, labels, metric, bounds, accumulators);
+				
+				
 				// one pass of K for some consolidation
 				wss_sum = 0;
 				for(int i = 0; i < k; i++) {
-					wss_sum += wss[i];
+					wss_sum += total.wss[i];
 					
 					for(int j = 0; j < n; j++) // meanify
-						new_centroid_arrays[i][j] /= (double)centroid_counts[i];
-					
-					new_centroids.add(new_centroid_arrays[i]);
+						next[i][j] = total.sums[i][j] / total.massOf(i);
 				}
 				
 				// update the BSS
@@ -189,18 +592,29 @@ final public class KMeans extends AbstractCentroidClusterer {
 					converged ? iter++ : iter, 
 					converged, 
 					tss, wss_sum, bss, 
+					(long)m * k - total.computed,
 					timer.wallTime() });
 				
 				if(converged) {
 					break;
 				} else {
-					// otherwise, reassign centroids
-					centroids = new_centroids;
+					// otherwise, loosen the bounds by how far each centroid moved
+					if(null != bounds)
+						bounds.update(cents, next, labels, metric);
+					
+					// and reassign centroids
+					swap = cents;
+					cents = next;
+					next = swap;
 				}
 				
 			} // end iterations
 			
 			
+			wss = VecUtils.copy(total.wss);
+			setCentroids(cents);
+			
+			
 			
 			// Reorder the labels, centroids and wss indices
 			reorderLabelsAndCentroids();
@@ -219,6 +633,863 @@ final public class KMeans extends AbstractCentroidClusterer {
 	}
 	
 
+	private void setCentroids(final double[][] cents) {
+		centroids = new ArrayList<>(cents.length);
+		for(double[] c: cents)
+			centroids.add(c);
+	}
+	
+	/**
+	 * One assignment and accumulation pass of Lloyd's algorithm: label each row of
+	 * <tt>X</tt> with its nearest centroid, and sum the (weighted) rows, counts and squared
+	 * Euclidean costs of each centroid. Each accumulator covers a contiguous block
+	 * of rows; if there is more than one, the blocks are processed in parallel on
+	 * the global ForkJoin pool and their results merged into the first accumulator.
+	 * @param X
+	 * @param cents
+	 * @param labels - the array to which labels are written
+	 * @param metric
+	 * @param bounds - the bounds used to skip distance evaluations, or null to evaluate them all
+	 * @param accumulators
+	 */
+	static void lloydStep(final double[][] X, final double[][] cents, final int[] labels,
+			final GeometricallySeparable metric, final CentroidBounds bounds, 
+			final LloydAccumulator[] accumulators) {
+		
+		if(1 == accumulators.length) {
+			accumulators[0].accumulate(X, cents, labels, metric, bounds);
+			return;
+		}
+		
+		GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(
+			new LloydTask(X, cents, labels, metric, bounds, accumulators, 0, accumulators.length));
+		
+		for(int i = 1; i < accumulators.length; i++)
+			accumulators[0].merge(accumulators[i]);
+	}
+	
+	/**
+	 * The centroid sums, counts and WSS for a contiguous block of rows. These are
+	 * allocated once per fit and reset at the start of each Lloyd iteration, so the
+	 * iterations themselves allocate nothing proportional to <tt>m</tt> or <tt>k</tt>.
+	 * @author Taylor G Smith
+	 */
+	static final class LloydAccumulator {
+		final int lo, hi;
+		final double[][] sums;
+		final int[] counts;
+		final double[] wss;
+		final double[] centDists;
+		/** The weight of each record of the fit and the summed weight of each centroid, or null if unweighted */
+		final double[] weights, mass;
+		/** The number of record-to-centroid distances evaluated */
+		long computed;
+		/** Scratch for the nearest centroid search of {@link CentroidTree} */
+		double nearestDist;
+		int nearestLabel;
+		
+		LloydAccumulator(final int lo, final int hi, final int k, final int n, final double[] weights) {
+			this.lo = lo;
+			this.hi = hi;
+			this.sums = new double[k][n];
+			this.counts = new int[k];
+			this.wss = new double[k];
+			this.centDists = new double[k];
+			this.weights = weights;
+			this.mass = null == weights ? null : new double[k];
+		}
+		
+		/**
+		 * Split <tt>m</tt> rows into <tt>chunks</tt> contiguous blocks
+		 */
+		static LloydAccumulator[] forRows(final int m, final int chunks, final int k, final int n) {
+			return forRows(m, chunks, k, n, null);
+		}
+		
+		/**
+		 * Split <tt>m</tt> weighted rows into <tt>chunks</tt> contiguous blocks
+		 */
+		static LloydAccumulator[] forRows(final int m, final int chunks, final int k, final int n, final double[] weights) {
+			final LloydAccumulator[] out = new LloydAccumulator[chunks];
+			for(int c = 0; c < chunks; c++)
+				out[c] = new LloydAccumulator(
+					(int)((long)c * m / chunks), 
+					(int)((long)(c + 1) * m / chunks), k, n, weights);
+			return out;
+		}
+		
+		/** The denominator of a centroid's mean: its count, or its summed weight */
+		double massOf(final int c) {
+			return null == mass ? counts[c] : mass[c];
+		}
+		
+		void accumulate(final double[][] X, final double[][] cents, final int[] labels, 
+				final GeometricallySeparable metric, final CentroidBounds bounds) {
+			final int k = cents.length;
+			
+			for(int i = 0; i < k; i++)
+				Arrays.fill(sums[i], 0.0);
+			Arrays.fill(counts, 0);
+			Arrays.fill(wss, 0.0);
+			if(null != mass)
+				Arrays.fill(mass, 0.0);
+			computed = 0;
+			
+			int label;
+			double minDist, diff, this_cost, w;
+			double[] row, centroid, sum;
+			for(int i = lo; i < hi; i++) {
+				row = X[i];
+				
+				if(null != bounds) {
+					label = bounds.assign(i, row, labels[i], cents, metric, this);
+				} else {
+					// Can afford to compute partial dist--faster
+					Pairwise.partialDistances(metric, row, cents, 0, k, centDists);
+					computed += k;
+					
+					label = 0; // should not equal -1, because dist could be infinity
+					minDist = Double.POSITIVE_INFINITY;
+					for(int c = 0; c < k; c++) {
+						if(centDists[c] < minDist) {
+							minDist = centDists[c];
+							label = c;
+						}
+					}
+				}
+				
+				labels[i] = label;
+				counts[label]++;
+				
+				w = 1.0;
+				if(null != weights)
+					mass[label] += (w = weights[i]);
+				
+				centroid = cents[label];
+				sum = sums[label];
+				this_cost = 0;
+				for(int j = 0; j < row.length; j++) {
+					diff = row[j] - centroid[j];
+					this_cost += (diff * diff);
+					
+					// Add the the centroid sums
+					sum[j] += w * row[j];
+				}
+				
+				// add this cost to the WSS
+				wss[label] += w * this_cost;
+			}
+		}
+		
+		void merge(final LloydAccumulator other) {
+			computed += other.computed;
+			
+			double[] sum, osum;
+			for(int i = 0; i < counts.length; i++) {
+				counts[i] += other.counts[i];
+				wss[i] += other.wss[i];
+				if(null != mass)
+					mass[i] += other.mass[i];
+				
+				sum = sums[i];
+				osum = other.sums[i];
+				for(int j = 0; j < sum.length; j++)
+					sum[j] += osum[j];
+			}
+		}
+	}
+	
+	/**
+	 * Runs {@link LloydAccumulator#accumulate(double[][], double[][], int[], GeometricallySeparable, CentroidBounds)}
+	 * for a range of accumulators, splitting the range in half until each task holds one.
+	 * The accumulators cover disjoint rows, so the tasks need no synchronization.
+	 * @author Taylor G Smith
+	 */
+	static final class LloydTask extends RecursiveAction {
+		private static final long serialVersionUID = -2739616237540346418L;
+		final double[][] X, cents;
+		final int[] labels;
+		final GeometricallySeparable metric;
+		final CentroidBounds bounds;
+		final LloydAccumulator[] accumulators;
+		final int lo, hi;
+		
+		LloydTask(final double[][] X, final double[][] cents, final int[] labels,
+				final GeometricallySeparable metric, final CentroidBounds bounds, 
+				final LloydAccumulator[] accumulators, final int lo, final int hi) {
+			this.X = X;
+			this.cents = cents;
+			this.labels = labels;
+			this.metric = metric;
+			this.bounds = bounds;
+			this.accumulators = accumulators;
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		/**
+		 * One chunk per core, but no chunk smaller than
+		 * {@link ParallelChunkingTask.ChunkingStrategy#DEF_CHUNK_SIZE} rows
+		 */
+		static int numChunks(final int m) {
+			return FastMath.max(1, FastMath.min(GlobalState.ParallelismConf.NUM_CORES, 
+				m / ParallelChunkingTask.ChunkingStrategy.DEF_CHUNK_SIZE));
+		}
+		
+		@Override
+		protected void compute() {
+			if(hi - lo == 1) {
+				accumulators[lo].accumulate(X, cents, labels, metric, bounds);
+				return;
+			}
+			
+			final int mid = (lo + hi) >>> 1;
+			invokeAll(
+				new LloydTask(X, cents, labels, metric, bounds, accumulators, lo, mid),
+				new LloydTask(X, cents, labels, metric, bounds, accumulators, mid, hi));
+		}
+	}
+	
+	/**
+	 * Per-record distance bounds, or an index over the centroids, which let a 
+	 * {@link KMeansAlgorithm} skip record-to-centroid distances that the triangle 
+	 * inequality proves cannot change a record's label.
+	 * @author Taylor G Smith
+	 */
+	static interface CentroidBounds {
+		/** Compute any centroid-to-centroid quantities before an iteration's assignments */
+		void prepare(double[][] cents, GeometricallySeparable metric);
+		
+		/** 
+		 * Return the label of the centroid nearest to record <tt>i</tt>, currently assigned to 
+		 * <tt>label</tt>, counting each distance evaluated in the accumulator. As in the 
+		 * exhaustive search, ties go to the lowest centroid index. Records of disjoint
+		 * ranges may be assigned concurrently.
+		 */
+		int assign(int i, double[] row, int label, double[][] cents, 
+			GeometricallySeparable metric, LloydAccumulator acc);
+		
+		/** Loosen the bounds after the centroids move from <tt>cents</tt> to <tt>next</tt> */
+		void update(double[][] cents, double[][] next, int[] labels, GeometricallySeparable metric);
+	}
+	
+	/**
+	 * The bounds of {@link KMeansAlgorithm#ELKAN}: an upper bound on the distance from
+	 * each record to its centroid, and a lower bound on its distance to every centroid.
+	 * @author Taylor G Smith
+	 */
+	static final class ElkanBounds implements CentroidBounds {
+		final double[] upper;
+		final double[][] lower;
+		/** The pairwise centroid distances */
+		final double[][] centDists;
+		/** Half the distance from each centroid to its nearest other centroid */
+		final double[] halfMin;
+		final double[] drift;
+		
+		ElkanBounds(final int m, final int k) {
+			this.upper = VecUtils.rep(Double.POSITIVE_INFINITY, m);
+			this.lower = new double[m][k];
+			this.centDists = new double[k][k];
+			this.halfMin = new double[k];
+			this.drift = new double[k];
+		}
+		
+		@Override
+		public void prepare(final double[][] cents, final GeometricallySeparable metric) {
+			final int k = cents.length;
+			
+			double d;
+			for(int a = 0; a < k; a++) {
+				for(int b = a + 1; b < k; b++) {
+					d = metric.getDistance(cents[a], cents[b]);
+					centDists[a][b] = d;
+					centDists[b][a] = d;
+				}
+			}
+			
+			double min;
+			for(int a = 0; a < k; a++) {
+				min = Double.POSITIVE_INFINITY;
+				for(int b = 0; b < k; b++)
+					if(b != a && centDists[a][b] < min)
+						min = centDists[a][b];
+				halfMin[a] = 0.5 * min;
+			}
+		}
+		
+		@Override
+		public int assign(final int i, final double[] row, int a, final double[][] cents, 
+				final GeometricallySeparable metric, final LloydAccumulator acc) {
+			double u = upper[i];
+			
+			// Every other centroid is further than twice the upper bound from this one
+			if(u < halfMin[a])
+				return a;
+			
+			final double[] l = lower[i];
+			final int k = l.length;
+			double pa = Double.NaN, pc;
+			boolean tight = false;
+			
+			for(int c = 0; c < k; c++) {
+				if(c == a || u < l[c] || u < 0.5 * centDists[a][c])
+					continue;
+				
+				// Tighten the upper bound once, and re-test the candidate
+				if(!tight) {
+					pa = metric.getPartialDistance(row, cents[a]);
+					u = l[a] = metric.partialDistanceToDistance(pa);
+					acc.computed++;
+					tight = true;
+					
+					if(u < l[c] || u < 0.5 * centDists[a][c])
+						continue;
+				}
+				
+				pc = metric.getPartialDistance(row, cents[c]);
+				l[c] = metric.partialDistanceToDistance(pc);
+				acc.computed++;
+				
+				if(pc < pa || (pc == pa && c < a)) {
+					a = c;
+					pa = pc;
+					u = l[c];
+				}
+			}
+			
+			upper[i] = u;
+			return a;
+		}
+		
+		@Override
+		public void update(final double[][] cents, final double[][] next, 
+				final int[] labels, final GeometricallySeparable metric) {
+			final int k = cents.length;
+			for(int c = 0; c < k; c++)
+				drift[c] = metric.getDistance(cents[c], next[c]);
+			
+			double[] l;
+			for(int i = 0; i < upper.length; i++) {
+				upper[i] += drift[labels[i]];
+				
+				l = lower[i];
+				for(int c = 0; c < k; c++)
+					l[c] = FastMath.max(0.0, l[c] - drift[c]);
+			}
+		}
+	}
+	
+
+	/**
+	 * The bounds of {@link KMeansAlgorithm#HAMERLY}: an upper bound on the distance from
+	 * each record to its centroid, and one lower bound on its distance to any other centroid.
+	 * @author Taylor G Smith
+	 */
+	static final class HamerlyBounds implements CentroidBounds {
+		final double[] upper;
+		final double[] lower;
+		/** Half the distance from each centroid to its nearest other centroid */
+		final double[] halfMin;
+		final double[] drift;
+		
+		HamerlyBounds(final int m, final int k) {
+			this.upper = VecUtils.rep(Double.POSITIVE_INFINITY, m);
+			this.lower = new double[m];
+			this.halfMin = new double[k];
+			this.drift = new double[k];
+		}
+		
+		@Override
+		public void prepare(final double[][] cents, final GeometricallySeparable metric) {
+			final int k = cents.length;
+			Arrays.fill(halfMin, Double.POSITIVE_INFINITY);
+			
+			double d;
+			for(int a = 0; a < k; a++) {
+				for(int b = a + 1; b < k; b++) {
+					d = 0.5 * metric.getDistance(cents[a], cents[b]);
+					if(d < halfMin[a]) halfMin[a] = d;
+					if(d < halfMin[b]) halfMin[b] = d;
+				}
+			}
+		}
+		
+		@Override
+		public int assign(final int i, final double[] row, final int a, final double[][] cents, 
+				final GeometricallySeparable metric, final LloydAccumulator acc) {
+			final double bound = FastMath.max(halfMin[a], lower[i]);
+			if(upper[i] < bound)
+				return a;
+			
+			// Tighten the upper bound and re-test
+			final double pa = metric.getPartialDistance(row, cents[a]);
+			upper[i] = metric.partialDistanceToDistance(pa);
+			acc.computed++;
+			if(upper[i] < bound)
+				return a;
+			
+			/*
+			 * Otherwise search all centroids. This compares the same partial distances
+			 * as the exhaustive search, so chooses the same centroid. The scratch row is
+			 * the accumulator's, since other row blocks may be assigned concurrently.
+			 */
+			final double[] p = acc.centDists;
+			final int k = cents.length;
+			int best = 0;
+			for(int c = 0; c < k; c++) {
+				if(c == a) {
+					p[c] = pa;
+				} else {
+					p[c] = metric.getPartialDistance(row, cents[c]);
+					acc.computed++;
+				}
+				
+				if(p[c] < p[best])
+					best = c;
+			}
+			
+			double second = Double.POSITIVE_INFINITY;
+			for(int c = 0; c < k; c++)
+				if(c != best && p[c] < second)
+					second = p[c];
+			
+			upper[i] = metric.partialDistanceToDistance(p[best]);
+			lower[i] = metric.partialDistanceToDistance(second);
+			return best;
+		}
+		
+		@Override
+		public void update(final double[][] cents, final double[][] next, 
+				final int[] labels, final GeometricallySeparable metric) {
+			final int k = cents.length;
+			
+			// The largest and second-largest drifts
+			int maxIdx = 0;
+			double max = Double.NEGATIVE_INFINITY, secondMax = 0.0;
+			for(int c = 0; c < k; c++) {
+				drift[c] = metric.getDistance(cents[c], next[c]);
+				if(drift[c] > max) {
+					secondMax = FastMath.max(max, 0.0);
+					max = drift[c];
+					maxIdx = c;
+				} else if(drift[c] > secondMax) {
+					secondMax = drift[c];
+				}
+			}
+			
+			// The lower bound covers every centroid but the record's own
+			for(int i = 0; i < upper.length; i++) {
+				upper[i] += drift[labels[i]];
+				lower[i] -= labels[i] == maxIdx ? secondMax : max;
+			}
+		}
+	}
+	
+	/**
+	 * The bounds of {@link KMeansAlgorithm#YINYANG}: an upper bound on the distance from
+	 * each record to its centroid, and for each group of centroids a lower bound on the
+	 * record's distance to any centroid of that group other than its own. The groups are
+	 * formed from the centroids of the first iteration and kept for the rest of the fit.
+	 * @author Taylor G Smith
+	 */
+	static final class YinyangBounds implements CentroidBounds {
+		final double[] upper;
+		final double[][] lower;
+		final double[] drift;
+		/** The largest drift of any centroid in each group */
+		final double[] groupDrift;
+		/** The group of each centroid, and the centroids of each group */
+		int[] groupOf = null;
+		int[][] members = null;
+		
+		YinyangBounds(final int m, final int k) {
+			final int t = FastMath.max(1, k / yinyang_group_size_);
+			this.upper = VecUtils.rep(Double.POSITIVE_INFINITY, m);
+			this.lower = new double[m][t];
+			this.drift = new double[k];
+			this.groupDrift = new double[t];
+		}
+		
+		@Override
+		public void prepare(final double[][] cents, final GeometricallySeparable metric) {
+			if(null == groupOf)
+				group(cents, metric);
+		}
+		
+		/**
+		 * Group the centroids with a few Lloyd iterations over the centroids themselves,
+		 * seeded with evenly spaced centroids. The groups only govern how much is pruned,
+		 * never which centroid a record is assigned to.
+		 */
+		void group(final double[][] cents, final GeometricallySeparable metric) {
+			final int k = cents.length, n = cents[0].length, t = groupDrift.length;
+			final double[][] seeds = new double[t][];
+			for(int g = 0; g < t; g++)
+				seeds[g] = VecUtils.copy(cents[(int)((long)g * k / t)]);
+			
+			groupOf = new int[k];
+			final int[] sizes = new int[t];
+			for(int iter = 0; iter < yinyang_group_iter_; iter++) {
+				Arrays.fill(sizes, 0);
+				for(int c = 0; c < k; c++) {
+					int best = 0;
+					double min = Double.POSITIVE_INFINITY, d;
+					for(int g = 0; g < t; g++) {
+						d = metric.getPartialDistance(cents[c], seeds[g]);
+						if(d < min) {
+							min = d;
+							best = g;
+						}
+					}
+					
+					groupOf[c] = best;
+					sizes[best]++;
+				}
+				
+				// Move each non-empty group's seed to its mean
+				for(int g = 0; g < t; g++)
+					if(sizes[g] > 0)
+						Arrays.fill(seeds[g], 0.0);
+				for(int c = 0; c < k; c++)
+					for(int j = 0; j < n; j++)
+						seeds[groupOf[c]][j] += cents[c][j] / sizes[groupOf[c]];
+			}
+			
+			members = new int[t][];
+			for(int g = 0; g < t; g++)
+				members[g] = new int[sizes[g]];
+			Arrays.fill(sizes, 0);
+			for(int c = 0; c < k; c++)
+				members[groupOf[c]][sizes[groupOf[c]]++] = c;
+		}
+		
+		@Override
+		public int assign(final int i, final double[] row, final int a, final double[][] cents, 
+				final GeometricallySeparable metric, final LloydAccumulator acc) {
+			final double[] l = lower[i];
+			final int t = l.length;
+			
+			if(Double.POSITIVE_INFINITY == upper[i])
+				return assignAll(i, row, cents, metric, acc);
+			
+			// Global filter: every other centroid is further than the upper bound
+			double globalLower = Double.POSITIVE_INFINITY;
+			for(int g = 0; g < t; g++)
+				if(l[g] < globalLower)
+					globalLower = l[g];
+			if(upper[i] < globalLower)
+				return a;
+			
+			// Tighten the upper bound and re-test
+			final double pa = metric.getPartialDistance(row, cents[a]);
+			final double ua = metric.partialDistanceToDistance(pa);
+			acc.computed++;
+			if(ua < globalLower) {
+				upper[i] = ua;
+				return a;
+			}
+			
+			/*
+			 * Group and local filters. Each examined group's new bound is the smallest
+			 * of its members' distances, or lower bounds for the members the local filter
+			 * skipped; the second smallest is kept in the accumulator's scratch row in 
+			 * case the group holds the record's new centroid. Unexamined groups are NaN.
+			 */
+			final double[] second = acc.centDists;
+			int best = a;
+			double pb = pa, u = ua, prev, bound, pc, d, min, sec;
+			int c;
+			for(int g = 0; g < t; g++) {
+				if(u < l[g]) {
+					second[g] = Double.NaN;
+					continue;
+				}
+				
+				prev = l[g] + groupDrift[g]; // the group's bound before the centroids moved
+				min = sec = Double.POSITIVE_INFINITY;
+				for(int idx = 0; idx < members[g].length; idx++) {
+					c = members[g][idx];
+					if(c == a) {
+						d = ua;
+					} else {
+						bound = prev - drift[c];
+						if(u < bound) {
+							d = bound;
+						} else {
+							pc = metric.getPartialDistance(row, cents[c]);
+							d = metric.partialDistanceToDistance(pc);
+							acc.computed++;
+							
+							if(pc < pb || (pc == pb && c < best)) {
+								best = c;
+								pb = pc;
+								u = d;
+							}
+						}
+					}
+					
+					if(d < min) {
+						sec = min;
+						min = d;
+					} else if(d < sec) {
+						sec = d;
+					}
+				}
+				
+				l[g] = min;
+				second[g] = sec;
+			}
+			
+			// The new centroid's group must exclude it, and the old one's must now cover a
+			final int gb = groupOf[best];
+			if(!Double.isNaN(second[gb]))
+				l[gb] = second[gb];
+			if(best != a && Double.isNaN(second[groupOf[a]]))
+				l[groupOf[a]] = FastMath.min(l[groupOf[a]], ua);
+			
+			upper[i] = u;
+			return best;
+		}
+		
+		/**
+		 * Evaluate every centroid, as in the exhaustive search, and initialize the
+		 * record's bounds from the exact distances
+		 */
+		private int assignAll(final int i, final double[] row, final double[][] cents, 
+				final GeometricallySeparable metric, final LloydAccumulator acc) {
+			final double[] p = acc.centDists;
+			final int k = cents.length;
+			Pairwise.partialDistances(metric, row, cents, 0, k, p);
+			acc.computed += k;
+			
+			int best = 0;
+			for(int c = 1; c < k; c++)
+				if(p[c] < p[best])
+					best = c;
+			
+			final double[] l = lower[i];
+			Arrays.fill(l, Double.POSITIVE_INFINITY);
+			double d;
+			for(int c = 0; c < k; c++) {
+				if(c != best) {
+					d = metric.partialDistanceToDistance(p[c]);
+					if(d < l[groupOf[c]])
+						l[groupOf[c]] = d;
+				}
+			}
+			
+			upper[i] = metric.partialDistanceToDistance(p[best]);
+			return best;
+		}
+		
+		@Override
+		public void update(final double[][] cents, final double[][] next, 
+				final int[] labels, final GeometricallySeparable metric) {
+			final int k = cents.length, t = groupDrift.length;
+			Arrays.fill(groupDrift, 0.0);
+			for(int c = 0; c < k; c++) {
+				drift[c] = metric.getDistance(cents[c], next[c]);
+				if(drift[c] > groupDrift[groupOf[c]])
+					groupDrift[groupOf[c]] = drift[c];
+			}
+			
+			// Not clamped at zero: the local filter adds the group drift back
+			double[] l;
+			for(int i = 0; i < upper.length; i++) {
+				upper[i] += drift[labels[i]];
+				
+				l = lower[i];
+				for(int g = 0; g < t; g++)
+					l[g] -= groupDrift[g];
+			}
+		}
+	}
+	
+	/**
+	 * The centroid index of {@link KMeansAlgorithm#TREE}, rebuilt from the centroids at
+	 * the start of each iteration. The tree itself is only read during the assignments, 
+	 * so records of disjoint ranges may be assigned concurrently.
+	 * @author Taylor G Smith
+	 */
+	static final class CentroidTree implements CentroidBounds {
+		NearestNeighborHeapSearch tree = null;
+		
+		@Override
+		public void prepare(final double[][] cents, final GeometricallySeparable metric) {
+			final DistanceMetric dist = (DistanceMetric)metric;
+			tree = KDTree.VALID_METRICS.contains(metric.getClass()) ?
+				new KDTree(cents, tree_leaf_size_, dist, null) :
+				new BallTree(cents, tree_leaf_size_, dist, null);
+		}
+		
+		@Override
+		public int assign(final int i, final double[] row, final int a, final double[][] cents, 
+				final GeometricallySeparable metric, final LloydAccumulator acc) {
+			acc.nearestDist = Double.POSITIVE_INFINITY;
+			acc.nearestLabel = Integer.MAX_VALUE; // any infinite distance wins, as in the exhaustive search
+			search(0, row, tree.minRDist(tree, 0, row), metric, acc);
+			return Integer.MAX_VALUE == acc.nearestLabel ? 0 : acc.nearestLabel; // all NaN
+		}
+		
+		/**
+		 * Search a node for a centroid nearer than the accumulator's nearest so far,
+		 * visiting the nearer child first. Nodes are only pruned if their lower bound 
+		 * strictly exceeds the nearest distance, so that every centroid which ties it
+		 * is still evaluated, and ties go to the lowest index as in the exhaustive search.
+		 */
+		private void search(final int i_node, final double[] pt, final double reduced_dist_LB,
+				final GeometricallySeparable metric, final LloydAccumulator acc) {
+			if(reduced_dist_LB > acc.nearestDist)
+				return;
+			
+			final NearestNeighborHeapSearch.NodeData node = tree.node_data[i_node];
+			if(node.is_leaf) {
+				final double[] leafDists = acc.centDists; // no leaf holds more than k centroids
+				Pairwise.partialDistances(metric, pt, tree.data_arr, tree.idx_array, 
+					node.idx_start, node.idx_end, leafDists);
+				acc.computed += node.idx_end - node.idx_start;
+				
+				int c;
+				double d;
+				for(int j = node.idx_start; j < node.idx_end; j++) {
+					c = tree.idx_array[j];
+					d = leafDists[j - node.idx_start];
+					if(d < acc.nearestDist || (d == acc.nearestDist && c < acc.nearestLabel)) {
+						acc.nearestDist = d;
+						acc.nearestLabel = c;
+					}
+				}
+				
+				return;
+			}
+			
+			final int i1 = 2 * i_node + 1, i2 = i1 + 1;
+			final double lb1 = tree.minRDist(tree, i1, pt), lb2 = tree.minRDist(tree, i2, pt);
+			if(lb1 <= lb2) {
+				search(i1, pt, lb1, metric, acc);
+				search(i2, pt, lb2, metric, acc);
+			} else {
+				search(i2, pt, lb2, metric, acc);
+				search(i1, pt, lb1, metric, acc);
+			}
+		}
+		
+		@Override
+		public void update(final double[][] cents, final double[][] next, 
+				final int[] labels, final GeometricallySeparable metric) {
+			// the tree is rebuilt from the new centroids in the next prepare
+		}
+	}
+	
+	/**
+	 * The {@link SparseCapable} analog of the Lloyd iterations in {@link #fit()}.
+	 * Rather than fitting a {@link NearestCentroid} each iteration, the norm of each
+	 * centroid required by the metric is computed once, and each record's distance to
+	 * it is evaluated over the record's non-zeros only.
+	 */
+	private void fitSparse(final LogTimer timer, final int n) {
+		final CSRMatrix X = sparse_data;
+		final GeometricallySeparable metric = getSeparabilityMetric();
+		final double nan = Double.NaN;
+		
+		double last_wss_sum = Double.POSITIVE_INFINITY, wss_sum = 0;
+		ArrayList<double[]> new_centroids;
+		labels = new int[m];
+		
+		final double[] norms = new double[k];
+		final double[] euc_norms = new double[k];
+		
+		for(iter = 0; iter < maxIter; iter++) {
+			
+			// See the NaNException note in the dense fit
+			for(double[] c: centroids) {
+				if(VecUtils.containsNaN(c)) {
+					this.k = 1;
+					warn("(dis)similarity metric ("+dist_metric+") cannot partition space without propagating Infs. Returning one cluster");
+					
+					labelFromSingularK(null);
+					fitSummary.add(new Object[]{ iter, converged, tss, tss, nan, 0, timer.wallTime() });
+					sayBye(timer);
+					return;
+				}
+			}
+			
+			for(int c = 0; c < k; c++) {
+				norms[c] = Pairwise.sparseNorm(metric, centroids.get(c));
+				euc_norms[c] = Distance.EUCLIDEAN.sparseNorm(centroids.get(c));
+			}
+			
+			
+			int label;
+			double dist, minDist, w;
+			wss = new double[k];
+			double[] centroid_counts = new double[k];
+			double[][] new_centroid_arrays = new double[k][n];
+			for(int i = 0; i < m; i++) {
+				
+				// Get the label of the nearest centroid
+				label = 0;
+				minDist = Double.POSITIVE_INFINITY;
+				for(int c = 0; c < k; c++) {
+					dist = Pairwise.sparsePartialDistance(metric, X, i, centroids.get(c), norms[c]);
+					if(dist < minDist) {
+						minDist = dist;
+						label = c;
+					}
+				}
+				
+				labels[i] = label;
+				w = null == weights ? 1.0 : weights[i];
+				centroid_counts[label] += w;
+				
+				// add this cost to the WSS, and the record to the centroid sums
+				wss[label] += w * Distance.EUCLIDEAN.getPartialDistance(X, i, centroids.get(label), euc_norms[label]);
+				X.addRowTo(i, w, new_centroid_arrays[label]);
+			}
+			
+			// one pass of K for some consolidation
+			wss_sum = 0;
+			new_centroids = new ArrayList<>(k);
+			for(int i = 0; i < k; i++) {
+				wss_sum += wss[i];
+				
+				for(int j = 0; j < n; j++) // meanify
+					new_centroid_arrays[i][j] /= centroid_counts[i];
+				
+				new_centroids.add(new_centroid_arrays[i]);
+			}
+			
+			// update the BSS
+			bss = tss - wss_sum;
+			
+			double diff = last_wss_sum - wss_sum;
+			last_wss_sum = wss_sum;
+			
+			converged = FastMath.abs(diff) < tolerance; // first iter will be inf
+			fitSummary.add(new Object[]{ 
+				converged ? iter++ : iter, 
+				converged, 
+				tss, wss_sum, bss, 0,
+				timer.wallTime() });
+			
+			if(converged) {
+				break;
+			} else {
+				centroids = new_centroids;
+			}
+		}
+		
+		
+		reorderLabelsAndCentroids();
+		
+		if(!converged)
+			warn("algorithm did not converge");
+		
+		sayBye(timer);
+	}
+	
+
 	@Override
 	public Algo getLoggerTag() {
 		return com.clust4j.log.Log.Tag.Algo.KMEANS;
@@ -227,7 +1498,7 @@ final public class KMeans extends AbstractCentroidClusterer {
 	@Override
 	protected Object[] getModelFitSummaryHeaders() {
 		return new Object[]{
-			"Iter. #","Converged","TSS","WSS","BSS","Wall"
+			"Iter. #","Converged","TSS","WSS","BSS","Dists. Skipped","Wall"
 		};
 	}
 	
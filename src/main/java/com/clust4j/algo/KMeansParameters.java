@@ -21,6 +21,7 @@ import java.util.Random;
 import org.apache.commons.math3.linear.RealMatrix;
 
 import com.clust4j.algo.AbstractCentroidClusterer.InitializationStrategy;
+import com.clust4j.algo.KMeans.KMeansAlgorithm;
 import com.clust4j.metrics.pairwise.GeometricallySeparable;
 
 final public class KMeansParameters extends CentroidClustererParameters<KMeans> {
@@ -28,6 +29,8 @@ final public class KMeansParameters extends CentroidClustererParameters<KMeans>
 	
 	private InitializationStrategy strat = KMeans.DEF_INIT;
 	private int maxIter = KMeans.DEF_MAX_ITER;
+	private KMeansAlgorithm algo = KMeans.DEF_ALGO;
+	private int nInit = KMeans.DEF_N_INIT;
 	
 	public KMeansParameters() { }
 	public KMeansParameters(int k) {
@@ -36,7 +39,7 @@ final public class KMeansParameters extends CentroidClustererParameters<KMeans>
 	
 	@Override
 	public KMeans fitNewModel(final RealMatrix data) {
-		return new KMeans(data, this.copy()).fit();
+		return KMeans.fitRestarts(data, this.copy());
 	}
 	
 	@Override
@@ -48,6 +51,10 @@ final public class KMeansParameters extends CentroidClustererParameters<KMeans>
 			.setVerbose(verbose)
 			.setSeed(seed)
 			.setInitializationStrategy(strat)
+			.setWarmStart(warmStart)
+			.setSampleWeights(sampleWeights)
+			.setAlgorithm(algo)
+			.setNInit(nInit)
 			.setForceParallel(parallel);
 	}
 	
@@ -61,6 +68,31 @@ final public class KMeansParameters extends CentroidClustererParameters<KMeans>
 		return maxIter;
 	}
 	
+	public KMeansAlgorithm getAlgorithm() {
+		return algo;
+	}
+	
+	public KMeansParameters setAlgorithm(final KMeansAlgorithm algo) {
+		this.algo = algo;
+		return this;
+	}
+	
+	public int getNInit() {
+		return nInit;
+	}
+	
+	/**
+	 * The number of independently seeded fits to run, of which
+	 * {@link #fitNewModel(RealMatrix)} returns the one with the lowest WSS.
+	 * Ignored when warm starting, as every restart would be identical.
+	 * @param nInit
+	 * @return this planner
+	 */
+	public KMeansParameters setNInit(final int nInit) {
+		this.nInit = nInit;
+		return this;
+	}
+	
 	@Override
 	public KMeansParameters setForceParallel(boolean b) {
 		this.parallel = b;
@@ -90,6 +122,31 @@ final public class KMeansParameters extends CentroidClustererParameters<KMeans>
 		return this;
 	}
 	
+	/**
+	 * Warm start from the given centroids, e.g., those of a model fit to an
+	 * earlier version of the data, rather than the {@link InitializationStrategy}.
+	 * Also sets <tt>k</tt> to the number of centroids.
+	 * @param centroids - the centroids, or null to clear the warm start
+	 * @return this planner
+	 */
+	@Override
+	public KMeansParameters setWarmStart(final double[][] centroids) {
+		warmStartFrom(centroids);
+		return this;
+	}
+	
+	/**
+	 * Weigh each record of the data to be fit, so that it counts as <tt>weights[i]</tt>
+	 * records in the centroids, costs and seeding. This is how a weighted sample such as
+	 * a {@link com.clust4j.sample.Coreset} stands in for the data it summarizes.
+	 * @param weights - one non-negative weight per record, or null to count each once
+	 * @return this planner
+	 */
+	public KMeansParameters setSampleWeights(final double[] weights) {
+		sampleWeightsFrom(weights);
+		return this;
+	}
+	
 	@Override
 	public KMeansParameters setSeed(final Random seed) {
 		this.seed = seed;
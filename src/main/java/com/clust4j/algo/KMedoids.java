@@ -16,18 +16,27 @@
 package com.clust4j.algo;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.util.FastMath;
 
+import com.clust4j.GlobalState;
 import com.clust4j.except.IllegalClusterStateException;
 import com.clust4j.log.Log.Tag.Algo;
 import com.clust4j.log.LogTimer;
+import com.clust4j.metrics.pairwise.CondensedDistanceMatrix;
+import com.clust4j.metrics.pairwise.CondensedDistanceMatrix.Storage;
 import com.clust4j.metrics.pairwise.Distance;
 import com.clust4j.metrics.pairwise.GeometricallySeparable;
 import com.clust4j.metrics.pairwise.Pairwise;
+import com.clust4j.metrics.pairwise.NumericPrecision;
 import com.clust4j.utils.VecUtils;
 
 /**
@@ -49,6 +58,11 @@ import com.clust4j.utils.VecUtils;
  * solution. For this reason, clust4j's implementation of KMedoids almost always surpasses
  * the performance of {@link KMeans}, however it can typically take longer  as well.
  * 
+ * <p>
+ * Alternatively, {@link KMedoidsAlgorithm#FASTPAM} runs PAM's greedy BUILD and SWAP phases,
+ * evaluating the SWAP phase as in FastPAM, which typically finds lower cost medoids
+ * than the Voronoi iteration in comparable time.
+ * 
  * @see {@link AbstractPartitionalClusterer}
  * @author Taylor G Smith &lt;tgsmith61591@gmail.com&gt;
  */
@@ -60,6 +74,64 @@ final public class KMedoids extends AbstractCentroidClusterer {
 	private static final long serialVersionUID = -4468316488158880820L;
 	final public static GeometricallySeparable DEF_DIST = Distance.MANHATTAN;
 	final public static int DEF_MAX_ITER = 10;
+	final public static Storage DEF_STORAGE = Storage.HEAP;
+	final public static NumericPrecision DEF_PRECISION = NumericPrecision.DOUBLE;
+	final public static KMedoidsAlgorithm DEF_ALGO = KMedoidsAlgorithm.VORONOI;
+	/** The default number of CLARA samples or CLARANS local searches */
+	final public static int DEF_NUM_SAMPLES = 5;
+	/** The default CLARA sample size, which is resolved to <tt>40 + 2k</tt> */
+	final public static int DEF_SAMPLE_SIZE = -1;
+	/** The default number of consecutive failed CLARANS swaps ending a local search */
+	final public static int DEF_MAX_NEIGHBOR = 250;
+	/** By default, the full distance matrix is computed up front */
+	final public static boolean DEF_MATRIX_FREE = false;
+	/** The default number of cached medoid distance columns, which is resolved to <tt>2k</tt> */
+	final public static int DEF_CACHE_SIZE = -1;
+	
+	/**
+	 * The search by which the medoids are refined
+	 * @author Taylor G Smith
+	 */
+	public static enum KMedoidsAlgorithm implements java.io.Serializable {
+		/**
+		 * Alternates assigning each record to its nearest medoid with making the record
+		 * of least total distance to the rest of its cluster the cluster's medoid. Each
+		 * iteration is cheap, but medoids only move within their own clusters, so the
+		 * search often stops in a poor local optimum.
+		 */
+		VORONOI,
+		
+		/**
+		 * PAM's greedy BUILD initialization (or the warm start, if any, in place of
+		 * the {@link InitializationStrategy}), followed by SWAP iterations which may
+		 * exchange any medoid for any other record. Each SWAP iteration evaluates 
+		 * all <tt>k&middot;(m-k)</tt> swaps in O(m<sup>2</sup>) time, as FastPAM,
+		 * rather than classic PAM's O(k&middot;m<sup>2</sup>), and applies up to
+		 * <tt>k</tt> of them. The candidates are scanned in parallel if the model permits.
+		 */
+		FASTPAM,
+		
+		/**
+		 * CLARA (Kaufman and Rousseeuw, 1990) fits {@link #FASTPAM} to each of several
+		 * uniformly random subsamples of the records (see {@link KMedoidsParameters#setNumSamples(int)}
+		 * and {@link KMedoidsParameters#setSampleSize(int)}), and keeps the medoids of least
+		 * total deviation over all of the records. Only the subsamples' distance matrices are
+		 * held, and each set of medoids is scored in O(m&middot;k), so CLARA scales to far more
+		 * records than the methods requiring the full O(m<sup>2</sup>) matrix. The subsamples
+		 * are fit in parallel if the model permits.
+		 */
+		CLARA,
+		
+		/**
+		 * CLARANS (Ng and Han, 2002) runs several randomized local searches from random medoids
+		 * (see {@link KMedoidsParameters#setNumSamples(int)}). Each repeatedly evaluates the swap
+		 * of a random medoid for a random record in O(m), applying it if it lowers the total
+		 * deviation, until {@link KMedoidsParameters#setMaxNeighbor(int)} consecutive swaps fail
+		 * to. Distances are computed as needed rather than held. The local searches are run in
+		 * parallel if the model permits.
+		 */
+		CLARANS,
+	}
 	
 	/**
 	 * Stores the indices of the current medoids. Each index,
@@ -68,13 +140,52 @@ final public class KMedoids extends AbstractCentroidClusterer {
 	volatile private int[] medoid_indices = new int[k];
 	
 	/**
-	 * Upper triangular, M x M matrix denoting distances between records.
+	 * Condensed upper triangular matrix denoting distances between records.
 	 * Is only populated during training phase and then set to null for 
 	 * garbage collection, as a large-M matrix has a high space footprint: O(N^2).
 	 * This is only needed during training and then can safely be collected
 	 * to free up heap space.
 	 */
-	volatile private double[][] dist_mat = null;
+	volatile private CondensedDistanceMatrix dist_mat = null;
+	
+	/**
+	 * In matrix-free mode, the distances from each record to the most recently
+	 * used medoids. Like the distance matrix, it is only held during training.
+	 */
+	volatile private MedoidDistanceCache dist_cache = null;
+	
+	/**
+	 * The distances during training, from either the matrix or the cache
+	 */
+	volatile private Dissimilarities dists = null;
+	
+	/**
+	 * Where the distance matrix is stored
+	 */
+	final private Storage storage;
+	
+	/**
+	 * The precision in which the distance matrix is held
+	 */
+	final private NumericPrecision precision;
+	
+	/**
+	 * The search by which the medoids are refined
+	 */
+	final private KMedoidsAlgorithm algo;
+	
+	/**
+	 * The number of CLARA samples or CLARANS local searches, the (resolved) size of 
+	 * each CLARA sample, and the number of failed CLARANS swaps ending a local search
+	 */
+	final private int numSamples, sampleSize, maxNeighbor;
+	
+	/**
+	 * Whether distances are computed as needed rather than held in a matrix, 
+	 * and the number of medoids whose distances to every record are cached if so
+	 */
+	final private boolean matrixFree;
+	final private int cacheSize;
 	
 	/**
 	 * Map the index to the WSS
@@ -93,6 +204,23 @@ final public class KMedoids extends AbstractCentroidClusterer {
 	
 	protected KMedoids(final RealMatrix data, final KMedoidsParameters planner) {
 		super(data, planner);
+		this.storage = planner.getDistanceStorage();
+		this.precision = planner.getDistancePrecision();
+		this.algo = planner.getAlgorithm();
+		this.numSamples = planner.getNumSamples();
+		this.sampleSize = FastMath.min(m, planner.getSampleSize() < 1 ? 40 + 2 * k : planner.getSampleSize());
+		this.maxNeighbor = planner.getMaxNeighbor();
+		this.matrixFree = planner.getMatrixFree();
+		this.cacheSize = FastMath.min(m, planner.getCacheSize() < 1 ? 2 * k : planner.getCacheSize());
+		
+		if(numSamples < 1)
+			throw new IllegalArgumentException("numSamples must be at least one");
+		if(sampleSize < k)
+			throw new IllegalArgumentException("sampleSize (" + sampleSize + ") must be at least k (" + k + ")");
+		if(maxNeighbor < 1)
+			throw new IllegalArgumentException("maxNeighbor must be at least one");
+		if(cacheSize < k)
+			throw new IllegalArgumentException("cacheSize (" + cacheSize + ") must be at least k (" + k + ")");
 		
 		// Check if is Manhattan
 		if(!this.dist_metric.equals(Distance.MANHATTAN)) {
@@ -109,6 +237,10 @@ final public class KMedoids extends AbstractCentroidClusterer {
 		return "KMedoids";
 	}
 	
+	public KMedoidsAlgorithm getAlgorithm() {
+		return algo;
+	}
+	
 	@Override
 	protected KMedoids fit() {
 		synchronized(fitLock) {	
@@ -135,14 +267,33 @@ final public class KMedoids extends AbstractCentroidClusterer {
 			}
 			
 			
+			// The sampling searches never hold the full distance matrix
+			if(KMedoidsAlgorithm.CLARA == algo || KMedoidsAlgorithm.CLARANS == algo) {
+				fitSampled(X, timer);
+				return this;
+			}
+			
+			
 			// We do this in KMedoids and not KMeans, because KMedoids uses
 			// real points as medoids and not means for centroids, thus
 			// the recomputation of distances is unnecessary with the dist mat
-			dist_mat = Pairwise.getDistance(X, getSeparabilityMetric(), true, false);
-			info("distance matrix computed in " + timer.toString());
+			if(matrixFree) {
+				dists = dist_cache = new MedoidDistanceCache(X, getSeparabilityMetric(), cacheSize);
+				info("computing distances as needed, caching those of up to " + cacheSize + " medoids");
+			} else {
+				dist_mat = Pairwise.getCondensedDistance(X, getSeparabilityMetric(), false, storage, precision);
+				dists = dissimilarities(dist_mat);
+				info("distance matrix computed in " + timer.toString());
+			}
 			
-			// Initialize labels
-			medoid_indices = init_centroid_indices;
+			if(KMedoidsAlgorithm.FASTPAM == algo) {
+				fitFastPAM(X, timer);
+				freeDistances();
+				return this;
+			}
+			
+			// Initialize labels. Medoids must be records, so warm started centroids are snapped to records
+			medoid_indices = isWarmStarted() ? nearestRecords(X, centroids) : init_centroid_indices;
 			
 			
 			ClusterAssignments clusterAssignments;
@@ -271,12 +422,217 @@ final public class KMedoids extends AbstractCentroidClusterer {
 			// wrap things up, create summary..
 			sayBye(timer);
 			
+			// Free up the O(M choose 2) footprint
+			freeDistances();
 			return this;
 		}
 		
 	} // End train
 	
 	
+	private void freeDistances() {
+		if(null != dist_cache)
+			info("computed the distances of " + dist_cache.computed + " medoid(s) to every record");
+		
+		dist_mat = null;
+		dist_cache = null;
+		dists = null;
+	}
+	
+	
+	/**
+	 * Fit by BUILD and SWAP, as {@link KMedoidsAlgorithm#FASTPAM}
+	 */
+	private void fitFastPAM(final double[][] X, final LogTimer timer) {
+		final FastPAM pam = new FastPAM(m, k, dists, weights, parallel);
+		
+		// Medoids must be records, so warm started centroids are snapped to records
+		if(isWarmStarted()) {
+			pam.setMedoids(nearestRecords(X, centroids));
+		} else {
+			final LogTimer buildTimer = new LogTimer();
+			pam.build();
+			info("BUILD selected initial medoids in " + buildTimer.toString());
+		}
+		
+		if(!pam.assign()) {
+			exitOnBadDistanceMetric(X, timer);
+			return;
+		}
+		
+		
+		// Swap until no swap lowers the total deviation by more than the tolerance
+		int swaps;
+		while(iter < maxIter) {
+			swaps = pam.swap(tolerance);
+			converged = 0 == swaps;
+			
+			fitSummary.add(new Object[]{ iter, 
+				converged,
+				tss, 
+				pam.cost / (double)k, 
+				pam.cost, 
+				tss - pam.cost, 
+				timer.wallTime()
+			});
+			
+			iter++;
+			if(converged)
+				break;
+		}
+		
+		
+		labelFromPAM(pam);
+		
+		if(!converged)
+			warn("algorithm did not converge");
+		else
+			info("algorithm converged after " + iter + " SWAP iteration(s)");
+		
+		sayBye(timer);
+	}
+	
+	/**
+	 * Fit by {@link KMedoidsAlgorithm#CLARA} or {@link KMedoidsAlgorithm#CLARANS}. Each
+	 * sample or local search is seeded serially, so the medoids are the same whether
+	 * or not they are run in parallel.
+	 */
+	private void fitSampled(final double[][] X, final LogTimer timer) {
+		final GeometricallySeparable metric = getSeparabilityMetric();
+		final Random rand = getSeed();
+		final boolean clara = KMedoidsAlgorithm.CLARA == algo;
+		
+		// Medoids must be records, so warm started centroids are snapped to records
+		final int[] warm = isWarmStarted() ? nearestRecords(X, centroids) : null;
+		
+		// if a sample holds every record, every sample would be the same
+		final int searches = clara && sampleSize == m ? 1 : numSamples;
+		final SampleSearch[] search = new SampleSearch[searches];
+		for(int s = 0; s < searches; s++) {
+			search[s] = clara ?
+				new ClaraSearch(this, X, metric, randomSeeds(m, sampleSize, rand)) :
+				new ClaransSearch(this, X, metric, 0 == s ? warm : null, rand.nextLong());
+		}
+		
+		if(parallel && searches > 1)
+			GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(new SearchTask(search, 0, searches));
+		else
+			for(SampleSearch ss: search)
+				ss.search();
+		
+		
+		// Keep the medoids of least total deviation, of which the warm start is a candidate for CLARA
+		int[] best = null;
+		double bestCost = Double.POSITIVE_INFINITY;
+		if(clara && null != warm) {
+			best = warm;
+			bestCost = deviation(X, metric, weights, warm);
+		}
+		
+		for(SampleSearch ss: search) {
+			if(null == ss.medoids) {
+				exitOnBadDistanceMetric(X, timer);
+				return;
+			}
+			
+			fitSummary.add(new Object[]{ iter++,
+				ss.converged,
+				tss,
+				ss.cost / (double)k,
+				ss.cost,
+				tss - ss.cost,
+				timer.wallTime()
+			});
+			
+			if(ss.cost < bestCost) {
+				best = ss.medoids;
+				bestCost = ss.cost;
+				converged = ss.converged;
+			}
+		}
+		
+		
+		// Assign every record to the best medoids
+		final FastPAM pam = new FastPAM(m, k, dissimilarities(X, metric), weights, false);
+		pam.setMedoids(best);
+		pam.assign();
+		labelFromPAM(pam);
+		
+		info("kept the medoids of least deviation (" + bestCost + ") of " + searches + " " + 
+			(clara ? "sample(s)" : "local search(es)"));
+		sayBye(timer);
+	}
+	
+	/**
+	 * The total (weighted) deviation of the records from their nearest medoids, in O(m&middot;k)
+	 */
+	static double deviation(final double[][] X, final GeometricallySeparable metric, 
+			final double[] weights, final int[] medoids) {
+		double cost = 0, min;
+		for(int o = 0; o < X.length; o++) {
+			min = Double.POSITIVE_INFINITY;
+			for(int medoid: medoids)
+				min = FastMath.min(min, o == medoid ? 0.0 : metric.getDistance(X[o], X[medoid]));
+			cost += null == weights ? min : weights[o] * min;
+		}
+		
+		return cost;
+	}
+	
+	/**
+	 * Set the labels, medoids and costs from those of a PAM fit
+	 */
+	private void labelFromPAM(final FastPAM pam) {
+		// Labels are medoid indices until encoded
+		labels = new int[m];
+		med_to_wss = new TreeMap<>();
+		for(int o = 0; o < m; o++) {
+			final int medoid = pam.medoids[pam.nearest[o]];
+			final Double prior = med_to_wss.get(medoid);
+			labels[o] = medoid;
+			med_to_wss.put(medoid, (null == prior ? 0.0 : prior) + pam.weight(o) * pam.dn[o]);
+		}
+		
+		medoid_indices = VecUtils.copy(pam.medoids);
+		bss = tss - pam.cost;
+		reorderLabelsAndCentroids();
+	}
+	
+	/**
+	 * The distinct record nearest to each centroid under the model's metric. If an
+	 * earlier centroid already claimed a record, the next nearest is used instead. When 
+	 * warm starting from the medoids of a model fit to the leading rows of <tt>X</tt>,
+	 * this recovers the prior medoids exactly.
+	 */
+	private int[] nearestRecords(final double[][] X, final ArrayList<double[]> cents) {
+		final GeometricallySeparable metric = getSeparabilityMetric();
+		final boolean[] taken = new boolean[m];
+		final int[] idcs = new int[cents.size()];
+		
+		double d, min;
+		for(int c = 0; c < idcs.length; c++) {
+			final double[] centroid = cents.get(c);
+			
+			int nearest = -1;
+			min = Double.POSITIVE_INFINITY;
+			for(int i = 0; i < m; i++) {
+				if(taken[i])
+					continue;
+				
+				d = metric.getPartialDistance(centroid, X[i]);
+				if(-1 == nearest || d < min) {
+					min = d;
+					nearest = i;
+				}
+			}
+			
+			taken[nearest] = true;
+			idcs[c] = nearest;
+		}
+		
+		return idcs;
+	}
+	
 	/**
 	 * Some metrics produce entirely equal dist matrices...
 	 */
@@ -291,9 +647,12 @@ final public class KMedoids extends AbstractCentroidClusterer {
 	private ClusterAssignments assignClosestMedoid(int[] medoidIdcs) {
 		double minDist;
 		boolean all_tied = true;
-		int nearest, rowIdx, colIdx;
+		int nearest;
 		final int[] assn = new int[m];
 		final double[] costs = new double[m];
+		if(null != dist_cache)
+			dist_cache.hold(medoidIdcs);
+		
 		for(int i = 0; i < m; i++) {
 			boolean is_a_medoid = false;
 			minDist = Double.POSITIVE_INFINITY;
@@ -309,16 +668,14 @@ final public class KMedoids extends AbstractCentroidClusterer {
 				// Corner case: i is a medoid
 				if(i == medoid) {
 					nearest = medoid;
-					minDist = dist_mat[i][i];
+					minDist = 0.0; // the diagonal
 					is_a_medoid = true;
 					break;
 				}
 				
-				rowIdx = FastMath.min(i, medoid);
-				colIdx = FastMath.max(i, medoid);
-				
-				if(dist_mat[rowIdx][colIdx] < minDist) {
-					minDist = dist_mat[rowIdx][colIdx];
+				final double d = dists.get(i, medoid);
+				if(d < minDist) {
+					minDist = d;
 					nearest = medoid;
 				}
 			}
@@ -333,7 +690,7 @@ final public class KMedoids extends AbstractCentroidClusterer {
 			
 			
 			assn[i]	 = nearest;
-			costs[i] = minDist; 
+			costs[i] = null == weights ? minDist : weights[i] * minDist; 
 		}
 		
 		
@@ -387,7 +744,7 @@ final public class KMedoids extends AbstractCentroidClusterer {
 				members = pair.getValue();
 				
 				double medoidCost, minCost = Double.POSITIVE_INFINITY;
-				int rowIdx, colIdx, bestMedoid = 0; // start at 0, not -1 in case of all ties...
+				int bestMedoid = 0; // start at 0, not -1 in case of all ties...
 				for(int a: members) { // check cost if A is the medoid...
 					
 					medoidCost = 0.0;
@@ -395,10 +752,7 @@ final public class KMedoids extends AbstractCentroidClusterer {
 						if(a == b)
 							continue;
 						
-						rowIdx = FastMath.min(a, b);
-						colIdx = FastMath.max(a, b);
-						
-						medoidCost += dist_mat[rowIdx][colIdx];
+						medoidCost += null == weights ? dists.get(a, b) : weights[b] * dists.get(a, b);
 					}
 
 					if(medoidCost < minCost) {
@@ -459,6 +813,627 @@ final public class KMedoids extends AbstractCentroidClusterer {
 	}
 
 	
+	/**
+	 * The dissimilarities between the records of a {@link FastPAM} fit
+	 * @author Taylor G Smith
+	 */
+	static interface Dissimilarities {
+		double get(int i, int j);
+	}
+	
+	static Dissimilarities dissimilarities(final CondensedDistanceMatrix dists) {
+		return new Dissimilarities() {
+			@Override public double get(int i, int j) {
+				return dists.get(i, j);
+			}
+		};
+	}
+	
+	/** Dissimilarities computed as needed, rather than held */
+	static Dissimilarities dissimilarities(final double[][] X, final GeometricallySeparable metric) {
+		return new Dissimilarities() {
+			@Override public double get(int i, int j) {
+				return i == j ? 0.0 : metric.getDistance(X[i], X[j]);
+			}
+		};
+	}
+	
+	/**
+	 * The BUILD and SWAP phases of PAM, with the swap evaluation of FastPAM (Schubert and
+	 * Rousseeuw, 2019). For each record, the distances to its nearest and second nearest
+	 * medoid are cached, from which the change in total deviation of swapping a candidate
+	 * for <i>every</i> medoid is found in a single pass over the records, rather than one
+	 * pass per medoid as in classic PAM. Like FastPAM2, each SWAP iteration then applies the
+	 * best swap found for each medoid in order of gain, re-evaluating each against the
+	 * swaps already made. Candidates are independent, so both phases may scan them in
+	 * contiguous blocks on the global ForkJoin pool; ties go to the lowest index either way.
+	 * @see <a href="https://arxiv.org/abs/1810.05691">Faster k-Medoids Clustering</a>
+	 * @author Taylor G Smith
+	 */
+	static final class FastPAM {
+		final int m, k;
+		final Dissimilarities dist;
+		/** The weight of each record, or null if each counts once */
+		final double[] weights;
+		final boolean parallel;
+		
+		final int[] medoids;
+		/** The position among the medoids of each record's nearest medoid */
+		final int[] nearest;
+		/** The distance from each record to its nearest and second nearest medoid */
+		final double[] dn, ds;
+		final boolean[] isMedoid;
+		double cost;
+		
+		FastPAM(final int m, final int k, final Dissimilarities dist, 
+				final double[] weights, final boolean parallel) {
+			this.m = m;
+			this.k = k;
+			this.dist = dist;
+			this.weights = weights;
+			this.parallel = parallel;
+			this.medoids = new int[k];
+			this.nearest = new int[m];
+			this.dn = new double[m];
+			this.ds = new double[m];
+			this.isMedoid = new boolean[m];
+		}
+		
+		double weight(final int i) {
+			return null == weights ? 1.0 : weights[i];
+		}
+		
+		/**
+		 * Start from the given medoids rather than BUILD
+		 */
+		void setMedoids(final int[] idcs) {
+			for(int i = 0; i < k; i++) {
+				medoids[i] = idcs[i];
+				isMedoid[idcs[i]] = true;
+			}
+		}
+		
+		/**
+		 * The greedy BUILD phase: the first medoid minimizes the total deviation, and
+		 * each next one maximizes its decrease. <tt>dn</tt> holds the distances to
+		 * the nearest medoid so far.
+		 */
+		void build() {
+			Arrays.fill(dn, Double.POSITIVE_INFINITY);
+			for(int i = 0; i < k; i++) {
+				final int medoid = scanBuild(0 == i).best;
+				medoids[i] = medoid;
+				isMedoid[medoid] = true;
+				
+				double d;
+				for(int o = 0; o < m; o++)
+					if((d = dist.get(o, medoid)) < dn[o])
+						dn[o] = d;
+			}
+		}
+		
+		/**
+		 * Assign each record to its nearest medoid, caching the distances to
+		 * it and the second nearest, and recompute the total deviation.
+		 * @return false if some record has no nearest medoid, as if the distances are NaN
+		 */
+		boolean assign() {
+			// hold the medoids' distances if they are computed as needed
+			if(dist instanceof MedoidDistanceCache)
+				((MedoidDistanceCache)dist).hold(medoids);
+			
+			cost = 0;
+			double d, near, second;
+			int best;
+			for(int o = 0; o < m; o++) {
+				best = -1;
+				near = second = Double.POSITIVE_INFINITY;
+				for(int i = 0; i < k; i++) {
+					d = dist.get(o, medoids[i]);
+					
+					// a medoid is always nearest to itself, even if tied with another
+					if(d < near || (d == near && medoids[i] == o)) {
+						second = near;
+						near = d;
+						best = i;
+					} else if(d < second) {
+						second = d;
+					}
+				}
+				
+				if(-1 == best)
+					return false;
+				
+				nearest[o] = best;
+				dn[o] = near;
+				ds[o] = second;
+				cost += weight(o) * near;
+			}
+			
+			return true;
+		}
+		
+		/**
+		 * One SWAP iteration: find the best candidate for each medoid, then apply those which
+		 * decrease the total deviation by more than <tt>tolerance</tt>, best first.
+		 * @return the number of swaps applied
+		 */
+		int swap(final double tolerance) {
+			// the increase in deviation from removing each medoid, reassigning its records to their second nearest
+			final double[] loss = new double[k];
+			for(int o = 0; o < m; o++)
+				loss[nearest[o]] += weight(o) * (ds[o] - dn[o]);
+			
+			final SwapChunk best = scanSwap(loss);
+			final int[] order = VecUtils.argSort(best.delta);
+			
+			int swaps = 0;
+			for(int i: order) {
+				final int c = best.cand[i];
+				if(-1 == c || isMedoid[c])
+					continue;
+				
+				// the first is exact; later ones must be re-evaluated after the earlier swaps
+				final double delta = 0 == swaps ? best.delta[i] : swapDelta(i, c);
+				if(!(delta < -tolerance))
+					continue;
+				
+				applySwap(i, c);
+				swaps++;
+			}
+			
+			return swaps;
+		}
+		
+		/**
+		 * Replace the medoid at position <tt>i</tt> with the candidate, and reassign the records
+		 */
+		void applySwap(final int i, final int c) {
+			isMedoid[medoids[i]] = false;
+			isMedoid[c] = true;
+			medoids[i] = c;
+			assign();
+		}
+		
+		/**
+		 * SWAP until converged or <tt>maxIter</tt> iterations have elapsed
+		 * @return whether converged
+		 */
+		boolean swapUntilConverged(final int maxIter, final double tolerance) {
+			for(int iter = 0; iter < maxIter; iter++)
+				if(0 == swap(tolerance))
+					return true;
+			return false;
+		}
+		
+		/**
+		 * The change in total deviation of swapping the candidate for the medoid at position <tt>i</tt>
+		 */
+		double swapDelta(final int i, final int c) {
+			double delta = 0, d;
+			for(int o = 0; o < m; o++) {
+				d = dist.get(o, c);
+				if(nearest[o] == i)
+					delta += weight(o) * (FastMath.min(d, ds[o]) - dn[o]);
+				else if(d < dn[o])
+					delta += weight(o) * (d - dn[o]);
+			}
+			
+			return delta;
+		}
+		
+		/** The candidates split into contiguous blocks, one per core if parallel */
+		int[] bounds() {
+			final int chunks = parallel ? FastMath.max(1, FastMath.min(GlobalState.ParallelismConf.NUM_CORES, m)) : 1;
+			final int[] bounds = new int[chunks + 1];
+			for(int c = 0; c <= chunks; c++)
+				bounds[c] = (int)((long)c * m / chunks);
+			return bounds;
+		}
+		
+		BuildChunk scanBuild(final boolean first) {
+			final int[] bounds = bounds();
+			final BuildChunk[] chunks = new BuildChunk[bounds.length - 1];
+			for(int c = 0; c < chunks.length; c++)
+				chunks[c] = new BuildChunk(this, bounds[c], bounds[c + 1], first);
+			
+			scanAll(chunks);
+			for(int c = 1; c < chunks.length; c++)
+				chunks[0].merge(chunks[c]);
+			return chunks[0];
+		}
+		
+		SwapChunk scanSwap(final double[] loss) {
+			final int[] bounds = bounds();
+			final SwapChunk[] chunks = new SwapChunk[bounds.length - 1];
+			for(int c = 0; c < chunks.length; c++)
+				chunks[c] = new SwapChunk(this, bounds[c], bounds[c + 1], loss);
+			
+			scanAll(chunks);
+			for(int c = 1; c < chunks.length; c++)
+				chunks[0].merge(chunks[c]);
+			return chunks[0];
+		}
+		
+		private static void scanAll(final CandidateChunk[] chunks) {
+			if(1 == chunks.length)
+				chunks[0].scan();
+			else
+				GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(new CandidateTask(chunks, 0, chunks.length));
+		}
+	}
+	
+	/**
+	 * Distances computed as needed, with the distances from each record to the
+	 * most recently held medoids cached as columns (evicted least recently held first),
+	 * so the footprint is O(m&middot;k) rather than the matrix's O(m<sup>2</sup>).
+	 * Cached columns are read without locking, so lookups may be made in parallel.
+	 * @author Taylor G Smith
+	 */
+	static final class MedoidDistanceCache implements Dissimilarities {
+		final double[][] X;
+		final GeometricallySeparable metric;
+		final int capacity;
+		/** The cached column of each record, or null */
+		final AtomicReferenceArray<double[]> columns;
+		/** The cached records, least recently held first */
+		final LinkedHashMap<Integer, Integer> recency;
+		/** The number of columns computed, including any recomputed after eviction */
+		int computed = 0;
+		
+		MedoidDistanceCache(final double[][] X, final GeometricallySeparable metric, final int capacity) {
+			this.X = X;
+			this.metric = metric;
+			this.capacity = capacity;
+			this.columns = new AtomicReferenceArray<>(X.length);
+			this.recency = new LinkedHashMap<Integer, Integer>(2 * capacity, 0.75f, true) {
+				private static final long serialVersionUID = 2929370853364391137L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+					if(size() <= MedoidDistanceCache.this.capacity)
+						return false;
+					
+					columns.set(eldest.getKey(), null);
+					return true;
+				}
+			};
+		}
+		
+		/**
+		 * The distances from every record to the given one, computed if not cached
+		 */
+		synchronized double[] column(final int j) {
+			double[] col = columns.get(j);
+			if(null == col) {
+				col = new double[X.length];
+				for(int o = 0; o < X.length; o++)
+					col[o] = o == j ? 0.0 : metric.getDistance(X[o], X[j]);
+				columns.set(j, col);
+				computed++;
+			}
+			
+			recency.put(j, j); // may evict the least recently held
+			return col;
+		}
+		
+		/**
+		 * Cache the columns of the medoids, as the most recently held
+		 */
+		void hold(final int[] medoids) {
+			for(int medoid: medoids)
+				column(medoid);
+		}
+		
+		@Override
+		public double get(final int i, final int j) {
+			if(i == j)
+				return 0.0;
+			
+			double[] col = columns.get(j);
+			if(null != col)
+				return col[i];
+			if(null != (col = columns.get(i)))
+				return col[j];
+			return metric.getDistance(X[i], X[j]);
+		}
+	}
+	
+	/**
+	 * A CLARA sample or CLARANS local search, yielding medoids (or null if the
+	 * distances could not separate the records) and their total deviation
+	 * @author Taylor G Smith
+	 */
+	static abstract class SampleSearch {
+		final KMedoids model;
+		final double[][] X;
+		final GeometricallySeparable metric;
+		int[] medoids = null;
+		double cost = Double.NaN;
+		boolean converged = false;
+		
+		SampleSearch(final KMedoids model, final double[][] X, final GeometricallySeparable metric) {
+			this.model = model;
+			this.X = X;
+			this.metric = metric;
+		}
+		
+		abstract void search();
+	}
+	
+	/**
+	 * Fits {@link FastPAM} to a subsample, then scores its medoids over every record
+	 * @author Taylor G Smith
+	 */
+	static final class ClaraSearch extends SampleSearch {
+		final int[] sample;
+		
+		ClaraSearch(final KMedoids model, final double[][] X, 
+				final GeometricallySeparable metric, final int[] sample) {
+			super(model, X, metric);
+			this.sample = sample;
+		}
+		
+		@Override
+		void search() {
+			final double[][] rows = new double[sample.length][];
+			final double[] sampleWeights = null == model.weights ? null : new double[sample.length];
+			for(int i = 0; i < sample.length; i++) {
+				rows[i] = X[sample[i]];
+				if(null != sampleWeights)
+					sampleWeights[i] = model.weights[sample[i]];
+			}
+			
+			final FastPAM pam = new FastPAM(sample.length, model.k, dissimilarities(
+				Pairwise.getCondensedDistance(rows, metric, false, model.storage, model.precision)), 
+				sampleWeights, false);
+			pam.build();
+			if(!pam.assign())
+				return;
+			converged = pam.swapUntilConverged(model.maxIter, model.tolerance);
+			
+			medoids = new int[model.k];
+			for(int i = 0; i < medoids.length; i++)
+				medoids[i] = sample[pam.medoids[i]];
+			cost = deviation(X, metric, model.weights, medoids);
+		}
+	}
+	
+	/**
+	 * A randomized local search over swaps of every record, from random medoids
+	 * (or the warm start) until {@link KMedoids#maxNeighbor} consecutive swaps fail
+	 * @author Taylor G Smith
+	 */
+	static final class ClaransSearch extends SampleSearch {
+		final int[] start;
+		final long seed;
+		
+		ClaransSearch(final KMedoids model, final double[][] X, 
+				final GeometricallySeparable metric, final int[] start, final long seed) {
+			super(model, X, metric);
+			this.start = start;
+			this.seed = seed;
+		}
+		
+		@Override
+		void search() {
+			final int m = X.length, k = model.k;
+			final Random rand = new Random(seed);
+			final FastPAM pam = new FastPAM(m, k, dissimilarities(X, metric), model.weights, false);
+			pam.setMedoids(null != start ? start : randomSeeds(m, k, rand, model.weights));
+			if(!pam.assign())
+				return;
+			
+			// when every record is a medoid, there is no neighbor to try
+			int i, c;
+			for(int failed = 0; failed < model.maxNeighbor && m > k; ) {
+				i = rand.nextInt(k);
+				c = rand.nextInt(m);
+				if(pam.isMedoid[c])
+					continue;
+				
+				if(pam.swapDelta(i, c) < -model.tolerance) {
+					pam.applySwap(i, c);
+					failed = 0;
+				} else {
+					failed++;
+				}
+			}
+			
+			// a local minimum among the neighbors tried
+			converged = true;
+			medoids = VecUtils.copy(pam.medoids);
+			cost = pam.cost;
+		}
+	}
+	
+	/**
+	 * Runs a range of {@link SampleSearch}es, splitting the range in half until each task holds one
+	 * @author Taylor G Smith
+	 */
+	static final class SearchTask extends RecursiveAction {
+		private static final long serialVersionUID = -3307846452061862937L;
+		final SampleSearch[] searches;
+		final int lo, hi;
+		
+		SearchTask(final SampleSearch[] searches, final int lo, final int hi) {
+			this.searches = searches;
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		@Override
+		protected void compute() {
+			if(hi - lo == 1) {
+				searches[lo].search();
+				return;
+			}
+			
+			final int mid = (lo + hi) >>> 1;
+			invokeAll(
+				new SearchTask(searches, lo, mid),
+				new SearchTask(searches, mid, hi));
+		}
+	}
+	
+	/**
+	 * A contiguous block of the candidate medoids of a {@link FastPAM} phase
+	 * @author Taylor G Smith
+	 */
+	static abstract class CandidateChunk {
+		final FastPAM pam;
+		final int lo, hi;
+		
+		CandidateChunk(final FastPAM pam, final int lo, final int hi) {
+			this.pam = pam;
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		abstract void scan();
+	}
+	
+	/**
+	 * The best BUILD candidate of a block: for the first medoid, that with the least total
+	 * deviation, and for the rest, that which most decreases the deviation
+	 * @author Taylor G Smith
+	 */
+	static final class BuildChunk extends CandidateChunk {
+		final boolean first;
+		int best = -1;
+		double bestScore;
+		
+		BuildChunk(final FastPAM pam, final int lo, final int hi, final boolean first) {
+			super(pam, lo, hi);
+			this.first = first;
+		}
+		
+		@Override
+		void scan() {
+			final double[] dn = pam.dn;
+			double score, d;
+			for(int c = lo; c < hi; c++) {
+				if(pam.isMedoid[c])
+					continue;
+				
+				score = 0;
+				for(int o = 0; o < pam.m; o++) {
+					d = pam.dist.get(o, c);
+					if(first)
+						score -= pam.weight(o) * d;
+					else if(d < dn[o])
+						score += pam.weight(o) * (dn[o] - d);
+				}
+				
+				if(-1 == best || score > bestScore) {
+					best = c;
+					bestScore = score;
+				}
+			}
+		}
+		
+		void merge(final BuildChunk other) {
+			if(-1 != other.best && (-1 == best || other.bestScore > bestScore)) {
+				best = other.best;
+				bestScore = other.bestScore;
+			}
+		}
+	}
+	
+	/**
+	 * The best SWAP candidate of a block for each medoid, and the change in total deviation
+	 * of swapping it in. For each candidate, the changes for all <tt>k</tt> medoids are
+	 * accumulated in one pass over the records: those nearer the candidate than to their
+	 * medoid move to it whichever medoid is removed, and the rest only change if their
+	 * own medoid is, moving to the nearer of the candidate and their second nearest medoid.
+	 * @author Taylor G Smith
+	 */
+	static final class SwapChunk extends CandidateChunk {
+		final double[] loss, delta, dtd;
+		final int[] cand;
+		
+		SwapChunk(final FastPAM pam, final int lo, final int hi, final double[] loss) {
+			super(pam, lo, hi);
+			this.loss = loss;
+			this.delta = VecUtils.rep(Double.POSITIVE_INFINITY, pam.k);
+			this.dtd = new double[pam.k];
+			this.cand = VecUtils.repInt(-1, pam.k);
+		}
+		
+		@Override
+		void scan() {
+			final int k = pam.k;
+			final int[] nearest = pam.nearest;
+			final double[] dn = pam.dn, ds = pam.ds;
+			
+			double d, w, shared;
+			for(int c = lo; c < hi; c++) {
+				if(pam.isMedoid[c])
+					continue;
+				
+				System.arraycopy(loss, 0, dtd, 0, k);
+				shared = 0;
+				for(int o = 0; o < pam.m; o++) {
+					d = pam.dist.get(o, c);
+					w = pam.weight(o);
+					
+					if(d < dn[o]) {
+						shared += w * (d - dn[o]);
+						dtd[nearest[o]] += w * (dn[o] - ds[o]); // no longer reassigned to its second nearest
+					} else if(d < ds[o]) {
+						dtd[nearest[o]] += w * (d - ds[o]);
+					}
+				}
+				
+				for(int i = 0; i < k; i++) {
+					if(dtd[i] + shared < delta[i]) {
+						delta[i] = dtd[i] + shared;
+						cand[i] = c;
+					}
+				}
+			}
+		}
+		
+		void merge(final SwapChunk other) {
+			for(int i = 0; i < delta.length; i++) {
+				if(other.delta[i] < delta[i]) {
+					delta[i] = other.delta[i];
+					cand[i] = other.cand[i];
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Scans a range of candidate blocks, splitting the range in half until each task
+	 * holds one. The blocks only read the shared state, so need no synchronization.
+	 * @author Taylor G Smith
+	 */
+	static final class CandidateTask extends RecursiveAction {
+		private static final long serialVersionUID = 4781283956106513095L;
+		final CandidateChunk[] chunks;
+		final int lo, hi;
+		
+		CandidateTask(final CandidateChunk[] chunks, final int lo, final int hi) {
+			this.chunks = chunks;
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		@Override
+		protected void compute() {
+			if(hi - lo == 1) {
+				chunks[lo].scan();
+				return;
+			}
+			
+			final int mid = (lo + hi) >>> 1;
+			invokeAll(
+				new CandidateTask(chunks, lo, mid),
+				new CandidateTask(chunks, mid, hi));
+		}
+	}
+	
 	@Override
 	public Algo getLoggerTag() {
 		return Algo.KMEDOIDS;
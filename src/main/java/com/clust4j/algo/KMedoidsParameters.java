@@ -21,13 +21,24 @@ import java.util.Random;
 import org.apache.commons.math3.linear.RealMatrix;
 
 import com.clust4j.algo.AbstractCentroidClusterer.InitializationStrategy;
+import com.clust4j.algo.KMedoids.KMedoidsAlgorithm;
+import com.clust4j.metrics.pairwise.CondensedDistanceMatrix.Storage;
 import com.clust4j.metrics.pairwise.GeometricallySeparable;
+import com.clust4j.metrics.pairwise.NumericPrecision;
 
 public class KMedoidsParameters extends CentroidClustererParameters<KMedoids> {
 	private static final long serialVersionUID = -3288579217568576647L;
 	
 	private InitializationStrategy strat = KMedoids.DEF_INIT;
 	private int maxIter = KMedoids.DEF_MAX_ITER;
+	private Storage storage = KMedoids.DEF_STORAGE;
+	private NumericPrecision precision = KMedoids.DEF_PRECISION;
+	private KMedoidsAlgorithm algo = KMedoids.DEF_ALGO;
+	private int numSamples = KMedoids.DEF_NUM_SAMPLES;
+	private int sampleSize = KMedoids.DEF_SAMPLE_SIZE;
+	private int maxNeighbor = KMedoids.DEF_MAX_NEIGHBOR;
+	private boolean matrixFree = KMedoids.DEF_MATRIX_FREE;
+	private int cacheSize = KMedoids.DEF_CACHE_SIZE;
 	
 	public KMedoidsParameters() {
 		this.metric = KMedoids.DEF_DIST;
@@ -52,6 +63,16 @@ public class KMedoidsParameters extends CentroidClustererParameters<KMedoids> {
 			.setVerbose(verbose)
 			.setSeed(seed)
 			.setInitializationStrategy(strat)
+			.setWarmStart(warmStart)
+			.setSampleWeights(sampleWeights)
+			.setDistanceStorage(storage)
+			.setDistancePrecision(precision)
+			.setAlgorithm(algo)
+			.setNumSamples(numSamples)
+			.setSampleSize(sampleSize)
+			.setMaxNeighbor(maxNeighbor)
+			.setMatrixFree(matrixFree)
+			.setCacheSize(cacheSize)
 			.setForceParallel(parallel);
 	}
 	
@@ -65,6 +86,133 @@ public class KMedoidsParameters extends CentroidClustererParameters<KMedoids> {
 		return maxIter;
 	}
 	
+	public KMedoidsAlgorithm getAlgorithm() {
+		return algo;
+	}
+	
+	/**
+	 * The search by which the medoids are refined. {@link KMedoidsAlgorithm#FASTPAM}
+	 * typically finds lower cost medoids than the default Voronoi iteration.
+	 * @param algo
+	 * @return this
+	 */
+	public KMedoidsParameters setAlgorithm(final KMedoidsAlgorithm algo) {
+		this.algo = algo;
+		return this;
+	}
+	
+	public int getNumSamples() {
+		return numSamples;
+	}
+	
+	/**
+	 * The number of subsamples fit by {@link KMedoidsAlgorithm#CLARA}, 
+	 * or of local searches run by {@link KMedoidsAlgorithm#CLARANS}
+	 * @param numSamples
+	 * @return this
+	 */
+	public KMedoidsParameters setNumSamples(final int numSamples) {
+		this.numSamples = numSamples;
+		return this;
+	}
+	
+	public int getSampleSize() {
+		return sampleSize;
+	}
+	
+	/**
+	 * The number of records in each subsample of {@link KMedoidsAlgorithm#CLARA}.
+	 * Non-positive values select <tt>40 + 2k</tt>, as Kaufman and Rousseeuw suggest.
+	 * @param sampleSize
+	 * @return this
+	 */
+	public KMedoidsParameters setSampleSize(final int sampleSize) {
+		this.sampleSize = sampleSize;
+		return this;
+	}
+	
+	public int getMaxNeighbor() {
+		return maxNeighbor;
+	}
+	
+	/**
+	 * The number of consecutive random swaps which must fail to lower the total deviation
+	 * before a local search of {@link KMedoidsAlgorithm#CLARANS} ends
+	 * @param maxNeighbor
+	 * @return this
+	 */
+	public KMedoidsParameters setMaxNeighbor(final int maxNeighbor) {
+		this.maxNeighbor = maxNeighbor;
+		return this;
+	}
+	
+	public boolean getMatrixFree() {
+		return matrixFree;
+	}
+	
+	/**
+	 * Whether to compute distances as needed rather than the full O(m<sup>2</sup>)
+	 * distance matrix up front. The distances from every record to recently used medoids are
+	 * cached (see {@link #setCacheSize(int)}), bounding the footprint to O(m&middot;k). This
+	 * suits very many records or expensive metrics, as medoids change rarely and the Voronoi
+	 * iteration only needs distances within clusters; {@link KMedoidsAlgorithm#FASTPAM} still
+	 * computes every pair in each SWAP iteration, but never holds them.
+	 * @param matrixFree
+	 * @return this
+	 */
+	public KMedoidsParameters setMatrixFree(final boolean matrixFree) {
+		this.matrixFree = matrixFree;
+		return this;
+	}
+	
+	public int getCacheSize() {
+		return cacheSize;
+	}
+	
+	/**
+	 * The number of medoids whose distances to every record are cached in matrix-free 
+	 * mode, evicted least recently used first. Must be at least <tt>k</tt>; non-positive 
+	 * values select <tt>2k</tt>.
+	 * @param cacheSize
+	 * @return this
+	 */
+	public KMedoidsParameters setCacheSize(final int cacheSize) {
+		this.cacheSize = cacheSize;
+		return this;
+	}
+	
+	public NumericPrecision getDistancePrecision() {
+		return precision;
+	}
+	
+	/**
+	 * The precision in which the condensed distance matrix is held.
+	 * {@link NumericPrecision#FLOAT} halves its memory footprint, at the cost of
+	 * rounding distances to 24 bits of mantissa.
+	 * @param precision
+	 * @return this
+	 */
+	public KMedoidsParameters setDistancePrecision(final NumericPrecision precision) {
+		this.precision = precision;
+		return this;
+	}
+	
+	public Storage getDistanceStorage() {
+		return storage;
+	}
+	
+	/**
+	 * Where to store the condensed distance matrix. For very large
+	 * matrices, {@link Storage#DIRECT} or {@link Storage#MAPPED} avoid
+	 * the Java heap (and its array length limit) altogether.
+	 * @param storage
+	 * @return this
+	 */
+	public KMedoidsParameters setDistanceStorage(final Storage storage) {
+		this.storage = storage;
+		return this;
+	}
+	
 	@Override
 	public KMedoidsParameters setForceParallel(boolean b) {
 		this.parallel = b;
@@ -94,6 +242,30 @@ public class KMedoidsParameters extends CentroidClustererParameters<KMedoids> {
 		return this;
 	}
 	
+	/**
+	 * Warm start from the given centroids, e.g., those of a model fit to an
+	 * earlier version of the data, rather than the {@link InitializationStrategy}.
+	 * Also sets <tt>k</tt> to the number of centroids.
+	 * @param centroids - the centroids, or null to clear the warm start
+	 * @return this planner
+	 */
+	@Override
+	public KMedoidsParameters setWarmStart(final double[][] centroids) {
+		warmStartFrom(centroids);
+		return this;
+	}
+	
+	/**
+	 * Weigh each record of the data to be fit, so that its distance to its medoid
+	 * counts <tt>weights[i]</tt> times in the cost of each candidate medoid.
+	 * @param weights - one non-negative weight per record, or null to count each once
+	 * @return this planner
+	 */
+	public KMedoidsParameters setSampleWeights(final double[] weights) {
+		sampleWeightsFrom(weights);
+		return this;
+	}
+	
 	@Override
 	public KMedoidsParameters setSeed(final Random seed) {
 		this.seed = seed;
@@ -0,0 +1,457 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.algo;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.util.FastMath;
+
+import com.clust4j.except.ModelNotFitException;
+import com.clust4j.except.NaNException;
+import com.clust4j.log.Log.Tag.Algo;
+import com.clust4j.log.LogTimer;
+import com.clust4j.metrics.pairwise.Distance;
+import com.clust4j.metrics.pairwise.GeometricallySeparable;
+import com.clust4j.metrics.pairwise.Pairwise;
+import com.clust4j.utils.MatUtils;
+import com.clust4j.utils.VecKernels;
+import com.clust4j.utils.VecUtils;
+
+/**
+ * A variant of {@link KMeans} which, rather than iterating over the entire dataset
+ * in each iteration, updates its centroids from small random samples of the records.
+ * Each centroid keeps a count of the records ever assigned to it, and moves toward
+ * each newly assigned record by the reciprocal of that count, so that every centroid
+ * is the running mean of its assignments and settles as its count grows
+ * (<a href="http://www.eecs.tufts.edu/~dsculley/papers/fastkmeans.pdf">Sculley, 2010</a>).
+ *
+ * <p>
+ * Fitting draws <tt>batchSize</tt> records (with replacement) per step for up to
+ * <tt>maxIter</tt> passes over the data, and stops early once the exponentially
+ * weighted average of the batch inertia stops improving. Further batches, such as
+ * blocks of records read from disk or taken from a queue, can be folded into a fit
+ * model via {@link #partialFit(double[][])} without holding them in memory.
+ *
+ * <p>
+ * The labels, WSS and BSS always describe the records on which the model was fit.
+ * They are computed in a single full pass at the end of {@link #fit()}, and again
+ * lazily on the next request following a {@link #partialFit(double[][])}.
+ *
+ * @see MiniBatchKMeansParameters
+ * @author Taylor G Smith &lt;tgsmith61591@gmail.com&gt;
+ */
+final public class MiniBatchKMeans extends AbstractCentroidClusterer {
+	private static final long serialVersionUID = -4291786046394287211L;
+	final public static GeometricallySeparable DEF_DIST = Distance.EUCLIDEAN;
+	final public static int DEF_MAX_ITER = 100;
+	final public static int DEF_BATCH_SIZE = 100;
+	final public static int DEF_MAX_NO_IMPROVEMENT = 10;
+	/** Disabled by default; early stopping relies on {@link #DEF_MAX_NO_IMPROVEMENT} */
+	final public static double DEF_CONVERGENCE_TOLERANCE = 0.0;
+
+	final private int batchSize;
+	final private int maxNoImprovement;
+
+	/** The number of records ever assigned to each centroid */
+	private long[] counts;
+	/** The exponentially weighted average of the batch inertia */
+	private double ewaInertia = Double.NaN;
+	/** The mean inertia of the most recent batch */
+	private double lastBatchInertia = Double.NaN;
+	private double bestInertia = Double.POSITIVE_INFINITY;
+	private int noImprovement = 0;
+	/** Whether the labels, WSS and BSS predate the latest {@link #partialFit(double[][])} */
+	private boolean stale = false;
+
+
+
+	protected MiniBatchKMeans(final RealMatrix data) {
+		this(data, DEF_K);
+	}
+
+	protected MiniBatchKMeans(final RealMatrix data, final int k) {
+		this(data, new MiniBatchKMeansParameters(k));
+	}
+
+	protected MiniBatchKMeans(final RealMatrix data, final MiniBatchKMeansParameters planner) {
+		super(data, planner);
+
+		this.batchSize = planner.getBatchSize();
+		this.maxNoImprovement = planner.getMaxNoImprovement();
+
+		if(batchSize < 1)
+			error(new IllegalArgumentException("batchSize must exceed 0"));
+		if(maxNoImprovement < 0)
+			error(new IllegalArgumentException("maxNoImprovement must not be negative"));
+
+		this.counts = new long[k];
+	}
+
+
+
+	@Override
+	public String getName() {
+		return "MiniBatchKMeans";
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public int getMaxNoImprovement() {
+		return maxNoImprovement;
+	}
+
+	/**
+	 * The exponentially weighted average of the inertia of the batches seen so far,
+	 * or NaN if the model has not yet been fit.
+	 * @return the smoothed inertia
+	 */
+	public double getSmoothedInertia() {
+		synchronized(fitLock) {
+			return ewaInertia;
+		}
+	}
+
+	@Override
+	protected MiniBatchKMeans fit() {
+		synchronized(fitLock) {
+
+			if(null != labels) // already fit
+				return this;
+
+
+			final LogTimer timer = new LogTimer();
+			final double[][] X = data.getDataRef();
+			final double nan = Double.NaN;
+
+
+			// Corner case: K = 1 or all singular values
+			if(1 == k) {
+				labelFromSingularK(X);
+				fitSummary.add(new Object[]{ iter, converged, nan, nan, timer.wallTime() });
+				sayBye(timer);
+				return this;
+			}
+
+
+			// maxIter bounds the number of passes over the data, not the number of batches
+			final long stepsPerEpoch = FastMath.max(1, (m + batchSize - 1) / batchSize);
+			final long maxSteps = FastMath.min(Integer.MAX_VALUE, stepsPerEpoch * maxIter);
+			final Random rand = getSeed();
+			final int[] batch = new int[batchSize];
+
+			for(iter = 0; iter < maxSteps; ) {
+				for(int i = 0; i < batchSize; i++)
+					batch[i] = rand.nextInt(m);
+
+				step(X, batch, batchSize);
+
+				// Add a summary row once per epoch, and when stopping
+				if(converged || iter % stepsPerEpoch == 0) {
+					fitSummary.add(new Object[]{
+						iter, converged,
+						lastBatchInertia, ewaInertia,
+						timer.wallTime() });
+				}
+
+				if(converged)
+					break;
+			}
+
+
+			// One full pass for the labels, WSS and BSS
+			labelAll(X);
+
+			if(!converged)
+				warn("algorithm did not converge");
+
+
+			// wrap things up, create summary..
+			sayBye(timer);
+
+
+			return this;
+		}
+	}
+
+	/**
+	 * Update the centroids from a further batch of records, without refitting on
+	 * the original data. If the model has not yet been fit, it will first be fit
+	 * on its training data. The labels, WSS and BSS continue to refer to the training
+	 * data, and will be recomputed upon their next request.
+	 * @param batch - the new records, which need not be held beyond this call
+	 * @throws DimensionMismatchException if the batch does not have as many columns as the training data
+	 * @throws NaNException if the batch contains a NaN
+	 * @return this model
+	 */
+	public MiniBatchKMeans partialFit(final double[][] batch) {
+		MatUtils.checkDimsForUniformity(batch);
+
+		final int n = dataRef().getColumnDimension();
+		if(batch[0].length != n)
+			error(new DimensionMismatchException(batch[0].length, n));
+		if(MatUtils.containsNaN(batch))
+			error(new NaNException("NaN in batch"));
+
+		synchronized(fitLock) {
+			fit();
+
+			final LogTimer timer = new LogTimer();
+			step(batch, null, batch.length);
+			fitSummary.add(new Object[]{
+				iter, converged,
+				lastBatchInertia, ewaInertia,
+				timer.wallTime() });
+
+			stale = true;
+			return this;
+		}
+	}
+
+	/**
+	 * Assign each record of a batch to its nearest centroid, then move each centroid
+	 * toward its records by its per-centroid learning rate, and update the smoothed
+	 * inertia and convergence state.
+	 * @param X
+	 * @param idcs - the rows of X in the batch, or null for all of X
+	 * @param size - the number of records in the batch
+	 */
+	private void step(final double[][] X, final int[] idcs, final int size) {
+		final double[][] cents = centroids.toArray(new double[k][]);
+		final double[] centDists = new double[k];
+		final int[] assigned = new int[size];
+		final GeometricallySeparable metric = getSeparabilityMetric();
+
+		// Assign against the centroids as they stood before this batch
+		double inertia = 0;
+		for(int r = 0; r < size; r++) {
+			final double[] row = X[null == idcs ? r : idcs[r]];
+			final int label = nearest(metric, row, cents, centDists);
+
+			assigned[r] = label;
+			inertia += VecKernels.squaredDifference(row, cents[label]);
+		}
+
+		// Each centroid's learning rate decays with the number of records it has seen
+		double eta;
+		double[] row, centroid;
+		for(int r = 0; r < size; r++) {
+			row = X[null == idcs ? r : idcs[r]];
+			centroid = cents[assigned[r]];
+			eta = 1.0 / ++counts[assigned[r]];
+
+			for(int j = 0; j < centroid.length; j++)
+				centroid[j] += eta * (row[j] - centroid[j]);
+		}
+
+		iter++;
+		lastBatchInertia = inertia / size;
+		converged = updateInertia(lastBatchInertia, size);
+	}
+
+	/**
+	 * Fold the batch inertia into its exponentially weighted average, smoothing over
+	 * roughly one pass of the training data, and decide whether to stop: either when
+	 * the average changes by less than the tolerance, or when it has not reached a new
+	 * minimum in <tt>maxNoImprovement</tt> consecutive batches.
+	 */
+	private boolean updateInertia(final double inertia, final int size) {
+		if(Double.isNaN(ewaInertia)) {
+			ewaInertia = inertia;
+			bestInertia = inertia;
+			return false;
+		}
+
+		final double alpha = FastMath.min(1.0, 2.0 * size / (m + 1));
+		final double last = ewaInertia;
+		ewaInertia = ewaInertia * (1.0 - alpha) + inertia * alpha;
+
+		if(tolerance > 0 && FastMath.abs(last - ewaInertia) < tolerance) {
+			info("converged: change in smoothed inertia below tolerance");
+			return true;
+		}
+
+		if(ewaInertia < bestInertia) {
+			bestInertia = ewaInertia;
+			noImprovement = 0;
+		} else if(maxNoImprovement > 0 && ++noImprovement >= maxNoImprovement) {
+			info("converged: no improvement in smoothed inertia in "
+				+ maxNoImprovement + " consecutive batches");
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * The index of the nearest centroid to a record. Ties and infinite
+	 * distances go to the lowest index.
+	 */
+	static int nearest(final GeometricallySeparable metric, final double[] row,
+			final double[][] cents, final double[] centDists) {
+		Pairwise.partialDistances(metric, row, cents, 0, cents.length, centDists);
+
+		int label = 0;
+		double minDist = Double.POSITIVE_INFINITY;
+		for(int c = 0; c < cents.length; c++) {
+			if(centDists[c] < minDist) {
+				minDist = centDists[c];
+				label = c;
+			}
+		}
+
+		return label;
+	}
+
+	/**
+	 * Label every training record with its nearest centroid and compute the WSS
+	 * and BSS, then reorder the labels and centroids.
+	 */
+	private void labelAll(final double[][] X) {
+		final double[][] cents = centroids.toArray(new double[k][]);
+		final double[] centDists = new double[k];
+		final GeometricallySeparable metric = getSeparabilityMetric();
+
+		final int[] lab = new int[m];
+		final double[] w = new double[k];
+		double wss_sum = 0, cost;
+		for(int i = 0; i < m; i++) {
+			lab[i] = nearest(metric, X[i], cents, centDists);
+			cost = VecKernels.squaredDifference(X[i], cents[lab[i]]);
+			w[lab[i]] += cost;
+			wss_sum += cost;
+		}
+
+		labels = lab;
+		wss = w;
+		bss = tss - wss_sum;
+		stale = false;
+
+		reorderLabelsAndCentroids();
+	}
+
+	/** Recompute the labels, WSS and BSS if a batch has arrived since they were computed */
+	private void refresh() {
+		if(stale)
+			labelAll(data.getDataRef());
+	}
+
+	@Override
+	public int[] getLabels() {
+		synchronized(fitLock) {
+			if(null != labels)
+				refresh();
+			return super.getLabels();
+		}
+	}
+
+	@Override
+	public double[] getWSS() {
+		synchronized(fitLock) {
+			refresh();
+			return super.getWSS();
+		}
+	}
+
+	@Override
+	public double getBSS() {
+		synchronized(fitLock) {
+			refresh();
+			return super.getBSS();
+		}
+	}
+
+	/**
+	 * Predict the nearest centroid of each record. Unlike the other
+	 * {@link CentroidLearner}s, the centroids are used as they are rather than
+	 * recomputed from the training labels, since they need not be the means
+	 * of the training data's clusters.
+	 * @throws ModelNotFitException if the model has not been fit
+	 * @throws DimensionMismatchException if the columns of the new data do not match the training data
+	 */
+	@Override
+	public int[] predict(final RealMatrix newData) {
+		final double[][] cents;
+		synchronized(fitLock) {
+			if(null == labels)
+				throw new ModelNotFitException("model has not been fit");
+			refresh();
+			cents = centroids.toArray(new double[k][]);
+		}
+
+		final int n = cents[0].length;
+		if(newData.getColumnDimension() != n)
+			throw new DimensionMismatchException(newData.getColumnDimension(), n);
+
+		final GeometricallySeparable metric = getSeparabilityMetric();
+		final double[] centDists = new double[k];
+		final int[] predictions = new int[newData.getRowDimension()];
+		for(int i = 0; i < predictions.length; i++)
+			predictions[i] = nearest(metric, newData.getRow(i), cents, centDists);
+
+		return predictions;
+	}
+
+	@Override
+	public Algo getLoggerTag() {
+		return com.clust4j.log.Log.Tag.Algo.MINIBATCH;
+	}
+
+	@Override
+	protected Object[] getModelFitSummaryHeaders() {
+		return new Object[]{
+			"Iter. #","Converged","Batch Inertia","Smoothed Inertia","Wall"
+		};
+	}
+
+	/**
+	 * Reorder the labels in order of appearance, and the centroids, per-centroid
+	 * counts and WSS along with them. Centroids to which no training record is
+	 * assigned, which can happen when a centroid is drawn toward records seen only
+	 * via {@link #partialFit(double[][])}, keep their relative order after the others.
+	 */
+	@Override
+	protected void reorderLabelsAndCentroids() {
+		final int[] perm = VecUtils.repInt(-1, k); // old label to new
+		int next = 0;
+		for(int label: labels)
+			if(-1 == perm[label])
+				perm[label] = next++;
+		for(int c = 0; c < k; c++)
+			if(-1 == perm[c])
+				perm[c] = next++;
+
+		for(int i = 0; i < labels.length; i++)
+			labels[i] = perm[labels[i]];
+
+		final ArrayList<double[]> new_centroids = new ArrayList<>(centroids);
+		final long[] new_counts = new long[k];
+		final double[] new_wss = new double[k];
+		for(int c = 0; c < k; c++) {
+			new_centroids.set(perm[c], centroids.get(c));
+			new_counts[perm[c]] = counts[c];
+			new_wss[perm[c]] = wss[c];
+		}
+
+		centroids = new_centroids;
+		counts = new_counts;
+		wss = new_wss;
+	}
+}
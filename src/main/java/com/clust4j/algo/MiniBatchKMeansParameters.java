@@ -0,0 +1,161 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.algo;
+
+import java.util.Random;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+import com.clust4j.algo.AbstractCentroidClusterer.InitializationStrategy;
+import com.clust4j.metrics.pairwise.GeometricallySeparable;
+
+/**
+ * The planner for {@link MiniBatchKMeans}. Note that {@link #setMaxIter(int)} bounds
+ * the number of passes over the data rather than the number of mini-batches, and that
+ * the convergence tolerance, which is applied to the change in the smoothed inertia,
+ * defaults to {@value MiniBatchKMeans#DEF_CONVERGENCE_TOLERANCE} (disabled).
+ * @author Taylor G Smith
+ */
+final public class MiniBatchKMeansParameters extends CentroidClustererParameters<MiniBatchKMeans> {
+	private static final long serialVersionUID = 3471190386429157620L;
+	
+	private InitializationStrategy strat = MiniBatchKMeans.DEF_INIT;
+	private int maxIter = MiniBatchKMeans.DEF_MAX_ITER;
+	private int batchSize = MiniBatchKMeans.DEF_BATCH_SIZE;
+	private int maxNoImprovement = MiniBatchKMeans.DEF_MAX_NO_IMPROVEMENT;
+	
+	public MiniBatchKMeansParameters() {
+		this.minChange = MiniBatchKMeans.DEF_CONVERGENCE_TOLERANCE;
+	}
+	
+	public MiniBatchKMeansParameters(int k) {
+		this();
+		this.k = k;
+	}
+	
+	@Override
+	public MiniBatchKMeans fitNewModel(final RealMatrix data) {
+		return new MiniBatchKMeans(data, this.copy()).fit();
+	}
+	
+	@Override
+	public MiniBatchKMeansParameters copy() {
+		return new MiniBatchKMeansParameters(k)
+			.setMaxIter(maxIter)
+			.setBatchSize(batchSize)
+			.setMaxNoImprovement(maxNoImprovement)
+			.setConvergenceCriteria(minChange)
+			.setMetric(metric)
+			.setVerbose(verbose)
+			.setSeed(seed)
+			.setInitializationStrategy(strat)
+			.setWarmStart(warmStart)
+			.setForceParallel(parallel);
+	}
+	
+	@Override
+	public InitializationStrategy getInitializationStrategy() {
+		return strat;
+	}
+	
+	@Override
+	public int getMaxIter() {
+		return maxIter;
+	}
+	
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	public int getMaxNoImprovement() {
+		return maxNoImprovement;
+	}
+	
+	/**
+	 * The number of records drawn for each mini-batch
+	 * @param size
+	 * @return this planner
+	 */
+	public MiniBatchKMeansParameters setBatchSize(final int size) {
+		this.batchSize = size;
+		return this;
+	}
+	
+	/**
+	 * The number of consecutive mini-batches that may fail to improve the
+	 * smoothed inertia before fitting stops early, or 0 to never stop early
+	 * @param max
+	 * @return this planner
+	 */
+	public MiniBatchKMeansParameters setMaxNoImprovement(final int max) {
+		this.maxNoImprovement = max;
+		return this;
+	}
+	
+	@Override
+	public MiniBatchKMeansParameters setForceParallel(boolean b) {
+		this.parallel = b;
+		return this;
+	}
+	
+	@Override
+	public MiniBatchKMeansParameters setMetric(final GeometricallySeparable dist) {
+		this.metric = dist;
+		return this;
+	}
+	
+	public MiniBatchKMeansParameters setMaxIter(final int max) {
+		this.maxIter = max;
+		return this;
+	}
+
+	@Override
+	public MiniBatchKMeansParameters setConvergenceCriteria(final double min) {
+		this.minChange = min;
+		return this;
+	}
+	
+	@Override
+	public MiniBatchKMeansParameters setInitializationStrategy(InitializationStrategy init) {
+		this.strat = init;
+		return this;
+	}
+	
+	/**
+	 * Warm start from the given centroids, e.g., those of a model fit to an
+	 * earlier version of the data, rather than the {@link InitializationStrategy}.
+	 * Also sets <tt>k</tt> to the number of centroids.
+	 * @param centroids - the centroids, or null to clear the warm start
+	 * @return this planner
+	 */
+	@Override
+	public MiniBatchKMeansParameters setWarmStart(final double[][] centroids) {
+		warmStartFrom(centroids);
+		return this;
+	}
+	
+	@Override
+	public MiniBatchKMeansParameters setSeed(final Random seed) {
+		this.seed = seed;
+		return this;
+	}
+	
+	@Override
+	public MiniBatchKMeansParameters setVerbose(final boolean v) {
+		this.verbose = v;
+		return this;
+	}
+}
@@ -29,6 +29,7 @@ import com.clust4j.log.Log.Tag.Algo;
 import com.clust4j.log.LogTimer;
 import com.clust4j.metrics.pairwise.Distance;
 import com.clust4j.metrics.pairwise.GeometricallySeparable;
+import com.clust4j.metrics.pairwise.Pairwise;
 import com.clust4j.metrics.scoring.SupervisedMetric;
 import com.clust4j.utils.ArrayFormatter;
 import com.clust4j.utils.EntryPair;
@@ -404,18 +405,20 @@ final public class NearestCentroid extends AbstractClusterer implements Supervis
 		
 		int[] predictions = new int[data.length];
 		double[] dists = new double[data.length];
-		double[] row, centroid;
+		
+		final GeometricallySeparable metric = getSeparabilityMetric();
+		final double[][] cents = centroids.toArray(new double[centroids.size()][]);
+		final double[] centDists = new double[cents.length];
 		
 		for(int i = 0; i < data.length; i++) {
-			row = data[i];
+			// Can afford to compute partial dist--faster
+			Pairwise.partialDistances(metric, data[i], cents, 0, cents.length, centDists);
 			
 			double minDist = Double.POSITIVE_INFINITY, dist = minDist;
 			int nearestLabel = 0; // should not equal -1, because dist could be infinity
 			
-			for(int j = 0; j < centroids.size(); j++) {
-				centroid = centroids.get(j);
-				dist = getSeparabilityMetric()
-					.getPartialDistance(centroid, row); // Can afford to compute partial dist--faster
+			for(int j = 0; j < cents.length; j++) {
+				dist = centDists[j];
 				
 				if(dist < minDist) {
 					minDist = dist;
@@ -22,9 +22,11 @@ import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.util.FastMath;
 
 import com.clust4j.log.Loggable;
+import com.clust4j.metrics.pairwise.BitPackedMatrix;
 import com.clust4j.metrics.pairwise.Distance;
 import com.clust4j.metrics.pairwise.DistanceMetric;
 import com.clust4j.metrics.pairwise.GeometricallySeparable;
+import com.clust4j.metrics.pairwise.Pairwise;
 import com.clust4j.utils.DeepCloneable;
 import com.clust4j.utils.MatUtils;
 import com.clust4j.utils.QuadTup;
@@ -52,6 +54,8 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 	
 	
 	double[][] data_arr;
+	/** The bit-packed data if the metric is binary, else null */
+	final BitPackedMatrix packed_data;
 	int[] idx_array;
 	NodeData[] node_data;
 	double[][][] node_bounds;
@@ -147,6 +151,10 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 		}
 		
 		
+		// Binary metrics are evaluated on the bit-packed rows
+		this.packed_data = BitPackedMatrix.packIfBinary(this.dist_metric, this.data_arr);
+		
+		
 		// Whether the algorithm is using the infinity distance (Chebyshev)
 		this.infinity_dist = this.dist_metric.getP() == Double.POSITIVE_INFINITY ||
 			Double.isInfinite(this.dist_metric.getP());
@@ -837,11 +845,44 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 		return dist_metric.getPartialDistance(a, b);
 	}
 	
+	/**
+	 * Compute the reduced distance from <tt>pt</tt> to each of the points 
+	 * held in positions <tt>start</tt> through <tt>end - 1</tt> of the index 
+	 * array in a single batch call
+	 * @param pt
+	 * @param start
+	 * @param end
+	 * @param out - stores the distance for position <tt>i</tt> at <tt>out[i - start]</tt>
+	 */
+	void rDists(final double[] pt, final int start, final int end, final double[] out) {
+		n_calls += end - start;
+		
+		if(null != packed_data && BitPackedMatrix.canPack(dist_metric, pt)) {
+			packed_data.partialDistances((Distance)dist_metric, 
+				BitPackedMatrix.packRow(pt), idx_array, start, end, out);
+			return;
+		}
+		
+		Pairwise.partialDistances(dist_metric, pt, data_arr, idx_array, start, end, out);
+	}
+	
+	/**
+	 * The largest number of points held in any leaf, used to size 
+	 * the scratch buffer for {@link #rDists(double[], int, int, double[])}
+	 */
+	int maxLeafSize() {
+		int max = 0;
+		for(NodeData nd: node_data)
+			if(nd.is_leaf)
+				max = FastMath.max(max, nd.idx_end - nd.idx_start);
+		return max;
+	}
+	
 	double rDistToDist(final double d) {
 		return dist_metric.partialDistanceToDistance(d);
 	}
 	
-	private void rDistToDistInPlace(final double[][] d) {
+	void rDistToDistInPlace(final double[][] d) {
 		final int m = d.length, n = d[0].length;
 		for(int i = 0; i < m; i++)
 			for(int j = 0; j < n; j++)
@@ -933,6 +974,14 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 	
 	// Tested: passing
 	public static int findNodeSplitDim(double[][] data, int[] idcs) {
+		return findNodeSplitDim(data, idcs, 0, idcs.length);
+	}
+	
+	/**
+	 * Find the split dimension of the records in positions <tt>start</tt>
+	 * through <tt>end - 1</tt> of the index array, i.e., of a single node
+	 */
+	static int findNodeSplitDim(double[][] data, int[] idcs, int start, int end) {
 		// Gets the difference between the vector of column
 		// maxes and the vector of column mins, then finds the
 		// arg max.
@@ -946,7 +995,7 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 		double diff, maxDiff = Double.NEGATIVE_INFINITY;
 		
 		// Optimized to one KxN pass
-		for(int i = 0; i < idcs.length; i++) {
+		for(int i = start; i < end; i++) {
 			idx = idcs[i];
 			current = data[idx];
 			
@@ -957,7 +1006,7 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 					minVec[j] = current[j];
 				
 				// If the last iter, we can calc difference right now
-				if(i == idcs.length-1) {
+				if(i == end-1) {
 					diff = maxVec[j] - minVec[j];
 					if(diff > maxDiff) {
 						maxDiff = diff;
@@ -1056,9 +1105,20 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 	public static void partitionNodeIndices(double[][] data,
 			int[] nodeIndices, int splitDim, int splitIndex,
 			int nFeatures, int nPoints) {
+		partitionNodeIndices(data, nodeIndices, 0, splitDim, splitIndex, nFeatures, nPoints);
+	}
+	
+	/**
+	 * Partition the <tt>nPoints</tt> indices of a single node, beginning at position 
+	 * <tt>start</tt> of the index array, about the node's <tt>splitIndex</tt>-th element
+	 */
+	static void partitionNodeIndices(double[][] data,
+			int[] nodeIndices, int start, int splitDim, int splitIndex,
+			int nFeatures, int nPoints) {
 			 
-		int left = 0;
-		int right = nPoints - 1;
+		int left = start;
+		int right = start + nPoints - 1;
+		final int split = start + splitIndex;
 		double d1, d2;
 		
 		while(true) {
@@ -1075,9 +1135,9 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 			}
 			
 			swap(nodeIndices, midindex, right);
-			if(midindex == splitIndex) {
+			if(midindex == split) {
 				break;
-			} else if(midindex < splitIndex) {
+			} else if(midindex < split) {
 				left = midindex + 1;
 			} else {
 				right = midindex - 1;
@@ -1113,8 +1173,9 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 		} else {
 			// split node and recursively build child nodes
 			node_data[i_node].is_leaf = false;
-			i_max = findNodeSplitDim(data_arr, idx_array);
-			partitionNodeIndices(data_arr, idx_array, 
+			// both operate on this node's positions of the index array only
+			i_max = findNodeSplitDim(data_arr, idx_array, idx_start, idx_end);
+			partitionNodeIndices(data_arr, idx_array, idx_start,
 					i_max, n_mid, N_FEATURES, n_points);
 			
 			recursiveBuild(2 * i_node + 1, idx_start, idx_start + n_mid);
@@ -1178,11 +1239,12 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 			queryDualDepthFirst(0, other, 0, bounds, heap, reduced_dist_LB);
 		} else {
 			int i;
+			final double[] leafDists = new double[maxLeafSize()];
 			
 			for(i = 0; i < mPrime; i++) {
 				pt = Xarr[i];
 				reduced_dist_LB = minRDist(this, 0, pt);
-				querySingleDepthFirst(0, pt, i, heap, reduced_dist_LB);
+				querySingleDepthFirst(0, pt, i, heap, reduced_dist_LB, leafDists);
 			}
 		}
 		
@@ -1315,6 +1377,8 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 		counts_arr= new int[m_prime];
 		
 		
+		final double[] leafDists = new double[maxLeafSize()];
+		
 		// For each row in X
 		for(i = 0; i < m_prime; i++) {
 			// The current row
@@ -1323,7 +1387,7 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 			counts_arr[i] = queryRadiusSingle(0, pt, radius[i], 
 											  idx_arr_i, 
 											  dist_arr_i, 
-											  0, true);
+											  0, true, leafDists);
 			
 			if(sort)
 				NeighborsHeap.simultaneous_sort(dist_arr_i, idx_arr_i, counts_arr[i]);
@@ -1355,7 +1419,8 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 			final int[] indices, 
 			final double[] distances, 
 			int count,
-			final boolean returnDists) {
+			final boolean returnDists,
+			final double[] leafDists) {
 		
 		double[][] data = this.data_arr;
 		NodeData nodeInfo = node_data[i_node];
@@ -1400,9 +1465,10 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 		// this is a leaf node; check every point
 		else if(nodeInfo.is_leaf) {
 			reduced_r = this.dist_metric.distanceToPartialDistance(r);
+			this.rDists(pt, nodeInfo.idx_start, nodeInfo.idx_end, leafDists);
 			
 			for(i = nodeInfo.idx_start; i < nodeInfo.idx_end; i++) {
-				dist_pt = this.rDist(pt, data[idx_array[i]]);
+				dist_pt = leafDists[i - nodeInfo.idx_start];
 				
 				if(dist_pt <= reduced_r) {
 					/*// can't really happen?
@@ -1427,17 +1493,18 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 		else {
 			count = this.queryRadiusSingle(2 * i_node + 1, pt, r, 
 											indices, distances, count, 
-											returnDists);
+											returnDists, leafDists);
 			
 			count = this.queryRadiusSingle(2 * i_node + 2, pt, r, 
 											indices, distances, count, 
-											returnDists);
+											returnDists, leafDists);
 		}
 		
 		return count;
 	}
 
-	private void querySingleDepthFirst(int i_node, double[] pt, int i_pt, NeighborsHeap heap, double reduced_dist_LB) {
+	private void querySingleDepthFirst(int i_node, double[] pt, int i_pt, NeighborsHeap heap, 
+			double reduced_dist_LB, double[] leafDists) {
 		NodeData nodeInfo = this.node_data[i_node];
 		
 		double dist_pt, reduced_dist_LB_1, reduced_dist_LB_2;
@@ -1450,8 +1517,10 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 		// This is a leaf node
 		else if(nodeInfo.is_leaf) {
 			this.n_leaves++;
+			rDists(pt, nodeInfo.idx_start, nodeInfo.idx_end, leafDists);
+			
 			for(i = nodeInfo.idx_start; i < nodeInfo.idx_end; i++) {
-				dist_pt = rDist(pt, this.data_arr[idx_array[i]]);
+				dist_pt = leafDists[i - nodeInfo.idx_start];
 				
 				if(dist_pt < heap.largest(i_pt)) { // in radius
 					heap.push(i_pt, dist_pt, idx_array[i]);
@@ -1470,13 +1539,13 @@ abstract class NearestNeighborHeapSearch implements java.io.Serializable {
 			
 			// Recurse
 			if(reduced_dist_LB_1 <= reduced_dist_LB_2) {
-				querySingleDepthFirst(i1, pt, i_pt, heap, reduced_dist_LB_1);
-				querySingleDepthFirst(i2, pt, i_pt, heap, reduced_dist_LB_2);
+				querySingleDepthFirst(i1, pt, i_pt, heap, reduced_dist_LB_1, leafDists);
+				querySingleDepthFirst(i2, pt, i_pt, heap, reduced_dist_LB_2, leafDists);
 				
 			} else { // opposite order
 				
-				querySingleDepthFirst(i2, pt, i_pt, heap, reduced_dist_LB_2);
-				querySingleDepthFirst(i1, pt, i_pt, heap, reduced_dist_LB_1);
+				querySingleDepthFirst(i2, pt, i_pt, heap, reduced_dist_LB_2, leafDists);
+				querySingleDepthFirst(i1, pt, i_pt, heap, reduced_dist_LB_1, leafDists);
 			}
 		}
 	}
@@ -24,6 +24,7 @@ import com.clust4j.algo.Neighborhood;
 import com.clust4j.except.ModelNotFitException;
 import com.clust4j.log.Log.Tag.Algo;
 import com.clust4j.log.LogTimer;
+import com.clust4j.utils.CSRMatrix;
 import com.clust4j.utils.MatUtils;
 import com.clust4j.utils.VecUtils;
 
@@ -76,7 +77,7 @@ final public class NearestNeighbors extends BaseNeighborsModel {
 		return new ModelSummary(new Object[]{
 				"Num Rows","Num Cols","Metric","Algo","K","Leaf Size","Allow Par."
 			}, new Object[]{
-				m,data.getColumnDimension(),getSeparabilityMetric(),
+				m,dataRef().getColumnDimension(),getSeparabilityMetric(),
 				alg, kNeighbors, leafSize,
 				parallel
 			});
@@ -97,7 +98,8 @@ final public class NearestNeighbors extends BaseNeighborsModel {
 					other.kNeighbors == this.kNeighbors : 
 						other.kNeighbors.intValue() == this.kNeighbors)
 				&& other.leafSize == this.leafSize
-				&& MatUtils.equalsExactly(other.fit_X, this.fit_X);
+				&& (this.isSparse() // data is compared by super if sparse
+					|| MatUtils.equalsExactly(other.fit_X, this.fit_X));
 		}
 		
 		return false;
@@ -126,7 +128,9 @@ final public class NearestNeighbors extends BaseNeighborsModel {
 			
 			// We can do parallel here!
 			Neighborhood initRes = null;
-			if(parallel) {
+			if(isSparse()) {
+				initRes = sparse_search.query(sparse_data, nNeighbors, SORT);
+			} else if(parallel) {
 				try {
 					initRes = ParallelNNSearch.doAll(fit_X, this, nNeighbors);
 				} catch(RejectedExecutionException r) {
@@ -244,6 +248,13 @@ final public class NearestNeighbors extends BaseNeighborsModel {
 	}
 	
 	public Neighborhood getNeighbors(RealMatrix x, int k) {
+		if(isSparse() && x instanceof CSRMatrix) {
+			if(null == res)
+				throw new ModelNotFitException("model not yet fit");
+			validateK(k, m);
+			return sparse_search.query((CSRMatrix)x, k, SORT);
+		}
+		
 		return getNeighbors(x.getData(), k, parallel);
 	}
 	
@@ -259,6 +270,9 @@ final public class NearestNeighbors extends BaseNeighborsModel {
 		
 		validateK(k, m); // Should be X.length  or m??
 		
+		if(isSparse())
+			return sparse_search.query(X, k, SORT);
+		
 		/*
 		 * Try parallel if we can...
 		 */
@@ -24,6 +24,7 @@ import com.clust4j.algo.Neighborhood;
 import com.clust4j.except.ModelNotFitException;
 import com.clust4j.log.LogTimer;
 import com.clust4j.log.Log.Tag.Algo;
+import com.clust4j.utils.CSRMatrix;
 import com.clust4j.utils.MatUtils;
 
 final public class RadiusNeighbors extends BaseNeighborsModel {
@@ -72,7 +73,7 @@ final public class RadiusNeighbors extends BaseNeighborsModel {
 		return new ModelSummary(new Object[]{
 				"Num Rows","Num Cols","Metric","Algo","Radius","Leaf Size","Allow Par."
 			}, new Object[]{
-				m,data.getColumnDimension(),getSeparabilityMetric(),
+				m,dataRef().getColumnDimension(),getSeparabilityMetric(),
 				alg, radius, leafSize,
 				parallel
 			});
@@ -110,7 +111,8 @@ final public class RadiusNeighbors extends BaseNeighborsModel {
 					other.radius == this.radius : 
 						other.radius.intValue() == this.radius)
 				&& other.leafSize == this.leafSize
-				&& MatUtils.equalsExactly(other.fit_X, this.fit_X);
+				&& (this.isSparse() // data is compared by super if sparse
+					|| MatUtils.equalsExactly(other.fit_X, this.fit_X));
 		}
 		
 		return false;
@@ -123,7 +125,9 @@ final public class RadiusNeighbors extends BaseNeighborsModel {
 				return this;
 
 			final LogTimer timer = new LogTimer();
-			Neighborhood initRes = new Neighborhood(tree.queryRadius(fit_X, radius, false));
+			Neighborhood initRes = isSparse() ?
+				sparse_search.queryRadius(sparse_data, radius) :
+					new Neighborhood(tree.queryRadius(fit_X, radius, false));
 			info("queried "+this.alg+" for radius neighbors in " + timer.toString());
 			
 			
@@ -207,6 +211,13 @@ final public class RadiusNeighbors extends BaseNeighborsModel {
 	}
 	
 	public Neighborhood getNeighbors(RealMatrix x, double rad) {
+		if(isSparse() && x instanceof CSRMatrix) {
+			if(null == res)
+				throw new ModelNotFitException("model not yet fit");
+			validateRadius(rad);
+			return sparse_search.queryRadius((CSRMatrix)x, rad);
+		}
+		
 		return getNeighbors(x.getData(), rad, parallel);
 	}
 	
@@ -215,6 +226,9 @@ final public class RadiusNeighbors extends BaseNeighborsModel {
 			throw new ModelNotFitException("model not yet fit");
 		validateRadius(rad);
 		
+		if(isSparse())
+			return sparse_search.queryRadius(X, rad);
+		
 		/*
 		 * Try parallel if we can...
 		 */
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.algo;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+import com.clust4j.algo.NearestNeighborHeapSearch.NeighborsHeap;
+import com.clust4j.metrics.pairwise.DistanceMetric;
+import com.clust4j.metrics.pairwise.Pairwise;
+import com.clust4j.utils.CSRMatrix;
+import com.clust4j.utils.MatUtils;
+import com.clust4j.utils.VecUtils;
+
+/**
+ * The exhaustive neighbor search used by the {@link BaseNeighborsModel}s when
+ * they are fit on a {@link CSRMatrix}. Space-partitioning trees require dense
+ * bounding volumes, so rather than densifying the data this evaluates the partial
+ * distance from each query to every stored row via
+ * {@link Pairwise#sparsePartialDistance(com.clust4j.metrics.pairwise.GeometricallySeparable, CSRMatrix, int, CSRMatrix, int)},
+ * which for the sparse-aware metrics is proportional to the non-zeros of the rows involved.
+ *
+ * <p>
+ * Query rows may be either sparse or dense. The k-nearest results are ordered
+ * like those of {@link NearestNeighborHeapSearch#query(double[][], int, boolean, boolean)},
+ * and radius results are in ascending row order.
+ *
+ * @author Taylor G Smith
+ */
+final class SparseBruteForceSearch implements java.io.Serializable {
+	private static final long serialVersionUID = 4213096573612873711L;
+
+	final CSRMatrix data;
+	final DistanceMetric dist_metric;
+	final int N_SAMPLES;
+
+	/** Computes the partial distances from query row <tt>q</tt> to every stored row */
+	private static interface QueryDistances {
+		void rDists(int q, double[] out);
+	}
+
+	SparseBruteForceSearch(final CSRMatrix data, final DistanceMetric dist_metric) {
+		this.data = data;
+		this.dist_metric = dist_metric;
+		this.N_SAMPLES = data.getRowDimension();
+	}
+
+
+
+	private QueryDistances distancesTo(final CSRMatrix X) {
+		if(X.getColumnDimension() != data.getColumnDimension())
+			throw new DimensionMismatchException(X.getColumnDimension(), data.getColumnDimension());
+
+		return new QueryDistances() {
+			@Override public void rDists(int q, double[] out) {
+				for(int i = 0; i < N_SAMPLES; i++)
+					out[i] = Pairwise.sparsePartialDistance(dist_metric, data, i, X, q);
+			}
+		};
+	}
+
+	private QueryDistances distancesTo(final double[][] X) {
+		MatUtils.checkDims(X);
+		if(X[0].length != data.getColumnDimension())
+			throw new DimensionMismatchException(X[0].length, data.getColumnDimension());
+
+		return new QueryDistances() {
+			@Override public void rDists(int q, double[] out) {
+				final double[] pt = X[q];
+				final double norm = Pairwise.sparseNorm(dist_metric, pt);
+				for(int i = 0; i < N_SAMPLES; i++)
+					out[i] = Pairwise.sparsePartialDistance(dist_metric, data, i, pt, norm);
+			}
+		};
+	}
+
+
+
+	Neighborhood query(final CSRMatrix X, int k, boolean sort) {
+		return query(distancesTo(X), X.getRowDimension(), k, sort);
+	}
+
+	Neighborhood query(final double[][] X, int k, boolean sort) {
+		return query(distancesTo(X), X.length, k, sort);
+	}
+
+	private Neighborhood query(final QueryDistances qd, final int mPrime, final int k, final boolean sort) {
+		if(this.N_SAMPLES < k)
+			throw new IllegalArgumentException(k+" is greater than rows in data");
+		if(k < 1) throw new IllegalArgumentException(k+" must exceed 0");
+
+		final NeighborsHeap heap = new NeighborsHeap(mPrime, k);
+		final double[] rDists = new double[N_SAMPLES];
+
+		for(int q = 0; q < mPrime; q++) {
+			qd.rDists(q, rDists);
+			for(int i = 0; i < N_SAMPLES; i++)
+				if(rDists[i] < heap.largest(q))
+					heap.push(q, rDists[i], i);
+		}
+
+		final Neighborhood distances_indices = heap.getArrays(sort);
+		final double[][] distances = distances_indices.getKey();
+		for(int i = 0; i < distances.length; i++)
+			for(int j = 0; j < distances[i].length; j++)
+				distances[i][j] = dist_metric.partialDistanceToDistance(distances[i][j]);
+
+		return new Neighborhood(distances, distances_indices.getValue());
+	}
+
+
+
+	Neighborhood queryRadius(final CSRMatrix X, double radius) {
+		return queryRadius(distancesTo(X), X.getRowDimension(), radius);
+	}
+
+	Neighborhood queryRadius(final double[][] X, double radius) {
+		return queryRadius(distancesTo(X), X.length, radius);
+	}
+
+	private Neighborhood queryRadius(final QueryDistances qd, final int mPrime, final double radius) {
+		if(radius <= 0)
+			throw new IllegalArgumentException("radius must be positive");
+
+		final double reduced_r = dist_metric.distanceToPartialDistance(radius);
+		final int[][] indices = new int[mPrime][];
+		final double[][] dists = new double[mPrime][];
+
+		final double[] rDists = new double[N_SAMPLES];
+		final int[] idx_arr_i = new int[N_SAMPLES];
+		final double[] dist_arr_i = new double[N_SAMPLES];
+
+		int count;
+		for(int q = 0; q < mPrime; q++) {
+			qd.rDists(q, rDists);
+
+			count = 0;
+			for(int i = 0; i < N_SAMPLES; i++) {
+				if(rDists[i] <= reduced_r) {
+					idx_arr_i[count] = i;
+					dist_arr_i[count++] = dist_metric.partialDistanceToDistance(rDists[i]);
+				}
+			}
+
+			indices[q] = VecUtils.slice(idx_arr_i, 0, count);
+			dists[q] = VecUtils.slice(dist_arr_i, 0, count);
+		}
+
+		return new Neighborhood(dists, indices);
+	}
+}
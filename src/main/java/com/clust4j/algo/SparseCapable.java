@@ -0,0 +1,38 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.algo;
+
+import com.clust4j.utils.CSRMatrix;
+
+/**
+ * Any {@link AbstractClusterer} implementing this interface can be fit directly
+ * on a {@link CSRMatrix}: the input is held in its compressed form (see
+ * {@link AbstractClusterer#isSparse()}) and is never densified. Any other
+ * model will densify a {@link CSRMatrix} on construction.
+ *
+ * @author Taylor G Smith
+ * @see KMeans
+ * @see DBSCAN
+ * @see NearestNeighbors
+ * @see RadiusNeighbors
+ */
+public interface SparseCapable extends java.io.Serializable {
+	/**
+	 * Whether the model was constructed from (and holds) a {@link CSRMatrix}
+	 * @return whether the model operates on sparse data
+	 */
+	public boolean isSparse();
+}
@@ -16,6 +16,7 @@
 package com.clust4j.kernel;
 
 import com.clust4j.metrics.pairwise.SimilarityMetric;
+import com.clust4j.utils.VecKernels;
 import com.clust4j.utils.VecUtils;
 
 /**
@@ -74,19 +75,9 @@ public abstract class Kernel implements SimilarityMetric {
 	final protected static double toHilbertPSpace(final double[] a, final double[] b) {
 		// Originally: 2*VecUtils.innerProductForceSerial(a, b) - VecUtils.innerProduct(a,a) - VecUtils.innerProduct(b,b);
 		// This costs 3N!!
+		// This only costs 1N
 		VecUtils.checkDims(a,b);
-		double ipab = 0, ipaa = 0, ipbb = 0;
-		int n = a.length;
-		
-		// This only costs 1N but is uglier...
-		for(int i = 0; i < n; i++) {
-			ipab += a[i] * b[i];
-			ipaa += a[i] * a[i];
-			ipbb += b[i] * b[i];
-		}
-		
-		//return 2*VecUtils.innerProductForceSerial(a, b) - VecUtils.innerProduct(a,a) - VecUtils.innerProduct(b,b);
-		return 2*ipab - ipaa - ipbb;
+		return VecKernels.hilbertPSpace(a, b);
 	}
 	
 	/**
@@ -40,6 +40,7 @@ public abstract class Log {
 		public static enum Algo implements Tag {
 			AFFINITY_PROP	{ @Override public String toString(){return "AFFINTY";} },
 			AGGLOMERATIVE 	{ @Override public String toString(){return "AGGLOM ";} },
+			BISECTING		{ @Override public String toString(){return "BKMEANS";} },
 			CLUST4J,
 			
 			/** To be used with any custom user cluster algo extensions... */
@@ -54,6 +55,7 @@ public abstract class Log {
 			KMEDOIDS		{ @Override public String toString(){return "KMEDOID";} },
 			KMEANS 			{ @Override public String toString(){return "K-MEANS";} },
 			MEANSHIFT		{ @Override public String toString(){return "MNSHIFT";} },
+			MINIBATCH		{ @Override public String toString(){return "MBKMEAN";} },
 			NEAREST			{ @Override public String toString(){return "NEAREST";} },
 			RADIUS          { @Override public String toString(){return "RADIUS ";} },
 			
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.metrics.pairwise;
+
+/**
+ * A {@link DistanceMetric} which can compute the partial distances from
+ * a single query point to a contiguous (or indexed) block of rows in one call.
+ * Implementations should hoist anything invariant in the query out of the 
+ * loop and keep the inner loop simple enough for the JIT to unroll. 
+ * 
+ * <p>
+ * Implementors guarantee that <tt>getDistance(a, b)</tt> is equal to
+ * <tt>partialDistanceToDistance(getPartialDistance(a, b))</tt>, and that the
+ * batch results are identical to the corresponding single calls.
+ * 
+ * <p>
+ * Metrics which do not implement this interface are handled by the generic
+ * loop in {@link Pairwise#partialDistances(GeometricallySeparable, double[], double[][], int, int, double[])}, 
+ * which is the preferred entry point for callers.
+ * 
+ * @author Taylor G Smith
+ */
+public interface BatchDistanceMetric extends DistanceMetric {
+	/**
+	 * Compute the partial distance between <tt>q</tt> and each of the rows
+	 * <tt>X[from]</tt> through <tt>X[to - 1]</tt>, storing the distance to 
+	 * <tt>X[i]</tt> in <tt>out[i - from]</tt>
+	 * @param q - the query point
+	 * @param X - the rows
+	 * @param from - the first row, inclusive
+	 * @param to - the last row, exclusive
+	 * @param out - an array of at least length <tt>to - from</tt>
+	 */
+	public void partialDistances(final double[] q, final double[][] X, 
+		final int from, final int to, final double[] out);
+	
+	/**
+	 * Compute the partial distance between <tt>q</tt> and each of the rows
+	 * <tt>X[idcs[from]]</tt> through <tt>X[idcs[to - 1]]</tt>, storing the distance to 
+	 * <tt>X[idcs[i]]</tt> in <tt>out[i - from]</tt>
+	 * @param q - the query point
+	 * @param X - the rows
+	 * @param idcs - the row indices
+	 * @param from - the first position in idcs, inclusive
+	 * @param to - the last position in idcs, exclusive
+	 * @param out - an array of at least length <tt>to - from</tt>
+	 */
+	public void partialDistances(final double[] q, final double[][] X, final int[] idcs,
+		final int from, final int to, final double[] out);
+}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.metrics.pairwise;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+import com.clust4j.utils.MatUtils;
+
+/**
+ * A bit-packed representation of a boolean matrix for evaluating the
+ * {@link Distance#binaryDistances()}. As in {@link BooleanSimilarity}, any
+ * non-zero element is treated as true. Each row is held in
+ * <tt>ceil(n / 64)</tt> longs, and the TT, TF and FT counts between two rows
+ * are computed one word at a time with {@link Long#bitCount(long)}, which
+ * reads 64 times less memory than walking the <tt>double[]</tt> rows.
+ *
+ * <p>
+ * The distances computed from the packed rows are identical to those of
+ * {@link Distance#getPartialDistance(double[], double[])}. The one exception
+ * is {@link Distance#HAMMING}, which compares the raw values rather than their
+ * truth; hence {@link #packIfBinary(GeometricallySeparable, double[][])} will
+ * only pack data for Hamming if every element is either zero or one.
+ *
+ * @author Taylor G Smith
+ */
+public final class BitPackedMatrix implements java.io.Serializable {
+	private static final long serialVersionUID = 3506843925710934880L;
+
+	final long[][] bits;
+	final int n;
+
+	private BitPackedMatrix(final long[][] bits, final int n) {
+		this.bits = bits;
+		this.n = n;
+	}
+
+	/**
+	 * Pack each row of <tt>X</tt>
+	 * @param X
+	 * @throws IllegalArgumentException if the matrix is empty
+	 * @throws DimensionMismatchException if the rows are not uniform
+	 * @return the packed matrix
+	 */
+	public static BitPackedMatrix pack(final double[][] X) {
+		MatUtils.checkDims(X);
+
+		final int n = X[0].length;
+		final long[][] bits = new long[X.length][];
+		for(int i = 0; i < X.length; i++) {
+			if(X[i].length != n)
+				throw new DimensionMismatchException(X[i].length, n);
+			bits[i] = packRow(X[i]);
+		}
+
+		return new BitPackedMatrix(bits, n);
+	}
+
+	/**
+	 * Pack a single vector. Bit <tt>i % 64</tt> of word <tt>i / 64</tt> is
+	 * set if <tt>x[i]</tt> is non-zero; trailing bits of the last word are zero.
+	 * @param x
+	 * @return the packed vector
+	 */
+	public static long[] packRow(final double[] x) {
+		final long[] out = new long[words(x.length)];
+		for(int i = 0; i < x.length; i++)
+			if(x[i] != 0)
+				out[i >>> 6] |= 1L << (i & 63);
+		return out;
+	}
+
+	/**
+	 * Pack <tt>X</tt> if <tt>geo</tt> is a binary {@link Distance} and the
+	 * packed results would be identical to the unpacked ones, otherwise return null
+	 * @param geo
+	 * @param X
+	 * @return the packed matrix or null
+	 */
+	public static BitPackedMatrix packIfBinary(final GeometricallySeparable geo, final double[][] X) {
+		return canPack(geo, X) ? pack(X) : null;
+	}
+
+	/**
+	 * Whether <tt>geo</tt> is a binary {@link Distance} and the packed
+	 * results for <tt>X</tt> would be identical to the unpacked ones
+	 * @param geo
+	 * @param X
+	 * @return whether X can be packed for the metric
+	 */
+	public static boolean canPack(final GeometricallySeparable geo, final double[][] X) {
+		if(!isBinary(geo) || null == X || 0 == X.length || 0 == X[0].length)
+			return false;
+
+		for(double[] row: X)
+			if(!canPack(geo, row))
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Whether <tt>geo</tt> is a binary {@link Distance} and the packed
+	 * results for <tt>x</tt> would be identical to the unpacked ones
+	 * @param geo
+	 * @param x
+	 * @return whether x can be packed for the metric
+	 */
+	public static boolean canPack(final GeometricallySeparable geo, final double[] x) {
+		if(!isBinary(geo))
+			return false;
+
+		if(Distance.HAMMING.equals(geo)) {
+			for(double d: x)
+				if(d != 0 && d != 1)
+					return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Whether <tt>geo</tt> is one of the {@link Distance#binaryDistances()}
+	 * @param geo
+	 * @return whether the metric is binary
+	 */
+	public static boolean isBinary(final GeometricallySeparable geo) {
+		return geo instanceof Distance && ((Distance)geo).isBinaryDistance();
+	}
+
+	static int words(final int n) {
+		return (n + 63) >>> 6;
+	}
+
+	public int getRowDimension() {
+		return bits.length;
+	}
+
+	public int getColumnDimension() {
+		return n;
+	}
+
+	/**
+	 * Returns the packed row. Note that this is not a copy.
+	 * @param i
+	 * @return the packed row
+	 */
+	public long[] getRowRef(final int i) {
+		return bits[i];
+	}
+
+	/**
+	 * Compute the partial distance between two packed vectors of
+	 * <tt>n</tt> bits each
+	 * @param dist - a binary distance
+	 * @param a
+	 * @param b
+	 * @param n - the number of (unpacked) features
+	 * @throws IllegalArgumentException if the metric is not binary
+	 * @return the partial distance
+	 */
+	public static double partialDistance(final Distance dist,
+			final long[] a, final long[] b, final int n) {
+		if(!dist.isBinaryDistance())
+			throw new IllegalArgumentException(dist + " is not a binary distance");
+		if(a.length != b.length)
+			throw new DimensionMismatchException(a.length, b.length);
+		return count(dist, a, b, n);
+	}
+
+	private static double count(final Distance dist, final long[] a, final long[] b, final int n) {
+		int tt = 0, tf = 0, ft = 0;
+		long x, y;
+		for(int w = 0; w < a.length; w++) {
+			x = a[w];
+			y = b[w];
+			tt += Long.bitCount(x & y);
+			tf += Long.bitCount(x & ~y);
+			ft += Long.bitCount(~x & y);
+		}
+
+		return dist.binaryPartialDistance(tt, tf, ft, n - tt - tf - ft, n);
+	}
+
+	/**
+	 * Compute the partial distance between <tt>q</tt> and each of the rows
+	 * <tt>from</tt> through <tt>to - 1</tt>, storing the distance to row
+	 * <tt>i</tt> in <tt>out[i - from]</tt>
+	 * @param dist - a binary distance
+	 * @param q - the packed query point
+	 * @param from
+	 * @param to
+	 * @param out
+	 * @throws IllegalArgumentException if the metric is not binary
+	 */
+	public void partialDistances(final Distance dist, final long[] q,
+			final int from, final int to, final double[] out) {
+		checkQuery(dist, q);
+		for(int r = from, k = 0; r < to; r++, k++)
+			out[k] = count(dist, q, bits[r], n);
+	}
+
+	/**
+	 * Compute the partial distance between <tt>q</tt> and each of the rows
+	 * <tt>idcs[from]</tt> through <tt>idcs[to - 1]</tt>, storing the distance to row
+	 * <tt>idcs[i]</tt> in <tt>out[i - from]</tt>
+	 * @param dist - a binary distance
+	 * @param q - the packed query point
+	 * @param idcs
+	 * @param from
+	 * @param to
+	 * @param out
+	 * @throws IllegalArgumentException if the metric is not binary
+	 */
+	public void partialDistances(final Distance dist, final long[] q, final int[] idcs,
+			final int from, final int to, final double[] out) {
+		checkQuery(dist, q);
+		for(int r = from, k = 0; r < to; r++, k++)
+			out[k] = count(dist, q, bits[idcs[r]], n);
+	}
+
+	private void checkQuery(final Distance dist, final long[] q) {
+		if(!dist.isBinaryDistance())
+			throw new IllegalArgumentException(dist + " is not a binary distance");
+		if(q.length != words(n))
+			throw new DimensionMismatchException(q.length, words(n));
+	}
+}
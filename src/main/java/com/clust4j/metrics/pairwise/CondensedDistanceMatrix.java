@@ -0,0 +1,538 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.metrics.pairwise;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.math3.linear.AbstractRealMatrix;
+
+/**
+ * A space efficient representation of a symmetric M x M distance matrix with 
+ * a zero diagonal. Only the <tt>M choose 2</tt> entries of the strict upper triangle
+ * are stored, flattened row by row:
+ * 
+ * <p>
+ * Original:
+ * <p>
+ * <table>
+ * <tr><td>0 </td><td>1 </td><td>2 </td><td>3</td></tr>
+ * <tr><td>0 </td><td>0 </td><td>1 </td><td>2</td></tr>
+ * <tr><td>0 </td><td>0 </td><td>0 </td><td>1</td></tr>
+ * <tr><td>0 </td><td>0 </td><td>0 </td><td>0</td></tr>
+ * </table>
+ * 
+ * <p>
+ * Flattened:
+ * <p>
+ * &lt;1 2 3 1 2 1&gt;
+ * 
+ * <p>
+ * This requires roughly half the memory of the square representation returned 
+ * by {@link Pairwise#getDistance(double[][], GeometricallySeparable, boolean, boolean)}.
+ * Since the lower triangle is implied by symmetry, {@link #get(int, int)} may be
+ * called with either ordering of the indices.
+ * 
+ * <p>
+ * Indices into the flattened vector are longs, and the vector itself lives in
+ * whichever {@link Storage} was requested. On-heap storage is bounded by the maximum
+ * Java array length (roughly M = 65,000); the {@link Storage#DIRECT} and 
+ * {@link Storage#MAPPED} variants are not. Any storage may hold its values in 
+ * {@link NumericPrecision#FLOAT}, which halves the footprint of the matrix.
+ * 
+ * @author Taylor G Smith
+ * @see Pairwise#getCondensedDistance(double[][], GeometricallySeparable, boolean)
+ */
+public abstract class CondensedDistanceMatrix implements java.io.Serializable {
+	private static final long serialVersionUID = 4169316306733578416L;
+	
+	/** The largest array the JVM will reliably allocate */
+	final static long MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+	
+	/** The row dimension of the original matrix */
+	final protected int m;
+	/** The number of stored entries */
+	final protected long length;
+	
+	
+	/**
+	 * Where the flattened upper triangle is stored
+	 * @author Taylor G Smith
+	 */
+	public static enum Storage implements java.io.Serializable {
+		/**
+		 * An array on the Java heap. The fastest option,
+		 * but limited to {@link Integer#MAX_VALUE} entries
+		 */
+		HEAP {
+			@Override
+			CondensedDistanceMatrix allocate(int m, NumericPrecision precision) {
+				return precision == NumericPrecision.FLOAT ? new OnHeapFloat(m) : new OnHeap(m);
+			}
+		},
+		
+		/**
+		 * Native memory outside of the Java heap, allocated via
+		 * {@link ByteBuffer#allocateDirect(int)}. Not bounded by the
+		 * heap size (<tt>-Xmx</tt>), but by <tt>-XX:MaxDirectMemorySize</tt>.
+		 */
+		DIRECT {
+			@Override
+			CondensedDistanceMatrix allocate(int m, NumericPrecision precision) {
+				return new Buffered(m, false, precision);
+			}
+		},
+		
+		/**
+		 * A temporary file mapped into memory via {@link FileChannel#map}.
+		 * The operating system pages the matrix in and out as needed, so it
+		 * can exceed physical memory at the cost of disk I/O.
+		 */
+		MAPPED {
+			@Override
+			CondensedDistanceMatrix allocate(int m, NumericPrecision precision) {
+				return new Buffered(m, true, precision);
+			}
+		};
+		
+		CondensedDistanceMatrix allocate(int m) {
+			return allocate(m, NumericPrecision.DOUBLE);
+		}
+		
+		abstract CondensedDistanceMatrix allocate(int m, NumericPrecision precision);
+	}
+	
+	
+	
+	protected CondensedDistanceMatrix(final int m) {
+		if(m < 0)
+			throw new IllegalArgumentException("m must not be negative");
+		
+		this.m = m;
+		this.length = (long)m * (long)(m - 1) / 2L;
+	}
+	
+	/**
+	 * Compute the condensed distance matrix of the rows in X on the heap. The computation is 
+	 * distributed across the ForkJoin pool when parallelism is permitted.
+	 * @param X
+	 * @param dist
+	 * @param partial - use the partial distance?
+	 * @return the condensed distance matrix
+	 */
+	public static CondensedDistanceMatrix build(final AbstractRealMatrix X, GeometricallySeparable dist, boolean partial) {
+		return build(X.getData(), dist, partial, Storage.HEAP);
+	}
+	
+	/**
+	 * Compute the condensed distance matrix of the rows in X in the provided storage. 
+	 * The computation is distributed across the ForkJoin pool when parallelism is permitted.
+	 * @param X
+	 * @param dist
+	 * @param partial - use the partial distance?
+	 * @param storage
+	 * @return the condensed distance matrix
+	 */
+	public static CondensedDistanceMatrix build(final double[][] X, GeometricallySeparable dist, boolean partial, Storage storage) {
+		return build(X, dist, partial, storage, NumericPrecision.DOUBLE);
+	}
+	
+	/**
+	 * Compute the condensed distance matrix of the rows in X in the provided storage
+	 * and precision. The computation is distributed across the ForkJoin pool when 
+	 * parallelism is permitted.
+	 * @param X
+	 * @param dist
+	 * @param partial - use the partial distance?
+	 * @param storage
+	 * @param precision
+	 * @return the condensed distance matrix
+	 */
+	public static CondensedDistanceMatrix build(final double[][] X, GeometricallySeparable dist, 
+			boolean partial, Storage storage, NumericPrecision precision) {
+		final CondensedDistanceMatrix out = storage.allocate(X.length, precision);
+		Pairwise.condensed(X, dist, partial, 1.0, out);
+		return out;
+	}
+	
+	/**
+	 * Wrap an existing flattened upper triangle (not copied) 
+	 * @param m - the row dimension of the original matrix
+	 * @param dists - the flattened vector
+	 * @throws IllegalArgumentException if the vector length does not equal m choose 2
+	 * @return the condensed distance matrix
+	 */
+	public static CondensedDistanceMatrix wrap(final int m, final double[] dists) {
+		return new OnHeap(m, dists);
+	}
+	
+	
+	/**
+	 * Identify the index in the flattened vector of the matrix cell (i, j).
+	 * The indices may be provided in either order; mat[0][3] and mat[3][0] 
+	 * both correspond to vec[2] in the class example. Computed in 
+	 * long arithmetic so it will not overflow for large M.
+	 * 
+	 * @param m
+	 * @param i
+	 * @param j
+	 * @throws IllegalArgumentException if i == j
+	 * @return the corresponding vector index
+	 */
+	public static long getIndex(final int m, final int i, final int j) {
+		if(i < j)
+			return (long)m * i - ((long)i * (i + 1) / 2) + (j - i - 1);
+		else if(i > j)
+			return (long)m * j - ((long)j * (j + 1) / 2) + (i - j - 1);
+		throw new IllegalArgumentException(i+", "+j+"; i should not equal j");
+	}
+	
+	/**
+	 * Get the index in the flattened vector of the cell (i, i + 1),
+	 * the first stored entry of row <tt>i</tt>. The entries (i, j) for all 
+	 * j &gt; i are contiguous from this index onward.
+	 * @param i
+	 * @return the index of the start of the row's upper triangular segment
+	 */
+	public long rowStart(final int i) {
+		return getIndex(m, i, i + 1);
+	}
+	
+	/**
+	 * Get the distance between rows i and j. The diagonal is zero.
+	 * @param i
+	 * @param j
+	 * @return the distance
+	 */
+	public double get(final int i, final int j) {
+		return i == j ? 0.0 : get(getIndex(m, i, j));
+	}
+	
+	/**
+	 * Set the distance between rows i and j (and, implicitly, j and i)
+	 * @param i
+	 * @param j
+	 * @param val
+	 * @throws IllegalArgumentException if i == j
+	 */
+	public void set(final int i, final int j, final double val) {
+		set(getIndex(m, i, j), val);
+	}
+	
+	/**
+	 * Expand row <tt>i</tt> of the implied square matrix
+	 * @param i
+	 * @return a new vector of length M
+	 */
+	public double[] getRow(final int i) {
+		return getRow(i, new double[m]);
+	}
+	
+	/**
+	 * Expand row <tt>i</tt> of the implied square matrix into the 
+	 * provided buffer, so the same buffer can be re-used over many rows.
+	 * @param i
+	 * @param buffer - an array of at least length M
+	 * @return the buffer
+	 */
+	public double[] getRow(final int i, final double[] buffer) {
+		// Lower triangle: column i of rows above, strided
+		for(int j = 0; j < i; j++)
+			buffer[j] = get(getIndex(m, j, i));
+		
+		buffer[i] = 0.0;
+		
+		// Upper triangle: contiguous
+		long idx = i < m - 1 ? rowStart(i) : 0;
+		for(int j = i + 1; j < m; j++, idx++)
+			buffer[j] = get(idx);
+		
+		return buffer;
+	}
+	
+	/**
+	 * The row (and column) dimension of the implied square matrix
+	 * @return M
+	 */
+	public int size() {
+		return m;
+	}
+	
+	/**
+	 * The number of stored entries: M choose 2
+	 * @return the length of the flattened vector
+	 */
+	public long length() {
+		return length;
+	}
+	
+	/**
+	 * Get the value at the index in the flattened vector
+	 * @param idx
+	 * @return the value
+	 */
+	abstract public double get(final long idx);
+	
+	/**
+	 * Set the value at the index in the flattened vector
+	 * @param idx
+	 * @param val
+	 */
+	abstract public void set(final long idx, final double val);
+	
+	/**
+	 * Identify the position of the first minimum value in the 
+	 * flattened vector between <tt>from</tt> (inclusive) and 
+	 * <tt>to</tt> (exclusive). Storage implementations override this
+	 * with a tight loop over their backing memory, as this is
+	 * the hot path of linkage scans.
+	 * @param from
+	 * @param to
+	 * @return the index of the minimum, or -1 if the range is empty or all NaN
+	 */
+	public long argMin(final long from, final long to) {
+		long idx = -1;
+		double min = Double.POSITIVE_INFINITY, d;
+		for(long i = from; i < to; i++) {
+			d = get(i);
+			if(d < min || (idx == -1 && d == min)) {
+				min = d;
+				idx = i;
+			}
+		}
+		
+		return idx;
+	}
+	
+	/**
+	 * The storage backing this matrix
+	 * @return the storage
+	 */
+	abstract public Storage getStorage();
+	
+	/**
+	 * The precision in which values are held. Values set
+	 * on a {@link NumericPrecision#FLOAT} matrix are rounded.
+	 * @return the precision
+	 */
+	abstract public NumericPrecision getPrecision();
+	
+	
+	
+	/**
+	 * The flattened vector in a single <tt>double[]</tt>
+	 * @author Taylor G Smith
+	 */
+	static final class OnHeap extends CondensedDistanceMatrix {
+		private static final long serialVersionUID = -1786102830357405651L;
+		final double[] dists;
+		
+		OnHeap(final int m) {
+			super(m);
+			if(length > MAX_ARRAY_LENGTH)
+				throw new IllegalArgumentException("m="+m+" requires "+length+" entries, which "
+					+ "exceeds the maximum heap array size; use DIRECT or MAPPED storage");
+			this.dists = new double[(int)length];
+		}
+		
+		OnHeap(final int m, final double[] dists) {
+			super(m);
+			if(dists.length != length)
+				throw new IllegalArgumentException("vector length ("+dists.length
+					+") does not equal m choose 2 for m="+m);
+			this.dists = dists;
+		}
+		
+		@Override public double get(long idx) 				{ return dists[(int)idx]; }
+		@Override public void set(long idx, double val) 	{ dists[(int)idx] = val; }
+		@Override public Storage getStorage() 				{ return Storage.HEAP; }
+		@Override public NumericPrecision getPrecision()			{ return NumericPrecision.DOUBLE; }
+		
+		@Override 
+		public long argMin(final long from, final long to) {
+			final double[] d = dists;
+			int idx = -1;
+			double min = Double.POSITIVE_INFINITY;
+			for(int i = (int)from, end = (int)to; i < end; i++) {
+				if(d[i] < min || (idx == -1 && d[i] == min)) {
+					min = d[i];
+					idx = i;
+				}
+			}
+			
+			return idx;
+		}
+	}
+	
+	
+	
+	/**
+	 * The flattened vector in a single <tt>float[]</tt>
+	 * @author Taylor G Smith
+	 */
+	static final class OnHeapFloat extends CondensedDistanceMatrix {
+		private static final long serialVersionUID = 2937465513870235512L;
+		final float[] dists;
+		
+		OnHeapFloat(final int m) {
+			super(m);
+			if(length > MAX_ARRAY_LENGTH)
+				throw new IllegalArgumentException("m="+m+" requires "+length+" entries, which "
+					+ "exceeds the maximum heap array size; use DIRECT or MAPPED storage");
+			this.dists = new float[(int)length];
+		}
+		
+		@Override public double get(long idx) 				{ return dists[(int)idx]; }
+		@Override public void set(long idx, double val) 	{ dists[(int)idx] = (float)val; }
+		@Override public Storage getStorage() 				{ return Storage.HEAP; }
+		@Override public NumericPrecision getPrecision()			{ return NumericPrecision.FLOAT; }
+		
+		@Override 
+		public long argMin(final long from, final long to) {
+			final float[] d = dists;
+			int idx = -1;
+			float min = Float.POSITIVE_INFINITY;
+			for(int i = (int)from, end = (int)to; i < end; i++) {
+				if(d[i] < min || (idx == -1 && d[i] == min)) {
+					min = d[i];
+					idx = i;
+				}
+			}
+			
+			return idx;
+		}
+	}
+	
+	
+	
+	/**
+	 * The flattened vector split over several {@link ByteBuffer} segments
+	 * outside of the Java heap, each addressable by an int. Only absolute
+	 * get/put operations are used, so distinct indices may be written
+	 * concurrently. The buffers cannot be serialized, so neither can this.
+	 * @author Taylor G Smith
+	 */
+	static final class Buffered extends CondensedDistanceMatrix {
+		private static final long serialVersionUID = -6016396245683089577L;
+		/** 2^27 entries, or at most 1GB, per segment */
+		final static int SEGMENT_SHIFT = 27;
+		
+		final boolean mapped;
+		final NumericPrecision precision;
+		final boolean single;
+		final int shift;
+		final long mask;
+		final transient ByteBuffer[] segments;
+		
+		Buffered(final int m, final boolean mapped, final NumericPrecision precision) {
+			this(m, mapped, precision, SEGMENT_SHIFT);
+		}
+		
+		/**
+		 * Visible for testing with a smaller segment size
+		 */
+		Buffered(final int m, final boolean mapped, final NumericPrecision precision, final int shift) {
+			super(m);
+			this.mapped = mapped;
+			this.precision = precision;
+			this.single = precision == NumericPrecision.FLOAT;
+			this.shift = shift;
+			this.mask = (1L << shift) - 1;
+			
+			final long segLen = 1L << shift;
+			final int numSegments = (int)((length + segLen - 1) >>> shift);
+			final int width = precision.bytes();
+			this.segments = new ByteBuffer[numSegments];
+			
+			if(mapped) {
+				mapSegments(segLen, width);
+			} else {
+				for(int s = 0; s < numSegments; s++) {
+					final long len = Math.min(segLen, length - s * segLen);
+					segments[s] = ByteBuffer.allocateDirect((int)(len * width))
+						.order(ByteOrder.nativeOrder());
+				}
+			}
+		}
+		
+		private void mapSegments(final long segLen, final int width) {
+			RandomAccessFile raf = null;
+			File file = null;
+			try {
+				file = File.createTempFile("clust4j-dist", ".bin");
+				raf = new RandomAccessFile(file, "rw");
+				raf.setLength(length * width);
+				
+				// The mappings remain valid after the channel is closed
+				final FileChannel channel = raf.getChannel();
+				for(int s = 0; s < segments.length; s++) {
+					final long len = Math.min(segLen, length - s * segLen);
+					segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, s * segLen * width, len * width)
+						.order(ByteOrder.nativeOrder());
+				}
+			} catch(IOException e) {
+				throw new IllegalStateException("could not map distance matrix to a temporary file", e);
+			} finally {
+				if(null != raf) {
+					try { raf.close(); } catch(IOException e) { /* mapping already established */ }
+				}
+				
+				// The mappings outlive the file's name, so the disk space is freed once they are 
+				// collected. Where a mapped file cannot be deleted (as on Windows), defer to exit.
+				if(null != file && !file.delete())
+					file.deleteOnExit();
+			}
+		}
+		
+		@Override 
+		public double get(long idx) { 
+			final ByteBuffer seg = segments[(int)(idx >>> shift)];
+			final int off = (int)(idx & mask);
+			return single ? seg.getFloat(off << 2) : seg.getDouble(off << 3); 
+		}
+		
+		@Override 
+		public void set(long idx, double val) { 
+			final ByteBuffer seg = segments[(int)(idx >>> shift)];
+			final int off = (int)(idx & mask);
+			if(single)
+				seg.putFloat(off << 2, (float)val);
+			else
+				seg.putDouble(off << 3, val);
+		}
+		
+		@Override 
+		public Storage getStorage() { 
+			return mapped ? Storage.MAPPED : Storage.DIRECT; 
+		}
+		
+		@Override
+		public NumericPrecision getPrecision() {
+			return precision;
+		}
+		
+		private void writeObject(final ObjectOutputStream out) throws IOException {
+			throw new NotSerializableException(getStorage() + " distance matrices cannot be "
+				+ "serialized; use " + Storage.HEAP + " storage");
+		}
+	}
+}
@@ -20,9 +20,11 @@ import java.util.Collection;
 
 import org.apache.commons.math3.util.FastMath;
 
+import com.clust4j.utils.CSRMatrix;
+import com.clust4j.utils.VecKernels;
 import com.clust4j.utils.VecUtils;
 
-public enum Distance implements DistanceMetric, java.io.Serializable {
+public enum Distance implements BatchDistanceMetric, SparseSeparable, java.io.Serializable {
 	HAMMING {
 		
 		@Override
@@ -38,6 +40,11 @@ public enum Distance implements DistanceMetric, java.io.Serializable {
 			return ct / n;
 		}
 		
+		@Override
+		double binaryPartialDistance(double ctt, double ctf, double cft, double cff, int n) {
+			return (ctf + cft) / n;
+		}
+		
 		@Override
 		public String getName() {
 			return "Hamming";
@@ -51,14 +58,7 @@ public enum Distance implements DistanceMetric, java.io.Serializable {
 		@Override 
 		public double getPartialDistance(final double[] a, final double[] b) {
 			VecUtils.checkDims(a,b);
-			
-			double sum = 0;
-			for(int i = 0; i < a.length; i++) {
-				double diff = a[i] - b[i];
-				sum += FastMath.abs(diff);
-			}
-			
-			return sum;
+			return VecKernels.absoluteDifference(a, b);
 		}
 		
 		@Override
@@ -66,6 +66,40 @@ public enum Distance implements DistanceMetric, java.io.Serializable {
 			return 1.0;
 		}
 		
+		@Override
+		public void partialDistances(final double[] q, final double[][] X, 
+				final int from, final int to, final double[] out) {
+			for(int r = from, k = 0; r < to; r++, k++)
+				out[k] = manhattan(q, X[r]);
+		}
+		
+		@Override
+		public void partialDistances(final double[] q, final double[][] X, final int[] idcs,
+				final int from, final int to, final double[] out) {
+			for(int r = from, k = 0; r < to; r++, k++)
+				out[k] = manhattan(q, X[idcs[r]]);
+		}
+		
+		private double manhattan(final double[] q, final double[] x) {
+			VecUtils.checkDims(q, x);
+			return VecKernels.absoluteDifference(q, x);
+		}
+		
+		@Override
+		public double getPartialDistance(final CSRMatrix X, final int i, final CSRMatrix Y, final int j) {
+			return SparseKernels.absoluteDifference(X, i, Y, j);
+		}
+		
+		@Override
+		public double getPartialDistance(final CSRMatrix X, final int i, final double[] y, final double yNorm) {
+			return SparseKernels.absoluteDifference(X, i, y, yNorm);
+		}
+		
+		@Override
+		public double sparseNorm(final double[] y) {
+			return SparseKernels.normL1(y);
+		}
+		
 		@Override
 		public String getName() {
 			return "Manhattan";
@@ -92,15 +126,7 @@ public enum Distance implements DistanceMetric, java.io.Serializable {
 		@Override
 		public double getPartialDistance(final double[] a, final double[] b) {
 			VecUtils.checkDims(a,b);
-			
-			double sum = 0;
-			for(int i = 0; i < a.length; i++) {
-				// Don't use math.pow -- too expensive
-				double diff = a[i]-b[i];
-				sum += diff * diff;
-			}
-			
-			return sum;
+			return VecKernels.squaredDifference(a, b);
 		}
 		
 		@Override
@@ -108,6 +134,40 @@ public enum Distance implements DistanceMetric, java.io.Serializable {
 			return FastMath.sqrt(d);
 		}
 		
+		@Override
+		public void partialDistances(final double[] q, final double[][] X, 
+				final int from, final int to, final double[] out) {
+			for(int r = from, k = 0; r < to; r++, k++)
+				out[k] = squared(q, X[r]);
+		}
+		
+		@Override
+		public void partialDistances(final double[] q, final double[][] X, final int[] idcs,
+				final int from, final int to, final double[] out) {
+			for(int r = from, k = 0; r < to; r++, k++)
+				out[k] = squared(q, X[idcs[r]]);
+		}
+		
+		private double squared(final double[] q, final double[] x) {
+			VecUtils.checkDims(q, x);
+			return VecKernels.squaredDifference(q, x);
+		}
+		
+		@Override
+		public double getPartialDistance(final CSRMatrix X, final int i, final CSRMatrix Y, final int j) {
+			return SparseKernels.squaredDifference(X, i, Y, j);
+		}
+		
+		@Override
+		public double getPartialDistance(final CSRMatrix X, final int i, final double[] y, final double yNorm) {
+			return SparseKernels.squaredDifference(X, i, y, yNorm);
+		}
+		
+		@Override
+		public double sparseNorm(final double[] y) {
+			return SparseKernels.normSquared(y);
+		}
+		
 		@Override
 		public String getName() {
 			return "Euclidean";
@@ -173,16 +233,7 @@ public enum Distance implements DistanceMetric, java.io.Serializable {
 		@Override
 		public double getPartialDistance(final double[] a, final double[] b) {
 			VecUtils.checkDims(a, b);
-			
-			final int n = a.length;
-			double max = 0;
-			for(int i = 0; i < n; i++) {
-				double abs = FastMath.abs(a[i] - b[i]);
-				if(abs > max)
-					max = abs;
-			}
-			
-			return max;
+			return VecKernels.maxAbsoluteDifference(a, b);
 		}
 		
 		@Override
@@ -203,9 +254,11 @@ public enum Distance implements DistanceMetric, java.io.Serializable {
 		
 		@Override
 		public double getPartialDistance(final double[] a, final double[] b) {
-			BooleanSimilarity bool = BooleanSimilarity.build(a, b);
-			double ctt = bool.getFirst(), ctf = bool.getSecond(), cft = bool.getThird();
-			
+			return binaryPartialDistance(BooleanSimilarity.build(a, b), a.length);
+		}
+		
+		@Override
+		double binaryPartialDistance(double ctt, double ctf, double cft, double cff, int n) {
 			double numer = (ctf + cft);
 			
 			// This hack covers the case where all true (1) or all false (0)
@@ -225,10 +278,12 @@ public enum Distance implements DistanceMetric, java.io.Serializable {
 		
 		@Override
 		public double getPartialDistance(final double[] a, final double[] b) {
-			BooleanSimilarity bool = BooleanSimilarity.build(a, b);
-			final double ctt = bool.getFirst(), ctf = bool.getSecond(), cft = bool.getThird();
-			
-			return (ctf + cft - ctt + a.length) / (cft + ctf + a.length);
+			return binaryPartialDistance(BooleanSimilarity.build(a, b), a.length);
+		}
+		
+		@Override
+		double binaryPartialDistance(double ctt, double ctf, double cft, double cff, int n) {
+			return (ctf + cft - ctt + n) / (cft + ctf + n);
 		}
 		
 		@Override
@@ -243,8 +298,11 @@ public enum Distance implements DistanceMetric, java.io.Serializable {
 	ROGERS_TANIMOTO {
 		@Override
 		public double getPartialDistance(final double[]a, final double[] b) {
-			BooleanSimilarity bool = BooleanSimilarity.build(a, b);
-			final double ctt = bool.getFirst(), ctf = bool.getSecond(), cft = bool.getThird(), cff = bool.getFourth();
+			return binaryPartialDistance(BooleanSimilarity.build(a, b), a.length);
+		}
+		
+		@Override
+		double binaryPartialDistance(double ctt, double ctf, double cft, double cff, int n) {
 			final double R = 2 * (cft + ctf);
 			return 0 == R ? 0 : 
 				// Should be impossible to be NaN:
@@ -268,9 +326,12 @@ public enum Distance implements DistanceMetric, java.io.Serializable {
 				BooleanSimilarity.asBool(a), 
 				BooleanSimilarity.asBool(b));*/
 			
-			BooleanSimilarity bool = BooleanSimilarity.build(a, b);			
-			final double n = (double)a.length;
-			return (n - bool.getFirst()) / n;
+			return binaryPartialDistance(BooleanSimilarity.build(a, b), a.length);
+		}
+		
+		@Override
+		double binaryPartialDistance(double ctt, double ctf, double cft, double cff, int n) {
+			return (n - ctt) / (double)n;
 		}
 		
 		@Override
@@ -286,8 +347,11 @@ public enum Distance implements DistanceMetric, java.io.Serializable {
 		
 		@Override
 		public double getPartialDistance(final double[] a, final double[] b) {
-			BooleanSimilarity bool = BooleanSimilarity.build(a, b);
-			final double ctt = bool.getFirst(), ctf = bool.getSecond(), cft = bool.getThird();
+			return binaryPartialDistance(BooleanSimilarity.build(a, b), a.length);
+		}
+		
+		@Override
+		double binaryPartialDistance(double ctt, double ctf, double cft, double cff, int n) {
 			final double R = 2 * (cft + ctf);
 
 			// If all values in a and b are 0s, the distance will be NaN.
@@ -308,8 +372,11 @@ public enum Distance implements DistanceMetric, java.io.Serializable {
 		
 		@Override
 		public double getPartialDistance(final double[] a, final double[] b) {
-			BooleanSimilarity bool = BooleanSimilarity.build(a, b);
-			final double ctt = bool.getFirst(), ctf = bool.getSecond(), cft = bool.getThird(), cff = bool.getFourth();
+			return binaryPartialDistance(BooleanSimilarity.build(a, b), a.length);
+		}
+		
+		@Override
+		double binaryPartialDistance(double ctt, double ctf, double cft, double cff, int n) {
 			final double R = 2 * cft * ctf; // per scipy 0.17. 0.14 had 2 * (cft + ctf)
 			
 			// If all values in a and b are 0s, the distance will be NaN.
@@ -438,6 +505,47 @@ public enum Distance implements DistanceMetric, java.io.Serializable {
 		return DEFAULT_P;
 	}
 	
+	/**
+	 * The generic batch implementation. Since this is dispatched on the
+	 * enum constant itself, the per-row call is monomorphic.
+	 * {@link #EUCLIDEAN} and {@link #MANHATTAN} override this with
+	 * specialized kernels.
+	 */
+	@Override
+	public void partialDistances(final double[] q, final double[][] X, 
+			final int from, final int to, final double[] out) {
+		for(int r = from, k = 0; r < to; r++, k++)
+			out[k] = getPartialDistance(q, X[r]);
+	}
+	
+	@Override
+	public void partialDistances(final double[] q, final double[][] X, final int[] idcs,
+			final int from, final int to, final double[] out) {
+		for(int r = from, k = 0; r < to; r++, k++)
+			out[k] = getPartialDistance(q, X[idcs[r]]);
+	}
+	
+	/**
+	 * The generic sparse implementation densifies the rows. {@link #EUCLIDEAN}
+	 * and {@link #MANHATTAN} override this with merge-join kernels.
+	 */
+	@Override
+	public double getPartialDistance(final CSRMatrix X, final int i, final CSRMatrix Y, final int j) {
+		SparseKernels.checkDims(X, Y);
+		return getPartialDistance(X.getRow(i), Y.getRow(j));
+	}
+	
+	@Override
+	public double getPartialDistance(final CSRMatrix X, final int i, final double[] y, final double yNorm) {
+		SparseKernels.checkDims(X, y);
+		return getPartialDistance(X.getRow(i), y);
+	}
+	
+	@Override
+	public double sparseNorm(final double[] y) {
+		return 0.0;
+	}
+	
 	@Override
 	public String toString() {
 		return getName();
@@ -453,6 +561,26 @@ public enum Distance implements DistanceMetric, java.io.Serializable {
 		return binary;
 	}
 	
+	/**
+	 * Compute the partial distance from the boolean contingency counts of two
+	 * vectors of length <tt>n</tt>. Only defined for the {@link #binaryDistances()};
+	 * this is shared by the <tt>double[]</tt> implementations and the
+	 * {@link BitPackedMatrix} so the two produce identical results.
+	 * @param ctt - count of TT
+	 * @param ctf - count of TF
+	 * @param cft - count of FT
+	 * @param cff - count of FF
+	 * @param n - the vector length
+	 * @throws UnsupportedOperationException if the metric is not binary
+	 */
+	double binaryPartialDistance(double ctt, double ctf, double cft, double cff, int n) {
+		throw new UnsupportedOperationException(getName() + " is not a binary distance");
+	}
+	
+	final double binaryPartialDistance(BooleanSimilarity bool, int n) {
+		return binaryPartialDistance(bool.getFirst(), bool.getSecond(), bool.getThird(), bool.getFourth(), n);
+	}
+	
 	private static double nanInf(double d) {
 		return Double.isNaN(d) ? Double.POSITIVE_INFINITY : d;
 	}
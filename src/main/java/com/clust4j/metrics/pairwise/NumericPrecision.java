@@ -0,0 +1,66 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.metrics.pairwise;
+
+/**
+ * The numeric precision in which O(M<sup>2</sup>) pairwise structures are stored.
+ * Distances are always <i>computed</i> in double precision; the precision only 
+ * governs how the results are held. For clustering, the relative order of distances 
+ * rarely requires 53 bits of mantissa, and {@link #FLOAT} halves both the memory 
+ * footprint and the memory bandwidth of scans over the matrix.
+ * 
+ * @author Taylor G Smith
+ */
+public enum NumericPrecision implements java.io.Serializable {
+	/** 64-bit IEEE 754 storage */
+	DOUBLE {
+		@Override 
+		public double round(final double d) {
+			return d;
+		}
+		
+		@Override
+		public int bytes() {
+			return 8;
+		}
+	},
+	
+	/** 32-bit IEEE 754 storage */
+	FLOAT {
+		@Override 
+		public double round(final double d) {
+			return (float)d;
+		}
+		
+		@Override
+		public int bytes() {
+			return 4;
+		}
+	};
+	
+	/**
+	 * Round a double to the nearest value representable in this precision
+	 * @param d
+	 * @return the rounded value
+	 */
+	abstract public double round(final double d);
+	
+	/**
+	 * The number of bytes required to store a single value
+	 * @return the width in bytes
+	 */
+	abstract public int bytes();
+}
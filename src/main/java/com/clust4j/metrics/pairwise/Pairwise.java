@@ -15,9 +15,29 @@
  *******************************************************************************/
 package com.clust4j.metrics.pairwise;
 
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
 import org.apache.commons.math3.linear.AbstractRealMatrix;
+import org.apache.commons.math3.util.FastMath;
+
+import com.clust4j.GlobalState;
+import com.clust4j.utils.CSRMatrix;
+import com.clust4j.utils.EntryPair;
+import com.clust4j.utils.MatUtils;
+import com.clust4j.utils.TopKHeap;
+import com.clust4j.utils.VecUtils;
 
 public abstract class Pairwise {
+	/**
+	 * The approximate number of bytes the two row-blocks of a single tile 
+	 * should occupy. Sized to sit comfortably inside a typical L2 cache
+	 * so the rows of a tile are re-used while they are still hot.
+	 */
+	final static int TILE_BYTES = 1 << 18;
+	final static int MIN_TILE_SIZE = 16;
+	final static int MAX_TILE_SIZE = 256;
+	
 	public static double[][] getDistance(AbstractRealMatrix a,
 			GeometricallySeparable geo,
 			boolean upperTriang, boolean partial) {
@@ -44,10 +64,520 @@ public abstract class Pairwise {
 		return pairwise(a, geo, upperTriang, partial, -1.0);
 	}
 	
+	/**
+	 * Compute the distance matrix, optionally computing {@link Distance#EUCLIDEAN}
+	 * distances via the expansion <tt>||x||<sup>2</sup> + ||y||<sup>2</sup> - 2x&middot;y</tt>, which
+	 * reduces the bulk of the work to a single cache-blocked matrix product. This is considerably
+	 * faster for high-dimensional data, but is subject to round-off error on the order of 
+	 * machine epsilon times the squared norms, so near-zero distances in particular may be
+	 * inexact. The <tt>gemm</tt> flag is ignored for any other metric.
+	 * @param a
+	 * @param geo
+	 * @param upperTriang
+	 * @param partial
+	 * @param gemm - whether to use the matrix product for Euclidean distance
+	 * @return the distance matrix
+	 */
+	public static double[][] getDistance(double[][] a, 
+			GeometricallySeparable geo, 
+			boolean upperTriang, boolean partial, boolean gemm) {
+		
+		if(gemm && Distance.EUCLIDEAN.equals(geo)) {
+			final double[][] out = gemmEuclidean(a, a, partial, true);
+			if(upperTriang) // the product computes the full matrix
+				for(int i = 1; i < out.length; i++)
+					for(int j = 0; j < i; j++)
+						out[i][j] = 0.0;
+			
+			return out;
+		}
+		
+		return getDistance(a, geo, upperTriang, partial);
+	}
+	
+	/**
+	 * Compute the distances between each row in X and each row in Y, 
+	 * where <tt>out[i][j]</tt> is the distance between <tt>X[i]</tt> and <tt>Y[j]</tt>.
+	 * @param X
+	 * @param Y
+	 * @param geo
+	 * @param partial
+	 * @param gemm - whether to use the matrix product for Euclidean distance
+	 * @see #getDistance(double[][], GeometricallySeparable, boolean, boolean, boolean)
+	 * @return the M<sub>x</sub> x M<sub>y</sub> distance matrix
+	 */
+	public static double[][] getCrossDistance(double[][] X, double[][] Y, 
+			GeometricallySeparable geo, boolean partial, boolean gemm) {
+		
+		if(gemm && Distance.EUCLIDEAN.equals(geo))
+			return gemmEuclidean(X, Y, partial, false);
+		
+		final double[][] out = new double[X.length][Y.length];
+		if(BitPackedMatrix.canPack(geo, X) && BitPackedMatrix.canPack(geo, Y)) {
+			final BitPackedMatrix bits = BitPackedMatrix.pack(Y);
+			if(X[0].length != Y[0].length)
+				throw new DimensionMismatchException(Y[0].length, X[0].length);
+			
+			for(int i = 0; i < X.length; i++) {
+				bits.partialDistances((Distance)geo, BitPackedMatrix.packRow(X[i]), 0, Y.length, out[i]);
+				if(!partial)
+					for(int j = 0; j < Y.length; j++)
+						out[i][j] = geo.partialDistanceToDistance(out[i][j]);
+			}
+			
+			return out;
+		}
+		
+		for(int i = 0; i < X.length; i++)
+			distances(geo, X[i], Y, 0, Y.length, partial, out[i]);
+		
+		return out;
+	}
+	
+	/**
+	 * Computes Euclidean distances as <tt>||x||<sup>2</sup> + ||y||<sup>2</sup> - 2x&middot;y</tt>. 
+	 * The inner products come from {@link MatUtils#multiply(double[][], double[][])} (cache blocked), 
+	 * or {@link MatUtils#multiplyDistributed(double[][], double[][])} when parallelism is permitted. 
+	 * Catastrophic cancellation can produce small negative values for (nearly) identical 
+	 * rows; these are clamped to zero.
+	 * @param X
+	 * @param Y
+	 * @param partial - whether to return the squared distance
+	 * @param self - whether X and Y are the same matrix, in which case the result is
+	 * made exactly symmetric with a zero diagonal
+	 */
+	static double[][] gemmEuclidean(final double[][] X, final double[][] Y, 
+			final boolean partial, final boolean self) {
+		
+		MatUtils.checkDims(X);
+		MatUtils.checkDims(Y);
+		if(X[0].length != Y[0].length)
+			throw new DimensionMismatchException(Y[0].length, X[0].length);
+		
+		final int mx = X.length, my = Y.length;
+		final double[] xx = rowNormsSquared(X);
+		final double[] yy = self ? xx : rowNormsSquared(Y);
+		
+		final double[][] yt = MatUtils.transpose(Y);
+		final double[][] out = useParallelism(FastMath.max(mx, my)) ?
+			MatUtils.multiplyDistributed(X, yt) :
+				MatUtils.multiply(X, yt);
+		
+		// Transform the inner products in place
+		double d;
+		for(int i = 0; i < mx; i++) {
+			final double[] row = out[i];
+			for(int j = self ? i : 0; j < my; j++) {
+				if(self && i == j) {
+					row[j] = 0.0;
+					continue;
+				}
+				
+				d = FastMath.max(0.0, xx[i] + yy[j] - 2.0 * row[j]);
+				row[j] = partial ? d : FastMath.sqrt(d);
+				
+				if(self)
+					out[j][i] = row[j];
+			}
+		}
+		
+		return out;
+	}
+	
+	static double[] rowNormsSquared(final double[][] X) {
+		final double[] norms = new double[X.length];
+		for(int i = 0; i < X.length; i++)
+			norms[i] = VecUtils.innerProduct(X[i], X[i]);
+		return norms;
+	}
+	
+	/**
+	 * Compute the distance matrix in {@link NumericPrecision#FLOAT}, which requires 
+	 * half the memory of {@link #getDistance(double[][], GeometricallySeparable, boolean, boolean)}.
+	 * Distances are computed in double precision and rounded on storage.
+	 * @param a
+	 * @param geo
+	 * @param upperTriang
+	 * @param partial
+	 * @return the single precision distance matrix
+	 */
+	public static float[][] getFloatDistance(double[][] a, 
+			GeometricallySeparable geo, 
+			boolean upperTriang, boolean partial) {
+		
+		return floatPairwise(a, geo, upperTriang, partial, 1.0);
+	}
+	
+	/**
+	 * Compute the similarity matrix in {@link NumericPrecision#FLOAT}, which requires 
+	 * half the memory of {@link #getSimilarity(double[][], GeometricallySeparable, boolean, boolean)}.
+	 * Similarities are computed in double precision and rounded on storage.
+	 * @param a
+	 * @param geo
+	 * @param upperTriang
+	 * @param partial
+	 * @return the single precision similarity matrix
+	 */
+	public static float[][] getFloatSimilarity(double[][] a, 
+			GeometricallySeparable geo, 
+			boolean upperTriang, boolean partial) {
+		
+		return floatPairwise(a, geo, upperTriang, partial, -1.0);
+	}
+	
+	/**
+	 * Compute the distance matrix in its condensed, upper triangular form
+	 * @param a
+	 * @param geo
+	 * @param partial
+	 * @return the condensed distance matrix
+	 */
+	public static CondensedDistanceMatrix getCondensedDistance(AbstractRealMatrix a,
+			GeometricallySeparable geo, boolean partial) {
+		return getCondensedDistance(a.getData(), geo, partial);
+	}
+	
+	/**
+	 * Compute the distance matrix in its condensed, upper triangular form
+	 * @param a
+	 * @param geo
+	 * @param partial
+	 * @return the condensed distance matrix
+	 */
+	public static CondensedDistanceMatrix getCondensedDistance(double[][] a,
+			GeometricallySeparable geo, boolean partial) {
+		return getCondensedDistance(a, geo, partial, CondensedDistanceMatrix.Storage.HEAP);
+	}
+	
+	/**
+	 * Compute the distance matrix in its condensed, upper triangular form,
+	 * backed by the provided storage. Use {@link CondensedDistanceMatrix.Storage#DIRECT}
+	 * or {@link CondensedDistanceMatrix.Storage#MAPPED} for matrices that will not
+	 * fit on the Java heap.
+	 * @param a
+	 * @param geo
+	 * @param partial
+	 * @param storage
+	 * @return the condensed distance matrix
+	 */
+	public static CondensedDistanceMatrix getCondensedDistance(double[][] a,
+			GeometricallySeparable geo, boolean partial, 
+			CondensedDistanceMatrix.Storage storage) {
+		return CondensedDistanceMatrix.build(a, geo, partial, storage);
+	}
+	
+	/**
+	 * Compute the distance matrix in its condensed, upper triangular form,
+	 * backed by the provided storage and held in the provided precision. 
+	 * {@link NumericPrecision#FLOAT} halves the footprint of the matrix.
+	 * @param a
+	 * @param geo
+	 * @param partial
+	 * @param storage
+	 * @param precision
+	 * @return the condensed distance matrix
+	 */
+	public static CondensedDistanceMatrix getCondensedDistance(double[][] a,
+			GeometricallySeparable geo, boolean partial, 
+			CondensedDistanceMatrix.Storage storage, NumericPrecision precision) {
+		return CondensedDistanceMatrix.build(a, geo, partial, storage, precision);
+	}
+	
+	/**
+	 * Compute the similarity matrix in its condensed, upper triangular form
+	 * @param a
+	 * @param geo
+	 * @param partial
+	 * @return the condensed similarity matrix
+	 */
+	public static CondensedDistanceMatrix getCondensedSimilarity(double[][] a,
+			GeometricallySeparable geo, boolean partial) {
+		final CondensedDistanceMatrix out = CondensedDistanceMatrix.Storage.HEAP.allocate(a.length);
+		return condensed(a, geo, partial, -1.0, out);
+	}
+	
 	private static double[][] pairwise(double[][] a,
 			GeometricallySeparable geo,
 			boolean upper, boolean partial, double scalar) {
 		
+		return useParallelism(a.length) ?
+			parallelPairwise(a, geo, upper, partial, scalar) :
+				serialPairwise(a, geo, upper, partial, scalar);
+	}
+	
+	/**
+	 * Computes the dense pairwise matrix in single precision. Since the tile
+	 * ordering is also the cache-friendly ordering, the serial path visits
+	 * the same tiles in a loop on the calling thread.
+	 */
+	static float[][] floatPairwise(final double[][] a,
+			final GeometricallySeparable geo,
+			final boolean upper, final boolean partial, final double scalar) {
+		
+		final int m = a.length;
+		final float[][] out = new float[m][m];
+		if(0 == m)
+			return out;
+		
+		final TileSchedule schedule = new TileSchedule(m, getTileSize(a[0].length));
+		final DenseFloatTileTask task = new DenseFloatTileTask(schedule, 0, 
+			schedule.numTiles(), a, BitPackedMatrix.packIfBinary(geo, a), 
+			geo, out, upper, partial, scalar);
+		
+		return useParallelism(m) ? 
+			GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(task) : 
+				task.computeTiles();
+	}
+	
+	/**
+	 * Computes the flattened upper triangle of the pairwise matrix into <tt>out</tt>
+	 * @see CondensedDistanceMatrix
+	 */
+	static CondensedDistanceMatrix condensed(final double[][] a,
+			final GeometricallySeparable geo,
+			final boolean partial, final double scalar,
+			final CondensedDistanceMatrix out) {
+		
+		final int m = a.length;
+		final BitPackedMatrix bits = BitPackedMatrix.packIfBinary(geo, a);
+		
+		if(useParallelism(m)) {
+			final TileSchedule schedule = new TileSchedule(m, getTileSize(a[0].length));
+			return GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(
+				new CondensedTileTask(schedule, 0, schedule.numTiles(), a, bits, geo, out, partial, scalar));
+		}
+		
+		long r = 0;
+		final double[] row = new double[m];
+		for(int i = 0; i < m - 1; i++) {
+			distances(geo, bits, a, i, i + 1, m, partial, row);
+			for(int j = i + 1, k = 0; j < m; j++, k++, r++)
+				out.set(r, scalar * row[k]);
+		}
+		
+		return out;
+	}
+	
+	/**
+	 * Compute the partial distances between <tt>q</tt> and each of the rows <tt>X[from]</tt>
+	 * through <tt>X[to - 1]</tt>, storing the distance to <tt>X[i]</tt> in <tt>out[i - from]</tt>.
+	 * If the metric is a {@link BatchDistanceMetric}, its specialized implementation is used;
+	 * otherwise, this falls back to one {@link GeometricallySeparable#getPartialDistance(double[], double[])}
+	 * call per row.
+	 * @param geo
+	 * @param q - the query point
+	 * @param X - the rows
+	 * @param from - the first row, inclusive
+	 * @param to - the last row, exclusive
+	 * @param out - an array of at least length <tt>to - from</tt>
+	 */
+	public static void partialDistances(final GeometricallySeparable geo, final double[] q, 
+			final double[][] X, final int from, final int to, final double[] out) {
+		
+		if(geo instanceof BatchDistanceMetric) {
+			((BatchDistanceMetric)geo).partialDistances(q, X, from, to, out);
+			return;
+		}
+		
+		for(int r = from, k = 0; r < to; r++, k++)
+			out[k] = geo.getPartialDistance(q, X[r]);
+	}
+	
+	/**
+	 * Compute the partial distances between <tt>q</tt> and each of the rows <tt>X[idcs[from]]</tt>
+	 * through <tt>X[idcs[to - 1]]</tt>, storing the distance to <tt>X[idcs[i]]</tt> in <tt>out[i - from]</tt>.
+	 * If the metric is a {@link BatchDistanceMetric}, its specialized implementation is used;
+	 * otherwise, this falls back to one {@link GeometricallySeparable#getPartialDistance(double[], double[])}
+	 * call per row.
+	 * @param geo
+	 * @param q - the query point
+	 * @param X - the rows
+	 * @param idcs - the row indices
+	 * @param from - the first position in idcs, inclusive
+	 * @param to - the last position in idcs, exclusive
+	 * @param out - an array of at least length <tt>to - from</tt>
+	 */
+	public static void partialDistances(final GeometricallySeparable geo, final double[] q, 
+			final double[][] X, final int[] idcs, final int from, final int to, final double[] out) {
+		
+		if(geo instanceof BatchDistanceMetric) {
+			((BatchDistanceMetric)geo).partialDistances(q, X, idcs, from, to, out);
+			return;
+		}
+		
+		for(int r = from, k = 0; r < to; r++, k++)
+			out[k] = geo.getPartialDistance(q, X[idcs[r]]);
+	}
+	
+	/**
+	 * Like {@link #partialDistances(GeometricallySeparable, double[], double[][], int, int, double[])}, 
+	 * but computes the full distance if <tt>partial</tt> is false.
+	 */
+	static void distances(final GeometricallySeparable geo, final double[] q, 
+			final double[][] X, final int from, final int to, 
+			final boolean partial, final double[] out) {
+		
+		if(geo instanceof BatchDistanceMetric) {
+			((BatchDistanceMetric)geo).partialDistances(q, X, from, to, out);
+			if(!partial)
+				for(int k = 0; k < to - from; k++)
+					out[k] = geo.partialDistanceToDistance(out[k]);
+			return;
+		}
+		
+		for(int r = from, k = 0; r < to; r++, k++)
+			out[k] = partial ? geo.getPartialDistance(q, X[r]) : geo.getDistance(q, X[r]);
+	}
+	
+	/**
+	 * Compute the partial distance between row <tt>i</tt> of <tt>X</tt> and row <tt>j</tt>
+	 * of <tt>Y</tt>. If the metric is a {@link SparseSeparable}, its sparse implementation
+	 * is used; otherwise, the rows are densified.
+	 * @param geo
+	 * @param X
+	 * @param i
+	 * @param Y
+	 * @param j
+	 * @return the partial distance
+	 */
+	public static double sparsePartialDistance(final GeometricallySeparable geo,
+			final CSRMatrix X, final int i, final CSRMatrix Y, final int j) {
+		
+		if(geo instanceof SparseSeparable)
+			return ((SparseSeparable)geo).getPartialDistance(X, i, Y, j);
+		return geo.getPartialDistance(X.getRow(i), Y.getRow(j));
+	}
+	
+	/**
+	 * Compute the partial distance between row <tt>i</tt> of <tt>X</tt> and the dense
+	 * vector <tt>y</tt>. If the metric is a {@link SparseSeparable}, its sparse implementation
+	 * is used; otherwise, the row is densified.
+	 * @param geo
+	 * @param X
+	 * @param i
+	 * @param y
+	 * @param yNorm - the result of {@link #sparseNorm(GeometricallySeparable, double[])} for <tt>y</tt>
+	 * @return the partial distance
+	 */
+	public static double sparsePartialDistance(final GeometricallySeparable geo,
+			final CSRMatrix X, final int i, final double[] y, final double yNorm) {
+		
+		if(geo instanceof SparseSeparable)
+			return ((SparseSeparable)geo).getPartialDistance(X, i, y, yNorm);
+		return geo.getPartialDistance(X.getRow(i), y);
+	}
+	
+	/**
+	 * Compute the norm of <tt>y</tt> required by 
+	 * {@link #sparsePartialDistance(GeometricallySeparable, CSRMatrix, int, double[], double)}
+	 * @param geo
+	 * @param y
+	 * @return the norm
+	 */
+	public static double sparseNorm(final GeometricallySeparable geo, final double[] y) {
+		return geo instanceof SparseSeparable ? ((SparseSeparable)geo).sparseNorm(y) : 0.0;
+	}
+	
+	/**
+	 * Computes the distances between row <tt>i</tt> of <tt>X</tt> and rows <tt>from</tt> 
+	 * through <tt>to - 1</tt>. If the metric is binary and <tt>bits</tt> holds the
+	 * {@link BitPackedMatrix} of <tt>X</tt>, the packed rows are used instead.
+	 */
+	static void distances(final GeometricallySeparable geo, final BitPackedMatrix bits,
+			final double[][] X, final int i, final int from, final int to, 
+			final boolean partial, final double[] out) {
+		
+		if(null == bits) {
+			distances(geo, X[i], X, from, to, partial, out);
+			return;
+		}
+		
+		bits.partialDistances((Distance)geo, bits.bits[i], from, to, out);
+		if(!partial)
+			for(int k = 0; k < to - from; k++)
+				out[k] = geo.partialDistanceToDistance(out[k]);
+	}
+	
+	public static EntryPair<double[][], int[][]> topK(AbstractRealMatrix X,
+			GeometricallySeparable geo, int k) {
+		return topK(X.getData(), geo, k);
+	}
+	
+	/**
+	 * Find, for each row of <tt>X</tt>, the <tt>k</tt> smallest entries of its row in the
+	 * distance matrix (which includes the row's distance to itself) without materializing
+	 * the matrix. Blocks of rows are scanned against cache-sized blocks of columns, and
+	 * each row keeps a bounded {@link TopKHeap} of partial distances, so memory is O(m&middot;k)
+	 * rather than O(m<sup>2</sup>). Large inputs are distributed across the
+	 * {@link GlobalState.ParallelismConf#FJ_THREADPOOL} by row blocks.
+	 * @param X
+	 * @param geo
+	 * @param k - the number of neighbors per row, counting the row itself
+	 * @throws IllegalArgumentException if k is less than one or greater than the number of rows
+	 * @return an {@link EntryPair} of the (full) distances and the corresponding row indices,
+	 * each row in ascending order of distance, with ties broken by index
+	 */
+	public static EntryPair<double[][], int[][]> topK(double[][] X, 
+			GeometricallySeparable geo, int k) {
+		MatUtils.checkDimsForUniformity(X);
+		
+		final int m = X.length;
+		if(k < 1 || k > m)
+			throw new IllegalArgumentException("k must be between 1 and " + m);
+		
+		final BitPackedMatrix bits = BitPackedMatrix.packIfBinary(geo, X);
+		final int blockSize = getTileSize(X[0].length);
+		final TopKHeap heap = new TopKHeap(m, k);
+		
+		if(useParallelism(m)) {
+			GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(new TopKTask(X, bits, geo, heap, 0, m, blockSize));
+		} else {
+			for(int lo = 0; lo < m; lo += blockSize)
+				new TopKTask(X, bits, geo, heap, lo, FastMath.min(m, lo + blockSize), blockSize).computeRows();
+		}
+		
+		return topKResult(heap, geo);
+	}
+	
+	/** Sort the heaps and convert their partial distances to distances */
+	static EntryPair<double[][], int[][]> topKResult(final TopKHeap heap, final GeometricallySeparable geo) {
+		heap.sort();
+		
+		final double[][] dists = heap.getValuesRef();
+		for(double[] row: dists)
+			for(int j = 0; j < row.length; j++)
+				row[j] = geo.partialDistanceToDistance(row[j]);
+		
+		return new EntryPair<>(dists, heap.getIndicesRef());
+	}
+	
+	/**
+	 * Whether a pairwise computation over <tt>m</tt> rows should 
+	 * be distributed across the {@link GlobalState.ParallelismConf#FJ_THREADPOOL}
+	 * @param m
+	 * @return whether to compute the matrix in parallel
+	 */
+	static boolean useParallelism(final int m) {
+		return GlobalState.ParallelismConf.PARALLELISM_ALLOWED
+			&& GlobalState.ParallelismConf.ALLOW_AUTO_PARALLELISM
+			&& (long)m * (long)m >= GlobalState.ParallelismConf.MIN_ELEMENTS;
+	}
+	
+	/**
+	 * Get the edge length of a square tile such that two blocks 
+	 * of rows with <tt>n</tt> features fit within {@value #TILE_BYTES} bytes
+	 * @param n - the number of features
+	 * @return the tile size
+	 */
+	static int getTileSize(final int n) {
+		final int size = TILE_BYTES / (2 * 8 * FastMath.max(n, 1));
+		return FastMath.max(MIN_TILE_SIZE, FastMath.min(MAX_TILE_SIZE, size));
+	}
+	
+	static double[][] serialPairwise(double[][] a,
+			GeometricallySeparable geo,
+			boolean upper, boolean partial, double scalar) {
+		
 		/*
 		 * Don't need to check dims, because that happens in each
 		 * getDistance call. Any non-uniformity should be handled 
@@ -56,17 +586,19 @@ public abstract class Pairwise {
 		
 		final int m = a.length;
 		final double[][] out = new double[m][m];
+		final double[] row = new double[m];
+		final BitPackedMatrix bits = BitPackedMatrix.packIfBinary(geo, a);
 		double dist;
 		
 		/*
 		 * First loop: O(M choose 2). Do computations
 		 */
 		for(int i = 0; i < m - 1; i++) {
+			distances(geo, bits, a, i, i + 1, m, partial, row);
+			
 			for(int j = i + 1; j < m; j++) {
 				
-				dist = scalar * (partial ? 
-					geo.getPartialDistance(a[i], a[j]) : 
-						geo.getDistance(a[i], a[j]));
+				dist = scalar * row[j - i - 1];
 				out[i][j] = dist;
 				
 				// We want the full matrix
@@ -90,4 +622,400 @@ public abstract class Pairwise {
 		
 		return out;
 	}
+	
+	/**
+	 * Computes the same matrix as {@link #serialPairwise(double[][], GeometricallySeparable, boolean, boolean, double)},
+	 * but breaks the upper triangle into cache-sized square tiles which are distributed
+	 * across the {@link GlobalState.ParallelismConf#FJ_THREADPOOL}. Each pair is only
+	 * computed once; if the full matrix is requested, the value is reflected into the
+	 * lower triangle by the tile that computed it.
+	 */
+	static double[][] parallelPairwise(final double[][] a,
+			final GeometricallySeparable geo,
+			final boolean upper, final boolean partial, final double scalar) {
+		
+		final int m = a.length;
+		final double[][] out = new double[m][m];
+		if(0 == m)
+			return out;
+		
+		final TileSchedule schedule = new TileSchedule(m, getTileSize(a[0].length));
+		return GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(
+			new DenseTileTask(schedule, 0, schedule.numTiles(), a, 
+				BitPackedMatrix.packIfBinary(geo, a), geo, out, upper, partial, scalar));
+	}
+	
+	
+	
+	/**
+	 * Linearizes the tiles of the upper triangle (including the diagonal tiles)
+	 * of an M x M matrix so they can be split by index amongst ForkJoin tasks
+	 * @author Taylor G Smith
+	 */
+	static class TileSchedule {
+		final int m, tileSize;
+		final int[] rowBlocks, colBlocks;
+		
+		TileSchedule(final int m, final int tileSize) {
+			this.m = m;
+			this.tileSize = tileSize;
+			
+			final int nb = (m + tileSize - 1) / tileSize;
+			final int numTiles = nb * (nb + 1) / 2;
+			this.rowBlocks = new int[numTiles];
+			this.colBlocks = new int[numTiles];
+			
+			for(int bi = 0, t = 0; bi < nb; bi++) {
+				for(int bj = bi; bj < nb; bj++, t++) {
+					rowBlocks[t] = bi;
+					colBlocks[t] = bj;
+				}
+			}
+		}
+		
+		int numTiles() {
+			return rowBlocks.length;
+		}
+		
+		int rowStart(int t) { return rowBlocks[t] * tileSize; }
+		int rowEnd(int t)   { return FastMath.min(m, rowStart(t) + tileSize); }
+		int colStart(int t) { return colBlocks[t] * tileSize; }
+		int colEnd(int t)   { return FastMath.min(m, colStart(t) + tileSize); }
+		boolean isDiagonal(int t) { return rowBlocks[t] == colBlocks[t]; }
+	}
+	
+	
+	
+	/**
+	 * A recursive task that splits a range of tiles from a {@link TileSchedule}
+	 * in half until a single tile remains, and then computes it. Subclasses
+	 * determine where the computed values are stored.
+	 * @author Taylor G Smith
+	 * @param <T> the type of output
+	 */
+	abstract static class PairwiseTileTask<T> extends RecursiveTask<T> {
+		private static final long serialVersionUID = -2434716098519405357L;
+		final TileSchedule schedule;
+		final int lo, hi;
+		
+		PairwiseTileTask(TileSchedule schedule, int lo, int hi) {
+			this.schedule = schedule;
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		@Override
+		protected T compute() {
+			if(hi - lo <= 1)
+				return computeTiles();
+			
+			final int mid = lo + (hi - lo) / 2;
+			PairwiseTileTask<T> left  = newInstance(lo, mid);
+			PairwiseTileTask<T> right = newInstance(mid, hi);
+			left.fork();
+			right.compute();
+			left.join();
+			
+			return output();
+		}
+		
+		/**
+		 * Compute each of this task's tiles in turn on the calling thread, without forking
+		 */
+		T computeTiles() {
+			for(int t = lo; t < hi; t++)
+				computeTile(schedule.rowStart(t), schedule.rowEnd(t), 
+					schedule.colStart(t), schedule.colEnd(t), 
+					schedule.isDiagonal(t));
+			return output();
+		}
+		
+		/**
+		 * Compute every pair (i, j), i &lt; j, within the tile. If the tile
+		 * lies on the diagonal, the pairs (i, i) are also visited.
+		 */
+		abstract void computeTile(int rowStart, int rowEnd, int colStart, int colEnd, boolean diagonal);
+		abstract PairwiseTileTask<T> newInstance(int lo, int hi);
+		abstract T output();
+	}
+	
+	
+	
+	/**
+	 * Tile task which populates a dense M x M matrix
+	 * @author Taylor G Smith
+	 */
+	static class DenseTileTask extends PairwiseTileTask<double[][]> {
+		private static final long serialVersionUID = 4609412961466938315L;
+		final double[][] a, out;
+		final BitPackedMatrix bits;
+		final GeometricallySeparable geo;
+		final boolean upper, partial;
+		final double scalar;
+		
+		DenseTileTask(TileSchedule schedule, int lo, int hi, double[][] a, 
+				GeometricallySeparable geo, double[][] out, 
+				boolean upper, boolean partial, double scalar) {
+			this(schedule, lo, hi, a, BitPackedMatrix.packIfBinary(geo, a), 
+				geo, out, upper, partial, scalar);
+		}
+		
+		DenseTileTask(TileSchedule schedule, int lo, int hi, double[][] a, BitPackedMatrix bits,
+				GeometricallySeparable geo, double[][] out, 
+				boolean upper, boolean partial, double scalar) {
+			super(schedule, lo, hi);
+			this.a = a;
+			this.bits = bits;
+			this.geo = geo;
+			this.out = out;
+			this.upper = upper;
+			this.partial = partial;
+			this.scalar = scalar;
+		}
+		
+		@Override
+		void computeTile(int rowStart, int rowEnd, int colStart, int colEnd, boolean diagonal) {
+			final double[] row = new double[colEnd - colStart];
+			double dist;
+			double[] ai;
+			int from;
+			
+			for(int i = rowStart; i < rowEnd; i++) {
+				ai = a[i];
+				
+				// Only diagonal tiles need to skip the lower half
+				from = diagonal ? i + 1 : colStart;
+				distances(geo, bits, a, i, from, colEnd, partial, row);
+				
+				for(int j = from; j < colEnd; j++) {
+					dist = scalar * row[j - from];
+					out[i][j] = dist;
+					
+					if(!upper)
+						out[j][i] = dist;
+				}
+				
+				if(diagonal && !upper) {
+					out[i][i] = scalar * (partial ? 
+						geo.getPartialDistance(ai, ai) : 
+							geo.getDistance(ai, ai));
+				}
+			}
+		}
+		
+		@Override
+		DenseTileTask newInstance(int lo, int hi) {
+			return new DenseTileTask(schedule, lo, hi, a, bits, geo, out, upper, partial, scalar);
+		}
+		
+		@Override
+		double[][] output() {
+			return out;
+		}
+	}
+	
+	
+	
+	/**
+	 * Tile task which populates a dense M x M single precision matrix
+	 * @author Taylor G Smith
+	 */
+	static class DenseFloatTileTask extends PairwiseTileTask<float[][]> {
+		private static final long serialVersionUID = -3380196402264361640L;
+		final double[][] a;
+		final float[][] out;
+		final BitPackedMatrix bits;
+		final GeometricallySeparable geo;
+		final boolean upper, partial;
+		final double scalar;
+		
+		DenseFloatTileTask(TileSchedule schedule, int lo, int hi, double[][] a, 
+				GeometricallySeparable geo, float[][] out, 
+				boolean upper, boolean partial, double scalar) {
+			this(schedule, lo, hi, a, BitPackedMatrix.packIfBinary(geo, a), 
+				geo, out, upper, partial, scalar);
+		}
+		
+		DenseFloatTileTask(TileSchedule schedule, int lo, int hi, double[][] a, BitPackedMatrix bits,
+				GeometricallySeparable geo, float[][] out, 
+				boolean upper, boolean partial, double scalar) {
+			super(schedule, lo, hi);
+			this.a = a;
+			this.bits = bits;
+			this.geo = geo;
+			this.out = out;
+			this.upper = upper;
+			this.partial = partial;
+			this.scalar = scalar;
+		}
+		
+		@Override
+		void computeTile(int rowStart, int rowEnd, int colStart, int colEnd, boolean diagonal) {
+			final double[] row = new double[colEnd - colStart];
+			float dist;
+			double[] ai;
+			int from;
+			
+			for(int i = rowStart; i < rowEnd; i++) {
+				ai = a[i];
+				from = diagonal ? i + 1 : colStart;
+				distances(geo, bits, a, i, from, colEnd, partial, row);
+				
+				for(int j = from; j < colEnd; j++) {
+					dist = (float)(scalar * row[j - from]);
+					out[i][j] = dist;
+					
+					if(!upper)
+						out[j][i] = dist;
+				}
+				
+				if(diagonal && !upper) {
+					out[i][i] = (float)(scalar * (partial ? 
+						geo.getPartialDistance(ai, ai) : 
+							geo.getDistance(ai, ai)));
+				}
+			}
+		}
+		
+		@Override
+		DenseFloatTileTask newInstance(int lo, int hi) {
+			return new DenseFloatTileTask(schedule, lo, hi, a, bits, geo, out, upper, partial, scalar);
+		}
+		
+		@Override
+		float[][] output() {
+			return out;
+		}
+	}
+	
+	
+	
+	/**
+	 * Tile task which populates the flattened upper triangle of a {@link CondensedDistanceMatrix}
+	 * @author Taylor G Smith
+	 */
+	static class CondensedTileTask extends PairwiseTileTask<CondensedDistanceMatrix> {
+		private static final long serialVersionUID = -6188311957069236532L;
+		final double[][] a;
+		final CondensedDistanceMatrix out;
+		final BitPackedMatrix bits;
+		final GeometricallySeparable geo;
+		final boolean partial;
+		final double scalar;
+		
+		CondensedTileTask(TileSchedule schedule, int lo, int hi, double[][] a, 
+				GeometricallySeparable geo, CondensedDistanceMatrix out, 
+				boolean partial, double scalar) {
+			this(schedule, lo, hi, a, BitPackedMatrix.packIfBinary(geo, a), 
+				geo, out, partial, scalar);
+		}
+		
+		CondensedTileTask(TileSchedule schedule, int lo, int hi, double[][] a, BitPackedMatrix bits,
+				GeometricallySeparable geo, CondensedDistanceMatrix out, 
+				boolean partial, double scalar) {
+			super(schedule, lo, hi);
+			this.a = a;
+			this.bits = bits;
+			this.geo = geo;
+			this.out = out;
+			this.partial = partial;
+			this.scalar = scalar;
+		}
+		
+		@Override
+		void computeTile(int rowStart, int rowEnd, int colStart, int colEnd, boolean diagonal) {
+			final int m = schedule.m;
+			final double[] row = new double[colEnd - colStart];
+			int from;
+			long idx;
+			
+			for(int i = rowStart; i < rowEnd; i++) {
+				from = diagonal ? i + 1 : colStart;
+				if(from >= colEnd)
+					continue;
+				
+				distances(geo, bits, a, i, from, colEnd, partial, row);
+				
+				// within a row, the upper triangle is contiguous
+				idx = CondensedDistanceMatrix.getIndex(m, i, from);
+				for(int j = from; j < colEnd; j++, idx++)
+					out.set(idx, scalar * row[j - from]);
+			}
+		}
+		
+		@Override
+		CondensedTileTask newInstance(int lo, int hi) {
+			return new CondensedTileTask(schedule, lo, hi, a, bits, geo, out, partial, scalar);
+		}
+		
+		@Override
+		CondensedDistanceMatrix output() {
+			return out;
+		}
+	}
+	
+	
+	
+	/**
+	 * Task which fills a {@link TopKHeap} for a range of rows. Ranges are split in half
+	 * until they span at most one block of rows; each block is then scanned against every 
+	 * block of columns, so the column rows are re-used by each row of the block while they
+	 * are still hot. Tasks own disjoint rows of the heap, so no synchronization is needed.
+	 * @author Taylor G Smith
+	 */
+	static class TopKTask extends RecursiveTask<TopKHeap> {
+		private static final long serialVersionUID = -3302948627081720634L;
+		final double[][] X;
+		final BitPackedMatrix bits;
+		final GeometricallySeparable geo;
+		final TopKHeap heap;
+		final int lo, hi, blockSize;
+		
+		TopKTask(double[][] X, BitPackedMatrix bits, GeometricallySeparable geo, 
+				TopKHeap heap, int lo, int hi, int blockSize) {
+			this.X = X;
+			this.bits = bits;
+			this.geo = geo;
+			this.heap = heap;
+			this.lo = lo;
+			this.hi = hi;
+			this.blockSize = blockSize;
+		}
+		
+		@Override
+		protected TopKHeap compute() {
+			if(hi - lo <= blockSize) {
+				computeRows();
+				return heap;
+			}
+			
+			final int mid = lo + (hi - lo) / 2;
+			TopKTask left  = new TopKTask(X, bits, geo, heap, lo, mid, blockSize);
+			TopKTask right = new TopKTask(X, bits, geo, heap, mid, hi, blockSize);
+			left.fork();
+			right.compute();
+			left.join();
+			
+			return heap;
+		}
+		
+		void computeRows() {
+			final int m = X.length;
+			final double[] buf = new double[FastMath.min(blockSize, m)];
+			
+			double bound;
+			for(int colStart = 0; colStart < m; colStart += blockSize) {
+				final int colEnd = FastMath.min(m, colStart + blockSize);
+				
+				for(int i = lo; i < hi; i++) {
+					distances(geo, bits, X, i, colStart, colEnd, true, buf);
+					
+					bound = heap.largest(i);
+					for(int j = colStart; j < colEnd; j++)
+						if(!(buf[j - colStart] > bound) && heap.push(i, buf[j - colStart], j))
+							bound = heap.largest(i);
+				}
+			}
+		}
+	}
 }
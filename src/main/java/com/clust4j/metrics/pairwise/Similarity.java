@@ -15,9 +15,12 @@
  *******************************************************************************/
 package com.clust4j.metrics.pairwise;
 
+import org.apache.commons.math3.util.FastMath;
+
+import com.clust4j.utils.CSRMatrix;
 import com.clust4j.utils.VecUtils;
 
-public enum Similarity implements SimilarityMetric {
+public enum Similarity implements SimilarityMetric, SparseSeparable {
 	COSINE {
 		@Override public double getDistance(final double[] a, final double[] b) {
 			return -getSimilarity(a, b);
@@ -60,6 +63,27 @@ public enum Similarity implements SimilarityMetric {
 		public double similarityToPartialSimilarity(double d) {
 			return d;
 		}
+		
+		@Override
+		public double getPartialDistance(final CSRMatrix X, final int i, final CSRMatrix Y, final int j) {
+			final double dot = SparseKernels.dot(X, i, Y, j);
+			return -(dot / (FastMath.sqrt(SparseKernels.normSquared(X, i)) * 
+				FastMath.sqrt(SparseKernels.normSquared(Y, j))));
+		}
+		
+		@Override
+		public double getPartialDistance(final CSRMatrix X, final int i, final double[] y, final double yNorm) {
+			final double dot = X.rowDot(i, y);
+			return -(dot / (FastMath.sqrt(SparseKernels.normSquared(X, i)) * FastMath.sqrt(yNorm)));
+		}
+		
+		/**
+		 * The squared L2 norm
+		 */
+		@Override
+		public double sparseNorm(final double[] y) {
+			return SparseKernels.normSquared(y);
+		}
 	},
 	
 	;
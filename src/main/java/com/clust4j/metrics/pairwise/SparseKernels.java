@@ -0,0 +1,191 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.metrics.pairwise;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.util.FastMath;
+
+import com.clust4j.utils.CSRMatrix;
+
+/**
+ * Merge-join kernels over the rows of {@link CSRMatrix}s for the {@link SparseSeparable}
+ * metrics. Both rows are walked in ascending column order, so where a dense kernel
+ * would only add zeros, these skip the term entirely, and the results of the
+ * sparse-sparse kernels are identical to those of their dense counterparts under
+ * the default scalar loops (see {@link com.clust4j.GlobalState.VectorizationConf#UNROLLED_KERNELS}).
+ * @author Taylor G Smith
+ */
+abstract class SparseKernels {
+
+	static void checkDims(final CSRMatrix X, final CSRMatrix Y) {
+		if(X.getColumnDimension() != Y.getColumnDimension())
+			throw new DimensionMismatchException(Y.getColumnDimension(), X.getColumnDimension());
+	}
+
+	static void checkDims(final CSRMatrix X, final double[] y) {
+		if(X.getColumnDimension() != y.length)
+			throw new DimensionMismatchException(y.length, X.getColumnDimension());
+	}
+
+	/**
+	 * The squared Euclidean distance between two sparse rows
+	 */
+	static double squaredDifference(final CSRMatrix X, final int i, final CSRMatrix Y, final int j) {
+		checkDims(X, Y);
+
+		final int[] ai = X.getIndicesRef(), bi = Y.getIndicesRef();
+		final double[] av = X.getValuesRef(), bv = Y.getValuesRef();
+		int p = X.getIndptrRef()[i], q = Y.getIndptrRef()[j];
+		final int pe = X.getIndptrRef()[i + 1], qe = Y.getIndptrRef()[j + 1];
+
+		double sum = 0, diff;
+		while(p < pe || q < qe) {
+			if(q >= qe || (p < pe && ai[p] < bi[q]))
+				diff = av[p++];
+			else if(p >= pe || bi[q] < ai[p])
+				diff = -bv[q++];
+			else
+				diff = av[p++] - bv[q++];
+
+			sum += diff * diff;
+		}
+
+		return sum;
+	}
+
+	/**
+	 * The Manhattan distance between two sparse rows
+	 */
+	static double absoluteDifference(final CSRMatrix X, final int i, final CSRMatrix Y, final int j) {
+		checkDims(X, Y);
+
+		final int[] ai = X.getIndicesRef(), bi = Y.getIndicesRef();
+		final double[] av = X.getValuesRef(), bv = Y.getValuesRef();
+		int p = X.getIndptrRef()[i], q = Y.getIndptrRef()[j];
+		final int pe = X.getIndptrRef()[i + 1], qe = Y.getIndptrRef()[j + 1];
+
+		double sum = 0;
+		while(p < pe || q < qe) {
+			if(q >= qe || (p < pe && ai[p] < bi[q]))
+				sum += FastMath.abs(av[p++]);
+			else if(p >= pe || bi[q] < ai[p])
+				sum += FastMath.abs(-bv[q++]);
+			else
+				sum += FastMath.abs(av[p++] - bv[q++]);
+		}
+
+		return sum;
+	}
+
+	/**
+	 * The inner product of two sparse rows
+	 */
+	static double dot(final CSRMatrix X, final int i, final CSRMatrix Y, final int j) {
+		checkDims(X, Y);
+
+		final int[] ai = X.getIndicesRef(), bi = Y.getIndicesRef();
+		final double[] av = X.getValuesRef(), bv = Y.getValuesRef();
+		int p = X.getIndptrRef()[i], q = Y.getIndptrRef()[j];
+		final int pe = X.getIndptrRef()[i + 1], qe = Y.getIndptrRef()[j + 1];
+
+		double sum = 0;
+		while(p < pe && q < qe) {
+			if(ai[p] < bi[q])
+				p++;
+			else if(bi[q] < ai[p])
+				q++;
+			else
+				sum += av[p++] * bv[q++];
+		}
+
+		return sum;
+	}
+
+	/**
+	 * The squared L2 norm of a sparse row
+	 */
+	static double normSquared(final CSRMatrix X, final int i) {
+		final double[] v = X.getValuesRef();
+		final int pe = X.getIndptrRef()[i + 1];
+
+		double sum = 0;
+		for(int p = X.getIndptrRef()[i]; p < pe; p++)
+			sum += v[p] * v[p];
+		return sum;
+	}
+
+	/**
+	 * The squared L2 norm of a dense vector
+	 */
+	static double normSquared(final double[] y) {
+		double sum = 0;
+		for(int j = 0; j < y.length; j++)
+			sum += y[j] * y[j];
+		return sum;
+	}
+
+	/**
+	 * The L1 norm of a dense vector
+	 */
+	static double normL1(final double[] y) {
+		double sum = 0;
+		for(int j = 0; j < y.length; j++)
+			sum += FastMath.abs(y[j]);
+		return sum;
+	}
+
+	/**
+	 * The squared Euclidean distance between a sparse row and a dense vector, given
+	 * <tt>yNorm = ||y||<sup>2</sup></tt>. Each stored column replaces its <tt>y<sub>j</sub><sup>2</sup></tt>
+	 * term in the norm with <tt>(x<sub>j</sub> - y<sub>j</sub>)<sup>2</sup></tt>; round-off is clamped to zero.
+	 */
+	static double squaredDifference(final CSRMatrix X, final int i, final double[] y, final double yNorm) {
+		checkDims(X, y);
+
+		final int[] idcs = X.getIndicesRef();
+		final double[] v = X.getValuesRef();
+		final int pe = X.getIndptrRef()[i + 1];
+
+		double sum = yNorm, diff, yj;
+		for(int p = X.getIndptrRef()[i]; p < pe; p++) {
+			yj = y[idcs[p]];
+			diff = v[p] - yj;
+			sum += diff * diff - yj * yj;
+		}
+
+		return FastMath.max(0.0, sum);
+	}
+
+	/**
+	 * The Manhattan distance between a sparse row and a dense vector, given
+	 * <tt>yNorm = ||y||<sub>1</sub></tt>; round-off is clamped to zero.
+	 */
+	static double absoluteDifference(final CSRMatrix X, final int i, final double[] y, final double yNorm) {
+		checkDims(X, y);
+
+		final int[] idcs = X.getIndicesRef();
+		final double[] v = X.getValuesRef();
+		final int pe = X.getIndptrRef()[i + 1];
+
+		double sum = yNorm, yj;
+		for(int p = X.getIndptrRef()[i]; p < pe; p++) {
+			yj = y[idcs[p]];
+			sum += FastMath.abs(v[p] - yj) - FastMath.abs(yj);
+		}
+
+		return FastMath.max(0.0, sum);
+	}
+}
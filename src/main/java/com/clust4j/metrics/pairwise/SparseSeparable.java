@@ -0,0 +1,69 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.metrics.pairwise;
+
+import com.clust4j.utils.CSRMatrix;
+
+/**
+ * A {@link GeometricallySeparable} which can compute partial distances directly
+ * from the rows of a {@link CSRMatrix}. Sparse-aware implementations
+ * ({@link Distance#EUCLIDEAN}, {@link Distance#MANHATTAN} and {@link Similarity#COSINE})
+ * run in time proportional to the non-zeros of the rows involved; any others
+ * densify the rows and defer to {@link #getPartialDistance(double[], double[])}.
+ *
+ * <p>
+ * Distances between a sparse row and a dense vector (e.g., a centroid) are
+ * computed relative to a precomputed, metric-specific norm of the dense vector
+ * from {@link #sparseNorm(double[])}, which allows the zeros of the sparse row to be
+ * accounted for in bulk. Callers should compute the norm once per dense vector.
+ *
+ * <p>
+ * Metrics which do not implement this interface are handled by the generic
+ * fallbacks in {@link Pairwise}, which are the preferred entry points for callers.
+ *
+ * @author Taylor G Smith
+ */
+public interface SparseSeparable extends GeometricallySeparable {
+	/**
+	 * Compute the partial distance between row <tt>i</tt> of <tt>X</tt>
+	 * and row <tt>j</tt> of <tt>Y</tt>
+	 * @param X
+	 * @param i
+	 * @param Y
+	 * @param j
+	 * @return the partial distance
+	 */
+	public double getPartialDistance(final CSRMatrix X, final int i, final CSRMatrix Y, final int j);
+
+	/**
+	 * Compute the partial distance between row <tt>i</tt> of <tt>X</tt> and
+	 * the dense vector <tt>y</tt>
+	 * @param X
+	 * @param i
+	 * @param y
+	 * @param yNorm - the result of {@link #sparseNorm(double[])} for <tt>y</tt>
+	 * @return the partial distance
+	 */
+	public double getPartialDistance(final CSRMatrix X, final int i, final double[] y, final double yNorm);
+
+	/**
+	 * The norm of a dense vector required by
+	 * {@link #getPartialDistance(CSRMatrix, int, double[], double)}
+	 * @param y
+	 * @return the norm, or zero if the metric does not require one
+	 */
+	public double sparseNorm(final double[] y);
+}
@@ -24,10 +24,10 @@ import org.apache.commons.math3.util.FastMath;
 
 import com.clust4j.algo.AbstractClusterer;
 import com.clust4j.algo.LabelEncoder;
+import com.clust4j.metrics.pairwise.CondensedDistanceMatrix;
 import com.clust4j.metrics.pairwise.Distance;
 import com.clust4j.metrics.pairwise.DistanceMetric;
 import com.clust4j.metrics.pairwise.Pairwise;
-import com.clust4j.utils.MatUtils;
 import com.clust4j.utils.VecUtils;
 
 public enum UnsupervisedMetric implements EvaluationMetric {
@@ -65,12 +65,11 @@ public enum UnsupervisedMetric implements EvaluationMetric {
 			final int[] uniqueLabs = encoder.getClasses();
 			
 			
-			double[][] distMatrix = Pairwise.getDistance(X, metric, false, false);
+			CondensedDistanceMatrix distMatrix = Pairwise.getCondensedDistance(X, metric, false);
 			double[] intraDists   = VecUtils.rep(1.0, m);
 			double[] interDists   = VecUtils.rep(Double.POSITIVE_INFINITY, m);
 			
 			Integer[] maskIdcs, otherIdxMask;
-			double[][] currDists;
 			
 			
 			// To avoid numerous passes on the order of M
@@ -93,7 +92,6 @@ public enum UnsupervisedMetric implements EvaluationMetric {
 				
 				// Mask of idcs for label
 				maskIdcs = labToIdcs.get(label);
-				currDists = MatUtils.getRows(distMatrix, maskIdcs);
 				
 
 				int numCurrent = maskIdcs.length - 1;
@@ -104,8 +102,8 @@ public enum UnsupervisedMetric implements EvaluationMetric {
 						
 						// Easy way, but uses too many passes on order of N or M:
 						double colSum = 0;
-						for(int j = 0; j < currDists.length; j++)
-							colSum += currDists[j][idx];
+						for(int j = 0; j < maskIdcs.length; j++)
+							colSum += distMatrix.get(maskIdcs[j], idx);
 						intraDists[idx] = colSum / numCurrent;
 					}
 				} // if it does, we need to update inter anyways:
@@ -124,10 +122,10 @@ public enum UnsupervisedMetric implements EvaluationMetric {
 							MatUtils.getColumns(currDists, otherIdxMask));*/
 						
 						final int maskCt = otherIdxMask.length;
-						double[] otherDists = new double[currDists.length];
+						double[] otherDists = new double[maskIdcs.length];
 						for(int h = 0; h < otherDists.length; h++) {
 							for(int c= 0; c < maskCt; c++) {
-								otherDists[h] += currDists[h][otherIdxMask[c]];
+								otherDists[h] += distMatrix.get(maskIdcs[h], otherIdxMask[c]);
 								if(c == maskCt - 1)
 									otherDists[h] /= (double)maskCt;
 							}
@@ -0,0 +1,299 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.sample;
+
+import java.util.Random;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.util.FastMath;
+
+import com.clust4j.utils.MatUtils;
+import com.clust4j.utils.VecKernels;
+import com.clust4j.utils.VecUtils;
+
+/**
+ * A <a href="https://arxiv.org/abs/1612.00889">coreset</a> is a small set of weighted
+ * points whose weighted k-means cost approximates that of the (possibly enormous) data 
+ * it was built from, for any choice of <tt>k</tt> centers. Fitting a weighted
+ * {@link com.clust4j.algo.KMeans} or {@link com.clust4j.algo.KMedoids} to a coreset of a
+ * few thousand points (see {@link com.clust4j.algo.KMeansParameters#setSampleWeights(double[])})
+ * therefore approximates fitting the full data, at a fraction of the cost.
+ * 
+ * <p>
+ * The coreset is built by sensitivity sampling (Feldman and Langberg, 2011; in the practical
+ * form of Bachem, Lucic and Krause, 2017). A rough solution of <tt>k</tt> centers is first 
+ * seeded by <i>k</i>-means++ (D<sup>2</sup>) sampling. Each record's sensitivity, an upper bound
+ * on its share of the cost of any solution, is then estimated from its own distance to the
+ * rough solution and the size and cost of its rough cluster. Records are sampled with probability
+ * proportional to their sensitivity, and weighted by the inverse of it, so that the weighted cost
+ * of any solution is an unbiased estimate of the true cost. The sampled points are merged, so a
+ * coreset may hold fewer than <tt>size</tt> points. Larger coresets approximate the cost more
+ * closely: the error shrinks roughly with the square root of the size.
+ * 
+ * <p>
+ * To build a coreset from data too large to hold in memory, stream it through a {@link CoresetBuilder}.
+ * 
+ * @see <a href="https://las.inf.ethz.ch/files/bachem17practical.pdf">Practical Coreset Constructions for Machine Learning</a>
+ * @author Taylor G Smith
+ */
+final public class Coreset implements java.io.Serializable {
+	private static final long serialVersionUID = -1581206372830536011L;
+	/** The default number of samples drawn for a coreset */
+	final public static int DEF_SIZE = 2000;
+	
+	final private double[][] points;
+	final private double[] weights;
+	
+	
+	/** Not copied, so the caller must not modify the arrays */
+	Coreset(final double[][] points, final double[] weights) {
+		this.points = points;
+		this.weights = weights;
+	}
+	
+	
+	/**
+	 * Build a coreset of at most <tt>size</tt> points from the records of <tt>data</tt>
+	 * @param data - the records
+	 * @param k - the number of clusters the coreset will be used to fit
+	 * @param size - the number of samples to draw
+	 * @param seed
+	 * @throws IllegalArgumentException if k is less than one or size is less than k
+	 * @throws com.clust4j.except.NonUniformMatrixException if the rows' dimensions differ
+	 * @return the coreset
+	 */
+	public static Coreset build(final double[][] data, final int k, final int size, final Random seed) {
+		return build(data, VecUtils.rep(1.0, data.length), k, size, seed);
+	}
+	
+	/**
+	 * Build a coreset of at most <tt>size</tt> points from the weighted records of <tt>data</tt>
+	 * @param data - the records
+	 * @param weights - the weight of each record
+	 * @param k - the number of clusters the coreset will be used to fit
+	 * @param size - the number of samples to draw
+	 * @param seed
+	 * @throws IllegalArgumentException if k is less than one, size is less than k, or a weight is 
+	 * negative or not finite
+	 * @throws org.apache.commons.math3.exception.DimensionMismatchException if there is not one weight per record
+	 * @throws com.clust4j.except.NonUniformMatrixException if the rows' dimensions differ
+	 * @return the coreset
+	 */
+	public static Coreset build(final double[][] data, final double[] weights, 
+			final int k, final int size, final Random seed) {
+		checkSize(k, size);
+		MatUtils.checkDimsForUniformity(data);
+		if(data.length != weights.length)
+			throw new DimensionMismatchException(weights.length, data.length);
+		for(double w: weights)
+			checkWeight(w);
+		
+		// only copy the records which are sampled
+		final Coreset sampled = reduce(new Coreset(data, weights), k, size, seed);
+		return new Coreset(MatUtils.copy(sampled.points), VecUtils.copy(sampled.weights));
+	}
+	
+	static void checkSize(final int k, final int size) {
+		if(k < 1)
+			throw new IllegalArgumentException("k must be at least one");
+		if(size < k)
+			throw new IllegalArgumentException("coreset size (" + size + ") must be at least k (" + k + ")");
+	}
+	
+	static void checkWeight(final double weight) {
+		if(!(weight >= 0) || Double.isInfinite(weight))
+			throw new IllegalArgumentException("weights must be finite and non-negative: " + weight);
+	}
+	
+	/** The points of both coresets, with their weights */
+	static Coreset union(final Coreset a, final Coreset b) {
+		final double[][] points = new double[a.size() + b.size()][];
+		final double[] weights = new double[points.length];
+		System.arraycopy(a.points, 0, points, 0, a.size());
+		System.arraycopy(b.points, 0, points, a.size(), b.size());
+		System.arraycopy(a.weights, 0, weights, 0, a.size());
+		System.arraycopy(b.weights, 0, weights, a.size(), b.size());
+		return new Coreset(points, weights);
+	}
+	
+	/**
+	 * Sensitivity sample a weighted set of points down to at most <tt>size</tt> points.
+	 * If it holds no more than that already, it is returned as is.
+	 */
+	static Coreset reduce(final Coreset set, final int k, final int size, final Random seed) {
+		final double[][] X = set.points;
+		final double[] w = set.weights;
+		final int m = X.length;
+		if(m <= size)
+			return set;
+		
+		
+		// Seed a rough solution of k centers by weighted D^2 sampling
+		final double[] d2 = VecUtils.rep(Double.POSITIVE_INFINITY, m);
+		final int[] owner = new int[m];
+		final double[] cum = new double[m];
+		int numCenters = 0;
+		
+		cumsum(w, null, cum);
+		int center = draw(cum, seed);
+		double d;
+		while(true) {
+			for(int i = 0; i < m; i++) {
+				d = VecKernels.squaredDifference(X[i], X[center]);
+				if(d < d2[i]) {
+					d2[i] = d;
+					owner[i] = numCenters;
+				}
+			}
+			
+			// if the cost is zero, every weighted point lies on a center
+			if(++numCenters == k || 0 == cumsum(w, d2, cum))
+				break;
+			center = draw(cum, seed);
+		}
+		
+		
+		// The weight and cost of each rough cluster
+		final double[] clustWeight = new double[numCenters], clustCost = new double[numCenters];
+		double total = 0, cost = 0;
+		for(int i = 0; i < m; i++) {
+			clustWeight[owner[i]] += w[i];
+			clustCost[owner[i]] += w[i] * d2[i];
+			total += w[i];
+			cost += w[i] * d2[i];
+		}
+		
+		if(0 == cost) { // the rough solution is exact
+			final double[][] points = new double[numCenters][];
+			for(int i = 0; i < m; i++)
+				if(null == points[owner[i]])
+					points[owner[i]] = X[i];
+			return compact(points, clustWeight);
+		}
+		
+		
+		// The sensitivity of each point, bounded as in Bachem et al.
+		final double alpha = 16 * (FastMath.log(k) + 2), avgCost = cost / total;
+		final double[] sens = new double[m];
+		for(int i = 0; i < m; i++) {
+			if(0 == w[i])
+				continue; // never sampled
+			
+			sens[i] = alpha * d2[i] / avgCost
+				+ 2 * alpha * clustCost[owner[i]] / (clustWeight[owner[i]] * avgCost)
+				+ 4 * total / clustWeight[owner[i]];
+		}
+		
+		
+		// Sample in proportion to weighted sensitivity, weighing each draw by its inverse
+		final double sum = cumsum(w, sens, cum);
+		final double[] drawn = new double[m];
+		int i;
+		for(int s = 0; s < size; s++) {
+			i = draw(cum, seed);
+			drawn[i] += sum / (size * sens[i]);
+		}
+		
+		final double[][] points = new double[m][];
+		for(i = 0; i < m; i++)
+			if(drawn[i] > 0)
+				points[i] = X[i];
+		return compact(points, drawn);
+	}
+	
+	/**
+	 * Write the cumulative sum of <tt>w[i]*x[i]</tt> (or <tt>w[i]</tt>
+	 * if <tt>x</tt> is null) into <tt>cum</tt>, and return the total
+	 */
+	private static double cumsum(final double[] w, final double[] x, final double[] cum) {
+		double sum = 0;
+		for(int i = 0; i < w.length; i++)
+			cum[i] = (sum += null == x ? w[i] : w[i] * x[i]);
+		return sum;
+	}
+	
+	/**
+	 * Draw an index with probability proportional to its increment of the cumulative
+	 * sum, by binary search for the first entry exceeding a uniform draw. Entries of
+	 * zero increment are never drawn.
+	 */
+	private static int draw(final double[] cum, final Random seed) {
+		final double u = seed.nextDouble() * cum[cum.length - 1];
+		int lo = 0, hi = cum.length - 1, mid;
+		while(lo < hi) {
+			mid = (lo + hi) >>> 1;
+			if(cum[mid] > u)
+				hi = mid;
+			else
+				lo = mid + 1;
+		}
+		
+		return lo;
+	}
+	
+	/** The non-null points, with their weights */
+	private static Coreset compact(final double[][] points, final double[] weights) {
+		int size = 0;
+		for(double[] p: points)
+			if(null != p)
+				size++;
+		
+		final double[][] outPoints = new double[size][];
+		final double[] outWeights = new double[size];
+		int next = 0;
+		for(int i = 0; i < points.length; i++) {
+			if(null != points[i]) {
+				outPoints[next] = points[i];
+				outWeights[next++] = weights[i];
+			}
+		}
+		
+		return new Coreset(outPoints, outWeights);
+	}
+	
+	
+	/**
+	 * The points of the coreset, to be fit with {@link #getWeights()}
+	 * @return a copy of the points
+	 */
+	public double[][] getPoints() {
+		return MatUtils.copy(points);
+	}
+	
+	/**
+	 * The weight of each point, or the number of records it stands in for
+	 * @return a copy of the weights
+	 */
+	public double[] getWeights() {
+		return VecUtils.copy(weights);
+	}
+	
+	/**
+	 * The sum of the weights, which estimates the (weighted) number of records summarized
+	 * @return the total weight
+	 */
+	public double getTotalWeight() {
+		return VecUtils.sum(weights);
+	}
+	
+	/**
+	 * The number of points in the coreset
+	 * @return the size
+	 */
+	public int size() {
+		return points.length;
+	}
+}
@@ -0,0 +1,198 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.sample;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+import com.clust4j.except.NaNException;
+import com.clust4j.utils.VecUtils;
+
+/**
+ * Builds a {@link Coreset} from a stream of records in a single pass, by merge and
+ * reduce (Har-Peled and Mazumdar, 2004). Records are buffered <tt>size</tt> at a time.
+ * Each full buffer becomes a bucket at level zero, and whenever two buckets share a 
+ * level, their union is reduced to a coreset of <tt>size</tt> points one level up, as
+ * in a binary counter. Only one bucket is held per level, so a stream of <tt>m</tt> 
+ * records holds O(size&middot;log(m/size)) points at any time, and each record is
+ * touched O(log(m/size)) times.
+ * 
+ * <p>
+ * For instance, to cluster a stream of logged events too large to hold in memory:
+ * <pre>
+ * CoresetBuilder builder = new CoresetBuilder(k);
+ * for(double[] event: events)
+ *     builder.add(event);
+ * 
+ * Coreset coreset = builder.build();
+ * KMeans model = new KMeansParameters(k)
+ *     .setSampleWeights(coreset.getWeights())
+ *     .fitNewModel(new Array2DRowRealMatrix(coreset.getPoints(), false));
+ * </pre>
+ * 
+ * @author Taylor G Smith
+ */
+public class CoresetBuilder implements java.io.Serializable {
+	private static final long serialVersionUID = 6612578217318930434L;
+	
+	final private int k, size;
+	final private Random seed;
+	
+	/** The buckets, of which the one at index <tt>i</tt> has been reduced <tt>i</tt> times, or null */
+	final private ArrayList<Coreset> levels = new ArrayList<>();
+	private double[][] buffer;
+	private double[] bufferWeights;
+	private int buffered = 0;
+	private int n = -1;
+	private long count = 0;
+	
+	
+	public CoresetBuilder(final int k) {
+		this(k, Coreset.DEF_SIZE);
+	}
+	
+	public CoresetBuilder(final int k, final int size) {
+		this(k, size, new Random());
+	}
+	
+	/**
+	 * @param k - the number of clusters the coreset will be used to fit
+	 * @param size - the number of points sampled for each reduction
+	 * @param seed
+	 * @throws IllegalArgumentException if k is less than one or size is less than k
+	 */
+	public CoresetBuilder(final int k, final int size, final Random seed) {
+		Coreset.checkSize(k, size);
+		this.k = k;
+		this.size = size;
+		this.seed = seed;
+		this.buffer = new double[size][];
+		this.bufferWeights = new double[size];
+	}
+	
+	
+	/**
+	 * Add a record with a weight of one. The record is copied.
+	 * @param record
+	 * @throws DimensionMismatchException if the record's dimension differs from the first record's
+	 * @throws NaNException if the record contains a NaN
+	 * @return this builder
+	 */
+	public CoresetBuilder add(final double[] record) {
+		return add(record, 1.0);
+	}
+	
+	/**
+	 * Add a weighted record. The record is copied.
+	 * @param record
+	 * @param weight
+	 * @throws DimensionMismatchException if the record's dimension differs from the first record's
+	 * @throws NaNException if the record contains a NaN
+	 * @throws IllegalArgumentException if the weight is negative or not finite
+	 * @return this builder
+	 */
+	public CoresetBuilder add(final double[] record, final double weight) {
+		if(-1 == n) {
+			VecUtils.checkDims(record);
+			n = record.length;
+		} else if(record.length != n) {
+			throw new DimensionMismatchException(record.length, n);
+		}
+		
+		if(VecUtils.containsNaN(record))
+			throw new NaNException("records cannot contain NaN");
+		Coreset.checkWeight(weight);
+		
+		buffer[buffered] = VecUtils.copy(record);
+		bufferWeights[buffered++] = weight;
+		count++;
+		
+		if(size == buffered) {
+			carry(new Coreset(buffer, bufferWeights));
+			buffer = new double[size][];
+			bufferWeights = new double[size];
+			buffered = 0;
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Add each row of a block of records with a weight of one
+	 * @param records
+	 * @return this builder
+	 */
+	public CoresetBuilder addAll(final double[][] records) {
+		for(double[] record: records)
+			add(record);
+		return this;
+	}
+	
+	/**
+	 * Merge a full bucket into the levels, reducing the union
+	 * with each occupied level until an empty one is reached
+	 */
+	private void carry(Coreset bucket) {
+		int level = 0;
+		for(; level < levels.size() && null != levels.get(level); level++) {
+			bucket = Coreset.reduce(Coreset.union(levels.get(level), bucket), k, size, seed);
+			levels.set(level, null);
+		}
+		
+		if(level == levels.size())
+			levels.add(bucket);
+		else
+			levels.set(level, bucket);
+	}
+	
+	/**
+	 * Reduce the buffered records and every level to a single coreset of at most
+	 * <tt>size</tt> points. The builder is left unchanged, so records may still be
+	 * added and the coreset built again.
+	 * @throws IllegalStateException if no records have been added
+	 * @return the coreset
+	 */
+	public Coreset build() {
+		if(0 == count)
+			throw new IllegalStateException("no records have been added");
+		
+		Coreset all = new Coreset(Arrays.copyOf(buffer, buffered), Arrays.copyOf(bufferWeights, buffered));
+		for(Coreset bucket: levels)
+			if(null != bucket)
+				all = Coreset.union(all, bucket);
+		
+		return Coreset.reduce(all, k, size, seed);
+	}
+	
+	/**
+	 * The number of records added
+	 * @return the count
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	public int getK() {
+		return k;
+	}
+	
+	public int getSize() {
+		return size;
+	}
+}
@@ -0,0 +1,435 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.utils;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.linear.AbstractRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SparseRealMatrix;
+
+/**
+ * A compressed sparse row (CSR) matrix. The non-zero entries of row <tt>i</tt>
+ * are held in positions <tt>indptr[i]</tt> through <tt>indptr[i + 1] - 1</tt> of
+ * the <tt>indices</tt> (column) and <tt>values</tt> arrays, and the columns within
+ * a row are strictly ascending. Explicit zeros are never stored.
+ *
+ * <p>
+ * Since this is a {@link RealMatrix}, it may be passed to any model constructor.
+ * Models which implement <tt>com.clust4j.algo.SparseCapable</tt> operate on the
+ * non-zero entries directly, so their memory and (for the sparse-aware metrics)
+ * compute costs are proportional to the number of non-zeros. Any other model
+ * will densify the matrix.
+ *
+ * @author Taylor G Smith
+ */
+public class CSRMatrix extends AbstractRealMatrix implements SparseRealMatrix, java.io.Serializable {
+	private static final long serialVersionUID = -2693409183469155417L;
+
+	final private int m, n;
+	private int[] indptr, indices;
+	private double[] values;
+
+
+	/**
+	 * Create an empty (all zero) matrix
+	 * @param m - the number of rows
+	 * @param n - the number of columns
+	 */
+	public CSRMatrix(final int m, final int n) {
+		super(m, n);
+		this.m = m;
+		this.n = n;
+		this.indptr = new int[m + 1];
+		this.indices = new int[0];
+		this.values = new double[0];
+	}
+
+	/**
+	 * Compress a dense matrix
+	 * @param X
+	 * @throws DimensionMismatchException if the rows are not uniform
+	 */
+	public CSRMatrix(final double[][] X) {
+		this(X.length, X.length == 0 ? 0 : X[0].length);
+
+		int nnz = 0;
+		for(double[] row: X) {
+			if(row.length != n)
+				throw new DimensionMismatchException(row.length, n);
+			for(double d: row)
+				if(d != 0)
+					nnz++;
+		}
+
+		indices = new int[nnz];
+		values = new double[nnz];
+		for(int i = 0, p = 0; i < m; i++) {
+			for(int j = 0; j < n; j++) {
+				if(X[i][j] != 0) {
+					indices[p] = j;
+					values[p++] = X[i][j];
+				}
+			}
+
+			indptr[i + 1] = p;
+		}
+	}
+
+	/**
+	 * Compress (or copy) any other matrix
+	 * @param X
+	 */
+	public CSRMatrix(final RealMatrix X) {
+		this(X.getRowDimension(), X.getColumnDimension());
+
+		if(X instanceof CSRMatrix) {
+			final CSRMatrix c = (CSRMatrix)X;
+			this.indptr = VecUtils.copy(c.indptr);
+			this.indices = VecUtils.copy(c.indices);
+			this.values = VecUtils.copy(c.values);
+			return;
+		}
+
+		final IntArrayBuilder cols = new IntArrayBuilder();
+		final DoubleArrayBuilder vals = new DoubleArrayBuilder();
+		double d;
+		for(int i = 0; i < m; i++) {
+			for(int j = 0; j < n; j++) {
+				if((d = X.getEntry(i, j)) != 0) {
+					cols.add(j);
+					vals.add(d);
+				}
+			}
+
+			indptr[i + 1] = cols.size;
+		}
+
+		this.indices = cols.toArray();
+		this.values = vals.toArray();
+	}
+
+	/**
+	 * Build a matrix from its CSR arrays, which are copied. Any explicit zeros are dropped.
+	 * @param m - the number of rows
+	 * @param n - the number of columns
+	 * @param indptr - the row pointers, of length <tt>m + 1</tt>
+	 * @param indices - the column of each stored entry
+	 * @param values - the value of each stored entry
+	 * @throws IllegalArgumentException if the arrays do not describe a valid CSR matrix
+	 */
+	public CSRMatrix(final int m, final int n, final int[] indptr,
+			final int[] indices, final double[] values) {
+		this(m, n);
+
+		if(indptr.length != m + 1)
+			throw new DimensionMismatchException(indptr.length, m + 1);
+		if(indices.length != values.length)
+			throw new DimensionMismatchException(values.length, indices.length);
+		if(indptr[0] != 0 || indptr[m] != indices.length)
+			throw new IllegalArgumentException("indptr must begin at 0 and end at nnz");
+
+		int nnz = 0;
+		for(int i = 0; i < m; i++) {
+			if(indptr[i + 1] < indptr[i])
+				throw new IllegalArgumentException("indptr must be non-decreasing");
+
+			for(int p = indptr[i]; p < indptr[i + 1]; p++) {
+				if(indices[p] < 0 || indices[p] >= n)
+					throw new OutOfRangeException(indices[p], 0, n - 1);
+				if(p > indptr[i] && indices[p] <= indices[p - 1])
+					throw new IllegalArgumentException("column indices must be "
+						+ "strictly ascending within each row");
+				if(values[p] != 0)
+					nnz++;
+			}
+		}
+
+		this.indices = new int[nnz];
+		this.values = new double[nnz];
+		for(int i = 0, q = 0; i < m; i++) {
+			for(int p = indptr[i]; p < indptr[i + 1]; p++) {
+				if(values[p] != 0) {
+					this.indices[q] = indices[p];
+					this.values[q++] = values[p];
+				}
+			}
+
+			this.indptr[i + 1] = q;
+		}
+	}
+
+
+
+	/** A growable int array, to avoid boxing */
+	private static class IntArrayBuilder {
+		int[] arr = new int[16];
+		int size = 0;
+
+		void add(int v) {
+			if(size == arr.length)
+				arr = Arrays.copyOf(arr, arr.length << 1);
+			arr[size++] = v;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(arr, size);
+		}
+	}
+
+	/** A growable double array, to avoid boxing */
+	private static class DoubleArrayBuilder {
+		double[] arr = new double[16];
+		int size = 0;
+
+		void add(double v) {
+			if(size == arr.length)
+				arr = Arrays.copyOf(arr, arr.length << 1);
+			arr[size++] = v;
+		}
+
+		double[] toArray() {
+			return Arrays.copyOf(arr, size);
+		}
+	}
+
+
+
+	@Override
+	public int getRowDimension() {
+		return m;
+	}
+
+	@Override
+	public int getColumnDimension() {
+		return n;
+	}
+
+	/**
+	 * @return the number of stored (non-zero) entries
+	 */
+	public int getNumNonZeros() {
+		return values.length;
+	}
+
+	/**
+	 * Returns the row pointers. Note that this is not a copy.
+	 * @return the row pointer array
+	 */
+	public int[] getIndptrRef() {
+		return indptr;
+	}
+
+	/**
+	 * Returns the column indices. Note that this is not a copy.
+	 * @return the column index array
+	 */
+	public int[] getIndicesRef() {
+		return indices;
+	}
+
+	/**
+	 * Returns the stored values. Note that this is not a copy.
+	 * @return the value array
+	 */
+	public double[] getValuesRef() {
+		return values;
+	}
+
+	/**
+	 * Find the position of <tt>(row, col)</tt> in the stored arrays, or
+	 * <tt>-(insertion point) - 1</tt> if it is not stored
+	 */
+	private int position(final int row, final int col) {
+		if(row < 0 || row >= m)
+			throw new OutOfRangeException(row, 0, m - 1);
+		if(col < 0 || col >= n)
+			throw new OutOfRangeException(col, 0, n - 1);
+		return Arrays.binarySearch(indices, indptr[row], indptr[row + 1], col);
+	}
+
+	@Override
+	public double getEntry(final int row, final int col) {
+		final int p = position(row, col);
+		return p < 0 ? 0.0 : values[p];
+	}
+
+	/**
+	 * Set an entry. Note that inserting a new non-zero (or zeroing an
+	 * existing one) requires shifting the stored arrays, and is O(nnz).
+	 */
+	@Override
+	public void setEntry(final int row, final int col, final double value) {
+		final int p = position(row, col);
+
+		if(p >= 0) {
+			if(value != 0) {
+				values[p] = value;
+				return;
+			}
+
+			// remove the entry
+			final int nnz = values.length;
+			final int[] newIdcs = new int[nnz - 1];
+			final double[] newVals = new double[nnz - 1];
+			System.arraycopy(indices, 0, newIdcs, 0, p);
+			System.arraycopy(indices, p + 1, newIdcs, p, nnz - p - 1);
+			System.arraycopy(values, 0, newVals, 0, p);
+			System.arraycopy(values, p + 1, newVals, p, nnz - p - 1);
+			indices = newIdcs;
+			values = newVals;
+			for(int i = row + 1; i <= m; i++)
+				indptr[i]--;
+
+		} else if(value != 0) {
+			// insert the entry
+			final int ins = -p - 1, nnz = values.length;
+			final int[] newIdcs = new int[nnz + 1];
+			final double[] newVals = new double[nnz + 1];
+			System.arraycopy(indices, 0, newIdcs, 0, ins);
+			System.arraycopy(indices, ins, newIdcs, ins + 1, nnz - ins);
+			System.arraycopy(values, 0, newVals, 0, ins);
+			System.arraycopy(values, ins, newVals, ins + 1, nnz - ins);
+			newIdcs[ins] = col;
+			newVals[ins] = value;
+			indices = newIdcs;
+			values = newVals;
+			for(int i = row + 1; i <= m; i++)
+				indptr[i]++;
+		}
+	}
+
+	@Override
+	public double[] getRow(final int row) {
+		final double[] out = new double[n];
+		getRow(row, out);
+		return out;
+	}
+
+	/**
+	 * Densify a row into the provided buffer
+	 * @param row
+	 * @param buf - an array of length <tt>n</tt>, which will be overwritten
+	 * @return the buffer
+	 */
+	public double[] getRow(final int row, final double[] buf) {
+		if(row < 0 || row >= m)
+			throw new OutOfRangeException(row, 0, m - 1);
+		if(buf.length != n)
+			throw new DimensionMismatchException(buf.length, n);
+
+		Arrays.fill(buf, 0.0);
+		for(int p = indptr[row]; p < indptr[row + 1]; p++)
+			buf[indices[p]] = values[p];
+		return buf;
+	}
+
+	@Override
+	public double[][] getData() {
+		final double[][] out = new double[m][];
+		for(int i = 0; i < m; i++)
+			out[i] = getRow(i);
+		return out;
+	}
+
+	/**
+	 * Compute the inner product of a row and a dense vector in O(nnz(row))
+	 * @param row
+	 * @param y
+	 * @return the inner product
+	 */
+	public double rowDot(final int row, final double[] y) {
+		if(y.length != n)
+			throw new DimensionMismatchException(y.length, n);
+
+		double sum = 0;
+		for(int p = indptr[row]; p < indptr[row + 1]; p++)
+			sum += values[p] * y[indices[p]];
+		return sum;
+	}
+
+	/**
+	 * Add <tt>scalar</tt> times a row to a dense vector in O(nnz(row))
+	 * @param row
+	 * @param scalar
+	 * @param y - the vector to add to
+	 */
+	public void addRowTo(final int row, final double scalar, final double[] y) {
+		if(y.length != n)
+			throw new DimensionMismatchException(y.length, n);
+
+		for(int p = indptr[row]; p < indptr[row + 1]; p++)
+			y[indices[p]] += scalar * values[p];
+	}
+
+	@Override
+	public CSRMatrix createMatrix(final int rowDimension, final int columnDimension) {
+		return new CSRMatrix(rowDimension, columnDimension);
+	}
+
+	@Override
+	public CSRMatrix copy() {
+		return new CSRMatrix(this);
+	}
+
+	/**
+	 * Bind the rows of <tt>b</tt> beneath those of <tt>a</tt>, in O(nnz)
+	 * @param a
+	 * @param b
+	 * @throws DimensionMismatchException if the column dims don't match
+	 * @return a new matrix with the rows of both
+	 */
+	public static CSRMatrix rbind(final CSRMatrix a, final CSRMatrix b) {
+		if(a.n != b.n)
+			throw new DimensionMismatchException(b.n, a.n);
+
+		final CSRMatrix c = new CSRMatrix(a.m + b.m, a.n);
+		final int nnzA = a.values.length, nnzB = b.values.length;
+		c.indices = Arrays.copyOf(a.indices, nnzA + nnzB);
+		c.values = Arrays.copyOf(a.values, nnzA + nnzB);
+		System.arraycopy(b.indices, 0, c.indices, nnzA, nnzB);
+		System.arraycopy(b.values, 0, c.values, nnzA, nnzB);
+
+		System.arraycopy(a.indptr, 0, c.indptr, 0, a.m + 1);
+		for(int i = 1; i <= b.m; i++)
+			c.indptr[a.m + i] = nnzA + b.indptr[i];
+
+		return c;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(this == o)
+			return true;
+		if(o instanceof CSRMatrix) {
+			final CSRMatrix c = (CSRMatrix)o;
+			return c.m == m && c.n == n
+				&& Arrays.equals(c.indptr, indptr)
+				&& Arrays.equals(c.indices, indices)
+				&& Arrays.equals(c.values, values);
+		}
+
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		// consistent with the entry-wise equality to other RealMatrices
+		return super.hashCode();
+	}
+}
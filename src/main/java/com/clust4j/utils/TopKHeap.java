@@ -0,0 +1,200 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.utils;
+
+/**
+ * A set of <tt>m</tt> bounded max-heaps over primitive arrays, each of which
+ * retains the <tt>k</tt> smallest (value, index) pairs pushed to its row. Memory
+ * is O(m&middot;k) regardless of how many values are pushed, and rows are
+ * independent, so tasks operating on disjoint rows need no synchronization.
+ *
+ * <p>
+ * Pairs are ordered by value (as in {@link Double#compare(double, double)}) and
+ * then by index, so the retained pairs do not depend on the order in which
+ * they were pushed.
+ *
+ * @author Taylor G Smith
+ */
+public class TopKHeap implements java.io.Serializable {
+	private static final long serialVersionUID = -6184236853290557237L;
+
+	final int k;
+	final double[][] values;
+	final int[][] indices;
+	final int[] sizes;
+
+	/**
+	 * @param m - the number of rows
+	 * @param k - the number of pairs to retain per row
+	 * @throws IllegalArgumentException if k is less than one
+	 */
+	public TopKHeap(final int m, final int k) {
+		if(k < 1)
+			throw new IllegalArgumentException("k must exceed 0");
+
+		this.k = k;
+		this.values = new double[m][k];
+		this.indices = new int[m][k];
+		this.sizes = new int[m];
+	}
+
+	private static boolean less(double v1, int i1, double v2, int i2) {
+		final int c = Double.compare(v1, v2);
+		return c < 0 || (c == 0 && i1 < i2);
+	}
+
+	/**
+	 * Offer a pair to a row
+	 * @param row
+	 * @param val
+	 * @param idx
+	 * @return whether the pair was retained
+	 */
+	public boolean push(final int row, final double val, final int idx) {
+		final double[] v = values[row];
+		final int[] ix = indices[row];
+		int pos, size = sizes[row];
+
+		if(size < k) {
+			// sift up from the end
+			pos = size;
+			sizes[row] = ++size;
+
+			int parent;
+			while(pos > 0) {
+				parent = (pos - 1) >> 1;
+				if(!less(v[parent], ix[parent], val, idx))
+					break;
+
+				v[pos] = v[parent];
+				ix[pos] = ix[parent];
+				pos = parent;
+			}
+
+			v[pos] = val;
+			ix[pos] = idx;
+			return true;
+		}
+
+		if(!less(val, idx, v[0], ix[0]))
+			return false;
+
+		siftDown(v, ix, val, idx, size);
+		return true;
+	}
+
+	/** Place (val, idx) at the root and sift it down a heap of the given size */
+	private static void siftDown(final double[] v, final int[] ix,
+			final double val, final int idx, final int size) {
+		int pos = 0, child;
+		while((child = 2 * pos + 1) < size) {
+			if(child + 1 < size && less(v[child], ix[child], v[child + 1], ix[child + 1]))
+				child++;
+			if(!less(val, idx, v[child], ix[child]))
+				break;
+
+			v[pos] = v[child];
+			ix[pos] = ix[child];
+			pos = child;
+		}
+
+		v[pos] = val;
+		ix[pos] = idx;
+	}
+
+	/**
+	 * The largest retained value in a row, or positive infinity if the
+	 * row does not yet hold <tt>k</tt> pairs. Any value greater than this
+	 * will not be retained by the row.
+	 * @param row
+	 * @return the bound for the row
+	 */
+	public double largest(final int row) {
+		return sizes[row] < k ? Double.POSITIVE_INFINITY : values[row][0];
+	}
+
+	/**
+	 * @param row
+	 * @return the number of pairs held by a row
+	 */
+	public int size(final int row) {
+		return sizes[row];
+	}
+
+	/**
+	 * Heap-sort each row into ascending order. Note that this destroys the
+	 * heap property, so no pairs should be pushed afterwards.
+	 */
+	public void sort() {
+		double[] v;
+		int[] ix;
+		double val;
+		int idx;
+
+		for(int row = 0; row < values.length; row++) {
+			v = values[row];
+			ix = indices[row];
+
+			for(int end = sizes[row] - 1; end > 0; end--) {
+				val = v[end];
+				idx = ix[end];
+				v[end] = v[0];
+				ix[end] = ix[0];
+				siftDown(v, ix, val, idx, end);
+			}
+		}
+	}
+
+	/**
+	 * Returns the values. Note that this is not a copy, and that
+	 * the rows are only ordered after {@link #sort()}.
+	 * @return the value arrays
+	 */
+	public double[][] getValuesRef() {
+		return values;
+	}
+
+	/**
+	 * Returns the indices. Note that this is not a copy, and that
+	 * the rows are only ordered after {@link #sort()}.
+	 * @return the index arrays
+	 */
+	public int[][] getIndicesRef() {
+		return indices;
+	}
+
+	/**
+	 * Select the <tt>k</tt>-th (zero-based) smallest element of a vector, which
+	 * is the element that would sit at position <tt>k</tt> after
+	 * {@link java.util.Arrays#sort(double[])}, in O(n log k) time and without
+	 * copying the vector.
+	 * @param a
+	 * @param k
+	 * @throws IllegalArgumentException if k is not a valid position in a
+	 * @return the k-th smallest element
+	 */
+	public static double kthSmallest(final double[] a, final int k) {
+		if(k < 0 || k >= a.length)
+			throw new IllegalArgumentException("k must be between 0 and " + (a.length - 1));
+
+		final TopKHeap heap = new TopKHeap(1, k + 1);
+		for(int i = 0; i < a.length; i++)
+			if(heap.sizes[0] <= k || Double.compare(a[i], heap.values[0][0]) < 0)
+				heap.push(0, a[i], i);
+
+		return heap.values[0][0];
+	}
+}
@@ -0,0 +1,231 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.utils;
+
+import org.apache.commons.math3.util.FastMath;
+
+import com.clust4j.GlobalState;
+
+/**
+ * The innermost loops shared by the {@link com.clust4j.metrics.pairwise.Distance}
+ * metrics, {@link VecUtils#innerProduct(double[], double[])} and the
+ * {@link com.clust4j.kernel.Kernel}s. Each summing kernel has two implementations,
+ * chosen at runtime by {@link GlobalState.VectorizationConf#UNROLLED_KERNELS}:
+ *
+ * <ul>
+ * <li>A plain scalar loop with a single accumulator, in which every addition
+ * must wait on the one before it</li>
+ * <li>A loop unrolled by four with four independent accumulators, which breaks
+ * that dependency chain and leaves the JIT free to pack the element-wise
+ * subtractions and products into vector instructions</li>
+ * </ul>
+ *
+ * <p>
+ * The unrolled sums are reassociated, so they may differ from the scalar sums in
+ * the last few bits. Vectors shorter than
+ * {@link GlobalState.VectorizationConf#MIN_UNROLLED_LENGTH} always take the scalar
+ * loops.
+ *
+ * <p>
+ * None of these methods check dimensions; callers are responsible
+ * for ensuring that both vectors are of the same length.
+ *
+ * @author Taylor G Smith
+ */
+public abstract class VecKernels {
+
+	private static boolean unroll(final int n) {
+		return GlobalState.VectorizationConf.UNROLLED_KERNELS
+			&& n >= GlobalState.VectorizationConf.MIN_UNROLLED_LENGTH;
+	}
+
+	/**
+	 * The squared Euclidean distance between two vectors
+	 * @param a
+	 * @param b
+	 * @return the sum of squared differences
+	 */
+	public static double squaredDifference(final double[] a, final double[] b) {
+		final int n = a.length;
+		double diff;
+
+		if(!unroll(n)) {
+			double sum = 0;
+			for(int i = 0; i < n; i++) {
+				diff = a[i] - b[i];
+				sum += diff * diff;
+			}
+
+			return sum;
+		}
+
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0, d1, d2, d3;
+		final int n4 = n & ~3;
+		int i = 0;
+		for(; i < n4; i += 4) {
+			diff = a[i]     - b[i];
+			d1   = a[i + 1] - b[i + 1];
+			d2   = a[i + 2] - b[i + 2];
+			d3   = a[i + 3] - b[i + 3];
+			s0 += diff * diff;
+			s1 += d1 * d1;
+			s2 += d2 * d2;
+			s3 += d3 * d3;
+		}
+
+		for(; i < n; i++) {
+			diff = a[i] - b[i];
+			s0 += diff * diff;
+		}
+
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	/**
+	 * The Manhattan distance between two vectors
+	 * @param a
+	 * @param b
+	 * @return the sum of absolute differences
+	 */
+	public static double absoluteDifference(final double[] a, final double[] b) {
+		final int n = a.length;
+
+		if(!unroll(n)) {
+			double sum = 0;
+			for(int i = 0; i < n; i++)
+				sum += FastMath.abs(a[i] - b[i]);
+
+			return sum;
+		}
+
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		final int n4 = n & ~3;
+		int i = 0;
+		for(; i < n4; i += 4) {
+			s0 += FastMath.abs(a[i]     - b[i]);
+			s1 += FastMath.abs(a[i + 1] - b[i + 1]);
+			s2 += FastMath.abs(a[i + 2] - b[i + 2]);
+			s3 += FastMath.abs(a[i + 3] - b[i + 3]);
+		}
+
+		for(; i < n; i++)
+			s0 += FastMath.abs(a[i] - b[i]);
+
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	/**
+	 * The Chebyshev distance between two vectors, ignoring NaN differences. There
+	 * is no unrolled loop for this kernel: there is no sum to reassociate, and
+	 * splitting the running maximum four ways measured slower than the scalar loop.
+	 * @param a
+	 * @param b
+	 * @return the largest absolute difference
+	 */
+	public static double maxAbsoluteDifference(final double[] a, final double[] b) {
+		final int n = a.length;
+		double max = 0, abs;
+		for(int i = 0; i < n; i++) {
+			abs = FastMath.abs(a[i] - b[i]);
+			if(abs > max)
+				max = abs;
+		}
+
+		return max;
+	}
+
+	/**
+	 * The inner product of two vectors
+	 * @param a
+	 * @param b
+	 * @return the sum of element-wise products
+	 */
+	public static double innerProduct(final double[] a, final double[] b) {
+		final int n = a.length;
+
+		if(!unroll(n)) {
+			double sum = 0;
+			for(int i = 0; i < n; i++)
+				sum += a[i] * b[i];
+
+			return sum;
+		}
+
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		final int n4 = n & ~3;
+		int i = 0;
+		for(; i < n4; i += 4) {
+			s0 += a[i]     * b[i];
+			s1 += a[i + 1] * b[i + 1];
+			s2 += a[i + 2] * b[i + 2];
+			s3 += a[i + 3] * b[i + 3];
+		}
+
+		for(; i < n; i++)
+			s0 += a[i] * b[i];
+
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	/**
+	 * Computes <tt>2&lang;a,b&rang; - &lang;a,a&rang; - &lang;b,b&rang;</tt>, the negative
+	 * squared distance between two vectors in the Hilbert space of the inner product,
+	 * in a single pass over both vectors.
+	 * @param a
+	 * @param b
+	 * @return the negative squared Hilbert-space distance
+	 */
+	public static double hilbertPSpace(final double[] a, final double[] b) {
+		final int n = a.length;
+
+		if(!unroll(n)) {
+			double ipab = 0, ipaa = 0, ipbb = 0;
+			for(int i = 0; i < n; i++) {
+				ipab += a[i] * b[i];
+				ipaa += a[i] * a[i];
+				ipbb += b[i] * b[i];
+			}
+
+			return 2*ipab - ipaa - ipbb;
+		}
+
+		double ab0 = 0, ab1 = 0, aa0 = 0, aa1 = 0, bb0 = 0, bb1 = 0, x0, x1, y0, y1;
+		final int n2 = n & ~1;
+		int i = 0;
+		for(; i < n2; i += 2) {
+			x0 = a[i];
+			x1 = a[i + 1];
+			y0 = b[i];
+			y1 = b[i + 1];
+			ab0 += x0 * y0;
+			ab1 += x1 * y1;
+			aa0 += x0 * x0;
+			aa1 += x1 * x1;
+			bb0 += y0 * y0;
+			bb1 += y1 * y1;
+		}
+
+		if(i < n) {
+			x0 = a[i];
+			y0 = b[i];
+			ab0 += x0 * y0;
+			aa0 += x0 * x0;
+			bb0 += y0 * y0;
+		}
+
+		return 2*(ab0 + ab1) - (aa0 + aa1) - (bb0 + bb1);
+	}
+}
@@ -892,11 +892,7 @@ public abstract class VecUtils {
 	 */
 	public static double innerProduct(final double[] a, final double[] b) {
 		checkDimsPermitEmpty(a, b);
-		double sum = 0.0;
-		for(int i = 0; i < a.length; i++)
-			sum += a[i] * b[i];
-		
-		return sum;
+		return VecKernels.innerProduct(a, b);
 	}
 	
 	/**
@@ -28,6 +28,7 @@ import org.junit.runners.Suite;
 import com.clust4j.TestClust4j;
 import com.clust4j.TestGlobals;
 import com.clust4j.algo.AffinityPropagationTests;
+import com.clust4j.algo.BisectingKMeansTests;
 import com.clust4j.algo.BoruvkaTests;
 import com.clust4j.algo.ClustTests;
 import com.clust4j.algo.DBSCANTests;
@@ -35,6 +36,7 @@ import com.clust4j.algo.HDBSCANTests;
 import com.clust4j.algo.HierarchicalTests;
 import com.clust4j.algo.KMeansTests;
 import com.clust4j.algo.KMedoidsTests;
+import com.clust4j.algo.MiniBatchKMeansTests;
 import com.clust4j.algo.MeanShiftTests;
 import com.clust4j.algo.NNHSTests;
 import com.clust4j.algo.NearestCentroidTests;
@@ -54,14 +56,17 @@ import com.clust4j.except.TestExcept;
 import com.clust4j.kernel.KernelTestCases;
 import com.clust4j.log.LogTest;
 import com.clust4j.metrics.pairwise.HaversineTest;
+import com.clust4j.metrics.pairwise.MinkowskiDistance;
 import com.clust4j.metrics.pairwise.PairwiseTests;
 import com.clust4j.metrics.pairwise.TestDistanceEnums;
 import com.clust4j.metrics.scoring.TestMetrics;
 import com.clust4j.optimize.TestOptimizer;
 import com.clust4j.sample.BootstrapTest;
+import com.clust4j.sample.CoresetTest;
 import com.clust4j.utils.FormatterTests;
 import com.clust4j.utils.HeapTests;
 import com.clust4j.utils.MatTests;
+import com.clust4j.utils.MatUtils;
 import com.clust4j.utils.MatrixFormatter;
 import com.clust4j.utils.QuadTupTests;
 import com.clust4j.utils.SeriesTests;
@@ -73,7 +78,9 @@ import com.clust4j.utils.parallel.ParallelTests;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
 	AffinityPropagationTests.class,
+	BisectingKMeansTests.class,
 	BootstrapTest.class,
+	CoresetTest.class,
 	BoruvkaTests.class,
 	BufferedMatrixReaderTests.class,
 	ClustTests.class,
@@ -87,6 +94,7 @@ import com.clust4j.utils.parallel.ParallelTests;
 	KernelTestCases.class,
 	KMeansTests.class,
 	KMedoidsTests.class,
+	MiniBatchKMeansTests.class,
 	LogTest.class,
 	MatTests.class,
 	MeanShiftTests.class,
@@ -168,6 +176,44 @@ public class TestSuite {
 		return new Array2DRowRealMatrix(data, false);
 	}
 	
+	/**
+	 * Euclidean distance (as Minkowski with p = 2) which records whether it was ever
+	 * computed on a thread other than the one which created it, so tests can assert
+	 * that serial paths never fork onto a pool
+	 */
+	public static class ThreadRecordingMetric extends MinkowskiDistance {
+		private static final long serialVersionUID = 1L;
+		final transient Thread owner = Thread.currentThread();
+		volatile boolean offThread = false;
+		
+		public ThreadRecordingMetric() {
+			super(2.0);
+		}
+		
+		@Override
+		public double getPartialDistance(final double[] a, final double[] b) {
+			if(Thread.currentThread() != owner)
+				offThread = true;
+			return super.getPartialDistance(a, b);
+		}
+		
+		public boolean wasOffThread() {
+			return offThread;
+		}
+	}
+	
+	/**
+	 * Well separated gaussian blobs in three dimensions, with record <tt>i</tt> 
+	 * centered at <tt>10 * (i % k)</tt> in each dimension
+	 */
+	public static double[][] getBlobs(final int m, final int k, final long seed) {
+		final double[][] X = MatUtils.randomGaussian(m, 3, new Random(seed));
+		for(int i = 0; i < m; i++)
+			for(int j = 0; j < X[i].length; j++)
+				X[i][j] += 10 * (i % k);
+		return X;
+	}
+	
 	public static void main(String[] args) throws Exception {
 		JUnitCore.main("com.clust4j.TestSuite");
 	}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.algo;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.junit.Test;
+
+import com.clust4j.GlobalState;
+import com.clust4j.TestSuite;
+import com.clust4j.except.ModelNotFitException;
+import com.clust4j.utils.MatUtils;
+import com.clust4j.utils.VecUtils;
+
+public class BisectingKMeansTests {
+	final Array2DRowRealMatrix data_ = TestSuite.IRIS_DATASET.getData();
+	
+	@Test
+	public void testOnIris() {
+		final BisectingKMeans model = new BisectingKMeansParameters(3)
+			.setSeed(new Random(5)).setVerbose(true).fitNewModel(data_);
+		
+		assertEquals(3, model.getK());
+		assertEquals(3, model.getCentroids().size());
+		assertEquals(data_.getRowDimension(), model.getLabels().length);
+		assertEquals(3, VecUtils.unique(model.getLabels()).size());
+		assertEquals(0, model.getLabels()[0]); // ordered by appearance
+		
+		// the WSS and BSS decompose the TSS
+		assertEquals(model.getTSS(), VecUtils.sum(model.getWSS()) + model.getBSS(), 1e-8);
+		assertTrue(model.getBSS() > 0);
+	}
+	
+	@Test
+	public void testSeparatesBlobs() {
+		final double[][] X = TestSuite.getBlobs(400, 8, 3);
+		final BisectingKMeans model = new BisectingKMeansParameters(8)
+			.setSeed(new Random(7)).fitNewModel(new Array2DRowRealMatrix(X, false));
+		
+		// each blob is one cluster
+		final int[] labels = model.getLabels();
+		for(int i = 8; i < labels.length; i++)
+			assertEquals(labels[i % 8], labels[i]);
+		assertEquals(8, VecUtils.unique(labels).size());
+		
+		// and the tree's prediction agrees with the training labels
+		assertTrue(VecUtils.equalsExactly(labels, model.predict(new Array2DRowRealMatrix(X, false))));
+	}
+	
+	@Test
+	public void testSplitTree() {
+		final int k = 6;
+		final BisectingKMeans model = new BisectingKMeansParameters(k)
+			.setSeed(new Random(2)).fitNewModel(new Array2DRowRealMatrix(TestSuite.getBlobs(300, 10, 4), false));
+		
+		final int[][] tree = model.getSplitTree();
+		assertEquals(2 * k - 1, tree.length);
+		
+		// every node but the root is the child of exactly one split, and the leaves hold each label once
+		final int[] parents = new int[tree.length];
+		final HashSet<Integer> leafLabels = new HashSet<>();
+		for(int[] node: tree) {
+			if(-1 == node[0]) {
+				assertEquals(-1, node[1]);
+				assertTrue(leafLabels.add(node[2]));
+			} else {
+				assertEquals(-1, node[2]);
+				parents[node[0]]++;
+				parents[node[1]]++;
+			}
+		}
+		
+		assertEquals(0, parents[0]);
+		for(int i = 1; i < parents.length; i++)
+			assertEquals(1, parents[i]);
+		assertEquals(k, leafLabels.size());
+		for(int label = 0; label < k; label++)
+			assertTrue(leafLabels.contains(label));
+	}
+	
+	@Test
+	public void testParallelMatchesSerial() {
+		final Array2DRowRealMatrix X = new Array2DRowRealMatrix(TestSuite.getBlobs(500, 12, 8), false);
+		final BisectingKMeans serial = new BisectingKMeansParameters(12)
+			.setSeed(new Random(3)).fitNewModel(X);
+		
+		final boolean prior = GlobalState.ParallelismConf.PARALLELISM_ALLOWED;
+		try {
+			GlobalState.ParallelismConf.PARALLELISM_ALLOWED = true;
+			final BisectingKMeans parallel = new BisectingKMeansParameters(12)
+				.setSeed(new Random(3)).setForceParallel(true).fitNewModel(X);
+			
+			assertTrue(VecUtils.equalsExactly(serial.getLabels(), parallel.getLabels()));
+			assertTrue(MatUtils.equalsExactly(serial.getSplitTree(), parallel.getSplitTree()));
+		} finally {
+			GlobalState.ParallelismConf.PARALLELISM_ALLOWED = prior;
+		}
+	}
+	
+	@Test
+	public void testK1() {
+		final BisectingKMeans model = new BisectingKMeansParameters(1).fitNewModel(data_);
+		assertEquals(1, model.getSplitTree().length);
+		assertTrue(VecUtils.equalsExactly(new int[data_.getRowDimension()], model.getLabels()));
+		assertTrue(VecUtils.equalsExactly(new int[data_.getRowDimension()], model.predict(data_)));
+	}
+	
+	@Test
+	public void testTooFewDistinct() {
+		// only two distinct records can be separated
+		final double[][] X = new double[][]{
+			new double[]{0, 0}, new double[]{0, 0}, new double[]{0, 0},
+			new double[]{5, 5}, new double[]{5, 5}
+		};
+		
+		final BisectingKMeans model = new BisectingKMeansParameters(4)
+			.fitNewModel(new Array2DRowRealMatrix(X, false));
+		assertEquals(2, model.getK());
+		assertTrue(VecUtils.equalsExactly(new int[]{0,0,0,1,1}, model.getLabels()));
+	}
+	
+	@Test(expected=UnsupportedOperationException.class)
+	public void testWarmStart() {
+		new BisectingKMeansParameters().setWarmStart(new double[][]{ new double[]{1, 2} });
+	}
+	
+	@Test(expected=ModelNotFitException.class)
+	public void testNotFit() {
+		new BisectingKMeans(data_, 3).getSplitTree();
+	}
+	
+	@Test(expected=DimensionMismatchException.class)
+	public void testPredictDimMismatch() {
+		new BisectingKMeansParameters(3).fitNewModel(data_)
+			.predict(new Array2DRowRealMatrix(new double[][]{ new double[]{1, 2} }, false));
+	}
+}
@@ -30,6 +30,7 @@ import static com.clust4j.TestSuite.getRandom;
 
 import org.junit.Test;
 
+import com.clust4j.GlobalState;
 import com.clust4j.TestSuite;
 import com.clust4j.algo.DBSCANParameters;
 import com.clust4j.algo.preprocess.StandardScaler;
@@ -42,6 +43,7 @@ import com.clust4j.kernel.RadialBasisKernel;
 import com.clust4j.metrics.pairwise.Distance;
 import com.clust4j.metrics.pairwise.DistanceMetric;
 import com.clust4j.metrics.pairwise.MinkowskiDistance;
+import com.clust4j.utils.CSRMatrix;
 import com.clust4j.utils.MatUtils;
 import com.clust4j.utils.VecUtils;
 import com.clust4j.utils.Series.Inequality;
@@ -376,4 +378,91 @@ public class DBSCANTests implements ClusterTest, ClassifierTest, BaseModelTest {
 			assertTrue(a);
 		}
 	}
+	
+	@Test
+	public void testSparse() {
+		final double[][] x = TestSuite.IRIS_DATASET.getData().getData();
+		for(double[] row: x)
+			for(int j = 0; j < row.length; j++)
+				if(row[j] < 1.5)
+					row[j] = 0.0;
+		
+		final CSRMatrix sparse = new CSRMatrix(x);
+		for(Distance metric: new Distance[]{Distance.EUCLIDEAN, Distance.MANHATTAN}) {
+			DBSCAN s = new DBSCANParameters(0.5).setMetric(metric).fitNewModel(sparse);
+			DBSCAN d = new DBSCANParameters(0.5).setMetric(metric)
+				.fitNewModel(new Array2DRowRealMatrix(x, false));
+			
+			assertTrue(s.isSparse());
+			assertTrue(VecUtils.equalsExactly(s.getLabels(), d.getLabels()));
+			assertEquals(s.getNumberOfNoisePoints(), d.getNumberOfNoisePoints());
+		}
+	}
+	
+	private static DBSCAN fitParallel(final DBSCANParameters params, final Array2DRowRealMatrix data) {
+		final boolean prior = GlobalState.ParallelismConf.PARALLELISM_ALLOWED;
+		try {
+			GlobalState.ParallelismConf.PARALLELISM_ALLOWED = true;
+			return params.setForceParallel(true).fitNewModel(data);
+		} finally {
+			GlobalState.ParallelismConf.PARALLELISM_ALLOWED = prior;
+		}
+	}
+	
+	@Test
+	public void testParallelLabels() {
+		final Array2DRowRealMatrix iris = TestSuite.IRIS_DATASET.getData();
+		final Array2DRowRealMatrix noisy = new Array2DRowRealMatrix(
+			MatUtils.randomGaussian(6000, 2, new java.util.Random(9)), false);
+		
+		for(Object[] test: new Object[][]{
+			{ iris, 0.3, 5 },
+			{ iris, 0.5, 3 },
+			{ noisy, 0.05, 4 }, // many small clusters and much noise, over several chunks
+			{ noisy, 0.2, 10 },
+		}) {
+			final Array2DRowRealMatrix data = (Array2DRowRealMatrix)test[0];
+			final double eps = (Double)test[1];
+			final int minPts = (Integer)test[2];
+			
+			final DBSCAN serial = new DBSCANParameters(eps).setMinPts(minPts).fitNewModel(data);
+			final DBSCAN parallel = fitParallel(new DBSCANParameters(eps).setMinPts(minPts), data);
+			
+			assertTrue(VecUtils.equalsExactly(serial.getLabels(), parallel.getLabels()));
+			assertEquals(serial.getNumberOfIdentifiedClusters(), parallel.getNumberOfIdentifiedClusters());
+			assertEquals(serial.getNumberOfNoisePoints(), parallel.getNumberOfNoisePoints());
+		}
+	}
+	
+	@Test
+	public void testParallelAllNoise() {
+		final DBSCAN d = fitParallel(new DBSCANParameters(1e-6), TestSuite.IRIS_DATASET.getData());
+		assertEquals(0, d.getNumberOfIdentifiedClusters());
+		assertEquals(150, d.getNumberOfNoisePoints());
+	}
+	
+	@Test
+	public void testConcurrentDisjointSet() {
+		final int m = 5000;
+		final int[][] nearest = new int[m][];
+		final boolean[] core = new boolean[m];
+		
+		// runs of nine chained core points, separated by isolated noise points
+		for(int i = 0; i < m; i++)
+			core[i] = i % 10 != 0;
+		for(int i = 0; i < m; i++)
+			nearest[i] = core[i] && i + 1 < m && core[i + 1] ? new int[]{ i + 1 } : new int[0];
+		
+		final DBSCAN.ConcurrentDisjointSet sets = new DBSCAN.ConcurrentDisjointSet(m);
+		final int[] roots = new int[m];
+		GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(new DBSCAN.LabelTask(nearest, core, sets, roots, true, 0, m));
+		GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(new DBSCAN.LabelTask(nearest, core, sets, roots, false, 0, m));
+		
+		for(int i = 0; i < m; i++) {
+			if(core[i])
+				assertEquals(i - i % 10 + 1, roots[i]); // the least of its run
+			else
+				assertEquals(-1, roots[i]); // no core neighbors
+		}
+	}
 }
@@ -49,6 +49,7 @@ import com.clust4j.except.ModelNotFitException;
 import com.clust4j.kernel.GaussianKernel;
 import com.clust4j.kernel.Kernel;
 import com.clust4j.kernel.KernelTestCases;
+import com.clust4j.metrics.pairwise.CondensedDistanceMatrix;
 import com.clust4j.metrics.pairwise.Distance;
 import com.clust4j.metrics.pairwise.DistanceMetric;
 import com.clust4j.metrics.pairwise.MinkowskiDistance;
@@ -1627,4 +1628,55 @@ public class HDBSCANTests implements ClusterTest, ClassifierTest, BaseModelTest
 			assertTrue(a);
 		}
 	}
+	
+	@Test
+	public void testCondensedLinkageCoreMatchesDense() {
+		final double[][] X = iris.getData();
+		final int minPts = 5;
+		
+		for(double alpha: new double[]{1.0, 1.5}) {
+			final double[][] dense = Pairwise.getDistance(X, Distance.EUCLIDEAN, false, false);
+			final double[][] mr = HDBSCAN.LinkageTreeUtils.mutualReachability(dense, minPts, alpha);
+			final double[][] expected = HDBSCAN.LinkageTreeUtils.minSpanTreeLinkageCore(mr, X.length);
+			
+			final CondensedDistanceMatrix condensed = Pairwise.getCondensedDistance(X, Distance.EUCLIDEAN, false);
+			final double[] core = HDBSCAN.LinkageTreeUtils.coreDistances(condensed, new double[X.length], minPts);
+			assertTrue(VecUtils.equalsExactly(core, MatUtils.sortColsAsc(dense)[minPts]));
+			
+			final double[][] result = HDBSCAN.LinkageTreeUtils.minSpanTreeLinkageCore(condensed, core, alpha);
+			assertTrue(MatUtils.equalsExactly(result, expected));
+		}
+	}
+	
+	@Test
+	public void testOffHeapStorage() {
+		final Array2DRowRealMatrix X = TestSuite.IRIS_DATASET.getData();
+		final int[] expected = new HDBSCANParameters()
+			.setAlgo(HDBSCAN_Algorithm.GENERIC).fitNewModel(X).getLabels();
+		
+		for(CondensedDistanceMatrix.Storage storage: CondensedDistanceMatrix.Storage.values()) {
+			HDBSCANParameters planner = new HDBSCANParameters()
+				.setAlgo(HDBSCAN_Algorithm.GENERIC).setDistanceStorage(storage);
+			assertTrue(planner.copy().getDistanceStorage() == storage);
+			assertTrue(VecUtils.equalsExactly(expected, planner.fitNewModel(X).getLabels()));
+		}
+	}
+	
+	@Test
+	public void testPrimsBrute() {
+		HDBSCAN brute = new HDBSCAN(iris, new HDBSCANParameters()
+			.setAlgo(HDBSCAN_Algorithm.PRIMS_BRUTE)).fit();
+		HDBSCAN kd = new HDBSCAN(iris, new HDBSCANParameters()
+			.setAlgo(HDBSCAN_Algorithm.PRIMS_KDTREE)).fit();
+		
+		assertTrue(VecUtils.equalsExactly(brute.getLabels(), kd.getLabels()));
+		
+		brute = new HDBSCAN(iris, new HDBSCANParameters()
+			.setAlgo(HDBSCAN_Algorithm.PRIMS_BRUTE)
+			.setMetric(Distance.MANHATTAN)).fit();
+		kd = new HDBSCAN(iris, new HDBSCANParameters()
+			.setAlgo(HDBSCAN_Algorithm.PRIMS_KDTREE)
+			.setMetric(Distance.MANHATTAN)).fit();
+		assertTrue(VecUtils.equalsExactly(brute.getLabels(), kd.getLabels()));
+	}
 }
@@ -33,7 +33,8 @@ import org.junit.Test;
 import com.clust4j.TestSuite;
 import com.clust4j.utils.SimpleHeap;
 import com.clust4j.algo.HierarchicalAgglomerativeParameters;
-import com.clust4j.algo.HierarchicalAgglomerative.EfficientDistanceMatrix;
+import com.clust4j.metrics.pairwise.CondensedDistanceMatrix;
+import com.clust4j.metrics.pairwise.NumericPrecision;
 import com.clust4j.algo.HierarchicalAgglomerative.Linkage;
 import com.clust4j.except.ModelNotFitException;
 import com.clust4j.kernel.GaussianKernel;
@@ -54,7 +55,7 @@ public class HierarchicalTests implements ClusterTest, ClassifierTest, BaseModel
 	
 	@Test
 	public void testCondensedIdx() {
-		assertTrue(EfficientDistanceMatrix.getIndexFromFlattenedVec(10, 3, 4) == 24);
+		assertTrue(CondensedDistanceMatrix.getIndex(10, 3, 4) == 24);
 	}
 	
 	@Test
@@ -362,7 +363,7 @@ public class HierarchicalTests implements ClusterTest, ClassifierTest, BaseModel
 	public void testBadEfficientDistMatTest() {
 		boolean a = false;
 		try {
-			HierarchicalAgglomerative.EfficientDistanceMatrix.getIndexFromFlattenedVec(0, 0, 0);
+			CondensedDistanceMatrix.getIndex(0, 0, 0);
 		} catch(IllegalArgumentException i) {
 			a = true;
 		} finally {
@@ -423,4 +424,30 @@ public class HierarchicalTests implements ClusterTest, ClassifierTest, BaseModel
 			assertTrue(a);
 		}
 	}
+	
+	@Test
+	public void testOffHeapStorage() {
+		final int[] expected = new HierarchicalAgglomerative(data_, 
+			new HierarchicalAgglomerativeParameters(3)).fit().getLabels();
+		
+		for(CondensedDistanceMatrix.Storage storage: CondensedDistanceMatrix.Storage.values()) {
+			HierarchicalAgglomerativeParameters planner = new HierarchicalAgglomerativeParameters(3)
+				.setDistanceStorage(storage);
+			assertTrue(planner.copy().getDistanceStorage() == storage);
+			assertTrue(VecUtils.equalsExactly(expected, planner.fitNewModel(data_).getLabels()));
+		}
+	}
+	
+	@Test
+	public void testFloatPrecision() {
+		for(Linkage linkage: Linkage.values()) {
+			final int[] expected = new HierarchicalAgglomerative(data_, 
+				new HierarchicalAgglomerativeParameters(3).setLinkage(linkage)).fit().getLabels();
+			
+			HierarchicalAgglomerativeParameters planner = new HierarchicalAgglomerativeParameters(3)
+				.setLinkage(linkage).setDistancePrecision(NumericPrecision.FLOAT);
+			assertTrue(planner.copy().getDistancePrecision() == NumericPrecision.FLOAT);
+			assertTrue(VecUtils.equalsExactly(expected, planner.fitNewModel(data_).getLabels()));
+		}
+	}
 }
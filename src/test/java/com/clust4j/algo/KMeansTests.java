@@ -25,6 +25,7 @@ import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -36,6 +37,7 @@ import org.junit.Test;
 import com.clust4j.GlobalState;
 import com.clust4j.TestSuite;
 import com.clust4j.algo.AbstractCentroidClusterer.InitializationStrategy;
+import com.clust4j.algo.KMeans.KMeansAlgorithm;
 import com.clust4j.algo.preprocess.PreProcessor;
 import com.clust4j.algo.preprocess.StandardScaler;
 import com.clust4j.algo.KMeansParameters;
@@ -48,6 +50,8 @@ import com.clust4j.kernel.Kernel;
 import com.clust4j.metrics.pairwise.Distance;
 import com.clust4j.metrics.pairwise.DistanceMetric;
 import com.clust4j.metrics.pairwise.GeometricallySeparable;
+import com.clust4j.metrics.pairwise.MinkowskiDistance;
+import com.clust4j.utils.CSRMatrix;
 import com.clust4j.utils.MatUtils;
 import com.clust4j.utils.VecUtils;
 import com.clust4j.utils.Series.Inequality;
@@ -378,6 +382,179 @@ public class KMeansTests implements ClassifierTest, ClusterTest, ConvergeableTes
 		assertTrue(VecUtils.equalsExactly(ss, new int[]{1,2,6,6}));
 	}
 	
+	/** The potential (sum of partial distances to the nearest seed) of a set of seeds */
+	static double seedPotential(final double[][] X, final int[] seeds) {
+		double sum = 0, min;
+		for(double[] row: X) {
+			min = Double.POSITIVE_INFINITY;
+			for(int s: seeds)
+				min = Math.min(min, Distance.EUCLIDEAN.getPartialDistance(row, X[s]));
+			sum += min;
+		}
+		
+		return sum;
+	}
+	
+	static int distinct(final int[] a) {
+		final HashSet<Integer> set = new HashSet<>();
+		for(int i: a)
+			set.add(i);
+		return set.size();
+	}
+	
+	@Test
+	public void testKMeansParallelInit() {
+		for(Array2DRowRealMatrix mat: new Array2DRowRealMatrix[]{data_, wine, bc}) {
+			final double[][] X = mat.getData();
+			
+			for(int k: new int[]{3, 10}) {
+				final int[] serial = AbstractCentroidClusterer.kMeansParallelSeeds(X.length, k, 
+					new Random(5), AbstractCentroidClusterer.candidateDistances(X), false);
+				final int[] par = AbstractCentroidClusterer.kMeansParallelSeeds(X.length, k, 
+					new Random(5), AbstractCentroidClusterer.candidateDistances(X), true);
+				
+				// the same seeds whether or not the distance updates run in parallel
+				assertTrue(VecUtils.equalsExactly(serial, par));
+				assertTrue(distinct(serial) == k);
+				
+				// and far better spread than a uniform draw
+				final int[] random = AbstractCentroidClusterer.randomSeeds(X.length, k, new Random(5));
+				assertTrue(seedPotential(X, serial) < seedPotential(X, random));
+			}
+		}
+		
+		// corner case: k = m
+		assertTrue(VecUtils.equalsExactly(VecUtils.arange(3), 
+			AbstractCentroidClusterer.kMeansParallelSeeds(3, 3, new Random(5), 
+				AbstractCentroidClusterer.candidateDistances(MatUtils.rep(1.0, 3, 2)), false)));
+		
+		// too few distinct candidates are topped up with distinct records
+		final double[][] dupes = MatUtils.rep(1.0, 20, 2);
+		dupes[7][0] = 5.0;
+		final int[] seeds = AbstractCentroidClusterer.kMeansParallelSeeds(20, 4, new Random(5), 
+			AbstractCentroidClusterer.candidateDistances(dupes), false);
+		assertTrue(distinct(seeds) == 4);
+		assertTrue(distinct(new int[]{seeds[0], seeds[1], seeds[2], seeds[3], 7}) == 4);
+		
+		// usable by both KMeans and KMedoids
+		KMeans km = new KMeansParameters(3)
+			.setInitializationStrategy(InitializationStrategy.KM_PARALLEL)
+			.setSeed(new Random(5))
+			.fitNewModel(data_);
+		assertTrue(km.init == InitializationStrategy.KM_PARALLEL);
+		assertTrue(km.didConverge());
+		
+		KMedoids kmed = new KMedoidsParameters(3)
+			.setInitializationStrategy(InitializationStrategy.KM_PARALLEL)
+			.setSeed(new Random(5))
+			.fitNewModel(data_);
+		assertTrue(kmed.init == InitializationStrategy.KM_PARALLEL);
+		assertTrue(kmed.didConverge());
+	}
+	
+	@Test
+	public void testKMParallelSerialStaysOnCallingThread() {
+		final double[][] X = MatUtils.randomGaussian(2000, 3, new Random(3));
+		final Thread caller = Thread.currentThread();
+		final boolean[] offThread = new boolean[1];
+		final AbstractCentroidClusterer.CandidateDistances dists = new AbstractCentroidClusterer.CandidateDistances() {
+			@Override public double[] distancesFrom(int idx) {
+				throw new UnsupportedOperationException();
+			}
+			
+			@Override public double distanceBetween(int idx, int row) {
+				if(Thread.currentThread() != caller)
+					offThread[0] = true;
+				return Distance.EUCLIDEAN.getPartialDistance(X[idx], X[row]);
+			}
+		};
+		
+		final double[] closest = VecUtils.rep(Double.POSITIVE_INFINITY, X.length);
+		final int[] owner = new int[X.length];
+		AbstractCentroidClusterer.nearestCandidates(dists, new int[]{ 0, 1, 2 }, 0, 3, closest, owner, false);
+		assertFalse(offThread[0]);
+		assertEquals(0.0, closest[1], 0.0);
+		assertEquals(1, owner[1]);
+	}
+	
+	@Test
+	public void testRestarts() {
+		final int nInit = 5;
+		final KMeans best = new KMeansParameters(3)
+			.setSeed(new Random(5))
+			.setNInit(nInit)
+			.fitNewModel(wine);
+		
+		// reproduce the restarts by hand
+		final Random seed = new Random(5);
+		double minWSS = Double.POSITIVE_INFINITY;
+		KMeans expected = null;
+		for(int r = 0; r < nInit; r++) {
+			KMeans km = new KMeansParameters(3)
+				.setSeed(new Random(seed.nextLong()))
+				.fitNewModel(wine);
+			
+			final double wss = VecUtils.sum(km.getWSS());
+			if(wss < minWSS) {
+				minWSS = wss;
+				expected = km;
+			}
+		}
+		
+		assertTrue(VecUtils.sum(best.getWSS()) == minWSS);
+		assertTrue(VecUtils.equalsExactly(best.getLabels(), expected.getLabels()));
+		
+		// one summary row per restart, one of which is the best
+		final ModelSummary summary = best.getRestartSummary();
+		assertTrue(summary.size() == nInit + 1);
+		int nBest = 0;
+		for(int r = 1; r <= nInit; r++) {
+			if((Boolean)summary.get(r)[5]) {
+				nBest++;
+				assertTrue((Double)summary.get(r)[4] == minWSS);
+			}
+		}
+		assertTrue(nBest == 1);
+		
+		// without restarts there is no summary
+		assertNull(new KMeansParameters(3).fitNewModel(wine).getRestartSummary());
+		assertTrue(new KMeansParameters(3).setNInit(4).copy().getNInit() == 4);
+		
+		// the concurrent restarts pick the same model
+		final boolean allowed = GlobalState.ParallelismConf.PARALLELISM_ALLOWED;
+		try {
+			GlobalState.ParallelismConf.PARALLELISM_ALLOWED = true;
+			final KMeans par = new KMeansParameters(3)
+				.setSeed(new Random(5))
+				.setNInit(nInit)
+				.setForceParallel(true)
+				.fitNewModel(wine);
+			
+			assertTrue(VecUtils.equalsExactly(best.getLabels(), par.getLabels()));
+			assertTrue(VecUtils.equalsExactly(best.getWSS(), par.getWSS()));
+		} finally {
+			GlobalState.ParallelismConf.PARALLELISM_ALLOWED = allowed;
+		}
+	}
+	
+	@Test
+	public void testSerialRestartsStayOnCallingThread() {
+		final boolean allowed = GlobalState.ParallelismConf.PARALLELISM_ALLOWED;
+		try {
+			GlobalState.ParallelismConf.PARALLELISM_ALLOWED = false;
+			final TestSuite.ThreadRecordingMetric metric = new TestSuite.ThreadRecordingMetric();
+			new KMeansParameters(3).setMetric(metric).setNInit(4).fitNewModel(wine);
+			assertFalse(metric.wasOffThread());
+		} finally {
+			GlobalState.ParallelismConf.PARALLELISM_ALLOWED = allowed;
+		}
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testBadNInit() {
+		new KMeansParameters(3).setNInit(0).fitNewModel(data_);
+	}
+	
 	@Test
 	public void testOnIris() {
 		DataSet iris = TestSuite.IRIS_DATASET.shuffle();
@@ -777,4 +954,401 @@ public class KMeansTests implements ClassifierTest, ClusterTest, ConvergeableTes
 		threadPool.execute(first);
 		threadPool.execute(second);
 	}
+	
+	@Test
+	public void testSparse() {
+		// zero out the small values of iris
+		final double[][] x = data_.getData();
+		for(double[] row: x)
+			for(int j = 0; j < row.length; j++)
+				if(row[j] < 1.5)
+					row[j] = 0.0;
+		
+		final CSRMatrix sparse = new CSRMatrix(x);
+		final Array2DRowRealMatrix dense = new Array2DRowRealMatrix(x, false);
+		
+		for(InitializationStrategy init: InitializationStrategy.values()) {
+			KMeans s = new KMeansParameters(3).setInitializationStrategy(init)
+				.setSeed(new java.util.Random(5)).fitNewModel(sparse);
+			KMeans d = new KMeansParameters(3).setInitializationStrategy(init)
+				.setSeed(new java.util.Random(5)).fitNewModel(dense);
+			
+			assertTrue(s.isSparse());
+			assertFalse(d.isSparse());
+			assertTrue(s.getData() instanceof CSRMatrix);
+			assertTrue(VecUtils.equalsExactly(s.init_centroid_indices, d.init_centroid_indices));
+			assertTrue(VecUtils.equalsExactly(s.getLabels(), d.getLabels()));
+			assertEquals(s.getTSS(), d.getTSS(), 1e-8);
+			assertTrue(VecUtils.equalsWithTolerance(s.getWSS(), d.getWSS(), 1e-8));
+			assertEquals(s.itersElapsed(), d.itersElapsed());
+			
+			for(int i = 0; i < 3; i++)
+				assertTrue(VecUtils.equalsWithTolerance(s.getCentroids().get(i), d.getCentroids().get(i), 1e-12));
+			
+			// predict either representation
+			assertTrue(VecUtils.equalsExactly(s.getLabels(), s.predict(dense)));
+		}
+	}
+	
+	@Test
+	public void testParallelLloydStep() {
+		final double[][] X = MatUtils.randomGaussian(2003, 6, new java.util.Random(9));
+		final double[][] cents = new double[][]{ X[0], X[10], X[20], X[30], X[40] };
+		final int[] serialLabels = new int[X.length], parallelLabels = new int[X.length];
+		
+		final KMeans.LloydAccumulator[] serial = KMeans.LloydAccumulator.forRows(X.length, 1, 5, 6);
+		final KMeans.LloydAccumulator[] parallel = KMeans.LloydAccumulator.forRows(X.length, 4, 5, 6);
+		assertEquals(0, parallel[0].lo);
+		assertEquals(X.length, parallel[3].hi);
+		
+		// run twice to make sure the buffers are reset between iterations
+		for(int iter = 0; iter < 2; iter++) {
+			KMeans.lloydStep(X, cents, serialLabels, Distance.EUCLIDEAN, null, serial);
+			KMeans.lloydStep(X, cents, parallelLabels, Distance.EUCLIDEAN, null, parallel);
+			
+			assertTrue(VecUtils.equalsExactly(serialLabels, parallelLabels));
+			assertTrue(VecUtils.equalsExactly(serial[0].counts, parallel[0].counts));
+			assertTrue(VecUtils.equalsWithTolerance(serial[0].wss, parallel[0].wss, 1e-8));
+			assertTrue(MatUtils.equalsWithTolerance(serial[0].sums, parallel[0].sums, 1e-8));
+			int total = 0;
+			for(int c: serial[0].counts)
+				total += c;
+			assertEquals(X.length, total);
+		}
+	}
+	
+	private static long distsSkipped(KMeans model) {
+		long skipped = 0;
+		for(int i = 1; i < model.fitSummary.size(); i++) // first row is the header
+			skipped += ((Number)model.fitSummary.get(i)[5]).longValue();
+		return skipped;
+	}
+	
+	@Test
+	public void testBoundedAlgorithms() {
+		final Array2DRowRealMatrix[] sets = new Array2DRowRealMatrix[]{
+			data_, TestSuite.WINE_DATASET.getData(), getRandom(600, 4)
+		};
+		
+		final GeometricallySeparable[] metrics = new GeometricallySeparable[]{
+			Distance.EUCLIDEAN, Distance.MANHATTAN, Distance.CHEBYSHEV, new MinkowskiDistance(3), 
+			Distance.CANBERRA
+		};
+		
+		final KMeansAlgorithm[] algos = new KMeansAlgorithm[]{
+			KMeansAlgorithm.ELKAN, KMeansAlgorithm.HAMERLY, KMeansAlgorithm.TREE, KMeansAlgorithm.YINYANG
+		};
+		
+		for(Array2DRowRealMatrix X: sets) {
+			for(int k: new int[]{3, 8, 40}) {
+				for(GeometricallySeparable metric: metrics) {
+					KMeans lloyd = new KMeansParameters(k).setMetric(metric)
+						.setAlgorithm(KMeansAlgorithm.LLOYD)
+						.setSeed(new java.util.Random(5)).fitNewModel(X);
+					assertEquals(0, distsSkipped(lloyd));
+					
+					for(KMeansAlgorithm alg: algos) {
+						KMeans bounded = new KMeansParameters(k).setMetric(metric)
+							.setAlgorithm(alg)
+							.setSeed(new java.util.Random(5)).fitNewModel(X);
+						
+						// a KD-tree cannot bound Canberra, nor will a ball tree accept it
+						assertEquals(alg.isValidMetric(metric) ? alg : KMeansAlgorithm.LLOYD, bounded.algo);
+						assertTrue(VecUtils.equalsExactly(lloyd.getLabels(), bounded.getLabels()));
+						assertTrue(VecUtils.equalsExactly(lloyd.getWSS(), bounded.getWSS()));
+						assertEquals(lloyd.itersElapsed(), bounded.itersElapsed());
+						for(int i = 0; i < k; i++)
+							assertTrue(VecUtils.equalsExactly(lloyd.getCentroids().get(i), bounded.getCentroids().get(i)));
+						
+						// the tree only prunes once it has more than one leaf
+						if(bounded.itersElapsed() > 1 && KMeansAlgorithm.LLOYD != bounded.algo
+								&& (KMeansAlgorithm.TREE != alg || k > 2 * KMeans.tree_leaf_size_))
+							assertTrue(distsSkipped(bounded) > 0);
+					}
+				}
+			}
+		}
+		
+		// Not a true metric, or sparse: falls back to lloyd
+		KMeans model = new KMeansParameters(3).setMetric(Distance.BRAY_CURTIS)
+			.setAlgorithm(KMeansAlgorithm.ELKAN).fitNewModel(data_);
+		assertEquals(KMeansAlgorithm.LLOYD, model.algo);
+		
+		model = new KMeansParameters(3).setAlgorithm(KMeansAlgorithm.ELKAN)
+			.fitNewModel(new CSRMatrix(data_.getDataRef()));
+		assertEquals(KMeansAlgorithm.LLOYD, model.algo);
+		
+		assertTrue(KMeans.isTrueMetric(new MinkowskiDistance(1.5)));
+		assertFalse(KMeans.isTrueMetric(new GaussianKernel()));
+	}
+	
+	@Test
+	public void testYinyangManyGroups() {
+		final Array2DRowRealMatrix X = getRandom(1500, 3);
+		final int k = 15 * KMeans.yinyang_group_size_;
+		
+		for(GeometricallySeparable metric: new GeometricallySeparable[]{ Distance.EUCLIDEAN, Distance.MANHATTAN }) {
+			KMeans lloyd = new KMeansParameters(k).setMetric(metric)
+				.setAlgorithm(KMeansAlgorithm.LLOYD)
+				.setSeed(new java.util.Random(3)).fitNewModel(X);
+			KMeans yinyang = new KMeansParameters(k).setMetric(metric)
+				.setAlgorithm(KMeansAlgorithm.YINYANG)
+				.setSeed(new java.util.Random(3)).fitNewModel(X);
+			
+			assertTrue(VecUtils.equalsExactly(lloyd.getLabels(), yinyang.getLabels()));
+			assertTrue(VecUtils.equalsExactly(lloyd.getWSS(), yinyang.getWSS()));
+			assertEquals(lloyd.itersElapsed(), yinyang.itersElapsed());
+			
+			// the group filters should prune most of the candidates after the first iteration
+			assertTrue(distsSkipped(yinyang) > (long)X.getRowDimension() * k / 2);
+		}
+	}
+	
+	@Test
+	public void testAutoAlgorithm() {
+		// low dimensional
+		assertEquals(KMeansAlgorithm.HAMERLY, new KMeans(data_, 3).algo);
+		
+		// high dimensional
+		final Array2DRowRealMatrix wide = getRandom(100, KMeans.hamerly_n_features_ + 1);
+		assertEquals(KMeansAlgorithm.ELKAN, new KMeans(wide, 3).algo);
+		
+		// many centroids in few dimensions
+		final Array2DRowRealMatrix narrow = getRandom(KMeans.tree_min_k_ * 2, KMeans.tree_n_features_);
+		assertEquals(KMeansAlgorithm.TREE, new KMeans(narrow, KMeans.tree_min_k_).algo);
+		assertEquals(KMeansAlgorithm.YINYANG, new KMeans(narrow, KMeans.tree_min_k_ - 1).algo);
+		
+		// many centroids in more dimensions
+		final Array2DRowRealMatrix mid = getRandom(KMeans.yinyang_min_k_ * 2, KMeans.tree_n_features_ + 1);
+		assertEquals(KMeansAlgorithm.YINYANG, new KMeans(mid, KMeans.yinyang_min_k_).algo);
+		assertEquals(KMeansAlgorithm.HAMERLY, new KMeans(mid, KMeans.yinyang_min_k_ - 1).algo);
+		
+		// not a true metric, or sparse
+		assertEquals(KMeansAlgorithm.LLOYD, new KMeansParameters(3)
+			.setMetric(Distance.BRAY_CURTIS).fitNewModel(data_).algo);
+		assertEquals(KMeansAlgorithm.LLOYD, new KMeans(new CSRMatrix(data_.getDataRef()), 3).algo);
+		
+		// parity with lloyd
+		KMeans auto = new KMeansParameters(3).setSeed(new java.util.Random(5)).fitNewModel(data_);
+		KMeans lloyd = new KMeansParameters(3).setSeed(new java.util.Random(5))
+			.setAlgorithm(KMeansAlgorithm.LLOYD).fitNewModel(data_);
+		assertTrue(VecUtils.equalsExactly(lloyd.getLabels(), auto.getLabels()));
+		assertEquals(KMeansAlgorithm.AUTO, new KMeansParameters().getAlgorithm());
+	}
+	
+	@Test
+	public void testParallelBoundedStep() {
+		final double[][] X = MatUtils.randomGaussian(2003, 3, new java.util.Random(9));
+		final double[][] cents = new double[][]{ X[0], X[10], X[20], X[30], X[40] };
+		final int[] lloydLabels = new int[X.length], elkanLabels = new int[X.length];
+		
+		final KMeans.LloydAccumulator[] serial = KMeans.LloydAccumulator.forRows(X.length, 1, 5, 3);
+		final KMeans.LloydAccumulator[] parallel = KMeans.LloydAccumulator.forRows(X.length, 4, 5, 3);
+		KMeans.lloydStep(X, cents, lloydLabels, Distance.EUCLIDEAN, null, serial);
+		assertEquals(X.length * 5L, serial[0].computed);
+		
+		for(KMeansAlgorithm alg: new KMeansAlgorithm[]{KMeansAlgorithm.ELKAN, KMeansAlgorithm.HAMERLY}) {
+			final KMeans.CentroidBounds bounds = alg.newBounds(X.length, 5);
+			bounds.prepare(cents, Distance.EUCLIDEAN);
+			KMeans.lloydStep(X, cents, elkanLabels, Distance.EUCLIDEAN, bounds, parallel);
+			
+			assertTrue(VecUtils.equalsExactly(lloydLabels, elkanLabels));
+			assertTrue(VecUtils.equalsExactly(serial[0].counts, parallel[0].counts));
+			assertTrue(parallel[0].computed < serial[0].computed);
+		}
+		
+		// yinyang evaluates every distance the first time, so prune a second step
+		final double[][] moved = new double[][]{ X[1], X[11], X[21], X[31], X[41] };
+		final KMeans.CentroidBounds yinyang = KMeansAlgorithm.YINYANG.newBounds(X.length, 5);
+		yinyang.prepare(cents, Distance.EUCLIDEAN);
+		KMeans.lloydStep(X, cents, elkanLabels, Distance.EUCLIDEAN, yinyang, parallel);
+		assertTrue(VecUtils.equalsExactly(lloydLabels, elkanLabels));
+		
+		yinyang.update(cents, moved, elkanLabels, Distance.EUCLIDEAN);
+		yinyang.prepare(moved, Distance.EUCLIDEAN);
+		KMeans.lloydStep(X, moved, lloydLabels, Distance.EUCLIDEAN, null, serial);
+		KMeans.lloydStep(X, moved, elkanLabels, Distance.EUCLIDEAN, yinyang, parallel);
+		assertTrue(VecUtils.equalsExactly(lloydLabels, elkanLabels));
+		assertTrue(VecUtils.equalsExactly(serial[0].counts, parallel[0].counts));
+		assertTrue(parallel[0].computed < serial[0].computed);
+		
+		// enough centroids for the tree to prune whole leaves
+		final double[][] many = MatUtils.slice(X, 0, 200);
+		final KMeans.LloydAccumulator[] manySerial = KMeans.LloydAccumulator.forRows(X.length, 1, 200, 3);
+		final KMeans.LloydAccumulator[] manyParallel = KMeans.LloydAccumulator.forRows(X.length, 4, 200, 3);
+		KMeans.lloydStep(X, many, lloydLabels, Distance.EUCLIDEAN, null, manySerial);
+		
+		final KMeans.CentroidBounds tree = KMeansAlgorithm.TREE.newBounds(X.length, 200);
+		tree.prepare(many, Distance.EUCLIDEAN);
+		KMeans.lloydStep(X, many, elkanLabels, Distance.EUCLIDEAN, tree, manyParallel);
+		
+		assertTrue(VecUtils.equalsExactly(lloydLabels, elkanLabels));
+		assertTrue(VecUtils.equalsExactly(manySerial[0].counts, manyParallel[0].counts));
+		assertTrue(manyParallel[0].computed < manySerial[0].computed);
+	}
+	
+	@Test
+	public void testWarmStart() {
+		final Array2DRowRealMatrix X = new Array2DRowRealMatrix(TestSuite.getBlobs(600, 4, 11), false);
+		final KMeans prior = new KMeansParameters(4).setSeed(new Random(5)).fitNewModel(X);
+		assertFalse(prior.isWarmStarted());
+		
+		final double[][] cents = prior.getCentroids().toArray(new double[4][]);
+		final KMeansParameters planner = new KMeansParameters().setWarmStart(cents).setNInit(5);
+		assertEquals(4, planner.getK());
+		assertTrue(MatUtils.equalsExactly(cents, planner.copy().getWarmStart()));
+		
+		// the copy is defensive
+		planner.getWarmStart()[0][0] = Double.NaN;
+		assertFalse(Double.isNaN(planner.getWarmStart()[0][0]));
+		
+		// starts from the prior optimum, so the labels do not change
+		final KMeans warm = planner.fitNewModel(X);
+		assertTrue(warm.isWarmStarted());
+		assertNull(warm.getRestartSummary()); // restarts are pointless
+		assertTrue(warm.itersElapsed() <= 2);
+		assertTrue(VecUtils.equalsExactly(prior.getLabels(), warm.getLabels()));
+		assertEquals(VecUtils.sum(prior.getWSS()), VecUtils.sum(warm.getWSS()), 1e-8);
+		
+		// null clears it
+		assertNull(planner.setWarmStart(null).getWarmStart());
+	}
+	
+	@Test(expected=DimensionMismatchException.class)
+	public void testWarmStartDimMismatch() {
+		new KMeansParameters().setWarmStart(new double[][]{ new double[]{1, 2} }).fitNewModel(data_);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testWarmStartEmpty() {
+		new KMeansParameters().setWarmStart(new double[0][]);
+	}
+	
+	@Test
+	public void testUpdate() {
+		final double[][] all = TestSuite.getBlobs(1010, 4, 12);
+		final Array2DRowRealMatrix X = new Array2DRowRealMatrix(MatUtils.slice(all, 0, 1000), false);
+		final Array2DRowRealMatrix newRows = new Array2DRowRealMatrix(MatUtils.slice(all, 1000, 1010), false);
+		
+		final KMeans prior = new KMeansParameters(4).setSeed(new Random(5))
+			.setAlgorithm(KMeansAlgorithm.LLOYD).fitNewModel(X);
+		final KMeans updated = prior.update(newRows);
+		
+		assertTrue(updated.isWarmStarted());
+		assertEquals(KMeansAlgorithm.LLOYD, updated.algo);
+		assertEquals(1010, updated.getLabels().length);
+		assertTrue(MatUtils.equalsExactly(all, updated.getData().getData()));
+		assertTrue(updated.itersElapsed() <= prior.itersElapsed());
+		assertEquals(1000, prior.getLabels().length); // untouched
+		
+		// the prior labels hold for the prior rows
+		final int[] labels = updated.getLabels();
+		assertTrue(VecUtils.equalsExactly(prior.getLabels(), VecUtils.slice(labels, 0, 1000)));
+		
+		// sparse models stay sparse
+		final KMeans sparse = new KMeansParameters(4).setSeed(new Random(5))
+			.fitNewModel(new CSRMatrix(X)).update(newRows);
+		assertTrue(sparse.isSparse());
+		assertEquals(1010, sparse.getLabels().length);
+		
+		boolean thrown = false;
+		try {
+			prior.update(new Array2DRowRealMatrix(new double[][]{ new double[]{1, 2} }));
+		} catch(DimensionMismatchException d) {
+			thrown = true;
+		} finally {
+			assertTrue(thrown);
+		}
+	}
+	
+	@Test(expected=ModelNotFitException.class)
+	public void testUpdateNotFit() {
+		new KMeans(data_, 3).update(data_);
+	}
+	
+	/** The rows of X, each repeated as many times as its (integer) weight */
+	private static double[][] repeatRows(final double[][] X, final int[] times) {
+		final ArrayList<double[]> out = new ArrayList<>();
+		for(int i = 0; i < X.length; i++)
+			for(int t = 0; t < times[i]; t++)
+				out.add(X[i]);
+		return out.toArray(new double[out.size()][]);
+	}
+	
+	@Test
+	public void testSampleWeights() {
+		final double[][] X = TestSuite.getBlobs(300, 3, 13);
+		final int[] times = new int[X.length];
+		for(int i = 0; i < times.length; i++)
+			times[i] = 1 + i % 3;
+		final double[] weights = new double[X.length];
+		for(int i = 0; i < times.length; i++)
+			weights[i] = times[i];
+		
+		// with the same starting centroids, weighing a record is the same as repeating it
+		final double[][] cents = new double[][]{ X[0], X[1], X[2] };
+		for(boolean sparse: new boolean[]{false, true}) {
+			for(KMeansAlgorithm algo: new KMeansAlgorithm[]{KMeansAlgorithm.LLOYD, KMeansAlgorithm.HAMERLY}) {
+				final RealMatrix weighted = sparse ? new CSRMatrix(X) : new Array2DRowRealMatrix(X, false);
+				final RealMatrix repeated = sparse ? new CSRMatrix(repeatRows(X, times)) : 
+					new Array2DRowRealMatrix(repeatRows(X, times), false);
+				
+				final KMeans a = new KMeansParameters().setWarmStart(cents).setAlgorithm(algo)
+					.setSampleWeights(weights).fitNewModel(weighted);
+				final KMeans b = new KMeansParameters().setWarmStart(cents).setAlgorithm(algo)
+					.fitNewModel(repeated);
+				
+				assertTrue(VecUtils.equalsExactly(weights, a.getSampleWeights()));
+				assertEquals(b.getTSS(), a.getTSS(), 1e-6);
+				assertEquals(VecUtils.sum(b.getWSS()), VecUtils.sum(a.getWSS()), 1e-6);
+				assertEquals(b.itersElapsed(), a.itersElapsed());
+				for(int c = 0; c < 3; c++)
+					assertTrue(VecUtils.equalsWithTolerance(b.getCentroids().get(c), a.getCentroids().get(c), 1e-10));
+			}
+		}
+	}
+	
+	@Test
+	public void testZeroWeightsNotSeeded() {
+		final Array2DRowRealMatrix X = new Array2DRowRealMatrix(TestSuite.getBlobs(200, 4, 14), false);
+		final double[] weights = new double[200];
+		for(int i = 0; i < 200; i += 10)
+			weights[i] = 1.5;
+		
+		for(InitializationStrategy init: new InitializationStrategy[]{
+				InitializationStrategy.RANDOM, InitializationStrategy.KM_AUGMENTED, InitializationStrategy.KM_PARALLEL }) {
+			final KMeans model = new KMeans(X, new KMeansParameters(4).setSeed(new Random(15))
+				.setInitializationStrategy(init).setSampleWeights(weights));
+			for(int idx: model.init_centroid_indices)
+				assertEquals(0, idx % 10);
+		}
+	}
+	
+	@Test
+	public void testUpdateWeighted() {
+		final double[][] all = TestSuite.getBlobs(210, 3, 16);
+		final double[] weights = VecUtils.rep(2.0, 200);
+		final KMeans prior = new KMeansParameters(3).setSeed(new Random(5)).setSampleWeights(weights)
+			.fitNewModel(new Array2DRowRealMatrix(MatUtils.slice(all, 0, 200), false));
+		final KMeans updated = prior.update(new Array2DRowRealMatrix(MatUtils.slice(all, 200, 210), false));
+		
+		final double[] expected = VecUtils.rep(1.0, 210);
+		System.arraycopy(weights, 0, expected, 0, 200);
+		assertTrue(VecUtils.equalsExactly(expected, updated.getSampleWeights()));
+	}
+	
+	@Test(expected=DimensionMismatchException.class)
+	public void testSampleWeightsDimMismatch() {
+		new KMeans(data_, new KMeansParameters(3).setSampleWeights(new double[]{1, 2}));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testSampleWeightsNegative() {
+		new KMeansParameters(3).setSampleWeights(new double[]{1, -2});
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testSampleWeightsAllZero() {
+		new KMeansParameters(3).setSampleWeights(new double[]{0, 0});
+	}
 }
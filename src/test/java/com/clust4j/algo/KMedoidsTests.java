@@ -30,7 +30,9 @@ import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.util.FastMath;
 import org.junit.Test;
 
+import com.clust4j.GlobalState;
 import com.clust4j.TestSuite;
+import com.clust4j.algo.KMedoids.KMedoidsAlgorithm;
 import com.clust4j.algo.KMedoidsParameters;
 import com.clust4j.algo.preprocess.StandardScaler;
 import com.clust4j.data.DataSet;
@@ -38,9 +40,12 @@ import com.clust4j.kernel.HyperbolicTangentKernel;
 import com.clust4j.kernel.Kernel;
 //import com.clust4j.kernel.KernelTestCases;
 import com.clust4j.kernel.LaplacianKernel;
+import com.clust4j.metrics.pairwise.CondensedDistanceMatrix.Storage;
 import com.clust4j.metrics.pairwise.Distance;
 import com.clust4j.metrics.pairwise.DistanceMetric;
 import com.clust4j.metrics.pairwise.GeometricallySeparable;
+import com.clust4j.metrics.pairwise.NumericPrecision;
+import com.clust4j.metrics.pairwise.Pairwise;
 import com.clust4j.utils.MatUtils;
 import com.clust4j.utils.VecUtils;
 import com.clust4j.utils.Series.Inequality;
@@ -440,4 +445,393 @@ public class KMedoidsTests implements ClusterTest, ClassifierTest, ConvergeableT
 		int[] labels = new KMedoids(X, new KMedoidsParameters(3).setVerbose(true)).fit().getLabels();
 		assertTrue(new VecUtils.IntSeries(labels, Inequality.EQUAL_TO, 0).all());
 	}
+	
+	@Test
+	public void testOffHeapStorage() {
+		final int[] expected = new KMedoidsParameters(3)
+			.setSeed(new java.util.Random(5)).fitNewModel(irisdata).getLabels();
+		
+		for(Storage storage: Storage.values()) {
+			KMedoidsParameters planner = new KMedoidsParameters(3)
+				.setSeed(new java.util.Random(5)).setDistanceStorage(storage);
+			assertTrue(planner.copy().getDistanceStorage() == storage);
+			assertTrue(VecUtils.equalsExactly(expected, planner.fitNewModel(irisdata).getLabels()));
+		}
+	}
+	
+	@Test
+	public void testFloatPrecision() {
+		final Array2DRowRealMatrix X = new Array2DRowRealMatrix(
+			MatUtils.randomGaussian(200, 4, new java.util.Random(7)), false);
+		final KMedoids dbl = new KMedoidsParameters(3)
+			.setSeed(new java.util.Random(5)).fitNewModel(X);
+		
+		KMedoidsParameters planner = new KMedoidsParameters(3)
+			.setSeed(new java.util.Random(5)).setDistancePrecision(NumericPrecision.FLOAT);
+		assertTrue(planner.copy().getDistancePrecision() == NumericPrecision.FLOAT);
+		
+		final KMedoids flt = planner.fitNewModel(X);
+		assertTrue(VecUtils.equalsExactly(dbl.getLabels(), flt.getLabels()));
+		assertTrue(VecUtils.equalsExactly(dbl.getCentroids().get(0), flt.getCentroids().get(0)));
+	}
+	
+	@Test
+	public void testWarmStart() {
+		final KMedoids prior = new KMedoidsParameters(3)
+			.setSeed(new java.util.Random(5)).fitNewModel(irisdata);
+		final double[][] medoids = prior.getCentroids().toArray(new double[3][]);
+		
+		// the prior medoids are records, so are recovered exactly
+		final KMedoids warm = new KMedoidsParameters()
+			.setWarmStart(medoids).fitNewModel(irisdata);
+		assertTrue(warm.isWarmStarted());
+		assertEquals(3, warm.getK());
+		assertTrue(warm.itersElapsed() <= 2);
+		assertTrue(VecUtils.equalsExactly(prior.getLabels(), warm.getLabels()));
+		
+		// arbitrary centroids snap to distinct records
+		final double[] mean = MatUtils.meanRecord(irisdata.getData());
+		final KMedoids snapped = new KMedoidsParameters()
+			.setWarmStart(new double[][]{ mean, mean, mean }).fitNewModel(irisdata);
+		assertEquals(3, snapped.getCentroids().size());
+	}
+	
+	@Test
+	public void testSampleWeights() {
+		final double[][] X = irisdata.getData();
+		final double[] weights = new double[X.length];
+		final ArrayList<double[]> repeated = new ArrayList<>();
+		for(int i = 0; i < X.length; i++) {
+			weights[i] = 1 + i % 3;
+			for(int t = 0; t < weights[i]; t++)
+				repeated.add(X[i]);
+		}
+		
+		// with the same starting medoids, weighing a record is the same as repeating it
+		final double[][] medoids = new double[][]{ X[0], X[60], X[120] };
+		final KMedoids a = new KMedoidsParameters().setWarmStart(medoids)
+			.setSampleWeights(weights).fitNewModel(irisdata);
+		final KMedoids b = new KMedoidsParameters().setWarmStart(medoids)
+			.fitNewModel(new Array2DRowRealMatrix(repeated.toArray(new double[repeated.size()][]), false));
+		
+		assertEquals(b.getTSS(), a.getTSS(), 1e-8);
+		assertEquals(VecUtils.sum(b.getWSS()), VecUtils.sum(a.getWSS()), 1e-8);
+		for(int c = 0; c < 3; c++)
+			assertTrue(VecUtils.equalsExactly(b.getCentroids().get(c), a.getCentroids().get(c)));
+	}
+	
+	/** The total deviation of the medoids, by brute force */
+	private static double deviation(final double[][] X, final int[] medoids) {
+		double cost = 0, min;
+		for(double[] row: X) {
+			min = Double.POSITIVE_INFINITY;
+			for(int medoid: medoids)
+				min = FastMath.min(min, Distance.MANHATTAN.getDistance(row, X[medoid]));
+			cost += min;
+		}
+		return cost;
+	}
+	
+	private static KMedoids.FastPAM newPAM(final double[][] X, final int k) {
+		final double[][] dists = Pairwise.getDistance(X, Distance.MANHATTAN, false, false);
+		return new KMedoids.FastPAM(X.length, k, new KMedoids.Dissimilarities() {
+			@Override public double get(int i, int j) {
+				return dists[i][j];
+			}
+		}, null, false);
+	}
+	
+	@Test
+	public void testFastPAM() {
+		final KMedoids voronoi = new KMedoidsParameters(3)
+			.setSeed(new java.util.Random(5)).fitNewModel(irisdata);
+		final KMedoids pam = new KMedoidsParameters(3).setVerbose(true)
+			.setAlgorithm(KMedoidsAlgorithm.FASTPAM).fitNewModel(irisdata);
+		
+		assertEquals(KMedoidsAlgorithm.FASTPAM, pam.getAlgorithm());
+		assertTrue(pam.didConverge());
+		assertEquals(3, pam.getCentroids().size());
+		assertTrue(VecUtils.sum(pam.getWSS()) <= VecUtils.sum(voronoi.getWSS()));
+		assertEquals(pam.getTSS() - VecUtils.sum(pam.getWSS()), pam.getBSS(), 1e-8);
+		
+		// each medoid is a record
+		for(double[] medoid: pam.getCentroids()) {
+			boolean found = false;
+			for(double[] row: irisdata.getData())
+				found |= VecUtils.equalsExactly(row, medoid);
+			assertTrue(found);
+		}
+	}
+	
+	@Test
+	public void testFastPAMSwapDeltas() {
+		final double[][] X = MatUtils.randomGaussian(40, 3, new java.util.Random(7));
+		final KMedoids.FastPAM pam = newPAM(X, 4);
+		pam.build();
+		assertTrue(pam.assign());
+		assertEquals(deviation(X, pam.medoids), pam.cost, 1e-8);
+		
+		final double[] loss = new double[4];
+		for(int o = 0; o < X.length; o++)
+			loss[pam.nearest[o]] += pam.ds[o] - pam.dn[o];
+		final KMedoids.SwapChunk chunk = new KMedoids.SwapChunk(pam, 0, X.length, loss);
+		chunk.scan();
+		
+		// the best swap for each medoid, by brute force
+		for(int i = 0; i < 4; i++) {
+			double best = Double.POSITIVE_INFINITY;
+			for(int c = 0; c < X.length; c++) {
+				if(pam.isMedoid[c])
+					continue;
+				
+				final int[] swapped = VecUtils.copy(pam.medoids);
+				swapped[i] = c;
+				final double delta = deviation(X, swapped) - pam.cost;
+				assertEquals(delta, pam.swapDelta(i, c), 1e-8);
+				best = FastMath.min(best, delta);
+			}
+			
+			assertEquals(best, chunk.delta[i], 1e-8);
+		}
+	}
+	
+	@Test
+	public void testFastPAMChunksMatch() {
+		final double[][] X = MatUtils.randomGaussian(60, 3, new java.util.Random(8));
+		final KMedoids.FastPAM pam = newPAM(X, 5);
+		pam.build();
+		pam.assign();
+		
+		final double[] loss = new double[5];
+		for(int o = 0; o < X.length; o++)
+			loss[pam.nearest[o]] += pam.ds[o] - pam.dn[o];
+		
+		final KMedoids.SwapChunk whole = new KMedoids.SwapChunk(pam, 0, X.length, loss);
+		whole.scan();
+		
+		final KMedoids.SwapChunk[] chunks = new KMedoids.SwapChunk[]{
+			new KMedoids.SwapChunk(pam, 0, 7, loss),
+			new KMedoids.SwapChunk(pam, 7, 31, loss),
+			new KMedoids.SwapChunk(pam, 31, 60, loss)
+		};
+		GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(new KMedoids.CandidateTask(chunks, 0, 3));
+		chunks[0].merge(chunks[1]);
+		chunks[0].merge(chunks[2]);
+		
+		assertTrue(VecUtils.equalsExactly(whole.delta, chunks[0].delta));
+		assertTrue(VecUtils.equalsExactly(whole.cand, chunks[0].cand));
+	}
+	
+	@Test
+	public void testFastPAMParallel() {
+		final KMedoids serial = new KMedoidsParameters(3)
+			.setAlgorithm(KMedoidsAlgorithm.FASTPAM).fitNewModel(irisdata);
+		
+		final boolean prior = GlobalState.ParallelismConf.PARALLELISM_ALLOWED;
+		try {
+			GlobalState.ParallelismConf.PARALLELISM_ALLOWED = true;
+			final KMedoids parallel = new KMedoidsParameters(3).setForceParallel(true)
+				.setAlgorithm(KMedoidsAlgorithm.FASTPAM).fitNewModel(irisdata);
+			assertTrue(VecUtils.equalsExactly(serial.getLabels(), parallel.getLabels()));
+		} finally {
+			GlobalState.ParallelismConf.PARALLELISM_ALLOWED = prior;
+		}
+	}
+	
+	@Test
+	public void testFastPAMWeighted() {
+		final double[][] X = irisdata.getData();
+		final double[] weights = new double[X.length];
+		final ArrayList<double[]> repeated = new ArrayList<>();
+		for(int i = 0; i < X.length; i++) {
+			weights[i] = 1 + i % 2;
+			for(int t = 0; t < weights[i]; t++)
+				repeated.add(X[i]);
+		}
+		
+		final KMedoids a = new KMedoidsParameters(3).setAlgorithm(KMedoidsAlgorithm.FASTPAM)
+			.setSampleWeights(weights).fitNewModel(irisdata);
+		final KMedoids b = new KMedoidsParameters(3).setAlgorithm(KMedoidsAlgorithm.FASTPAM)
+			.fitNewModel(new Array2DRowRealMatrix(repeated.toArray(new double[repeated.size()][]), false));
+		
+		assertEquals(VecUtils.sum(b.getWSS()), VecUtils.sum(a.getWSS()), 1e-8);
+	}
+	
+	@Test
+	public void testFastPAMWarmStart() {
+		final KMedoids prior = new KMedoidsParameters(3)
+			.setAlgorithm(KMedoidsAlgorithm.FASTPAM).fitNewModel(irisdata);
+		final KMedoids warm = new KMedoidsParameters()
+			.setAlgorithm(KMedoidsAlgorithm.FASTPAM)
+			.setWarmStart(prior.getCentroids().toArray(new double[3][]))
+			.fitNewModel(irisdata);
+		
+		// already optimal, so no swaps
+		assertEquals(1, warm.itersElapsed());
+		assertTrue(VecUtils.equalsExactly(prior.getLabels(), warm.getLabels()));
+	}
+	
+	@Test
+	public void testCLARA() {
+		final KMedoids pam = new KMedoidsParameters(3)
+			.setAlgorithm(KMedoidsAlgorithm.FASTPAM).fitNewModel(irisdata);
+		final KMedoids clara = new KMedoidsParameters(3).setVerbose(true)
+			.setAlgorithm(KMedoidsAlgorithm.CLARA).setSampleSize(50)
+			.setSeed(new java.util.Random(3)).fitNewModel(irisdata);
+		
+		// FastPAM finds a local optimum too, so either may be lower, but they are close
+		final double pamCost = VecUtils.sum(pam.getWSS()), claraCost = VecUtils.sum(clara.getWSS());
+		assertEquals(KMedoids.DEF_NUM_SAMPLES, clara.itersElapsed());
+		assertEquals(3, VecUtils.unique(clara.getLabels()).size());
+		assertTrue(claraCost <= 1.1 * pamCost);
+		assertEquals(clara.getTSS() - claraCost, clara.getBSS(), 1e-8);
+	}
+	
+	@Test
+	public void testCLARAWholeSample() {
+		final KMedoids pam = new KMedoidsParameters(3)
+			.setAlgorithm(KMedoidsAlgorithm.FASTPAM).fitNewModel(irisdata);
+		final KMedoids clara = new KMedoidsParameters(3)
+			.setAlgorithm(KMedoidsAlgorithm.CLARA).setSampleSize(1000).fitNewModel(irisdata);
+		
+		// the one sample holds every record
+		assertEquals(1, clara.itersElapsed());
+		assertTrue(VecUtils.equalsExactly(pam.getLabels(), clara.getLabels()));
+	}
+	
+	@Test
+	public void testCLARANS() {
+		final KMedoids pam = new KMedoidsParameters(3)
+			.setAlgorithm(KMedoidsAlgorithm.FASTPAM).fitNewModel(irisdata);
+		final KMedoids clarans = new KMedoidsParameters(3).setVerbose(true)
+			.setAlgorithm(KMedoidsAlgorithm.CLARANS).setNumSamples(3)
+			.setSeed(new java.util.Random(4)).fitNewModel(irisdata);
+		
+		// FastPAM finds a local optimum too, so either may be lower, but they are close
+		final double pamCost = VecUtils.sum(pam.getWSS()), claransCost = VecUtils.sum(clarans.getWSS());
+		assertTrue(clarans.didConverge());
+		assertEquals(3, clarans.itersElapsed());
+		assertEquals(3, VecUtils.unique(clarans.getLabels()).size());
+		assertTrue(claransCost <= 1.1 * pamCost);
+	}
+	
+	@Test
+	public void testSampledParallel() {
+		final double[][] X = MatUtils.randomGaussian(400, 3, new java.util.Random(11));
+		final Array2DRowRealMatrix mat = new Array2DRowRealMatrix(X, false);
+		
+		final boolean prior = GlobalState.ParallelismConf.PARALLELISM_ALLOWED;
+		for(KMedoidsAlgorithm algo: new KMedoidsAlgorithm[]{ KMedoidsAlgorithm.CLARA, KMedoidsAlgorithm.CLARANS }) {
+			final KMedoids serial = new KMedoidsParameters(4).setAlgorithm(algo)
+				.setSeed(new java.util.Random(12)).fitNewModel(mat);
+			
+			try {
+				GlobalState.ParallelismConf.PARALLELISM_ALLOWED = true;
+				final KMedoids parallel = new KMedoidsParameters(4).setForceParallel(true)
+					.setAlgorithm(algo).setSeed(new java.util.Random(12)).fitNewModel(mat);
+				assertTrue(VecUtils.equalsExactly(serial.getLabels(), parallel.getLabels()));
+				assertTrue(VecUtils.equalsExactly(serial.getWSS(), parallel.getWSS()));
+			} finally {
+				GlobalState.ParallelismConf.PARALLELISM_ALLOWED = prior;
+			}
+		}
+	}
+	
+	@Test
+	public void testCLARAWarmStart() {
+		final KMedoids prior = new KMedoidsParameters(3)
+			.setAlgorithm(KMedoidsAlgorithm.FASTPAM).fitNewModel(irisdata);
+		final KMedoids warm = new KMedoidsParameters()
+			.setAlgorithm(KMedoidsAlgorithm.CLARA).setSampleSize(20)
+			.setWarmStart(prior.getCentroids().toArray(new double[3][]))
+			.fitNewModel(irisdata);
+		
+		// no sample can beat the optimal warm start
+		assertEquals(VecUtils.sum(prior.getWSS()), VecUtils.sum(warm.getWSS()), 1e-8);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testNumSamplesIAE() {
+		new KMedoidsParameters(3).setAlgorithm(KMedoidsAlgorithm.CLARA)
+			.setNumSamples(0).fitNewModel(irisdata);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testSampleSizeIAE() {
+		new KMedoidsParameters(3).setAlgorithm(KMedoidsAlgorithm.CLARA)
+			.setSampleSize(2).fitNewModel(irisdata);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testMaxNeighborIAE() {
+		new KMedoidsParameters(3).setAlgorithm(KMedoidsAlgorithm.CLARANS)
+			.setMaxNeighbor(0).fitNewModel(irisdata);
+	}
+	
+	@Test
+	public void testMatrixFree() {
+		final double[][] X = MatUtils.randomGaussian(200, 3, new java.util.Random(13));
+		final Array2DRowRealMatrix mat = new Array2DRowRealMatrix(X, false);
+		
+		for(KMedoidsAlgorithm algo: new KMedoidsAlgorithm[]{ KMedoidsAlgorithm.VORONOI, KMedoidsAlgorithm.FASTPAM }) {
+			final KMedoids full = new KMedoidsParameters(4).setAlgorithm(algo)
+				.setSeed(new java.util.Random(14)).fitNewModel(mat);
+			final KMedoids free = new KMedoidsParameters(4).setAlgorithm(algo).setVerbose(true)
+				.setMatrixFree(true).setSeed(new java.util.Random(14)).fitNewModel(mat);
+			
+			assertTrue(VecUtils.equalsExactly(full.getLabels(), free.getLabels()));
+			assertTrue(VecUtils.equalsExactly(full.getWSS(), free.getWSS()));
+			assertEquals(full.itersElapsed(), free.itersElapsed());
+		}
+	}
+	
+	@Test
+	public void testMatrixFreeParallel() {
+		final KMedoids serial = new KMedoidsParameters(3).setMatrixFree(true)
+			.setAlgorithm(KMedoidsAlgorithm.FASTPAM).fitNewModel(irisdata);
+		
+		final boolean prior = GlobalState.ParallelismConf.PARALLELISM_ALLOWED;
+		try {
+			GlobalState.ParallelismConf.PARALLELISM_ALLOWED = true;
+			final KMedoids parallel = new KMedoidsParameters(3).setForceParallel(true).setMatrixFree(true)
+				.setAlgorithm(KMedoidsAlgorithm.FASTPAM).fitNewModel(irisdata);
+			assertTrue(VecUtils.equalsExactly(serial.getLabels(), parallel.getLabels()));
+		} finally {
+			GlobalState.ParallelismConf.PARALLELISM_ALLOWED = prior;
+		}
+	}
+	
+	@Test
+	public void testMedoidDistanceCache() {
+		final double[][] X = MatUtils.randomGaussian(30, 3, new java.util.Random(15));
+		final KMedoids.MedoidDistanceCache cache = new KMedoids.MedoidDistanceCache(X, Distance.MANHATTAN, 2);
+		
+		cache.hold(new int[]{ 3, 7 });
+		assertEquals(2, cache.computed);
+		cache.column(3); // 7 is now least recently held
+		cache.column(11);
+		assertEquals(3, cache.computed);
+		assertNull(cache.columns.get(7));
+		assertNotNull(cache.columns.get(3));
+		assertNotNull(cache.columns.get(11));
+		
+		// cached or not, in either order
+		for(int i = 0; i < X.length; i++) {
+			for(int j = 0; j < X.length; j++) {
+				final double d = i == j ? 0.0 : Distance.MANHATTAN.getDistance(X[i], X[j]);
+				assertEquals(d, cache.get(i, j), 0.0);
+			}
+		}
+		
+		// recomputed once evicted
+		cache.column(7);
+		assertEquals(4, cache.computed);
+		assertNull(cache.columns.get(3));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testCacheSizeIAE() {
+		new KMedoidsParameters(3).setMatrixFree(true)
+			.setCacheSize(2).fitNewModel(irisdata);
+	}
 }
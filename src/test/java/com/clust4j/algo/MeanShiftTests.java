@@ -548,9 +548,10 @@ public class MeanShiftTests implements ClusterTest, ClassifierTest, Convergeable
 			0.4999404345258691, -0.3157948009929614, 0.6516983739795399, 0.6505251874544873
 		}, 1e-6));
 
-		assertTrue(VecUtils.equalsExactly(centroids.get(1), new double[]{
+		// the mean depends on the order in which the tree returns the neighbors
+		assertTrue(VecUtils.equalsWithTolerance(centroids.get(1), new double[]{
 			-1.0560079864392702, 0.7416046454700266, -1.295231741534238, -1.2503554887998656
-		}));
+		}, 1e-12));
 		
 		
 		// also put the centroids into a matrix. We have to
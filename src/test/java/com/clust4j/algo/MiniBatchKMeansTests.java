@@ -0,0 +1,334 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.algo;
+
+import static com.clust4j.TestSuite.getRandom;
+import static org.junit.Assert.*;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.junit.Test;
+
+import com.clust4j.TestSuite;
+import com.clust4j.except.ModelNotFitException;
+import com.clust4j.except.NaNException;
+import com.clust4j.utils.MatUtils;
+import com.clust4j.utils.VecUtils;
+import com.clust4j.utils.Series.Inequality;
+
+public class MiniBatchKMeansTests implements ClassifierTest, ClusterTest, ConvergeableTest, BaseModelTest {
+	final Array2DRowRealMatrix data_ = TestSuite.IRIS_DATASET.getData();
+	final Array2DRowRealMatrix wine = TestSuite.WINE_DATASET.getData();
+
+	@Test
+	@Override
+	public void testItersElapsed() {
+		assertTrue(new MiniBatchKMeans(data_).fit().itersElapsed() > 0);
+		assertTrue(new MiniBatchKMeans(data_, 3).fit().itersElapsed() > 0);
+		assertTrue(new MiniBatchKMeans(data_, new MiniBatchKMeansParameters()).fit().itersElapsed() > 0);
+		assertTrue(new MiniBatchKMeans(data_, new MiniBatchKMeansParameters(3)).fit().itersElapsed() > 0);
+	}
+
+	@Test
+	@Override
+	public void testConverged() {
+		assertTrue(new MiniBatchKMeans(data_).fit().didConverge());
+		assertTrue(new MiniBatchKMeans(data_, 3).fit().didConverge());
+		assertTrue(new MiniBatchKMeans(data_, new MiniBatchKMeansParameters()).fit().didConverge());
+		assertTrue(new MiniBatchKMeans(data_, new MiniBatchKMeansParameters(3)).fit().didConverge());
+	}
+
+	@Test
+	@Override
+	public void testDefConst() {
+		new MiniBatchKMeans(data_);
+	}
+
+	@Test
+	@Override
+	public void testArgConst() {
+		new MiniBatchKMeans(data_, 3);
+	}
+
+	@Test
+	@Override
+	public void testPlannerConst() {
+		new MiniBatchKMeans(data_, new MiniBatchKMeansParameters());
+		new MiniBatchKMeans(data_, new MiniBatchKMeansParameters(3));
+	}
+
+	@Test
+	@Override
+	public void testFit() {
+		new MiniBatchKMeans(data_).fit();
+		new MiniBatchKMeans(data_, 3).fit();
+		new MiniBatchKMeans(data_, new MiniBatchKMeansParameters()).fit();
+		new MiniBatchKMeans(data_, new MiniBatchKMeansParameters(3)).fit();
+	}
+
+	@Test
+	@Override
+	public void testFromPlanner() {
+		new MiniBatchKMeansParameters().fitNewModel(data_);
+		new MiniBatchKMeansParameters(3).fitNewModel(data_);
+	}
+
+	@Test
+	@Override
+	public void testScoring() {
+		new MiniBatchKMeans(data_, 3).fit().silhouetteScore();
+		new MiniBatchKMeans(data_, 5).fit().silhouetteScore();
+	}
+
+	@Override
+	@Test
+	public void testAllSame() {
+		final double[][] x = MatUtils.rep(-1, 3, 3);
+		final Array2DRowRealMatrix X = new Array2DRowRealMatrix(x, false);
+		
+		int[] labels = new MiniBatchKMeans(X, new MiniBatchKMeansParameters(3).setVerbose(true)).fit().getLabels();
+		assertTrue(new VecUtils.IntSeries(labels, Inequality.EQUAL_TO, 0).all());
+		System.out.println();
+	}
+
+	@Test
+	@Override
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		MiniBatchKMeans km = new MiniBatchKMeans(data_,
+			new MiniBatchKMeansParameters(3)
+				.setVerbose(true)).fit();
+		System.out.println();
+		
+		final double c = km.getTSS();
+		final double[] wss = km.getWSS();
+		km.saveObject(new FileOutputStream(TestSuite.tmpSerPath));
+		assertTrue(TestSuite.file.exists());
+		
+		MiniBatchKMeans km2 = (MiniBatchKMeans)MiniBatchKMeans.loadObject(new FileInputStream(TestSuite.tmpSerPath));
+		assertTrue(km2.getTSS() == c);
+		assertTrue(VecUtils.equalsExactly(wss, km2.getWSS()));
+		assertTrue(km.equals(km2));
+		Files.delete(TestSuite.path);
+	}
+	
+	@Test(expected=ModelNotFitException.class)
+	public void testNotFit() {
+		new MiniBatchKMeans(data_, 3).getLabels();
+	}
+	
+	@Test(expected=ModelNotFitException.class)
+	public void testPredictNotFit() {
+		new MiniBatchKMeans(data_, 3).predict(data_);
+	}
+	
+	@Test
+	public void testBadParams() {
+		boolean a = false, b = false;
+		try {
+			new MiniBatchKMeans(data_, new MiniBatchKMeansParameters(3).setBatchSize(0));
+		} catch(IllegalArgumentException e) {
+			a = true;
+		}
+		
+		try {
+			new MiniBatchKMeans(data_, new MiniBatchKMeansParameters(3).setMaxNoImprovement(-1));
+		} catch(IllegalArgumentException e) {
+			b = true;
+		}
+		
+		assertTrue(a && b);
+	}
+	
+	@Test
+	public void testCopy() {
+		MiniBatchKMeansParameters p = new MiniBatchKMeansParameters(4)
+			.setBatchSize(17)
+			.setMaxNoImprovement(3)
+			.setMaxIter(12)
+			.setConvergenceCriteria(0.1)
+			.copy();
+		
+		assertTrue(p.getK() == 4);
+		assertTrue(p.getBatchSize() == 17);
+		assertTrue(p.getMaxNoImprovement() == 3);
+		assertTrue(p.getMaxIter() == 12);
+		assertTrue(p.getConvergenceTolerance() == 0.1);
+		assertTrue(new MiniBatchKMeansParameters().getConvergenceTolerance() == MiniBatchKMeans.DEF_CONVERGENCE_TOLERANCE);
+	}
+	
+	/**
+	 * The mini-batch centroids should land close to those of KMeans, and 
+	 * the labels should largely agree with it
+	 */
+	@Test
+	public void testAgreesWithKMeans() {
+		for(Array2DRowRealMatrix X: new Array2DRowRealMatrix[]{data_, wine}) {
+			KMeans km = new KMeansParameters(3)
+				.setSeed(new Random(5))
+				.fitNewModel(X);
+			MiniBatchKMeans mb = new MiniBatchKMeansParameters(3)
+				.setSeed(new Random(5))
+				.setBatchSize(50)
+				.fitNewModel(X);
+			
+			final double affinity = mb.indexAffinityScore(km.getLabels());
+			assertTrue("affinity: " + affinity, affinity > 0.9);
+			
+			// inertia within a few percent of the full batch solution
+			final double kmWSS = VecUtils.sum(km.getWSS()), mbWSS = VecUtils.sum(mb.getWSS());
+			assertTrue(mbWSS >= kmWSS * 0.999);
+			assertTrue(mbWSS < kmWSS * 1.05);
+			
+			// BSS is consistent with the labels
+			assertEquals(mb.getTSS() - mbWSS, mb.getBSS(), 1e-8);
+		}
+	}
+	
+	@Test
+	public void testDeterministic() {
+		MiniBatchKMeans a = new MiniBatchKMeansParameters(3).setSeed(new Random(5)).fitNewModel(wine);
+		MiniBatchKMeans b = new MiniBatchKMeansParameters(3).setSeed(new Random(5)).fitNewModel(wine);
+		assertTrue(VecUtils.equalsExactly(a.getLabels(), b.getLabels()));
+		assertTrue(a.itersElapsed() == b.itersElapsed());
+	}
+	
+	@Test
+	public void testLabelsInOrderOfAppearance() {
+		MiniBatchKMeans mb = new MiniBatchKMeans(wine, new MiniBatchKMeansParameters(5).setSeed(new Random(5))).fit();
+		final int[] labels = mb.getLabels();
+		final ArrayList<double[]> cents = mb.getCentroids();
+		
+		int next = 0;
+		for(int label: labels) {
+			assertTrue(label <= next);
+			if(label == next)
+				next++;
+		}
+		
+		// every record is labeled with its nearest centroid
+		final double[][] X = wine.getData();
+		final double[] dists = new double[cents.size()];
+		for(int i = 0; i < X.length; i++)
+			assertTrue(labels[i] == MiniBatchKMeans.nearest(mb.getSeparabilityMetric(), 
+				X[i], cents.toArray(new double[cents.size()][]), dists));
+		
+		// and predict agrees with the labels on the training data
+		assertTrue(VecUtils.equalsExactly(labels, mb.predict(wine)));
+	}
+	
+	/**
+	 * Early stopping should end the fit well before maxIter passes
+	 * on data with obvious clusters
+	 */
+	@Test
+	public void testEarlyStopping() {
+		final double[][] x = new double[1000][2];
+		final Random rand = new Random(5);
+		for(int i = 0; i < x.length; i++) {
+			x[i][0] = rand.nextGaussian() * 0.1 + (i % 2) * 10;
+			x[i][1] = rand.nextGaussian() * 0.1;
+		}
+		
+		final Array2DRowRealMatrix X = new Array2DRowRealMatrix(x, false);
+		MiniBatchKMeans mb = new MiniBatchKMeansParameters(2)
+			.setSeed(new Random(5))
+			.setBatchSize(20)
+			.setMaxIter(100)
+			.fitNewModel(X);
+		
+		assertTrue(mb.didConverge());
+		assertTrue(mb.itersElapsed() < 100 * 50);
+		
+		// no early stopping: runs every batch of every pass
+		mb = new MiniBatchKMeansParameters(2)
+			.setSeed(new Random(5))
+			.setBatchSize(20)
+			.setMaxIter(2)
+			.setMaxNoImprovement(0)
+			.fitNewModel(X);
+		
+		assertFalse(mb.didConverge());
+		assertTrue(mb.itersElapsed() == 2 * 50);
+	}
+	
+	@Test
+	public void testPartialFit() {
+		final double[][] x = wine.getData();
+		
+		// fit on the first block, then stream in the rest in blocks
+		final Array2DRowRealMatrix first = new Array2DRowRealMatrix(MatUtils.slice(x, 0, 60), false);
+		final MiniBatchKMeans mb = new MiniBatchKMeansParameters(3)
+			.setSeed(new Random(5))
+			.setBatchSize(20)
+			.fitNewModel(first);
+		
+		final int[] before = mb.getLabels();
+		final int iters = mb.itersElapsed();
+		final double[] wssBefore = mb.getWSS();
+		
+		for(int start = 60; start < x.length; start += 40) {
+			mb.partialFit(MatUtils.slice(x, start, Math.min(x.length, start + 40)));
+		}
+		
+		assertTrue(mb.itersElapsed() == iters + 3);
+		assertTrue(mb.getLabels().length == before.length);
+		assertFalse(Double.isNaN(mb.getSmoothedInertia()));
+		
+		// labels and WSS are refreshed against the training data
+		final int[] after = mb.getLabels();
+		final double[][] cents = mb.getCentroids().toArray(new double[3][]);
+		final double[] dists = new double[3];
+		double wss = 0;
+		for(int i = 0; i < before.length; i++) {
+			assertTrue(after[i] == MiniBatchKMeans.nearest(mb.getSeparabilityMetric(), x[i], cents, dists));
+			wss += Math.pow(VecUtils.l2Norm(VecUtils.subtract(x[i], cents[after[i]])), 2);
+		}
+		
+		assertEquals(wss, VecUtils.sum(mb.getWSS()), 1e-6 * wss);
+		assertFalse(VecUtils.equalsExactly(wssBefore, mb.getWSS()));
+	}
+	
+	@Test
+	public void testPartialFitUnfit() {
+		final MiniBatchKMeans mb = new MiniBatchKMeans(data_, 3);
+		mb.partialFit(getRandom(10, 4).getData());
+		assertTrue(mb.getLabels().length == data_.getRowDimension());
+	}
+	
+	@Test(expected=DimensionMismatchException.class)
+	public void testPartialFitDims() {
+		new MiniBatchKMeans(data_, 3).fit().partialFit(getRandom(10, 3).getData());
+	}
+	
+	@Test(expected=NaNException.class)
+	public void testPartialFitNaN() {
+		final double[][] batch = getRandom(10, 4).getData();
+		batch[3][1] = Double.NaN;
+		new MiniBatchKMeans(data_, 3).fit().partialFit(batch);
+	}
+	
+	@Test(expected=DimensionMismatchException.class)
+	public void testPredictDims() {
+		new MiniBatchKMeans(data_, 3).fit().predict(getRandom(10, 3));
+	}
+}
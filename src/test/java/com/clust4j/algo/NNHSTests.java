@@ -723,6 +723,35 @@ public class NNHSTests {
 		assertTrue(findNode == 2);
 	}
 	
+	@Test
+	public void testNodeBoundsContainPoints() {
+		// deep enough that partitioning one node could disturb a sibling's subtree
+		final double[][] X = MatUtils.randomGaussian(5000, 2, new Random(7));
+		KDTree kd = new KDTree(X, 16, Distance.EUCLIDEAN, null);
+		
+		for(int i = 0; i < kd.node_data.length; i++) {
+			NodeData node = kd.node_data[i];
+			for(int j = node.idx_start; j < node.idx_end; j++) {
+				double[] row = X[kd.idx_array[j]];
+				for(int f = 0; f < row.length; f++) {
+					assertTrue(row[f] >= kd.node_bounds[0][i][f]);
+					assertTrue(row[f] <= kd.node_bounds[1][i][f]);
+				}
+			}
+		}
+		
+		// the pruned query must agree with the exhaustive one
+		final double[][] query = MatUtils.randomGaussian(200, 2, new Random(8));
+		int[][] idcs = kd.query(query, 1, false, true).getIndices();
+		for(int i = 0; i < query.length; i++) {
+			int best = 0;
+			for(int j = 1; j < X.length; j++)
+				if(Distance.EUCLIDEAN.getDistance(query[i], X[j]) < Distance.EUCLIDEAN.getDistance(query[i], X[best]))
+					best = j;
+			assertEquals(best, idcs[i][0]);
+		}
+	}
+	
 	@Test
 	public void testSwap() {
 		int[] ex = new int[]{0,1,2};
@@ -38,6 +38,7 @@ import com.clust4j.kernel.GaussianKernel;
 import com.clust4j.metrics.pairwise.Distance;
 import com.clust4j.metrics.pairwise.MinkowskiDistance;
 import com.clust4j.metrics.pairwise.Similarity;
+import com.clust4j.utils.CSRMatrix;
 import com.clust4j.utils.MatUtils;
 import com.clust4j.utils.VecUtils;
 import com.clust4j.utils.Series.Inequality;
@@ -567,7 +568,9 @@ public class NearestNeighborsTests implements ClusterTest, BaseModelTest {
 			for(Distance d: Distance.values()) {
 				planner.setMetric(d);
 				model = planner.fitNewModel(data).fit();
-				assertTrue(BallTree.VALID_METRICS.contains(model.dist_metric.getClass()));
+				assertTrue((na.equals(NeighborsAlgorithm.BRUTE) ? 
+					BruteForceSearch.VALID_METRICS : 
+						BallTree.VALID_METRICS).contains(model.dist_metric.getClass()));
 			}
 			
 			// minkowski
@@ -645,4 +648,95 @@ public class NearestNeighborsTests implements ClusterTest, BaseModelTest {
 		new NearestNeighbors(km).fit();
 		new NearestNeighbors(km, new NearestNeighborsParameters(2)).fit();
 	}
+	
+	@Test
+	public void testBruteForce() {
+		final Array2DRowRealMatrix X = new Array2DRowRealMatrix(
+			MatUtils.randomGaussian(300, 64, new Random(42)), false);
+		
+		for(Distance metric: new Distance[]{Distance.EUCLIDEAN, Distance.MANHATTAN}) {
+			Neighborhood tree = new NearestNeighbors(X, new NearestNeighborsParameters(4)
+				.setAlgorithm(NeighborsAlgorithm.BALL_TREE).setMetric(metric)).fit().getNeighbors();
+			NearestNeighbors brute = new NearestNeighbors(X, new NearestNeighborsParameters(4)
+				.setAlgorithm(NeighborsAlgorithm.BRUTE).setMetric(metric)).fit();
+			
+			assertTrue(brute.tree instanceof BruteForceSearch);
+			assertTrue(MatUtils.equalsExactly(tree.getIndices(), brute.getNeighbors().getIndices()));
+			assertTrue(MatUtils.equalsWithTolerance(tree.getDistances(), brute.getNeighbors().getDistances(), 1e-8));
+		}
+	}
+	
+	@Test
+	public void testBruteForceBinary() {
+		final Random rand = new Random(42);
+		final double[][] x = new double[150][100], q = new double[20][100];
+		for(double[][] mat: new double[][][]{x, q})
+			for(double[] row: mat)
+				for(int j = 0; j < row.length; j++)
+					row[j] = rand.nextDouble() < 0.3 ? 1.0 : 0.0;
+		
+		final Array2DRowRealMatrix X = new Array2DRowRealMatrix(x, false);
+		final Array2DRowRealMatrix Q = new Array2DRowRealMatrix(q, false);
+		final int k = 5;
+		final double radius = 0.5;
+		
+		for(Distance metric: Distance.binaryDistances()) {
+			NearestNeighbors nn = new NearestNeighbors(X, new NearestNeighborsParameters(k)
+				.setAlgorithm(NeighborsAlgorithm.BRUTE).setMetric(metric)).fit();
+			assertFalse(nn.hasWarnings());
+			assertTrue(nn.dist_metric.equals(metric));
+			assertNotNull(nn.tree.packed_data);
+			
+			RadiusNeighbors rn = new RadiusNeighbors(X, new RadiusNeighborsParameters(radius)
+				.setAlgorithm(NeighborsAlgorithm.BRUTE).setMetric(metric)).fit();
+			
+			final double[][] dists = nn.getNeighbors(Q).getDistances();
+			final int[][] inRadius = rn.getNeighbors(Q).getIndices();
+			for(int i = 0; i < q.length; i++) {
+				final double[] expected = new double[x.length];
+				int count = 0;
+				for(int j = 0; j < x.length; j++) {
+					expected[j] = metric.getDistance(q[i], x[j]);
+					if(expected[j] <= radius)
+						count++;
+				}
+				
+				assertTrue(VecUtils.equalsExactly(VecUtils.slice(VecUtils.sortAsc(expected), 0, k), dists[i]));
+				assertEquals(count, inRadius[i].length);
+			}
+		}
+	}
+	
+	@Test
+	public void testSparse() {
+		final Random rand = new Random(11);
+		final double[][] x = new double[100][40], q = new double[10][40];
+		for(double[][] mat: new double[][][]{x, q})
+			for(double[] row: mat)
+				for(int j = 0; j < row.length; j++)
+					if(rand.nextDouble() < 0.2)
+						row[j] = rand.nextGaussian();
+		
+		final CSRMatrix X = new CSRMatrix(x), Q = new CSRMatrix(q);
+		for(Distance metric: new Distance[]{Distance.EUCLIDEAN, Distance.MANHATTAN}) {
+			NearestNeighbors s = new NearestNeighborsParameters(4)
+				.setMetric(metric).fitNewModel(X);
+			NearestNeighbors d = new NearestNeighborsParameters(4)
+				.setMetric(metric).fitNewModel(new Array2DRowRealMatrix(x, false));
+			
+			assertTrue(s.isSparse());
+			assertNull(s.tree);
+			assertTrue(s.alg.equals(NeighborsAlgorithm.BRUTE));
+			assertTrue(MatUtils.equalsExactly(s.getNeighbors().getIndices(), d.getNeighbors().getIndices()));
+			assertTrue(MatUtils.equalsWithTolerance(s.getNeighbors().getDistances(), d.getNeighbors().getDistances(), 1e-12));
+			
+			// sparse and dense queries
+			final Neighborhood expected = d.getNeighbors(new Array2DRowRealMatrix(q, false));
+			for(Neighborhood hood: new Neighborhood[]{
+				s.getNeighbors(Q), s.getNeighbors(new Array2DRowRealMatrix(q, false))}) {
+				assertTrue(MatUtils.equalsExactly(expected.getIndices(), hood.getIndices()));
+				assertTrue(MatUtils.equalsWithTolerance(expected.getDistances(), hood.getDistances(), 1e-10));
+			}
+		}
+	}
 }
@@ -36,6 +36,8 @@ import com.clust4j.kernel.GaussianKernel;
 import com.clust4j.metrics.pairwise.Distance;
 import com.clust4j.metrics.pairwise.MinkowskiDistance;
 import com.clust4j.metrics.pairwise.Similarity;
+import com.clust4j.utils.VecUtils;
+import com.clust4j.utils.CSRMatrix;
 import com.clust4j.utils.MatUtils;
 import com.clust4j.utils.Series.Inequality;
 
@@ -317,7 +319,9 @@ public class RadiusNeighborsTests implements ClusterTest, BaseModelTest {
 			for(Distance d: Distance.values()) {
 				planner.setMetric(d);
 				model = planner.fitNewModel(data).fit();
-				assertTrue(BallTree.VALID_METRICS.contains(model.dist_metric.getClass()));
+				assertTrue((na.equals(NeighborsAlgorithm.BRUTE) ? 
+					BruteForceSearch.VALID_METRICS : 
+						BallTree.VALID_METRICS).contains(model.dist_metric.getClass()));
 			}
 			
 			// minkowski
@@ -350,4 +354,33 @@ public class RadiusNeighborsTests implements ClusterTest, BaseModelTest {
 		model.getNeighbors(iris.getData(), true);
 		model.getNeighbors(iris.getData());
 	}
+	
+	@Test
+	public void testSparse() {
+		final Random rand = new Random(11);
+		final double[][] x = new double[100][40], q = new double[10][40];
+		for(double[][] mat: new double[][][]{x, q})
+			for(double[] row: mat)
+				for(int j = 0; j < row.length; j++)
+					if(rand.nextDouble() < 0.2)
+						row[j] = rand.nextGaussian();
+		
+		final CSRMatrix X = new CSRMatrix(x);
+		final double radius = 4.5;
+		RadiusNeighbors s = new RadiusNeighborsParameters(radius).fitNewModel(X);
+		RadiusNeighbors d = new RadiusNeighborsParameters(radius).fitNewModel(new Array2DRowRealMatrix(x, false));
+		
+		assertTrue(s.isSparse());
+		assertTrue(s.alg.equals(NeighborsAlgorithm.BRUTE));
+		
+		// the tree does not return its radius neighbors in order
+		final int[][] si = s.getNeighbors().getIndices(), di = d.getNeighbors().getIndices();
+		for(int i = 0; i < si.length; i++)
+			assertTrue(VecUtils.equalsExactly(si[i], VecUtils.sortAsc(di[i])));
+		
+		final int[][] qi = s.getNeighbors(new CSRMatrix(q)).getIndices();
+		final int[][] qd = d.getNeighbors(new Array2DRowRealMatrix(q, false)).getIndices();
+		for(int i = 0; i < qi.length; i++)
+			assertTrue(VecUtils.equalsExactly(qi[i], VecUtils.sortAsc(qd[i])));
+	}
 }
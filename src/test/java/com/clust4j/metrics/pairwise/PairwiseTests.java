@@ -20,6 +20,8 @@ import static org.junit.Assert.*;
 import org.apache.commons.math3.util.Precision;
 import org.junit.Test;
 
+import com.clust4j.GlobalState;
+import com.clust4j.TestSuite;
 import com.clust4j.kernel.ANOVAKernel;
 import com.clust4j.kernel.CauchyKernel;
 import com.clust4j.kernel.CircularKernel;
@@ -40,6 +42,7 @@ import com.clust4j.kernel.RadialBasisKernel;
 import com.clust4j.kernel.RationalQuadraticKernel;
 import com.clust4j.kernel.SphericalKernel;
 import com.clust4j.kernel.SplineKernel;
+import com.clust4j.utils.CSRMatrix;
 import com.clust4j.utils.MatUtils;
 import com.clust4j.utils.VecUtils;
 
@@ -390,4 +393,509 @@ public class PairwiseTests {
 		final double[] d = new double[]{1,2,3,4,5};
 		assertTrue(Similarity.COSINE.getPartialSimilarity(d, d) == Similarity.COSINE.getSimilarity(d, d));
 	}
+	
+	@Test
+	public void testParallelMatchesSerial() {
+		final double[][] x = MatUtils.randomGaussian(400, 100, new java.util.Random(42));
+		
+		for(DistanceMetric metric: new DistanceMetric[]{ Distance.EUCLIDEAN, Distance.MANHATTAN, Distance.CANBERRA }) {
+			for(boolean upper: new boolean[]{ true, false }) {
+				for(boolean partial: new boolean[]{ true, false }) {
+					assertTrue(MatUtils.equalsExactly(
+						Pairwise.serialPairwise(x, metric, upper, partial, 1.0),
+						Pairwise.parallelPairwise(x, metric, upper, partial, 1.0)));
+				}
+			}
+		}
+		
+		// similarity mode keeps the diagonal
+		SimilarityMetric kernel = new GaussianKernel();
+		assertTrue(MatUtils.equalsExactly(
+			Pairwise.serialPairwise(x, kernel, false, false, -1.0),
+			Pairwise.parallelPairwise(x, kernel, false, false, -1.0)));
+	}
+	
+	@Test
+	public void testTileSchedule() {
+		Pairwise.TileSchedule schedule = new Pairwise.TileSchedule(50, 16);
+		assertTrue(schedule.numTiles() == 10); // 4 blocks -> 4 choose 2 + 4
+		
+		// every upper triangular cell must be covered exactly once
+		int[][] counts = new int[50][50];
+		for(int t = 0; t < schedule.numTiles(); t++) {
+			for(int i = schedule.rowStart(t); i < schedule.rowEnd(t); i++)
+				for(int j = schedule.isDiagonal(t) ? i + 1 : schedule.colStart(t); j < schedule.colEnd(t); j++)
+					counts[i][j]++;
+		}
+		
+		for(int i = 0; i < 50; i++)
+			for(int j = 0; j < 50; j++)
+				assertTrue(counts[i][j] == (j > i ? 1 : 0));
+		
+		assertTrue(Pairwise.getTileSize(1) == Pairwise.MAX_TILE_SIZE);
+		assertTrue(Pairwise.getTileSize(1_000_000) == Pairwise.MIN_TILE_SIZE);
+	}
+	
+	@Test
+	public void testCondensedMatchesDense() {
+		final double[][] x = MatUtils.randomGaussian(50, 4, new java.util.Random(7));
+		
+		for(DistanceMetric metric: distances()) {
+			double[][] dense = Pairwise.getDistance(x, metric, true, true);
+			CondensedDistanceMatrix condensed = Pairwise.getCondensedDistance(x, metric, true);
+			
+			assertTrue(condensed.size() == 50);
+			assertTrue(condensed.length() == 50 * 49 / 2);
+			for(int i = 0; i < x.length - 1; i++) {
+				for(int j = i + 1; j < x.length; j++) {
+					assertTrue(dense[i][j] == condensed.get(i, j));
+					assertTrue(dense[i][j] == condensed.get(j, i));
+				}
+			}
+			
+			// rows are the symmetric expansion
+			for(int i = 0; i < x.length; i++) {
+				double[] row = condensed.getRow(i);
+				assertTrue(row[i] == 0.0);
+				for(int j = 0; j < x.length; j++)
+					assertTrue(row[j] == (i < j ? dense[i][j] : dense[j][i]));
+			}
+		}
+	}
+	
+	@Test
+	public void testCondensedParallelMatchesSerial() {
+		final double[][] x = MatUtils.randomGaussian(400, 100, new java.util.Random(42));
+		final int m = x.length;
+		final CondensedDistanceMatrix serial = Pairwise.condensed(x, Distance.EUCLIDEAN, false, 1.0,
+			CondensedDistanceMatrix.Storage.HEAP.allocate(m));
+		
+		final Pairwise.TileSchedule schedule = new Pairwise.TileSchedule(m, 64);
+		final CondensedDistanceMatrix parallel = com.clust4j.GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(
+			new Pairwise.CondensedTileTask(schedule, 0, schedule.numTiles(), x, 
+				Distance.EUCLIDEAN, CondensedDistanceMatrix.Storage.HEAP.allocate(m), false, 1.0));
+		
+		for(long i = 0; i < serial.length(); i++)
+			assertTrue(serial.get(i) == parallel.get(i));
+	}
+	
+	@Test
+	public void testCondensedIndex() {
+		// <1 2 3 1 2 1> for m = 4
+		assertTrue(CondensedDistanceMatrix.getIndex(4, 0, 3) == 2);
+		assertTrue(CondensedDistanceMatrix.getIndex(4, 3, 0) == 2);
+		assertTrue(CondensedDistanceMatrix.getIndex(4, 2, 3) == 5);
+		assertTrue(CondensedDistanceMatrix.getIndex(10, 3, 4) == 24);
+		
+		CondensedDistanceMatrix c = CondensedDistanceMatrix.wrap(4, new double[]{1,2,3,1,2,1});
+		assertTrue(c.rowStart(1) == 3);
+		assertTrue(VecUtils.equalsExactly(c.getRow(2), new double[]{2,1,0,1}));
+		
+		c.set(1, 3, 5.0);
+		assertTrue(c.get(3, 1) == 5.0);
+		
+		boolean a = false;
+		try {
+			CondensedDistanceMatrix.getIndex(4, 1, 1);
+		} catch(IllegalArgumentException iae) {
+			a = true;
+		} finally {
+			assertTrue(a);
+		}
+		
+		a = false;
+		try {
+			CondensedDistanceMatrix.wrap(4, new double[5]);
+		} catch(IllegalArgumentException iae) {
+			a = true;
+		} finally {
+			assertTrue(a);
+		}
+	}
+	
+	@Test
+	public void testCondensedLongIndex() {
+		// (m choose 2) overflows an int for m > 65536
+		final int m = 100000;
+		assertTrue(CondensedDistanceMatrix.getIndex(m, m - 2, m - 1) == 4999949999L);
+		assertTrue(CondensedDistanceMatrix.getIndex(m, m - 1, m - 2) == 4999949999L);
+		assertTrue(CondensedDistanceMatrix.getIndex(m, 50000, 50001) == 3749975000L);
+		
+		boolean a = false;
+		try {
+			CondensedDistanceMatrix.Storage.HEAP.allocate(m);
+		} catch(IllegalArgumentException iae) {
+			a = true;
+		} finally {
+			assertTrue(a);
+		}
+	}
+	
+	/** The temporary files backing MAPPED matrices */
+	private static int mappedFiles() {
+		final String[] names = new java.io.File(System.getProperty("java.io.tmpdir")).list(
+			new java.io.FilenameFilter() {
+				@Override public boolean accept(java.io.File dir, String name) {
+					return name.startsWith("clust4j-dist");
+				}
+			});
+		return null == names ? 0 : names.length;
+	}
+	
+	@Test
+	public void testCondensedSerialization() throws Exception {
+		final double[][] x = MatUtils.randomGaussian(40, 3, new java.util.Random(42));
+		for(NumericPrecision precision: NumericPrecision.values()) {
+			final CondensedDistanceMatrix heap = Pairwise.getCondensedDistance(x, Distance.EUCLIDEAN, 
+				false, CondensedDistanceMatrix.Storage.HEAP, precision);
+			
+			final java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+			final java.io.ObjectOutputStream out = new java.io.ObjectOutputStream(bytes);
+			out.writeObject(heap);
+			out.close();
+			
+			final CondensedDistanceMatrix copy = (CondensedDistanceMatrix)new java.io.ObjectInputStream(
+				new java.io.ByteArrayInputStream(bytes.toByteArray())).readObject();
+			assertTrue(copy.getPrecision() == precision);
+			assertTrue(copy.length() == heap.length());
+			for(long i = 0; i < heap.length(); i++)
+				assertTrue(heap.get(i) == copy.get(i));
+		}
+		
+		for(CondensedDistanceMatrix.Storage storage: new CondensedDistanceMatrix.Storage[]{
+				CondensedDistanceMatrix.Storage.DIRECT, CondensedDistanceMatrix.Storage.MAPPED}) {
+			boolean a = false;
+			try {
+				new java.io.ObjectOutputStream(new java.io.ByteArrayOutputStream())
+					.writeObject(Pairwise.getCondensedDistance(x, Distance.EUCLIDEAN, false, storage));
+			} catch(java.io.NotSerializableException e) {
+				a = true;
+			} finally {
+				assertTrue(a);
+			}
+		}
+	}
+	
+	@Test
+	public void testMappedFileDeleted() {
+		final double[][] x = MatUtils.randomGaussian(100, 3, new java.util.Random(42));
+		final int before = mappedFiles();
+		final CondensedDistanceMatrix mapped = Pairwise.getCondensedDistance(x, Distance.EUCLIDEAN, 
+			false, CondensedDistanceMatrix.Storage.MAPPED);
+		
+		// the file is gone once mapped, but the mapping remains usable
+		assertEquals(before, mappedFiles());
+		assertEquals(Distance.EUCLIDEAN.getDistance(x[0], x[1]), mapped.get(0, 1), 0.0);
+		mapped.set(0L, 3.0);
+		assertEquals(3.0, mapped.get(0L), 0.0);
+	}
+	
+	@Test
+	public void testCondensedStorageMatchesHeap() {
+		final double[][] x = MatUtils.randomGaussian(150, 5, new java.util.Random(42));
+		final CondensedDistanceMatrix heap = Pairwise.getCondensedDistance(x, Distance.EUCLIDEAN, false);
+		assertTrue(heap.getStorage() == CondensedDistanceMatrix.Storage.HEAP);
+		
+		for(CondensedDistanceMatrix.Storage storage: new CondensedDistanceMatrix.Storage[]{
+				CondensedDistanceMatrix.Storage.DIRECT, CondensedDistanceMatrix.Storage.MAPPED}) {
+			final CondensedDistanceMatrix other = Pairwise.getCondensedDistance(x, Distance.EUCLIDEAN, false, storage);
+			assertTrue(other.getStorage() == storage);
+			assertTrue(other.length() == heap.length());
+			
+			for(int i = 0; i < x.length; i++)
+				assertTrue(VecUtils.equalsExactly(heap.getRow(i), other.getRow(i)));
+		}
+		
+		// Force many small segments so rows straddle the boundaries
+		for(boolean mapped: new boolean[]{false, true}) {
+			final CondensedDistanceMatrix seg = new CondensedDistanceMatrix.Buffered(x.length, mapped, 
+				com.clust4j.metrics.pairwise.NumericPrecision.DOUBLE, 7);
+			assertTrue(seg.length() == heap.length());
+			Pairwise.condensed(x, Distance.EUCLIDEAN, false, 1.0, seg);
+			
+			for(long i = 0; i < heap.length(); i++)
+				assertTrue(heap.get(i) == seg.get(i));
+		}
+	}
+	
+	@Test
+	public void testFloatDistance() {
+		final double[][] x = MatUtils.randomGaussian(120, 6, new java.util.Random(42));
+		
+		for(boolean upper: new boolean[]{true, false}) {
+			final double[][] dense = Pairwise.getDistance(x, Distance.EUCLIDEAN, upper, false);
+			final float[][] single = Pairwise.getFloatDistance(x, Distance.EUCLIDEAN, upper, false);
+			final double[][] sim = Pairwise.getSimilarity(x, new GaussianKernel(), upper, false);
+			final float[][] simSingle = Pairwise.getFloatSimilarity(x, new GaussianKernel(), upper, false);
+			
+			for(int i = 0; i < x.length; i++) {
+				for(int j = 0; j < x.length; j++) {
+					assertTrue(single[i][j] == (float)dense[i][j]);
+					assertTrue(simSingle[i][j] == (float)sim[i][j]);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testFloatSerialStaysOnCallingThread() {
+		final double[][] x = MatUtils.randomGaussian(300, 4, new java.util.Random(42));
+		final boolean allowed = GlobalState.ParallelismConf.PARALLELISM_ALLOWED;
+		try {
+			GlobalState.ParallelismConf.PARALLELISM_ALLOWED = false;
+			final TestSuite.ThreadRecordingMetric metric = new TestSuite.ThreadRecordingMetric();
+			final float[][] single = Pairwise.getFloatDistance(x, metric, false, false);
+			assertFalse(metric.wasOffThread());
+			assertTrue(single[0][1] == (float)metric.getDistance(x[0], x[1]));
+		} finally {
+			GlobalState.ParallelismConf.PARALLELISM_ALLOWED = allowed;
+		}
+	}
+	
+	@Test
+	public void testFloatCondensed() {
+		final double[][] x = MatUtils.randomGaussian(150, 5, new java.util.Random(42));
+		final CondensedDistanceMatrix dbl = Pairwise.getCondensedDistance(x, Distance.EUCLIDEAN, false);
+		
+		for(CondensedDistanceMatrix.Storage storage: CondensedDistanceMatrix.Storage.values()) {
+			final CondensedDistanceMatrix flt = Pairwise.getCondensedDistance(x, 
+				Distance.EUCLIDEAN, false, storage, NumericPrecision.FLOAT);
+			assertTrue(flt.getPrecision() == NumericPrecision.FLOAT);
+			assertTrue(flt.getStorage() == storage);
+			
+			for(long i = 0; i < dbl.length(); i++)
+				assertTrue(flt.get(i) == NumericPrecision.FLOAT.round(dbl.get(i)));
+			
+			// the argMin of each row segment should agree with the double matrix
+			for(int i = 0; i < x.length - 1; i++) {
+				long start = dbl.rowStart(i), end = start + x.length - i - 1;
+				assertTrue(flt.get(flt.argMin(start, end)) == NumericPrecision.FLOAT.round(dbl.get(dbl.argMin(start, end))));
+			}
+		}
+	}
+	
+	@Test
+	public void testCondensedArgMin() {
+		CondensedDistanceMatrix c = CondensedDistanceMatrix.wrap(4, new double[]{3,1,2,1,5,Double.POSITIVE_INFINITY});
+		assertTrue(c.argMin(0, 6) == 1); // first occurrence
+		assertTrue(c.argMin(2, 5) == 3);
+		assertTrue(c.argMin(5, 6) == 5);
+		assertTrue(c.argMin(3, 3) == -1);
+	}
+	
+	@Test
+	public void testGemmEuclidean() {
+		final double[][] x = MatUtils.randomGaussian(120, 40, new java.util.Random(42));
+		final double[][] y = MatUtils.randomGaussian(30, 40, new java.util.Random(7));
+		
+		for(boolean partial: new boolean[]{true, false}) {
+			for(boolean upper: new boolean[]{true, false}) {
+				final double[][] exact = Pairwise.getDistance(x, Distance.EUCLIDEAN, upper, partial);
+				final double[][] gemm = Pairwise.getDistance(x, Distance.EUCLIDEAN, upper, partial, true);
+				assertTrue(MatUtils.equalsWithTolerance(exact, gemm, 1e-8));
+				
+				// exact zeros on the diagonal and exact symmetry
+				for(int i = 0; i < x.length; i++) {
+					assertTrue(gemm[i][i] == 0.0);
+					if(!upper)
+						for(int j = 0; j < i; j++)
+							assertTrue(gemm[i][j] == gemm[j][i]);
+				}
+			}
+			
+			final double[][] cross = Pairwise.getCrossDistance(y, x, Distance.EUCLIDEAN, partial, false);
+			final double[][] crossGemm = Pairwise.getCrossDistance(y, x, Distance.EUCLIDEAN, partial, true);
+			assertTrue(MatUtils.equalsWithTolerance(cross, crossGemm, 1e-8));
+			for(int i = 0; i < y.length; i++)
+				for(int j = 0; j < x.length; j++)
+					assertTrue(cross[i][j] == (partial ? 
+						Distance.EUCLIDEAN.getPartialDistance(y[i], x[j]) : 
+							Distance.EUCLIDEAN.getDistance(y[i], x[j])));
+		}
+		
+		// gemm is ignored for other metrics
+		assertTrue(MatUtils.equalsExactly(
+			Pairwise.getDistance(x, Distance.MANHATTAN, false, false),
+			Pairwise.getDistance(x, Distance.MANHATTAN, false, false, true)));
+	}
+	
+	@Test
+	public void testGemmClampsRoundOff() {
+		// large norms with identical rows cancel catastrophically
+		final double[][] x = new double[][]{
+			new double[]{1e8 + 0.1, 1e8 + 0.3, 1e8 + 0.7},
+			new double[]{1e8 + 0.1, 1e8 + 0.3, 1e8 + 0.7}
+		};
+		
+		final double[][] cross = Pairwise.getCrossDistance(x, x, Distance.EUCLIDEAN, true, true);
+		for(double[] row: cross)
+			for(double d: row)
+				assertTrue(d >= 0.0);
+	}
+	
+	@Test
+	public void testBitPackedBinaryDistances() {
+		// 130 columns spans a partial trailing word
+		final java.util.Random rand = new java.util.Random(42);
+		final double[][] x = new double[60][130];
+		for(double[] row: x)
+			for(int j = 0; j < row.length; j++)
+				row[j] = rand.nextDouble() < 0.4 ? 1.0 : 0.0;
+		x[1] = new double[130]; // all false
+		
+		final BitPackedMatrix bits = BitPackedMatrix.pack(x);
+		assertTrue(bits.getRowDimension() == 60);
+		assertTrue(bits.getColumnDimension() == 130);
+		assertTrue(bits.getRowRef(0).length == 3);
+		
+		final double[] row = new double[x.length];
+		for(Distance metric: Distance.binaryDistances()) {
+			for(int i = 0; i < x.length; i++) {
+				bits.partialDistances(metric, bits.getRowRef(i), 0, x.length, row);
+				for(int j = 0; j < x.length; j++) {
+					final double exp = metric.getPartialDistance(x[i], x[j]);
+					assertTrue(exp == BitPackedMatrix.partialDistance(metric, 
+						bits.getRowRef(i), bits.getRowRef(j), 130));
+					assertTrue(exp == row[j]);
+				}
+			}
+			
+			// the packed path through the pairwise entry points
+			assertTrue(MatUtils.equalsExactly(
+				Pairwise.serialPairwise(x, metric, false, false, 1.0),
+				Pairwise.parallelPairwise(x, metric, false, false, 1.0)));
+			
+			final double[][] full = Pairwise.getDistance(x, metric, false, false);
+			final CondensedDistanceMatrix condensed = Pairwise.getCondensedDistance(x, metric, false);
+			final double[][] cross = Pairwise.getCrossDistance(x, x, metric, false, false);
+			for(int i = 0; i < x.length; i++) {
+				for(int j = 0; j < x.length; j++) {
+					final double exp = metric.getDistance(x[i], x[j]);
+					assertTrue(exp == cross[i][j]);
+					if(i != j) {
+						assertTrue(exp == full[i][j]);
+						assertTrue(exp == condensed.get(i, j));
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testBitPackedEligibility() {
+		final double[][] binary = new double[][]{
+			new double[]{0, 1, 1},
+			new double[]{1, 0, 1}
+		};
+		
+		final double[][] real = new double[][]{
+			new double[]{0, 2, 1},
+			new double[]{1, 0, 3}
+		};
+		
+		assertNull(BitPackedMatrix.packIfBinary(Distance.EUCLIDEAN, binary));
+		assertNotNull(BitPackedMatrix.packIfBinary(Distance.HAMMING, binary));
+		assertNotNull(BitPackedMatrix.packIfBinary(Distance.DICE, real));
+		
+		// hamming compares raw values, so non-binary data cannot be packed
+		assertNull(BitPackedMatrix.packIfBinary(Distance.HAMMING, real));
+		assertTrue(Pairwise.getDistance(real, Distance.HAMMING, true, false)[0][1] == 1.0);
+		
+		boolean a = false;
+		try {
+			BitPackedMatrix.partialDistance(Distance.EUCLIDEAN, new long[1], new long[1], 3);
+		} catch(IllegalArgumentException i) {
+			a = true;
+		} finally {
+			assertTrue(a);
+		}
+	}
+	
+	@Test
+	public void testSparseDistances() {
+		final java.util.Random rand = new java.util.Random(7);
+		final double[][] x = new double[30][50];
+		for(double[] row: x)
+			for(int j = 0; j < row.length; j++)
+				if(rand.nextDouble() < 0.1)
+					row[j] = rand.nextGaussian();
+		
+		final CSRMatrix X = new CSRMatrix(x);
+		final GeometricallySeparable[] metrics = new GeometricallySeparable[]{
+			Distance.EUCLIDEAN, Distance.MANHATTAN, Similarity.COSINE, Distance.CHEBYSHEV
+		};
+		
+		for(GeometricallySeparable geo: metrics) {
+			for(int i = 0; i < x.length; i++) {
+				final double norm = Pairwise.sparseNorm(geo, x[i]);
+				for(int j = 0; j < x.length; j++) {
+					// sparse-sparse is identical to dense
+					assertEquals(geo.getPartialDistance(x[j], x[i]), 
+						Pairwise.sparsePartialDistance(geo, X, j, X, i), 0.0);
+					
+					// sparse-dense uses the norm expansion
+					assertEquals(geo.getPartialDistance(x[j], x[i]),
+						Pairwise.sparsePartialDistance(geo, X, j, x[i], norm), 1e-10);
+				}
+			}
+		}
+		
+		assertEquals(0.0, Pairwise.sparseNorm(Distance.CHEBYSHEV, x[0]), 0.0);
+	}
+	
+	@Test
+	public void testTopK() {
+		final java.util.Random rand = new java.util.Random(9);
+		final double[][] x = new double[300][6];
+		for(double[] row: x)
+			for(int j = 0; j < row.length; j++)
+				row[j] = rand.nextInt(4); // ties are common
+		
+		final int k = 7;
+		for(GeometricallySeparable geo: new GeometricallySeparable[]{
+				Distance.EUCLIDEAN, Distance.MANHATTAN, Distance.DICE, new GaussianKernel()}) {
+			final double[][] full = Pairwise.getDistance(x, geo, false, false);
+			final com.clust4j.utils.EntryPair<double[][], int[][]> top = Pairwise.topK(x, geo, k);
+			final double[][] dists = top.getKey();
+			final int[][] idcs = top.getValue();
+			
+			for(int i = 0; i < x.length; i++) {
+				final double[] row = VecUtils.copy(full[i]);
+				java.util.Arrays.sort(row);
+				assertTrue(VecUtils.equalsExactly(VecUtils.slice(row, 0, k), dists[i]));
+				
+				for(int j = 0; j < k; j++)
+					assertEquals(dists[i][j], full[i][idcs[i][j]], 0.0);
+			}
+			
+			// the parallel task must yield the same result
+			final Pairwise.TopKTask task = new Pairwise.TopKTask(x, BitPackedMatrix.packIfBinary(geo, x),
+				geo, new com.clust4j.utils.TopKHeap(x.length, k), 0, x.length, 32);
+			final com.clust4j.utils.EntryPair<double[][], int[][]> par = Pairwise.topKResult(
+				com.clust4j.GlobalState.ParallelismConf.FJ_THREADPOOL.invoke(task), geo);
+			assertTrue(MatUtils.equalsExactly(dists, par.getKey()));
+			assertTrue(MatUtils.equalsExactly(idcs, par.getValue()));
+		}
+		
+		// the serial path never forks
+		final double[][] y = MatUtils.randomGaussian(600, 4, new java.util.Random(10));
+		final boolean allowed = com.clust4j.GlobalState.ParallelismConf.PARALLELISM_ALLOWED;
+		try {
+			com.clust4j.GlobalState.ParallelismConf.PARALLELISM_ALLOWED = false;
+			final TestSuite.ThreadRecordingMetric metric = new TestSuite.ThreadRecordingMetric();
+			Pairwise.topK(y, metric, k);
+			assertFalse(metric.wasOffThread());
+		} finally {
+			com.clust4j.GlobalState.ParallelismConf.PARALLELISM_ALLOWED = allowed;
+		}
+		
+		boolean a = false;
+		try {
+			Pairwise.topK(x, Distance.EUCLIDEAN, x.length + 1);
+		} catch(IllegalArgumentException i) {
+			a = true;
+		} finally {
+			assertTrue(a);
+		}
+	}
 }
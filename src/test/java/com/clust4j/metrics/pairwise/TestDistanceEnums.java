@@ -274,4 +274,34 @@ public class TestDistanceEnums {
 		final double[] b = new double[]{0,2,5,1};
 		assertTrue(Distance.MINKOWSKI(1.5).getDistance(a, b) == new MinkowskiDistance(1.5).getDistance(a, b));
 	}
+	
+	@Test
+	public void testBatchMatchesSingle() {
+		final double[][] X = com.clust4j.utils.MatUtils.randomGaussian(50, 7, new java.util.Random(42));
+		final double[] q = X[3];
+		final int[] idcs = new int[]{ 9, 2, 40, 3, 17 };
+		final double[] out = new double[X.length];
+		
+		for(Distance d: Distance.values()) {
+			Pairwise.partialDistances(d, q, X, 5, 45, out);
+			for(int i = 5; i < 45; i++)
+				assertTrue(d.getName(), Double.compare(out[i - 5], d.getPartialDistance(q, X[i])) == 0);
+			
+			Pairwise.partialDistances(d, q, X, idcs, 1, idcs.length, out);
+			for(int i = 1; i < idcs.length; i++)
+				assertTrue(d.getName(), Double.compare(out[i - 1], d.getPartialDistance(q, X[idcs[i]])) == 0);
+		}
+		
+		// Falls back to a per-row loop for non-batch metrics
+		final MinkowskiDistance mink = new MinkowskiDistance(1.5);
+		Pairwise.partialDistances(mink, q, X, 0, X.length, out);
+		for(int i = 0; i < X.length; i++)
+			assertTrue(out[i] == mink.getPartialDistance(q, X[i]));
+	}
+	
+	@Test(expected=DimensionMismatchException.class)
+	public void testBatchDimMismatch() {
+		final double[][] X = new double[][]{ new double[]{1,2}, new double[]{1,2,3} };
+		Distance.EUCLIDEAN.partialDistances(new double[]{0,0}, X, 0, 2, new double[2]);
+	}
 }
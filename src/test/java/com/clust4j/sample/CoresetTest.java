@@ -0,0 +1,198 @@
+/*******************************************************************************
+ *    Copyright 2015, 2016 Taylor G Smith
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.clust4j.sample;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.junit.Test;
+
+import com.clust4j.TestSuite;
+import com.clust4j.algo.KMeans;
+import com.clust4j.algo.KMeansParameters;
+import com.clust4j.except.NaNException;
+import com.clust4j.utils.MatUtils;
+import com.clust4j.utils.VecKernels;
+import com.clust4j.utils.VecUtils;
+
+public class CoresetTest {
+	
+	static double[][] blobCenters(final int k) {
+		final double[][] centers = new double[k][3];
+		for(int c = 0; c < k; c++)
+			centers[c] = VecUtils.rep(10.0 * c, 3);
+		return centers;
+	}
+	
+	/** The weighted k-means cost of the centers */
+	static double cost(final double[][] X, final double[] weights, final double[][] centers) {
+		double sum = 0, min;
+		for(int i = 0; i < X.length; i++) {
+			min = Double.POSITIVE_INFINITY;
+			for(double[] c: centers)
+				min = Math.min(min, VecKernels.squaredDifference(X[i], c));
+			sum += (null == weights ? 1.0 : weights[i]) * min;
+		}
+		
+		return sum;
+	}
+	
+	static void assertCostApproximated(final double[][] X, final Coreset coreset, 
+			final double[][] centers, final double tolerance) {
+		final double full = cost(X, null, centers);
+		final double approx = cost(coreset.getPoints(), coreset.getWeights(), centers);
+		assertEquals(1.0, approx / full, tolerance);
+	}
+	
+	@Test
+	public void testCostApproximation() {
+		final double[][] X = TestSuite.getBlobs(20000, 5, 1);
+		final Coreset coreset = Coreset.build(X, 5, 1000, new Random(2));
+		
+		assertTrue(coreset.size() <= 1000);
+		assertEquals(1.0, coreset.getTotalWeight() / X.length, 0.1);
+		
+		// both for the optimal centers and some poor ones
+		assertCostApproximated(X, coreset, blobCenters(5), 0.1);
+		assertCostApproximated(X, coreset, MatUtils.randomGaussian(5, 3, new Random(3)), 0.1);
+		assertCostApproximated(X, coreset, blobCenters(2), 0.1);
+	}
+	
+	@Test
+	public void testFitWeightedKMeans() {
+		final double[][] X = TestSuite.getBlobs(20000, 5, 4);
+		final Coreset coreset = Coreset.build(X, 5, 500, new Random(5));
+		
+		final KMeans model = new KMeansParameters(5)
+			.setSeed(new Random(6))
+			.setSampleWeights(coreset.getWeights())
+			.fitNewModel(new Array2DRowRealMatrix(coreset.getPoints(), false));
+		
+		// each blob center is recovered
+		for(double[] center: blobCenters(5)) {
+			double min = Double.POSITIVE_INFINITY;
+			for(double[] centroid: model.getCentroids())
+				min = Math.min(min, VecKernels.squaredDifference(center, centroid));
+			assertTrue(min < 0.25);
+		}
+	}
+	
+	@Test
+	public void testSmallDataIsExact() {
+		final double[][] X = TestSuite.getBlobs(50, 5, 7);
+		final Coreset coreset = Coreset.build(X, 5, 100, new Random(8));
+		
+		assertTrue(MatUtils.equalsExactly(X, coreset.getPoints()));
+		assertTrue(VecUtils.equalsExactly(VecUtils.rep(1.0, 50), coreset.getWeights()));
+		
+		// copies are defensive
+		coreset.getPoints()[0][0] = Double.NaN;
+		X[0][0] = Double.NaN;
+		assertFalse(Double.isNaN(coreset.getPoints()[0][0]));
+	}
+	
+	@Test
+	public void testIdenticalRecords() {
+		final double[][] X = new double[500][];
+		for(int i = 0; i < X.length; i++)
+			X[i] = new double[]{ i % 2, 1 };
+		
+		// the rough solution is exact, so the coreset is too
+		final Coreset coreset = Coreset.build(X, 3, 100, new Random(9));
+		assertEquals(2, coreset.size());
+		assertTrue(VecUtils.equalsExactly(new double[]{250, 250}, coreset.getWeights()));
+	}
+	
+	@Test
+	public void testZeroWeightsNeverSampled() {
+		final double[][] X = TestSuite.getBlobs(2000, 4, 10);
+		final double[] weights = new double[X.length];
+		for(int i = 0; i < X.length; i += 2)
+			weights[i] = 2;
+		
+		final Coreset coreset = Coreset.build(X, 4, 200, new Random(11));
+		final Coreset weighted = Coreset.build(X, weights, 4, 200, new Random(11));
+		assertEquals(1.0, coreset.getTotalWeight() / X.length, 0.1);
+		assertEquals(1.0, weighted.getTotalWeight() / X.length, 0.1);
+		
+		for(double[] point: weighted.getPoints()) {
+			boolean found = false;
+			for(int i = 0; i < X.length && !found; i += 2)
+				found = VecUtils.equalsExactly(point, X[i]);
+			assertTrue(found);
+		}
+	}
+	
+	@Test
+	public void testBuilder() {
+		final double[][] X = TestSuite.getBlobs(20000, 5, 12);
+		final CoresetBuilder builder = new CoresetBuilder(5, 500, new Random(13));
+		for(double[] row: X)
+			builder.add(row);
+		
+		assertEquals(20000, builder.getCount());
+		final Coreset coreset = builder.build();
+		assertTrue(coreset.size() <= 500);
+		assertEquals(1.0, coreset.getTotalWeight() / X.length, 0.1);
+		assertCostApproximated(X, coreset, blobCenters(5), 0.15);
+		assertCostApproximated(X, coreset, blobCenters(3), 0.15);
+		
+		// building does not consume the stream
+		builder.addAll(TestSuite.getBlobs(100, 5, 14));
+		assertEquals(20100, builder.getCount());
+		assertEquals(1.0, builder.build().getTotalWeight() / 20100, 0.1);
+	}
+	
+	@Test
+	public void testBuilderBelowSize() {
+		final double[][] X = TestSuite.getBlobs(30, 3, 15);
+		final Coreset coreset = new CoresetBuilder(3, 100).addAll(X).build();
+		assertTrue(MatUtils.equalsExactly(X, coreset.getPoints()));
+	}
+	
+	@Test(expected=IllegalStateException.class)
+	public void testBuilderEmpty() {
+		new CoresetBuilder(3).build();
+	}
+	
+	@Test(expected=DimensionMismatchException.class)
+	public void testBuilderDimMismatch() {
+		new CoresetBuilder(3).add(new double[]{1, 2}).add(new double[]{1, 2, 3});
+	}
+	
+	@Test(expected=NaNException.class)
+	public void testBuilderNaN() {
+		new CoresetBuilder(3).add(new double[]{1, Double.NaN});
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testNegativeWeight() {
+		new CoresetBuilder(3).add(new double[]{1, 2}, -1);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testSizeBelowK() {
+		new CoresetBuilder(10, 5);
+	}
+	
+	@Test(expected=DimensionMismatchException.class)
+	public void testWeightsDimMismatch() {
+		Coreset.build(TestSuite.getBlobs(10, 2, 16), new double[9], 2, 5, new Random());
+	}
+}
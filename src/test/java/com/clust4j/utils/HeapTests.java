@@ -19,4 +19,43 @@ public class HeapTests {
 		assertTrue(s.size() == 0);
 	}
 
+	
+	@Test
+	public void testTopKHeap() {
+		final java.util.Random rand = new java.util.Random(3);
+		final double[] a = new double[200];
+		for(int i = 0; i < a.length; i++)
+			a[i] = rand.nextInt(50); // plenty of ties
+		
+		final TopKHeap heap = new TopKHeap(2, 10);
+		for(int i = 0; i < a.length; i++) {
+			heap.push(0, a[i], i);
+			heap.push(1, a[a.length - 1 - i], a.length - 1 - i); // reverse order
+		}
+		
+		heap.sort();
+		final double[] sorted = VecUtils.copy(a);
+		java.util.Arrays.sort(sorted);
+		for(int row = 0; row < 2; row++) {
+			assertEquals(10, heap.size(row));
+			assertTrue(VecUtils.equalsExactly(VecUtils.slice(sorted, 0, 10), heap.getValuesRef()[row]));
+		}
+		
+		// ties are broken by index, so push order does not matter
+		assertTrue(VecUtils.equalsExactly(heap.getIndicesRef()[0], heap.getIndicesRef()[1]));
+		
+		for(int k = 0; k < a.length; k += 17)
+			assertEquals(sorted[k], TopKHeap.kthSmallest(a, k), 0.0);
+		
+		final TopKHeap small = new TopKHeap(1, 3);
+		assertEquals(Double.POSITIVE_INFINITY, small.largest(0), 0.0);
+		assertTrue(small.push(0, 2.0, 0));
+		assertTrue(small.push(0, 1.0, 1));
+		assertTrue(small.push(0, 3.0, 2));
+		assertEquals(3.0, small.largest(0), 0.0);
+		assertFalse(small.push(0, 4.0, 3));
+		assertFalse(small.push(0, 3.0, 4)); // tie with a greater index
+		assertTrue(small.push(0, 0.5, 5));
+		assertEquals(2.0, small.largest(0), 0.0);
+	}
 }
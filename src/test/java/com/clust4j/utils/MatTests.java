@@ -3293,4 +3293,75 @@ public class MatTests {
 		
 		assertTrue(MatUtils.slice(d, 0, 0).length == 0);
 	}
+	
+	@Test
+	public void testCSRMatrix() {
+		final double[][] d = new double[][]{
+			new double[]{0.0, 1.5, 0.0, 0.0},
+			new double[]{0.0, 0.0, 0.0, 0.0},
+			new double[]{2.0, 0.0, 0.0, -3.0}
+		};
+		
+		final CSRMatrix c = new CSRMatrix(d);
+		assertEquals(3, c.getNumNonZeros());
+		assertTrue(VecUtils.equalsExactly(new int[]{0, 1, 1, 3}, c.getIndptrRef()));
+		assertTrue(VecUtils.equalsExactly(new int[]{1, 0, 3}, c.getIndicesRef()));
+		assertTrue(MatUtils.equalsExactly(d, c.getData()));
+		assertTrue(c.equals(new Array2DRowRealMatrix(d)));
+		assertTrue(c.equals(new CSRMatrix(new Array2DRowRealMatrix(d))));
+		assertTrue(c.equals(new CSRMatrix(3, 4, new int[]{0, 2, 2, 4},
+			new int[]{1, 2, 0, 3}, new double[]{1.5, 0.0, 2.0, -3.0}))); // explicit zero dropped
+		
+		// row ops
+		final double[] y = new double[]{1, 2, 3, 4};
+		assertEquals(-10.0, c.rowDot(2, y), 0.0);
+		c.addRowTo(0, 2.0, y);
+		assertTrue(VecUtils.equalsExactly(new double[]{1, 5, 3, 4}, y));
+		
+		// insert, overwrite and remove
+		final CSRMatrix copy = c.copy();
+		copy.setEntry(1, 2, 7.0);
+		copy.setEntry(0, 1, 4.0);
+		copy.setEntry(2, 0, 0.0);
+		assertEquals(3, copy.getNumNonZeros());
+		assertEquals(7.0, copy.getEntry(1, 2), 0.0);
+		assertEquals(4.0, copy.getEntry(0, 1), 0.0);
+		assertEquals(0.0, copy.getEntry(2, 0), 0.0);
+		assertTrue(VecUtils.equalsExactly(new int[]{0, 1, 2, 3}, copy.getIndptrRef()));
+		assertEquals(1.5, c.getEntry(0, 1), 0.0); // original untouched
+		
+		boolean a = false;
+		try {
+			new CSRMatrix(1, 3, new int[]{0, 2}, new int[]{2, 1}, new double[]{1, 1});
+		} catch(IllegalArgumentException i) {
+			a = true;
+		} finally {
+			assertTrue(a);
+		}
+	}
+	
+	@Test
+	public void testCSRMatrixRbind() {
+		final double[][] a = new double[][]{
+			new double[]{0.0, 1.5, 0.0},
+			new double[]{0.0, 0.0, 0.0}
+		};
+		
+		final double[][] b = new double[][]{
+			new double[]{2.0, 0.0, -3.0}
+		};
+		
+		final CSRMatrix c = CSRMatrix.rbind(new CSRMatrix(a), new CSRMatrix(b));
+		assertTrue(c.equals(new CSRMatrix(MatUtils.rbind(a, b))));
+		assertTrue(VecUtils.equalsExactly(new int[]{0, 1, 1, 3}, c.getIndptrRef()));
+		
+		boolean thrown = false;
+		try {
+			CSRMatrix.rbind(new CSRMatrix(a), new CSRMatrix(2, 4));
+		} catch(DimensionMismatchException d) {
+			thrown = true;
+		} finally {
+			assertTrue(thrown);
+		}
+	}
 }
@@ -27,6 +27,7 @@ import org.apache.commons.math3.util.Precision;
 import org.junit.Test;
 
 import com.clust4j.GlobalState;
+import com.clust4j.metrics.pairwise.Distance;
 import com.clust4j.utils.Series.Inequality;
 import com.clust4j.utils.VecUtils.DoubleSeries;
 import com.clust4j.utils.VecUtils.VecSeries;
@@ -912,4 +913,49 @@ public class VectorTests {
 		a = new double[]{131,  15, 118, 100};
 		assertTrue(VecUtils.equalsExactly(VecUtils.cumsum(a), new double[]{131, 146, 264, 364}));
 	}
+	
+	@Test
+	public void testVecKernels() {
+		final Random rand = new Random(11);
+		final boolean unrolled = GlobalState.VectorizationConf.UNROLLED_KERNELS;
+		
+		try {
+			for(int n = 0; n < 70; n++) {
+				final double[] a = new double[n], b = new double[n];
+				for(int i = 0; i < n; i++) {
+					a[i] = rand.nextGaussian();
+					b[i] = rand.nextGaussian();
+				}
+				
+				GlobalState.VectorizationConf.UNROLLED_KERNELS = false;
+				final double sq = VecKernels.squaredDifference(a, b), 
+					ab = VecKernels.absoluteDifference(a, b),
+					mx = VecKernels.maxAbsoluteDifference(a, b),
+					ip = VecKernels.innerProduct(a, b),
+					hs = VecKernels.hilbertPSpace(a, b);
+				
+				GlobalState.VectorizationConf.UNROLLED_KERNELS = true;
+				assertEquals(sq, VecKernels.squaredDifference(a, b), 1e-12);
+				assertEquals(ab, VecKernels.absoluteDifference(a, b), 1e-12);
+				assertEquals(mx, VecKernels.maxAbsoluteDifference(a, b), 0.0);
+				assertEquals(ip, VecKernels.innerProduct(a, b), 1e-12);
+				assertEquals(hs, VecKernels.hilbertPSpace(a, b), 1e-12);
+				
+				// short vectors always take the scalar loops
+				if(n < GlobalState.VectorizationConf.MIN_UNROLLED_LENGTH) {
+					assertEquals(sq, VecKernels.squaredDifference(a, b), 0.0);
+					assertEquals(ip, VecKernels.innerProduct(a, b), 0.0);
+				}
+			}
+		} finally {
+			GlobalState.VectorizationConf.UNROLLED_KERNELS = unrolled;
+		}
+		
+		// NaN differences are ignored
+		final double[] a = new double[20], b = new double[20];
+		a[17] = 3.0;
+		a[5] = Double.NaN;
+		assertEquals(3.0, VecKernels.maxAbsoluteDifference(a, b), 0.0);
+		assertEquals(3.0, Distance.CHEBYSHEV.getPartialDistance(a, b), 0.0);
+	}
 }